@@ -101,6 +101,36 @@ public final class BitBuffer
     {
       invariant( () -> !( len < 0 || len > 31 || value >>> len != 0 ), () -> "Value out of range" );
     }
+    appendWord( value, len );
+  }
+
+  /**
+   * Appends the specified number of low bits of the specified 64-bit value
+   * to this sequence. Requires 0 &le; len &le; 64 and all bits above len to be clear.
+   *
+   * @param value the value to append
+   * @param len the number of low bits in the value to take
+   */
+  public void appendBits( final long value, final int len )
+  {
+    if ( BrainCheckConfig.checkInvariants() )
+    {
+      invariant( () -> !( len < 0 || len > 64 || ( len < 64 && value >>> len != 0 ) ), () -> "Value out of range" );
+    }
+    if ( len > 32 )
+    {
+      appendWord( (int) ( value >>> 32 ), len - 32 );
+      appendWord( (int) value, 32 );
+    }
+    else
+    {
+      appendWord( (int) value, len );
+    }
+  }
+
+  // Appends the low len bits of value where 0 <= len <= 32 and all higher bits of value are clear.
+  private void appendWord( final int value, final int len )
+  {
     int v = value;
     int l = len;
     if ( _bitLength + l + 1 > _data.length << 5 )
@@ -0,0 +1,275 @@
+package org.realityforge.gwt.qr_code;
+
+import java.util.Objects;
+import javax.annotation.Nonnull;
+import org.realityforge.braincheck.BrainCheckConfig;
+import static org.realityforge.braincheck.Guards.*;
+
+/**
+ * Describes how the codewords of a symbol with a particular version and error correction level are
+ * split into blocks and interleaved. Instances are immutable and are computed at most once per
+ * version and error correction level combination.
+ */
+final class BlockLayout
+{
+  private static final BlockLayout[] LAYOUTS = new BlockLayout[ Ecc.values().length * 41 ];
+  private final int _numBlocks;
+  private final int _blockEccLen;
+  private final int _numShortBlocks;
+  private final int _shortBlockDataLen;
+  private final int _numDataCodewords;
+  private final int _numRawCodewords;
+  // Maps the index of a data codeword in the unsplit data sequence to the index in the interleaved sequence
+  @Nonnull
+  private final int[] _dataPositions;
+
+  static
+  {
+    if ( NativeImage.isBuildTime() )
+    {
+      // Compute every layout so that they are stored in the image heap
+      for ( final Ecc ecl : Ecc.values() )
+      {
+        for ( int version = QrCodeTool.MIN_VERSION; version <= QrCodeTool.MAX_VERSION; version++ )
+        {
+          get( version, ecl );
+        }
+      }
+    }
+  }
+
+  /**
+   * Return the layout for the specified version and error correction level.
+   *
+   * @param version the version number, which must be in the range 1 to 40, inclusive
+   * @param ecl     the error correction level
+   * @return the layout.
+   */
+  @Nonnull
+  static BlockLayout get( final int version, @Nonnull final Ecc ecl )
+  {
+    if ( BrainCheckConfig.checkInvariants() )
+    {
+      invariant( () -> QrCodeTool.isVersionValid( version ),
+                 () -> "Version value specified '" + version + "' is out of range." );
+    }
+    final int index = Objects.requireNonNull( ecl ).ordinal() * 41 + version;
+    BlockLayout layout = LAYOUTS[ index ];
+    if ( null == layout )
+    {
+      // Layouts are immutable so a race between threads at worst computes the same layout twice
+      layout = new BlockLayout( version, ecl );
+      LAYOUTS[ index ] = layout;
+    }
+    return layout;
+  }
+
+  private BlockLayout( final int version, @Nonnull final Ecc ecl )
+  {
+    _numBlocks = QrCodeTool.NUM_ERROR_CORRECTION_BLOCKS[ ecl.ordinal() ][ version ];
+    _blockEccLen = QrCodeTool.ECC_CODEWORDS_PER_BLOCK[ ecl.ordinal() ][ version ];
+    _numRawCodewords = QrCodeTool.getNumRawDataModules( version ) / 8;
+    _numShortBlocks = _numBlocks - _numRawCodewords % _numBlocks;
+    _shortBlockDataLen = _numRawCodewords / _numBlocks - _blockEccLen;
+    _numDataCodewords = _numRawCodewords - _blockEccLen * _numBlocks;
+
+    // The data codewords of every block are interleaved one codeword at a time, and the
+    // extra codeword of each long block is placed after the codewords shared by all blocks
+    _dataPositions = new int[ _numDataCodewords ];
+    for ( int block = 0, k = 0; block < _numBlocks; block++ )
+    {
+      for ( int i = 0; i < _shortBlockDataLen; i++ )
+      {
+        _dataPositions[ k++ ] = i * _numBlocks + block;
+      }
+      if ( block >= _numShortBlocks )
+      {
+        _dataPositions[ k++ ] = _shortBlockDataLen * _numBlocks + block - _numShortBlocks;
+      }
+    }
+  }
+
+  /**
+   * Return the number of error correction blocks.
+   *
+   * @return the number of error correction blocks.
+   */
+  int getNumBlocks()
+  {
+    return _numBlocks;
+  }
+
+  /**
+   * Return the number of error correction codewords in every block.
+   *
+   * @return the number of error correction codewords in every block.
+   */
+  int getBlockEccLen()
+  {
+    return _blockEccLen;
+  }
+
+  /**
+   * Return the number of data codewords across all blocks.
+   *
+   * @return the number of data codewords across all blocks.
+   */
+  int getNumDataCodewords()
+  {
+    return _numDataCodewords;
+  }
+
+  /**
+   * Return the total number of codewords (data and error correction) in the symbol.
+   *
+   * @return the total number of codewords in the symbol.
+   */
+  int getNumRawCodewords()
+  {
+    return _numRawCodewords;
+  }
+
+  /**
+   * Return the offset of the first data codeword of the specified block in the unsplit data sequence.
+   *
+   * @param block the index of the block.
+   * @return the offset of the first data codeword of the block.
+   */
+  int getBlockDataOffset( final int block )
+  {
+    return block * _shortBlockDataLen + Math.max( 0, block - _numShortBlocks );
+  }
+
+  /**
+   * Return the number of data codewords in the specified block.
+   *
+   * @param block the index of the block.
+   * @return the number of data codewords in the block.
+   */
+  int getBlockDataLen( final int block )
+  {
+    return _shortBlockDataLen + ( block < _numShortBlocks ? 0 : 1 );
+  }
+
+  /**
+   * Return the index of the block that contains the data codeword at the specified index in the unsplit sequence.
+   *
+   * @param index the index of the data codeword.
+   * @return the index of the block.
+   */
+  int getBlock( final int index )
+  {
+    final int shortBlocksDataLen = _numShortBlocks * _shortBlockDataLen;
+    return index < shortBlocksDataLen ?
+           index / _shortBlockDataLen :
+           _numShortBlocks + ( index - shortBlocksDataLen ) / ( _shortBlockDataLen + 1 );
+  }
+
+  /**
+   * Return the index in the interleaved sequence of the data codeword at the specified index in the unsplit sequence.
+   *
+   * @param index the index of the data codeword.
+   * @return the index in the interleaved sequence.
+   */
+  int getDataPosition( final int index )
+  {
+    return _dataPositions[ index ];
+  }
+
+  /**
+   * Return the index in the interleaved sequence of the specified error correction codeword of the specified block.
+   *
+   * @param block the index of the block.
+   * @param index the index of the error correction codeword within the block.
+   * @return the index in the interleaved sequence.
+   */
+  int getEccPosition( final int block, final int index )
+  {
+    return _numDataCodewords + index * _numBlocks + block;
+  }
+
+  /**
+   * Return the number of blocks in the first group of blocks, which have one fewer data codeword than the
+   * blocks in the second group.
+   *
+   * @return the number of blocks in the first group.
+   */
+  int getNumShortBlocks()
+  {
+    return _numShortBlocks;
+  }
+
+  /**
+   * Returns a new byte string representing the given data with the error correction codewords calculated
+   * and every block interleaved. Each remainder is computed in place from the interleaved data codewords and the
+   * error correction codewords are written straight to their final positions so no per-block arrays are created.
+   *
+   * @param data the data codewords.
+   * @return the interleaved data and error correction codewords.
+   */
+  @Nonnull
+  byte[] appendErrorCorrection( @Nonnull final byte[] data )
+  {
+    final byte[] result = interleaveData( data );
+    appendErrorCorrection( 0, _numBlocks, result );
+    return result;
+  }
+
+  /**
+   * Returns a new byte string containing the interleaved data codewords, with the error correction codewords
+   * yet to be calculated via {@link #appendErrorCorrection(int, int, byte[])}.
+   *
+   * @param data the data codewords.
+   * @return the interleaved data codewords followed by space for the error correction codewords.
+   */
+  @Nonnull
+  byte[] interleaveData( @Nonnull final byte[] data )
+  {
+    if ( BrainCheckConfig.checkInvariants() )
+    {
+      invariant( () -> data.length == _numDataCodewords, () -> "Invalid data length for layout" );
+    }
+    final byte[] result = new byte[ _numRawCodewords ];
+    for ( int i = 0; i < _numDataCodewords; i++ )
+    {
+      result[ _dataPositions[ i ] ] = data[ i ];
+    }
+    return result;
+  }
+
+  /**
+   * Calculate the error correction codewords for a range of blocks and write them to their interleaved positions.
+   * The remainders are computed from the interleaved data codewords, which must already be in the result.
+   *
+   * @param startBlock the index of the first block.
+   * @param endBlock   the index after the last block.
+   * @param result     the interleaved codewords.
+   */
+  void appendErrorCorrection( final int startBlock, final int endBlock, @Nonnull final byte[] result )
+  {
+    final ReedSolomonGenerator rs = ReedSolomonGenerator.forDegree( _blockEccLen );
+    for ( int i = 0, position = _numDataCodewords; i < _blockEccLen; i++, position += _numBlocks )
+    {
+      for ( int block = startBlock; block < endBlock; block++ )
+      {
+        result[ position + block ] = 0;
+      }
+    }
+    // The error correction codewords are calculated in place from the interleaved data codewords, where
+    // the codewords shared by all blocks are divided first and then the extra codeword of each long block
+    final Kernels kernels = KernelSelector.get();
+    kernels.divide( rs, result, 0, _shortBlockDataLen, _numDataCodewords, _numBlocks, startBlock, endBlock );
+    final int startLongBlock = Math.max( startBlock, _numShortBlocks );
+    if ( startLongBlock < endBlock )
+    {
+      kernels.divide( rs,
+                      result,
+                      _shortBlockDataLen * _numBlocks - _numShortBlocks,
+                      1,
+                      _numDataCodewords,
+                      _numBlocks,
+                      startLongBlock,
+                      endBlock );
+    }
+  }
+}
@@ -0,0 +1,216 @@
+package org.realityforge.gwt.qr_code;
+
+import java.util.Objects;
+import javax.annotation.Nonnull;
+import org.realityforge.braincheck.BrainCheckConfig;
+import static org.realityforge.braincheck.Guards.*;
+
+/**
+ * A fixed capacity sequence of bits that is written directly into the byte array of data codewords.
+ * Unlike {@link BitBuffer} the storage is allocated exactly once, at the number of data codewords
+ * for the chosen version and error correction level, and bits are packed into bytes in big endian
+ * order as they are appended so no conversion is required before error correction is calculated.
+ */
+final class CodewordBuilder
+{
+  // The pad codewords 0xEC and 0x11 alternating, long enough to pad the largest possible symbol.
+  private static final byte[] PAD_CODEWORDS = createPadCodewords( 2956 );
+  @Nonnull
+  private final byte[] _data;
+  // The number of bits appended so far
+  private int _bitLength;
+  // The low (_bitLength % 8) bits of this value are the bits that have not yet been written to a whole byte
+  private int _pending;
+
+  /**
+   * Create a builder that will contain the specified number of data codewords.
+   *
+   * @param numDataCodewords the number of 8-bit codewords that the builder will contain when complete.
+   */
+  CodewordBuilder( final int numDataCodewords )
+  {
+    if ( BrainCheckConfig.checkInvariants() )
+    {
+      invariant( () -> numDataCodewords >= 0 && numDataCodewords <= PAD_CODEWORDS.length,
+                 () -> "Number of data codewords " + numDataCodewords + " is out of range" );
+    }
+    _data = new byte[ numDataCodewords ];
+  }
+
+  /**
+   * Returns the number of bits appended so far.
+   *
+   * @return the number of bits appended so far.
+   */
+  int getBitLength()
+  {
+    return _bitLength;
+  }
+
+  /**
+   * Returns the number of bits this builder can hold.
+   *
+   * @return the number of bits this builder can hold.
+   */
+  int getCapacityBits()
+  {
+    return _data.length * 8;
+  }
+
+  /**
+   * Return the underlying codewords.
+   * The array is not copied and should only be accessed after the builder has been completely filled.
+   *
+   * @return the underlying codewords.
+   */
+  @Nonnull
+  byte[] getCodewords()
+  {
+    if ( BrainCheckConfig.checkInvariants() )
+    {
+      invariant( () -> _bitLength == _data.length * 8, () -> "Codewords accessed before builder filled" );
+    }
+    return _data;
+  }
+
+  /**
+   * Appends the specified number of low bits of the specified value.
+   * Requires 0 &le; len &le; 31 and 0 &le; value &lt; 2<sup>len</sup>.
+   *
+   * @param value the value to append
+   * @param len   the number of low bits in the value to take
+   */
+  void appendBits( final int value, final int len )
+  {
+    if ( BrainCheckConfig.checkInvariants() )
+    {
+      invariant( () -> !( len < 0 || len > 31 || value >>> len != 0 ), () -> "Value out of range" );
+    }
+    write( value, len );
+  }
+
+  /**
+   * Appends the specified number of low bits of the specified 64-bit value.
+   * Requires 0 &le; len &le; 64 and all bits above len to be clear.
+   *
+   * @param value the value to append
+   * @param len   the number of low bits in the value to take
+   */
+  void appendBits( final long value, final int len )
+  {
+    if ( BrainCheckConfig.checkInvariants() )
+    {
+      invariant( () -> !( len < 0 || len > 64 || ( len < 64 && value >>> len != 0 ) ), () -> "Value out of range" );
+    }
+    if ( len > 32 )
+    {
+      write( (int) ( value >>> 32 ), len - 32 );
+      write( (int) value, 32 );
+    }
+    else
+    {
+      write( (int) value, len );
+    }
+  }
+
+  /**
+   * Appends the specified number of bits from the big-endian packed array of words.
+   * This is the same format as used by {@link QrSegment#getData()}.
+   *
+   * @param values the data to append
+   * @param len    the number of bits to take from the data
+   */
+  void appendData( @Nonnull final int[] values, final int len )
+  {
+    Objects.requireNonNull( values );
+    if ( BrainCheckConfig.checkInvariants() )
+    {
+      invariant( () -> len >= 0 && len <= values.length * 32, () -> "Value out of range" );
+      invariant( () -> _bitLength + len <= _data.length * 8, () -> "Data exceeds capacity" );
+    }
+    final int wholeWords = len >>> 5;
+    if ( 0 == ( _bitLength & 7 ) )
+    {
+      // Byte aligned so can copy whole words across without shifting
+      int offset = _bitLength >>> 3;
+      for ( int i = 0; i < wholeWords; i++ )
+      {
+        final int word = values[ i ];
+        _data[ offset ] = (byte) ( word >>> 24 );
+        _data[ offset + 1 ] = (byte) ( word >>> 16 );
+        _data[ offset + 2 ] = (byte) ( word >>> 8 );
+        _data[ offset + 3 ] = (byte) word;
+        offset += 4;
+      }
+      _bitLength += wholeWords << 5;
+    }
+    else
+    {
+      for ( int i = 0; i < wholeWords; i++ )
+      {
+        write( values[ i ], 32 );
+      }
+    }
+    final int tailBits = len & 0x1F;
+    if ( tailBits > 0 )
+    {
+      write( values[ wholeWords ] >>> ( 32 - tailBits ), tailBits );
+    }
+  }
+
+  /**
+   * Add the terminator, pad to a byte boundary and then fill the remaining capacity with
+   * the alternating pad codewords. The builder is completely filled after this method returns.
+   */
+  void appendPadding()
+  {
+    final int capacityBits = getCapacityBits();
+    if ( BrainCheckConfig.checkInvariants() )
+    {
+      invariant( () -> _bitLength <= capacityBits, () -> "Data exceeds capacity" );
+    }
+    // Add terminator and pad up to a byte if applicable
+    write( 0, Math.min( 4, capacityBits - _bitLength ) );
+    write( 0, ( 8 - _bitLength % 8 ) % 8 );
+
+    // Pad with alternate bytes until data capacity is reached
+    final int offset = _bitLength >>> 3;
+    System.arraycopy( PAD_CODEWORDS, 0, _data, offset, _data.length - offset );
+    _bitLength = capacityBits;
+  }
+
+  // Appends the low len bits of value where 0 <= len <= 32, writing every completed byte into the codewords.
+  private void write( final int value, final int len )
+  {
+    if ( BrainCheckConfig.checkInvariants() )
+    {
+      invariant( () -> _bitLength + len <= _data.length * 8, () -> "Data exceeds capacity" );
+    }
+    // Complete the pending byte and then write every whole byte, keeping all of the arithmetic within 32 bits
+    int bits = _bitLength & 7;
+    int pending = _pending;
+    int remaining = len;
+    int offset = _bitLength >>> 3;
+    while ( bits + remaining >= 8 )
+    {
+      final int take = 8 - bits;
+      remaining -= take;
+      _data[ offset++ ] = (byte) ( ( pending << take ) | ( ( value >>> remaining ) & ( ( 1 << take ) - 1 ) ) );
+      pending = 0;
+      bits = 0;
+    }
+    _pending = ( pending << remaining ) | ( value & ( ( 1 << remaining ) - 1 ) );
+    _bitLength += len;
+  }
+
+  @Nonnull
+  private static byte[] createPadCodewords( final int length )
+  {
+    final byte[] padCodewords = new byte[ length ];
+    for ( int i = 0; i < length; i++ )
+    {
+      padCodewords[ i ] = (byte) ( 0 == ( i & 1 ) ? 0xEC : 0x11 );
+    }
+    return padCodewords;
+  }
+}
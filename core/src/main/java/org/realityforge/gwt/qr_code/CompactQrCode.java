@@ -0,0 +1,285 @@
+package org.realityforge.gwt.qr_code;
+
+import java.util.Objects;
+import javax.annotation.Nonnull;
+
+/**
+ * A compact, immutable representation of a QR Code symbol that is suitable for caching and for transferring
+ * symbols between processes. A symbol is fully determined by the version, error correction level, mask and
+ * the interleaved codewords so only these are stored, which is more than 10 times smaller than a {@link QrCode}.
+ * The modules are materialized on demand via {@link #toQrCode()} without recalculating the error correction
+ * codewords or evaluating the masks.
+ *
+ * <p>The representation is stored in its serialized form so serialization is a single copy. The binary
+ * format is stable and consists of the following header followed by the codewords:</p>
+ * <pre>
+ * offset  size  field
+ *      0     2  magic, the ASCII characters 'Q' and 'R'
+ *      2     1  format version, currently 1
+ *      3     1  symbol version, from 1 to 40
+ *      4     1  error correction level, 0 = LOW, 1 = MEDIUM, 2 = QUARTILE, 3 = HIGH
+ *      5     1  mask, from 0 to 7
+ *      6     2  number of codewords, big-endian
+ *      8     n  the interleaved data and error correction codewords
+ * </pre>
+ */
+public final class CompactQrCode
+{
+  /**
+   * The size of the header that precedes the codewords in the serialized form.
+   */
+  public static final int HEADER_SIZE = 8;
+  private static final int MAGIC_0 = 'Q';
+  private static final int MAGIC_1 = 'R';
+  private static final int FORMAT_VERSION = 1;
+  // The serialized form, which starts at _offset
+  @Nonnull
+  private final byte[] _data;
+  private final int _offset;
+
+  private CompactQrCode( @Nonnull final byte[] data, final int offset )
+  {
+    _data = data;
+    _offset = offset;
+  }
+
+  /**
+   * Return the compact representation of the specified symbol.
+   *
+   * @param qrCode the symbol.
+   * @return the compact representation.
+   */
+  @Nonnull
+  public static CompactQrCode from( @Nonnull final QrCode qrCode )
+  {
+    final byte[] codewords = qrCode.getCodewords();
+    final byte[] data = new byte[ HEADER_SIZE + codewords.length ];
+    data[ 0 ] = (byte) MAGIC_0;
+    data[ 1 ] = (byte) MAGIC_1;
+    data[ 2 ] = (byte) FORMAT_VERSION;
+    data[ 3 ] = (byte) qrCode.getVersion();
+    data[ 4 ] = (byte) qrCode.getErrorCorrectionLevel().ordinal();
+    data[ 5 ] = (byte) qrCode.getMask();
+    data[ 6 ] = (byte) ( codewords.length >>> 8 );
+    data[ 7 ] = (byte) codewords.length;
+    System.arraycopy( codewords, 0, data, HEADER_SIZE, codewords.length );
+    return new CompactQrCode( data, 0 );
+  }
+
+  /**
+   * Return the symbol serialized at the start of the specified array.
+   *
+   * @param data the array containing the serialized form.
+   * @return the symbol.
+   * @throws IllegalArgumentException if the array does not contain a valid serialized symbol.
+   * @see #fromBytes(byte[], int)
+   */
+  @Nonnull
+  public static CompactQrCode fromBytes( @Nonnull final byte[] data )
+  {
+    return fromBytes( data, 0 );
+  }
+
+  /**
+   * Return the symbol serialized at the specified offset of the array. The array is not copied and must
+   * not be modified while the symbol is in use.
+   *
+   * @param data   the array containing the serialized form.
+   * @param offset the offset of the serialized form within the array.
+   * @return the symbol.
+   * @throws IllegalArgumentException if the array does not contain a valid serialized symbol.
+   */
+  @Nonnull
+  public static CompactQrCode fromBytes( @Nonnull final byte[] data, final int offset )
+  {
+    Objects.requireNonNull( data );
+    if ( offset < 0 || offset + HEADER_SIZE > data.length )
+    {
+      throw new IllegalArgumentException( "Data is too short to contain a symbol header" );
+    }
+    if ( MAGIC_0 != data[ offset ] || MAGIC_1 != data[ offset + 1 ] )
+    {
+      throw new IllegalArgumentException( "Data does not start with a symbol header" );
+    }
+    if ( FORMAT_VERSION != data[ offset + 2 ] )
+    {
+      throw new IllegalArgumentException( "Unsupported symbol format version " + data[ offset + 2 ] );
+    }
+    final int version = data[ offset + 3 ];
+    if ( !QrCodeTool.isVersionValid( version ) )
+    {
+      throw new IllegalArgumentException( "Invalid symbol version " + version );
+    }
+    if ( data[ offset + 4 ] < 0 || data[ offset + 4 ] >= Ecc.values().length )
+    {
+      throw new IllegalArgumentException( "Invalid error correction level " + data[ offset + 4 ] );
+    }
+    if ( !QrCodeTool.isMaskValid( data[ offset + 5 ] ) )
+    {
+      throw new IllegalArgumentException( "Invalid mask " + data[ offset + 5 ] );
+    }
+    final int codewordCount = ( ( data[ offset + 6 ] & 0xFF ) << 8 ) | ( data[ offset + 7 ] & 0xFF );
+    if ( codewordCount != QrCodeTool.getNumRawDataModules( version ) / 8 )
+    {
+      throw new IllegalArgumentException( "Invalid number of codewords " + codewordCount + " for version " + version );
+    }
+    if ( offset + HEADER_SIZE + codewordCount > data.length )
+    {
+      throw new IllegalArgumentException( "Data is too short to contain the symbol codewords" );
+    }
+    return new CompactQrCode( data, offset );
+  }
+
+  /**
+   * Return the symbol serialized at the current position of the buffer and advance the position past it.
+   * If the buffer is backed by an accessible array then the symbol refers to the array and no data is copied,
+   * in which case the contents of the buffer must not be modified while the symbol is in use.
+   *
+   * @param buffer the buffer.
+   * @return the symbol.
+   * @throws IllegalArgumentException if the buffer does not contain a valid serialized symbol.
+   */
+  // ByteBuffer is referenced by its qualified name as the type is not available when compiled by GWT
+  @GwtIncompatible
+  @Nonnull
+  public static CompactQrCode readFrom( @Nonnull final java.nio.ByteBuffer buffer )
+  {
+    final CompactQrCode qrCode;
+    if ( buffer.hasArray() )
+    {
+      qrCode = fromBytes( buffer.array(), buffer.arrayOffset() + buffer.position() );
+      if ( qrCode.getSerializedSize() > buffer.remaining() )
+      {
+        throw new IllegalArgumentException( "Buffer is too short to contain the symbol codewords" );
+      }
+    }
+    else
+    {
+      final int position = buffer.position();
+      if ( buffer.remaining() < HEADER_SIZE )
+      {
+        throw new IllegalArgumentException( "Data is too short to contain a symbol header" );
+      }
+      // The count is big-endian whatever the order of the buffer
+      final int size =
+        HEADER_SIZE + ( ( ( buffer.get( position + 6 ) & 0xFF ) << 8 ) | ( buffer.get( position + 7 ) & 0xFF ) );
+      final byte[] data = new byte[ Math.min( size, buffer.remaining() ) ];
+      buffer.get( data );
+      buffer.position( position );
+      qrCode = fromBytes( data );
+    }
+    buffer.position( buffer.position() + qrCode.getSerializedSize() );
+    return qrCode;
+  }
+
+  /**
+   * Write the serialized form of the symbol to the buffer at its current position and advance the position.
+   *
+   * @param buffer the buffer.
+   */
+  @GwtIncompatible
+  public void writeTo( @Nonnull final java.nio.ByteBuffer buffer )
+  {
+    buffer.put( _data, _offset, getSerializedSize() );
+  }
+
+  /**
+   * Return a copy of the serialized form of the symbol.
+   *
+   * @return the serialized form of the symbol.
+   */
+  @Nonnull
+  public byte[] toByteArray()
+  {
+    final byte[] data = new byte[ getSerializedSize() ];
+    System.arraycopy( _data, _offset, data, 0, data.length );
+    return data;
+  }
+
+  /**
+   * Return the number of bytes in the serialized form of the symbol.
+   *
+   * @return the number of bytes in the serialized form of the symbol.
+   */
+  public int getSerializedSize()
+  {
+    return HEADER_SIZE + getCodewordCount();
+  }
+
+  /**
+   * Return the version of the symbol, which is always between 1 and 40 (inclusive).
+   *
+   * @return the version of the symbol.
+   */
+  public int getVersion()
+  {
+    return _data[ _offset + 3 ];
+  }
+
+  /**
+   * Return the width and height of the symbol, measured in modules.
+   *
+   * @return the width and height of the symbol, measured in modules.
+   */
+  public int getSize()
+  {
+    return getVersion() * 4 + 17;
+  }
+
+  /**
+   * Return the error correction level of the symbol.
+   *
+   * @return the error correction level of the symbol.
+   */
+  @Nonnull
+  public Ecc getErrorCorrectionLevel()
+  {
+    return Ecc.values()[ _data[ _offset + 4 ] ];
+  }
+
+  /**
+   * Return the mask pattern of the symbol, in the range 0 to 7.
+   *
+   * @return the mask pattern of the symbol.
+   */
+  public int getMask()
+  {
+    return _data[ _offset + 5 ];
+  }
+
+  /**
+   * Return the number of codewords in the symbol.
+   *
+   * @return the number of codewords in the symbol.
+   */
+  public int getCodewordCount()
+  {
+    return ( ( _data[ _offset + 6 ] & 0xFF ) << 8 ) | ( _data[ _offset + 7 ] & 0xFF );
+  }
+
+  /**
+   * Return the codeword at the specified index in the interleaved sequence of data and error correction codewords.
+   *
+   * @param index the index of the codeword.
+   * @return the codeword as an unsigned value.
+   */
+  public int getCodeword( final int index )
+  {
+    return _data[ _offset + HEADER_SIZE + index ] & 0xFF;
+  }
+
+  /**
+   * Materialize the modules of the symbol. The codewords are placed using the placement order cached
+   * for the version and the stored mask is applied, so neither the error correction codewords nor the
+   * mask penalties are calculated.
+   *
+   * @return the symbol.
+   */
+  @Nonnull
+  public QrCode toQrCode()
+  {
+    final byte[] codewords = new byte[ getCodewordCount() ];
+    System.arraycopy( _data, _offset + HEADER_SIZE, codewords, 0, codewords.length );
+    return QrCode.fromCodewords( getVersion(), getErrorCorrectionLevel(), codewords, getMask() );
+  }
+}
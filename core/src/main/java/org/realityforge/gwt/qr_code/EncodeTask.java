@@ -0,0 +1,237 @@
+package org.realityforge.gwt.qr_code;
+
+import java.util.List;
+import java.util.Objects;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.realityforge.braincheck.BrainCheckConfig;
+import static org.realityforge.braincheck.Guards.*;
+
+/**
+ * Encodes a symbol as a sequence of short resumable steps so that the work can be interleaved with other work
+ * on a single thread. The steps are segmenting the text, creating the data codewords, calculating the error
+ * correction codewords of each group of blocks, placing the codewords and evaluating each candidate mask.
+ * The resulting symbol is identical to that produced by {@link QrCodeTool#encodeSegments(List, Ecc, int, int, int, boolean)}.
+ */
+final class EncodeTask
+{
+  private static final int STAGE_SEGMENT = 0;
+  private static final int STAGE_DATA = 1;
+  private static final int STAGE_ERROR_CORRECTION = 2;
+  private static final int STAGE_PLACEMENT = 3;
+  private static final int STAGE_MASK = 4;
+  private static final int STAGE_COMPLETE = 5;
+  @Nullable
+  private final String _text;
+  private final int _minVersion;
+  private final int _maxVersion;
+  private final int _mask;
+  private final boolean _boostEcl;
+  @Nonnull
+  private Ecc _ecl;
+  @Nullable
+  private List<QrSegment> _segments;
+  private int _stage;
+  private int _version;
+  @Nullable
+  private BlockLayout _layout;
+  @Nullable
+  private byte[] _codewords;
+  // The index of the first block of the next group of blocks to calculate error correction codewords for
+  private int _nextBlock;
+  @Nullable
+  private QrCode _symbol;
+  // The next candidate mask to evaluate and the best candidate so far
+  private int _nextMask;
+  private int _bestMask;
+  private int _minPenalty;
+
+  /**
+   * Create a task that encodes the text as {@link QrCodeTool#encodeText(String, Ecc)} does.
+   *
+   * @param text the text to be encoded.
+   * @param ecl  the error correction level to use (will be boosted).
+   */
+  EncodeTask( @Nonnull final String text, @Nonnull final Ecc ecl )
+  {
+    this( Objects.requireNonNull( text ),
+          null,
+          ecl,
+          QrCodeTool.MIN_VERSION,
+          QrCodeTool.MAX_VERSION,
+          QrCodeTool.AUTO_MASK,
+          true );
+  }
+
+  /**
+   * Create a task that encodes the segments as
+   * {@link QrCodeTool#encodeSegments(List, Ecc, int, int, int, boolean)} does.
+   *
+   * @param segments   the segments to encode.
+   * @param ecl        the error correction level to use (may be boosted).
+   * @param minVersion the minimum allowed version of the QR symbol (at least 1).
+   * @param maxVersion the maximum allowed version of the QR symbol (at most 40).
+   * @param mask       the mask pattern to use, which is either -1 for automatic choice or from 0 to 7 for fixed choice.
+   * @param boostEcl   increases the error correction level if it can be done without increasing the version number.
+   */
+  EncodeTask( @Nonnull final List<QrSegment> segments,
+              @Nonnull final Ecc ecl,
+              final int minVersion,
+              final int maxVersion,
+              final int mask,
+              final boolean boostEcl )
+  {
+    this( null, Objects.requireNonNull( segments ), ecl, minVersion, maxVersion, mask, boostEcl );
+  }
+
+  private EncodeTask( @Nullable final String text,
+                      @Nullable final List<QrSegment> segments,
+                      @Nonnull final Ecc ecl,
+                      final int minVersion,
+                      final int maxVersion,
+                      final int mask,
+                      final boolean boostEcl )
+  {
+    QrCodeTool.checkEncodeParameters( minVersion, maxVersion, mask );
+    _text = text;
+    _segments = segments;
+    _ecl = Objects.requireNonNull( ecl );
+    _minVersion = minVersion;
+    _maxVersion = maxVersion;
+    _mask = mask;
+    _boostEcl = boostEcl;
+    _stage = null == segments ? STAGE_SEGMENT : STAGE_DATA;
+  }
+
+  /**
+   * Return true if the symbol has been encoded.
+   *
+   * @return true if the symbol has been encoded.
+   */
+  boolean isComplete()
+  {
+    return STAGE_COMPLETE == _stage;
+  }
+
+  /**
+   * Return the encoded symbol.
+   *
+   * @return the encoded symbol.
+   */
+  @Nonnull
+  QrCode getSymbol()
+  {
+    if ( BrainCheckConfig.checkInvariants() )
+    {
+      invariant( this::isComplete, () -> "Symbol has not been encoded" );
+    }
+    assert null != _symbol;
+    return _symbol;
+  }
+
+  /**
+   * Perform the next step of the encoding.
+   */
+  void step()
+  {
+    switch ( _stage )
+    {
+      case STAGE_SEGMENT:
+        assert null != _text;
+        _segments = QrCodeTool.makeSegments( _text );
+        _stage = STAGE_DATA;
+        break;
+      case STAGE_DATA:
+        createDataCodewords();
+        break;
+      case STAGE_ERROR_CORRECTION:
+        appendErrorCorrection();
+        break;
+      case STAGE_PLACEMENT:
+        assert null != _codewords;
+        _symbol = QrCode.newUnmasked( _version, _ecl, _codewords );
+        _stage = STAGE_MASK;
+        break;
+      case STAGE_MASK:
+        selectMask();
+        break;
+      default:
+        if ( BrainCheckConfig.checkInvariants() )
+        {
+          invariant( () -> STAGE_COMPLETE != _stage, () -> "Symbol has already been encoded" );
+        }
+        break;
+    }
+  }
+
+  private void createDataCodewords()
+  {
+    final List<QrSegment> segments = _segments;
+    assert null != segments;
+    // Find the minimal version number to use
+    _version = QrCodeTool.findMinimumVersion( segments, _ecl, _minVersion, _maxVersion );
+    if ( BrainCheckConfig.checkInvariants() )
+    {
+      invariant( () -> -1 != _version, () -> "All versions in the range could not fit the given data" );
+    }
+    final int dataUsedBits = QrCodeTool.getTotalBits( segments, _version );
+
+    // Increase the error correction level while the data still fits in the current version number
+    _ecl = QrCodeTool.boostErrorCorrectionLevel( _ecl, _version, dataUsedBits, _boostEcl );
+    _layout = BlockLayout.get( _version, _ecl );
+    _codewords = _layout.interleaveData( QrCodeTool.toDataCodewords( segments, _version, _ecl ) );
+    _stage = STAGE_ERROR_CORRECTION;
+  }
+
+  // Calculate the error correction codewords of the next group of blocks, where the first group contains the
+  // short blocks and the second group contains the blocks with one extra data codeword
+  private void appendErrorCorrection()
+  {
+    final BlockLayout layout = _layout;
+    assert null != layout && null != _codewords;
+    final int numShortBlocks = layout.getNumShortBlocks();
+    final int endBlock = _nextBlock < numShortBlocks ? numShortBlocks : layout.getNumBlocks();
+    layout.appendErrorCorrection( _nextBlock, endBlock, _codewords );
+    _nextBlock = endBlock;
+    if ( layout.getNumBlocks() == endBlock )
+    {
+      _stage = STAGE_PLACEMENT;
+    }
+  }
+
+  private void selectMask()
+  {
+    final QrCode symbol = _symbol;
+    assert null != symbol;
+    if ( QrCodeTool.AUTO_MASK != _mask )
+    {
+      complete( symbol, _mask );
+    }
+    else
+    {
+      if ( 0 == _nextMask )
+      {
+        _minPenalty = Integer.MAX_VALUE;
+      }
+      final int penalty = symbol.getMaskPenalty( _nextMask );
+      if ( penalty < _minPenalty )
+      {
+        _bestMask = _nextMask;
+        _minPenalty = penalty;
+      }
+      _nextMask++;
+      if ( 8 == _nextMask )
+      {
+        complete( symbol, _bestMask );
+      }
+    }
+  }
+
+  private void complete( @Nonnull final QrCode symbol, final int mask )
+  {
+    symbol.completeMasking( mask );
+    _layout = null;
+    _codewords = null;
+    _stage = STAGE_COMPLETE;
+  }
+}
@@ -0,0 +1,27 @@
+package org.realityforge.gwt.qr_code;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Selects the implementation of the {@link Kernels} used by the encoder. This version of the class is used
+ * by Java 8 runtimes and by GWT and always selects the {@link ScalarKernels}. The jar is a multi-release jar
+ * that contains another version of this class, under <code>META-INF/versions/17</code>, that selects kernels
+ * implemented using the incubating Vector API when the <code>jdk.incubator.vector</code> module is available.
+ */
+final class KernelSelector
+{
+  private KernelSelector()
+  {
+  }
+
+  /**
+   * Return the kernels to use.
+   *
+   * @return the kernels to use.
+   */
+  @Nonnull
+  static Kernels get()
+  {
+    return ScalarKernels.INSTANCE;
+  }
+}
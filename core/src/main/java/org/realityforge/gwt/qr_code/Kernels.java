@@ -0,0 +1,66 @@
+package org.realityforge.gwt.qr_code;
+
+import javax.annotation.Nonnull;
+
+/**
+ * The compute intensive loops of the encoder, which are selected at runtime by {@link KernelSelector}.
+ * The {@link ScalarKernels} are the reference implementation and every other implementation must
+ * produce identical results.
+ */
+interface Kernels
+{
+  /**
+   * Apply the mask pattern to the packed modules, storing the result in the masked array.
+   *
+   * @param modules the packed modules.
+   * @param pattern the packed mask pattern, which has the same length as the modules.
+   * @param masked  the array to store the masked modules in, which has the same length as the modules.
+   * @return the number of black modules after the mask is applied.
+   */
+  int applyMask( @Nonnull int[] modules, @Nonnull int[] pattern, @Nonnull int[] masked );
+
+  /**
+   * Calculate the penalty for runs of the same color and for finder-like patterns that run across the lines
+   * of the packed grid, i.e. within the columns of a grid packed by row and within the rows of a grid packed
+   * by column.
+   *
+   * @param grid     the packed modules.
+   * @param patterns the mask patterns of the version, which describe the shape of the grid.
+   * @return the penalty.
+   */
+  int getLinePenalty( @Nonnull int[] grid, @Nonnull MaskPatterns patterns );
+
+  /**
+   * Calculate the penalty for 2*2 blocks of modules having the same color.
+   *
+   * @param grid     the modules packed by row.
+   * @param patterns the mask patterns of the version, which describe the shape of the grid.
+   * @return the penalty.
+   */
+  int getBlockPenalty( @Nonnull int[] grid, @Nonnull MaskPatterns patterns );
+
+  /**
+   * Perform steps of the Reed-Solomon division for a range of blocks that share a generator, where the
+   * codewords of the blocks are interleaved. Data codeword k of block b is read from
+   * {@code codewords[dataOffset + k * stride + b]} and error correction codeword i of block b is held at
+   * {@code codewords[eccOffset + i * stride + b]}, which must initially be zero. As the remainder is held
+   * in place the division of a block can be continued by a later call.
+   *
+   * @param generator  the generator shared by the blocks.
+   * @param codewords  the interleaved codewords.
+   * @param dataOffset the index of the first data codeword to divide by of block 0.
+   * @param steps      the number of data codewords to divide by.
+   * @param eccOffset  the index of the first error correction codeword of block 0.
+   * @param stride     the distance between successive codewords of the same block.
+   * @param startBlock the index of the first block.
+   * @param endBlock   the index after the last block.
+   */
+  void divide( @Nonnull ReedSolomonGenerator generator,
+               @Nonnull byte[] codewords,
+               int dataOffset,
+               int steps,
+               int eccOffset,
+               int stride,
+               int startBlock,
+               int endBlock );
+}
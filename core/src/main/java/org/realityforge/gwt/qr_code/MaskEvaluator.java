@@ -0,0 +1,110 @@
+package org.realityforge.gwt.qr_code;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Calculates the penalty score of each candidate mask of an unmasked symbol. The modules are packed into
+ * 32-bit words twice, once with a row in each line of words and once with a column in each line of words.
+ * Every rule is then evaluated for 32 modules at a time by combining the words of consecutive lines, so a
+ * rule that applies to runs within a row is evaluated on the column packing and vice versa. This keeps all
+ * of the arithmetic within 32-bit integers, which is also what the javascript engines optimize best. The
+ * rules are evaluated by the {@link Kernels} selected for the runtime.
+ */
+final class MaskEvaluator
+{
+  static final int PENALTY_N1 = 3;
+  static final int PENALTY_N2 = 3;
+  static final int PENALTY_N3 = 40;
+  static final int PENALTY_N4 = 10;
+  private final int _size;
+  private final int _words;
+  // The unmasked modules packed by row and by column
+  @Nonnull
+  private final int[] _rows;
+  @Nonnull
+  private final int[] _columns;
+  // The modules with the candidate mask applied, packed by row and by column
+  @Nonnull
+  private final int[] _maskedRows;
+  @Nonnull
+  private final int[] _maskedColumns;
+
+  /**
+   * Create an evaluator for the specified unmasked modules.
+   *
+   * @param modules the modules of the unmasked symbol, including the format bits.
+   */
+  MaskEvaluator( @Nonnull final boolean[][] modules )
+  {
+    _size = modules.length;
+    _words = ( _size + 31 ) >>> 5;
+    _rows = new int[ _size * _words ];
+    _columns = new int[ _size * _words ];
+    _maskedRows = new int[ _size * _words ];
+    _maskedColumns = new int[ _size * _words ];
+    for ( int y = 0; y < _size; y++ )
+    {
+      for ( int x = 0; x < _size; x++ )
+      {
+        if ( modules[ y ][ x ] )
+        {
+          _rows[ y * _words + ( x >>> 5 ) ] |= 1 << ( x & 31 );
+          _columns[ x * _words + ( y >>> 5 ) ] |= 1 << ( y & 31 );
+        }
+      }
+    }
+  }
+
+  /**
+   * Update the packed modules in the specified row and the specified column, which is used to update
+   * the format bits as they are drawn for each candidate mask.
+   *
+   * @param modules the modules of the unmasked symbol.
+   * @param line    the index of the row and of the column.
+   */
+  void updateLine( @Nonnull final boolean[][] modules, final int line )
+  {
+    for ( int i = 0; i < _size; i++ )
+    {
+      setBit( _rows, line, i, modules[ line ][ i ] );
+      setBit( _rows, i, line, modules[ i ][ line ] );
+      setBit( _columns, line, i, modules[ i ][ line ] );
+      setBit( _columns, i, line, modules[ line ][ i ] );
+    }
+  }
+
+  /**
+   * Return the penalty score of the symbol if the mask were applied.
+   *
+   * @param patterns the mask patterns for the version of the symbol.
+   * @param mask     the candidate mask, from 0 to 7.
+   * @return the penalty score, where lower is better.
+   */
+  int getPenalty( @Nonnull final MaskPatterns patterns, final int mask )
+  {
+    final Kernels kernels = KernelSelector.get();
+    final int black = kernels.applyMask( _rows, patterns.getRows( mask ), _maskedRows );
+    kernels.applyMask( _columns, patterns.getColumns( mask ), _maskedColumns );
+
+    // Rules that apply across rows are evaluated on the rows and rules that apply along rows on the columns
+    int result = kernels.getLinePenalty( _maskedRows, patterns ) +
+                 kernels.getLinePenalty( _maskedColumns, patterns ) +
+                 kernels.getBlockPenalty( _maskedRows, patterns );
+
+    // Balance of black and white modules
+    final int total = _size * _size;
+    // Find smallest k such that (45-5k)% <= dark/total <= (55+5k)%
+    for ( int k = 0; black * 20 < ( 9 - k ) * total || black * 20 > ( 11 + k ) * total; k++ )
+    {
+      result += PENALTY_N4;
+    }
+    return result;
+  }
+
+  private void setBit( @Nonnull final int[] grid, final int line, final int index, final boolean value )
+  {
+    final int word = line * _words + ( index >>> 5 );
+    final int bit = 1 << ( index & 31 );
+    grid[ word ] = value ? grid[ word ] | bit : grid[ word ] & ~bit;
+  }
+}
@@ -0,0 +1,178 @@
+package org.realityforge.gwt.qr_code;
+
+import java.util.Objects;
+import javax.annotation.Nonnull;
+import org.realityforge.braincheck.BrainCheckConfig;
+import static org.realityforge.braincheck.Guards.*;
+
+/**
+ * The modules inverted by each of the eight mask patterns in a symbol of a particular version, excluding
+ * the function modules which are never masked. The patterns are packed into 32-bit words so that a mask
+ * can be applied to a packed grid with a single XOR per word. Each pattern is stored twice, once with a
+ * row in each line of words and once with a column in each line of words, as the penalty rules are
+ * evaluated across both rows and columns. Instances are immutable and are computed at most once per version.
+ */
+final class MaskPatterns
+{
+  private static final MaskPatterns[] PATTERNS = new MaskPatterns[ 41 ];
+  private final int _size;
+  private final int _words;
+  // The mask of the bits in the last word of each line that correspond to modules
+  private final int _lastWordMask;
+  // The patterns indexed by mask, where bit (x & 31) of word (y * words + (x >>> 5)) is set for an inverted module
+  @Nonnull
+  private final int[][] _rows = new int[ 8 ][];
+  // The patterns indexed by mask, where bit (y & 31) of word (x * words + (y >>> 5)) is set for an inverted module
+  @Nonnull
+  private final int[][] _columns = new int[ 8 ][];
+
+  static
+  {
+    if ( NativeImage.isBuildTime() )
+    {
+      // Compute the patterns of every version so that they are stored in the image heap
+      for ( int version = QrCodeTool.MIN_VERSION; version <= QrCodeTool.MAX_VERSION; version++ )
+      {
+        QrCode.newUnmasked( version, Ecc.LOW, new byte[ QrCodeTool.getNumRawDataModules( version ) / 8 ] )
+          .completeMasking( 0 );
+      }
+    }
+  }
+
+  /**
+   * Return the mask patterns for the specified version, computing them from the function modules if required.
+   *
+   * @param version    the version number, which must be in the range 1 to 40, inclusive
+   * @param isFunction the grid indicating which modules are function modules in a symbol of the version.
+   * @return the mask patterns.
+   */
+  @Nonnull
+  static MaskPatterns get( final int version, @Nonnull final boolean[][] isFunction )
+  {
+    if ( BrainCheckConfig.checkInvariants() )
+    {
+      invariant( () -> QrCodeTool.isVersionValid( version ),
+                 () -> "Version value specified '" + version + "' is out of range." );
+      invariant( () -> isFunction.length == version * 4 + 17, () -> "Function grid does not match version" );
+    }
+    MaskPatterns patterns = PATTERNS[ version ];
+    if ( null == patterns )
+    {
+      // Patterns are immutable so a race between threads at worst computes the same patterns twice
+      patterns = new MaskPatterns( Objects.requireNonNull( isFunction ) );
+      PATTERNS[ version ] = patterns;
+    }
+    return patterns;
+  }
+
+  private MaskPatterns( @Nonnull final boolean[][] isFunction )
+  {
+    final int size = isFunction.length;
+    final int words = ( size + 31 ) >>> 5;
+    _size = size;
+    _words = words;
+    _lastWordMask = 0 == ( size & 31 ) ? -1 : ( 1 << ( size & 31 ) ) - 1;
+    for ( int mask = 0; mask < 8; mask++ )
+    {
+      final int[] rows = new int[ size * words ];
+      final int[] columns = new int[ size * words ];
+      for ( int y = 0; y < size; y++ )
+      {
+        for ( int x = 0; x < size; x++ )
+        {
+          if ( !isFunction[ y ][ x ] && isInverted( mask, x, y ) )
+          {
+            rows[ y * words + ( x >>> 5 ) ] |= 1 << ( x & 31 );
+            columns[ x * words + ( y >>> 5 ) ] |= 1 << ( y & 31 );
+          }
+        }
+      }
+      _rows[ mask ] = rows;
+      _columns[ mask ] = columns;
+    }
+  }
+
+  /**
+   * Return the width and height of the symbol, measured in modules.
+   *
+   * @return the width and height of the symbol.
+   */
+  int getSize()
+  {
+    return _size;
+  }
+
+  /**
+   * Return the number of 32-bit words used to pack each row or column.
+   *
+   * @return the number of 32-bit words used to pack each row or column.
+   */
+  int getWords()
+  {
+    return _words;
+  }
+
+  /**
+   * Return the mask of the bits in the last word of each row or column that correspond to modules.
+   *
+   * @return the mask of the bits in the last word of each row or column that correspond to modules.
+   */
+  int getLastWordMask()
+  {
+    return _lastWordMask;
+  }
+
+  /**
+   * Return the modules inverted by the mask, packed with a row in each line of words.
+   * The returned array must not be modified.
+   *
+   * @param mask the mask, from 0 to 7.
+   * @return the packed pattern.
+   */
+  @Nonnull
+  int[] getRows( final int mask )
+  {
+    return _rows[ mask ];
+  }
+
+  /**
+   * Return the modules inverted by the mask, packed with a column in each line of words.
+   * The returned array must not be modified.
+   *
+   * @param mask the mask, from 0 to 7.
+   * @return the packed pattern.
+   */
+  @Nonnull
+  int[] getColumns( final int mask )
+  {
+    return _columns[ mask ];
+  }
+
+  // Return true if the mask inverts the module at the specified coordinates, ignoring function modules
+  private static boolean isInverted( final int mask, final int x, final int y )
+  {
+    switch ( mask )
+    {
+      case 0:
+        return ( x + y ) % 2 == 0;
+      case 1:
+        return y % 2 == 0;
+      case 2:
+        return x % 3 == 0;
+      case 3:
+        return ( x + y ) % 3 == 0;
+      case 4:
+        return ( x / 3 + y / 2 ) % 2 == 0;
+      case 5:
+        return x * y % 2 + x * y % 3 == 0;
+      case 6:
+        return ( x * y % 2 + x * y % 3 ) % 2 == 0;
+      default:
+        if ( BrainCheckConfig.checkInvariants() )
+        {
+          invariant( () -> 7 == mask, () -> "Unhandled mask value" );
+        }
+        return ( ( x + y ) % 2 + x * y % 3 ) % 2 == 0;
+    }
+  }
+}
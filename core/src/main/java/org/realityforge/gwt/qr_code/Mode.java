@@ -12,7 +12,8 @@ public enum Mode
   ALPHANUMERIC( 0x2, 9, 11, 13 ),
   BYTE( 0x4, 8, 16, 16 ),
   KANJI( 0x8, 8, 10, 12 ),
-  ECI( 0x7, 0, 0, 0 );
+  ECI( 0x7, 0, 0, 0 ),
+  STRUCTURED_APPEND( 0x3, 0, 0, 0 );
 
   private final int _modeBits;
   private final int[] _numBitsCharCount;
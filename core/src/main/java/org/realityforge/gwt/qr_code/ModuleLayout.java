@@ -0,0 +1,127 @@
+package org.realityforge.gwt.qr_code;
+
+import java.util.Objects;
+import javax.annotation.Nonnull;
+import org.realityforge.braincheck.BrainCheckConfig;
+import static org.realityforge.braincheck.Guards.*;
+
+/**
+ * Describes where each bit of the codeword sequence is placed within a symbol of a particular version.
+ * The placement follows the zigzag scan of the data area and skips the function modules, which only
+ * depend upon the version. Instances are immutable and are computed at most once per version.
+ */
+final class ModuleLayout
+{
+  private static final ModuleLayout[] LAYOUTS = new ModuleLayout[ 41 ];
+  // The coordinates of every codeword bit, encoded as (y << 8) | x
+  @Nonnull
+  private final int[] _positions;
+
+  static
+  {
+    if ( NativeImage.isBuildTime() )
+    {
+      // Compute every layout so that they are stored in the image heap. Creating an unmasked symbol
+      // of each version computes the layout of the version from the function modules of the symbol.
+      for ( int version = QrCodeTool.MIN_VERSION; version <= QrCodeTool.MAX_VERSION; version++ )
+      {
+        QrCode.newUnmasked( version, Ecc.LOW, new byte[ QrCodeTool.getNumRawDataModules( version ) / 8 ] );
+      }
+    }
+  }
+
+  /**
+   * Return the layout for the specified version, computing it from the function modules if required.
+   *
+   * @param version    the version number, which must be in the range 1 to 40, inclusive
+   * @param isFunction the grid indicating which modules are function modules in a symbol of the version.
+   * @return the layout.
+   */
+  @Nonnull
+  static ModuleLayout get( final int version, @Nonnull final boolean[][] isFunction )
+  {
+    if ( BrainCheckConfig.checkInvariants() )
+    {
+      invariant( () -> QrCodeTool.isVersionValid( version ),
+                 () -> "Version value specified '" + version + "' is out of range." );
+      invariant( () -> isFunction.length == version * 4 + 17, () -> "Function grid does not match version" );
+    }
+    ModuleLayout layout = LAYOUTS[ version ];
+    if ( null == layout )
+    {
+      // Layouts are immutable so a race between threads at worst computes the same layout twice
+      layout = new ModuleLayout( version, Objects.requireNonNull( isFunction ) );
+      LAYOUTS[ version ] = layout;
+    }
+    return layout;
+  }
+
+  private ModuleLayout( final int version, @Nonnull final boolean[][] isFunction )
+  {
+    final int size = isFunction.length;
+    _positions = new int[ QrCodeTool.getNumRawDataModules( version ) / 8 * 8 ];
+    int i = 0;
+    // Do the funny zigzag scan
+    for ( int right = size - 1; right >= 1; right -= 2 )
+    {
+      // Index of right column in each column pair
+      if ( right == 6 )
+      {
+        right = 5;
+      }
+      final boolean upward = ( ( right + 1 ) & 2 ) == 0;
+      for ( int vert = 0; vert < size; vert++ )
+      {
+        final int y = upward ? size - 1 - vert : vert;  // Actual y coordinate
+        for ( int j = 0; j < 2; j++ )
+        {
+          final int x = right - j;  // Actual x coordinate
+          // Any remainder bits (0 to 7) after the last codeword are left white
+          if ( !isFunction[ y ][ x ] && i < _positions.length )
+          {
+            _positions[ i++ ] = ( y << 8 ) | x;
+          }
+        }
+      }
+    }
+    if ( BrainCheckConfig.checkInvariants() )
+    {
+      final int v = i;
+      invariant( () -> v == _positions.length, () -> "Unexpected remainder" );
+    }
+  }
+
+  /**
+   * Return the number of codeword bits placed in the symbol.
+   *
+   * @return the number of codeword bits placed in the symbol.
+   */
+  int getBitCount()
+  {
+    return _positions.length;
+  }
+
+  /**
+   * Return the x coordinate of the module that holds the specified bit of the codeword sequence.
+   * Bit 0 is the most significant bit of the first codeword.
+   *
+   * @param bit the index of the bit.
+   * @return the x coordinate of the module.
+   */
+  int getX( final int bit )
+  {
+    return _positions[ bit ] & 0xFF;
+  }
+
+  /**
+   * Return the y coordinate of the module that holds the specified bit of the codeword sequence.
+   * Bit 0 is the most significant bit of the first codeword.
+   *
+   * @param bit the index of the bit.
+   * @return the y coordinate of the module.
+   */
+  int getY( final int bit )
+  {
+    return _positions[ bit ] >>> 8;
+  }
+}
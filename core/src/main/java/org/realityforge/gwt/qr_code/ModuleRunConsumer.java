@@ -0,0 +1,22 @@
+package org.realityforge.gwt.qr_code;
+
+/**
+ * Receives the runs of consecutive dark modules in a symbol.
+ *
+ * @see QrCode#forEachRowRun(ModuleRunConsumer)
+ * @see QrCode#forEachColumnRun(ModuleRunConsumer)
+ */
+@FunctionalInterface
+public interface ModuleRunConsumer
+{
+  /**
+   * Invoked for each run of consecutive dark modules.
+   * For horizontal runs the line is the y coordinate and the start is the x coordinate of the leftmost module.
+   * For vertical runs the line is the x coordinate and the start is the y coordinate of the topmost module.
+   *
+   * @param line   the row or column that contains the run.
+   * @param start  the coordinate of the first module of the run within the line.
+   * @param length the number of modules in the run, which is always positive.
+   */
+  void accept( int line, int start, int length );
+}
@@ -0,0 +1,46 @@
+package org.realityforge.gwt.qr_code;
+
+/**
+ * Detects when the library is being compiled into a GraalVM native image.
+ * The <code>native-image.properties</code> included in the jar initializes the classes of the library while the
+ * image is built, at which time the caches of block layouts, module layouts, mask patterns and Reed-Solomon
+ * generators are filled so that they are stored in the image heap rather than computed on first use when the image runs.
+ * On the JVM and in GWT the caches are filled lazily as before.
+ */
+final class NativeImage
+{
+  private static final boolean BUILD_TIME = new Provider().isBuildTime();
+
+  private NativeImage()
+  {
+  }
+
+  /**
+   * Return true if the classes are being initialized by the native image builder.
+   *
+   * @return true if the classes are being initialized by the native image builder.
+   */
+  static boolean isBuildTime()
+  {
+    return BUILD_TIME;
+  }
+
+  private static final class Provider
+    extends AbstractProvider
+  {
+    @GwtIncompatible
+    @Override
+    boolean isBuildTime()
+    {
+      return "buildtime".equals( System.getProperty( "org.graalvm.nativeimage.imagecode" ) );
+    }
+  }
+
+  private static abstract class AbstractProvider
+  {
+    boolean isBuildTime()
+    {
+      return false;
+    }
+  }
+}
@@ -0,0 +1,344 @@
+package org.realityforge.gwt.qr_code;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * An opt-in stage in front of segmenting that encodes a payload in whichever form needs the smallest symbol.
+ * The candidates are the payload itself, the payload compressed using deflate and the compressed payload encoded
+ * as Base45 text (RFC 9285), which is the alphanumeric transport used by the EU Digital COVID Certificate. The
+ * candidate that fits in the lowest version at the error correction level is chosen, using the same capacity
+ * rules as {@link QrCodeTool#encodeSegments(List, Ecc)}, and then the candidate with the fewest bits in that
+ * version. Ties favour the payload itself and then the binary form.
+ *
+ * <p>A transformed payload is preceded by a marker, so {@link #expand(byte[])} restores the payload from the
+ * data of the symbol, i.e. {@link QrDecodeResult#getData()}. The deflate stream is raw, without the zlib header
+ * and checksum, as the symbol is already protected by the error correction codewords.</p>
+ * <pre>
+ * form     data of the symbol
+ * raw      the payload
+ * deflate  the ASCII characters "Z0:" followed by the compressed payload
+ * base45   the ASCII characters "Z1:" followed by the Base45 text of the compressed payload
+ * </pre>
+ * <p>A payload that starts with a marker is always transformed so that it is never mistaken for a transformed
+ * payload. Payloads that are not read by {@link #expand(byte[])} should not be compacted.</p>
+ */
+@GwtIncompatible
+public final class PayloadCompactor
+{
+  /**
+   * The form of a payload within a symbol.
+   */
+  public enum Encoding
+  {
+    /**
+     * The payload itself.
+     */
+    RAW,
+    /**
+     * The payload compressed using deflate, in byte mode.
+     */
+    DEFLATE,
+    /**
+     * The payload compressed using deflate and then encoded as Base45 text, in alphanumeric mode.
+     */
+    BASE45
+  }
+
+  private static final byte[] DEFLATE_MARKER = { 'Z', '0', ':' };
+  private static final String BASE45_MARKER = "Z1:";
+
+  private PayloadCompactor()
+  {
+  }
+
+  /**
+   * Returns a QR Code symbol representing the text in the form that needs the smallest symbol, where the text
+   * itself is encoded as {@link QrCodeTool#encodeText(String, Ecc)} does and is otherwise compressed as UTF-8.
+   *
+   * @param text the text to be encoded.
+   * @param ecl  the error correction level to use (will be boosted).
+   * @return a QR Code representing the text.
+   */
+  @Nonnull
+  public static QrCode encodeText( @Nonnull final String text, @Nonnull final Ecc ecl )
+  {
+    return QrCodeTool.encodeSegments( makeTextSegments( text, ecl ), ecl );
+  }
+
+  /**
+   * Returns a QR Code symbol representing the data in the form that needs the smallest symbol.
+   *
+   * @param data the binary data to encode.
+   * @param ecl  the error correction level to use (will be boosted).
+   * @return a QR Code representing the data.
+   */
+  @Nonnull
+  public static QrCode encodeBinary( @Nonnull final byte[] data, @Nonnull final Ecc ecl )
+  {
+    return QrCodeTool.encodeSegments( makeSegments( data, ecl ), ecl );
+  }
+
+  /**
+   * Return the segments of the text in the form that needs the smallest symbol at the error correction level.
+   *
+   * @param text the text.
+   * @param ecl  the error correction level.
+   * @return the segments.
+   */
+  @Nonnull
+  public static List<QrSegment> makeTextSegments( @Nonnull final String text, @Nonnull final Ecc ecl )
+  {
+    final byte[] data = Objects.requireNonNull( text ).getBytes( StandardCharsets.UTF_8 );
+    return select( hasMarker( data ) ? null : QrCodeTool.makeSegments( text ), data, ecl );
+  }
+
+  /**
+   * Return the segments of the data in the form that needs the smallest symbol at the error correction level.
+   *
+   * @param data the data.
+   * @param ecl  the error correction level.
+   * @return the segments.
+   */
+  @Nonnull
+  public static List<QrSegment> makeSegments( @Nonnull final byte[] data, @Nonnull final Ecc ecl )
+  {
+    final List<QrSegment> raw =
+      hasMarker( Objects.requireNonNull( data ) ) ?
+      null :
+      Collections.singletonList( QrCodeTool.makeBytesSegment( data ) );
+    return select( raw, data, ecl );
+  }
+
+  /**
+   * Return the form of the payload in the data of a symbol that was encoded by this class.
+   *
+   * @param data the data of the symbol.
+   * @return the form of the payload.
+   */
+  @Nonnull
+  public static Encoding getEncoding( @Nonnull final byte[] data )
+  {
+    return !hasMarker( data ) ? Encoding.RAW : '0' == data[ 1 ] ? Encoding.DEFLATE : Encoding.BASE45;
+  }
+
+  /**
+   * Return the payload held in the data of a symbol that was encoded by this class.
+   *
+   * @param data the data of the symbol.
+   * @return the payload.
+   * @throws IllegalArgumentException if the data holds a transformed payload that is corrupt.
+   */
+  @Nonnull
+  public static byte[] expand( @Nonnull final byte[] data )
+  {
+    switch ( getEncoding( data ) )
+    {
+      case RAW:
+        return data;
+      case DEFLATE:
+        return inflate( data, DEFLATE_MARKER.length, data.length - DEFLATE_MARKER.length );
+      default:
+        final byte[] compressed =
+          decodeBase45( new String( data, BASE45_MARKER.length(), data.length - BASE45_MARKER.length(),
+                                    StandardCharsets.US_ASCII ) );
+        return inflate( compressed, 0, compressed.length );
+    }
+  }
+
+  // Choose the candidate that fits in the lowest version and then has the fewest bits in that version
+  @Nonnull
+  private static List<QrSegment> select( @Nullable final List<QrSegment> raw,
+                                         @Nonnull final byte[] data,
+                                         @Nonnull final Ecc ecl )
+  {
+    Objects.requireNonNull( ecl );
+    final byte[] compressed = deflate( data );
+    final byte[] deflated = new byte[ DEFLATE_MARKER.length + compressed.length ];
+    System.arraycopy( DEFLATE_MARKER, 0, deflated, 0, DEFLATE_MARKER.length );
+    System.arraycopy( compressed, 0, deflated, DEFLATE_MARKER.length, compressed.length );
+
+    final List<List<QrSegment>> candidates = new ArrayList<>( 3 );
+    if ( null != raw )
+    {
+      candidates.add( raw );
+    }
+    candidates.add( Collections.singletonList( QrCodeTool.makeBytesSegment( deflated ) ) );
+    candidates.add( Collections.singletonList( QrCodeTool.makeAlphanumericSegment( BASE45_MARKER +
+                                                                                   encodeBase45( compressed ) ) ) );
+
+    List<QrSegment> best = null;
+    int bestVersion = Integer.MAX_VALUE;
+    int bestBits = Integer.MAX_VALUE;
+    for ( final List<QrSegment> candidate : candidates )
+    {
+      final int version =
+        QrCodeTool.findMinimumVersion( candidate, ecl, QrCodeTool.MIN_VERSION, QrCodeTool.MAX_VERSION );
+      if ( -1 != version )
+      {
+        final int bits = QrCodeTool.getTotalBits( candidate, version );
+        if ( version < bestVersion || ( version == bestVersion && bits < bestBits ) )
+        {
+          best = candidate;
+          bestVersion = version;
+          bestBits = bits;
+        }
+      }
+    }
+    // When nothing fits the raw payload is returned so that encoding fails as it would without compaction
+    return null != best ? best : candidates.get( 0 );
+  }
+
+  private static boolean hasMarker( @Nonnull final byte[] data )
+  {
+    return data.length >= DEFLATE_MARKER.length &&
+           'Z' == data[ 0 ] &&
+           ( '0' == data[ 1 ] || '1' == data[ 1 ] ) &&
+           ':' == data[ 2 ];
+  }
+
+  @Nonnull
+  private static byte[] deflate( @Nonnull final byte[] data )
+  {
+    final Deflater deflater = new Deflater( Deflater.BEST_COMPRESSION, true );
+    try
+    {
+      deflater.setInput( data );
+      deflater.finish();
+      final ByteArrayOutputStream output = new ByteArrayOutputStream( data.length / 2 + 16 );
+      final byte[] buffer = new byte[ 1024 ];
+      while ( !deflater.finished() )
+      {
+        output.write( buffer, 0, deflater.deflate( buffer ) );
+      }
+      return output.toByteArray();
+    }
+    finally
+    {
+      deflater.end();
+    }
+  }
+
+  @Nonnull
+  private static byte[] inflate( @Nonnull final byte[] data, final int offset, final int length )
+  {
+    // A raw stream needs an extra byte of input after the end of the stream
+    final byte[] input = new byte[ length + 1 ];
+    System.arraycopy( data, offset, input, 0, length );
+    final Inflater inflater = new Inflater( true );
+    try
+    {
+      inflater.setInput( input );
+      final ByteArrayOutputStream output = new ByteArrayOutputStream( length * 4 );
+      final byte[] buffer = new byte[ 1024 ];
+      while ( !inflater.finished() )
+      {
+        final int count = inflater.inflate( buffer );
+        if ( 0 == count && ( inflater.needsInput() || inflater.needsDictionary() ) )
+        {
+          throw new IllegalArgumentException( "Compressed payload is truncated" );
+        }
+        output.write( buffer, 0, count );
+      }
+      return output.toByteArray();
+    }
+    catch ( final DataFormatException e )
+    {
+      throw new IllegalArgumentException( "Compressed payload is corrupt", e );
+    }
+    finally
+    {
+      inflater.end();
+    }
+  }
+
+  /**
+   * Return the Base45 text of the data as defined by RFC 9285, where each pair of bytes is encoded as three
+   * characters and a final single byte as two characters, least significant character first.
+   *
+   * @param data the data.
+   * @return the Base45 text.
+   */
+  @Nonnull
+  static String encodeBase45( @Nonnull final byte[] data )
+  {
+    final String charset = QrCodeTool.ALPHANUMERIC_CHARSET;
+    final StringBuilder sb = new StringBuilder( ( data.length * 3 + 1 ) / 2 );
+    for ( int i = 0; i < data.length; i += 2 )
+    {
+      if ( i + 1 < data.length )
+      {
+        final int value = ( data[ i ] & 0xFF ) << 8 | ( data[ i + 1 ] & 0xFF );
+        sb.append( charset.charAt( value % 45 ) )
+          .append( charset.charAt( value / 45 % 45 ) )
+          .append( charset.charAt( value / ( 45 * 45 ) ) );
+      }
+      else
+      {
+        final int value = data[ i ] & 0xFF;
+        sb.append( charset.charAt( value % 45 ) ).append( charset.charAt( value / 45 ) );
+      }
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Return the data encoded by the Base45 text.
+   *
+   * @param text the Base45 text.
+   * @return the data.
+   * @throws IllegalArgumentException if the text is not valid Base45.
+   */
+  @Nonnull
+  static byte[] decodeBase45( @Nonnull final String text )
+  {
+    final int length = text.length();
+    if ( 1 == length % 3 )
+    {
+      throw new IllegalArgumentException( "Base45 text has an invalid length" );
+    }
+    final byte[] data = new byte[ length / 3 * 2 + ( length % 3 ) / 2 ];
+    for ( int i = 0, j = 0; i < length; i += 3 )
+    {
+      final int value = base45Digit( text, i ) + base45Digit( text, i + 1 ) * 45;
+      if ( i + 2 < length )
+      {
+        final int pair = value + base45Digit( text, i + 2 ) * 45 * 45;
+        if ( pair > 0xFFFF )
+        {
+          throw new IllegalArgumentException( "Base45 text has an invalid triplet at " + i );
+        }
+        data[ j++ ] = (byte) ( pair >>> 8 );
+        data[ j++ ] = (byte) pair;
+      }
+      else
+      {
+        if ( value > 0xFF )
+        {
+          throw new IllegalArgumentException( "Base45 text has an invalid final pair" );
+        }
+        data[ j++ ] = (byte) value;
+      }
+    }
+    return data;
+  }
+
+  private static int base45Digit( @Nonnull final String text, final int index )
+  {
+    final int digit = QrCodeTool.ALPHANUMERIC_CHARSET.indexOf( text.charAt( index ) );
+    if ( -1 == digit )
+    {
+      throw new IllegalArgumentException( "Base45 text has an invalid character at " + index );
+    }
+    return digit;
+  }
+}
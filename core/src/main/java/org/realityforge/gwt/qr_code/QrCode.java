@@ -0,0 +1,913 @@
+/*
+ * QR Code generator library (Java)
+ *
+ * Copyright (c) Project Nayuki. (MIT License)
+ * https://www.nayuki.io/page/qr-code-generator-library
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * - The above copyright notice and this permission notice shall be included in
+ *   all copies or substantial portions of the Software.
+ * - The Software is provided "as is", without warranty of any kind, express or
+ *   implied, including but not limited to the warranties of merchantability,
+ *   fitness for a particular purpose and noninfringement. In no event shall the
+ *   authors or copyright holders be liable for any claim, damages or other
+ *   liability, whether in an action of contract, tort or otherwise, arising from,
+ *   out of or in connection with the Software or the use or other dealings in the
+ *   Software.
+ */
+package org.realityforge.gwt.qr_code;
+
+import java.util.List;
+import java.util.Objects;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.realityforge.braincheck.BrainCheckConfig;
+import static org.realityforge.braincheck.Guards.*;
+
+/**
+ * Represents an immutable square grid of black and white cells for a QR Code symbol, and
+ * provides static functions to create a QR Code from user-supplied textual or binary data.
+ * <p>This class covers the QR Code model 2 specification, supporting all versions (sizes)
+ * from 1 to 40, all 4 error correction levels, and only 3 character encoding modes.</p>
+ */
+public final class QrCode
+{
+  private final int _version;
+  private final int _size;
+  private final Ecc _errorCorrectionLevel;
+  // The mask applied to the modules, or -1 while an unmasked symbol is being completed (conceptually immutable)
+  private int _mask;
+
+  // The interleaved data and error correction codewords (conceptually immutable)
+  @Nonnull
+  private final byte[] _codewords;
+  // Private grids of modules/pixels (conceptually immutable)
+  private boolean[][] _modules;     // The modules of this QR Code symbol (false = white, true = black)
+  private boolean[][] _isFunction;  // Indicates function modules that are not subjected to masking
+  // The modules packed into 32-bit words row by row, where bit (x & 31) of word (x >>> 5) of a row is set for a
+  // black module. Computed when first required as the modules are conceptually immutable.
+  @Nullable
+  private volatile int[] _packedModules;
+  // The packed modules of an unmasked symbol while candidate masks are evaluated
+  @Nullable
+  private MaskEvaluator _maskEvaluator;
+
+  /**
+   * Creates a new QR Code symbol with the specified version number, error correction level, binary data array, and mask number.
+   * <p>This is a cumbersome low-level constructor that should not be invoked directly by the user.
+   * To go one level up, see the {@link QrCodeTool#encodeSegments(List, Ecc)} function.</p>
+   *
+   * @param version       the version number to use, which must be in the range 1 to 40, inclusive
+   * @param ecl           the error correction level to use
+   * @param dataCodewords the raw binary user data to encode
+   * @param mask          the mask pattern to use, which is either -1 for automatic choice or from 0 to 7 for fixed choice
+   * @throws NullPointerException     if the byte array or error correction level is {@code null}
+   * @throws IllegalArgumentException if the version or mask value is out of range
+   */
+  QrCode( final int version, @Nonnull final Ecc ecl, @Nonnull final byte[] dataCodewords, final int mask )
+  {
+    this( version, ecl, mask, appendErrorCorrection( version, ecl, Objects.requireNonNull( dataCodewords ) ) );
+  }
+
+  // Creates a new QR Code symbol from the complete sequence of interleaved data and error correction codewords
+  private QrCode( final int version, @Nonnull final Ecc ecl, final int mask, @Nonnull final byte[] codewords )
+  {
+    this( version, ecl, codewords );
+    assert QrCodeTool.isMaskValid( mask ) || QrCodeTool.AUTO_MASK == mask;
+    handleConstructorMasking( mask );
+  }
+
+  // Creates a new QR Code symbol with the function patterns and codewords drawn but no mask applied.
+  // The symbol must be completed by completeMasking() before it is used.
+  private QrCode( final int version, @Nonnull final Ecc ecl, @Nonnull final byte[] codewords )
+  {
+    // Check arguments
+    Objects.requireNonNull( ecl );
+    Objects.requireNonNull( codewords );
+    assert QrCodeTool.isVersionValid( version );
+
+    // Initialize fields
+    _version = version;
+    _size = version * 4 + 17;
+    _errorCorrectionLevel = ecl;
+    _codewords = codewords;
+    _mask = QrCodeTool.AUTO_MASK;
+    _modules = new boolean[ _size ][ _size ];  // Entirely white grid
+    _isFunction = new boolean[ _size ][ _size ];
+
+    // Draw function patterns and draw all codewords
+    drawFunctionPatterns();
+    drawCodewords( codewords );
+  }
+
+  /**
+   * Creates a new QR Code symbol from the complete sequence of interleaved data and error correction codewords,
+   * such as those returned by {@link #getCodewords()}. The error correction codewords are not recalculated.
+   *
+   * @param version   the version number to use, which must be in the range 1 to 40, inclusive
+   * @param ecl       the error correction level to use
+   * @param codewords the interleaved data and error correction codewords
+   * @param mask      the mask pattern to use, which is either -1 for automatic choice or from 0 to 7 for fixed choice
+   * @return the symbol
+   */
+  @Nonnull
+  static QrCode fromCodewords( final int version, @Nonnull final Ecc ecl, @Nonnull final byte[] codewords, final int mask )
+  {
+    return new QrCode( version, ecl, mask, codewords );
+  }
+
+  /**
+   * Creates a new QR Code symbol from the complete sequence of interleaved data and error correction codewords
+   * without applying a mask. The caller may evaluate candidate masks via {@link #getMaskPenalty(int)} and must
+   * then complete the symbol via {@link #completeMasking(int)} before it is used.
+   *
+   * @param version   the version number to use, which must be in the range 1 to 40, inclusive
+   * @param ecl       the error correction level to use
+   * @param codewords the interleaved data and error correction codewords
+   * @return the unmasked symbol
+   */
+  @Nonnull
+  static QrCode newUnmasked( final int version, @Nonnull final Ecc ecl, @Nonnull final byte[] codewords )
+  {
+    return new QrCode( version, ecl, codewords );
+  }
+
+  /**
+   * Creates a new QR Code symbol that differs from the specified base symbol only in some codewords.
+   * Each byte of the delta is XORed into the corresponding codeword of the base symbol, so the delta
+   * must include the change to the error correction codewords as well as to the data codewords.
+   * If the requested mask matches the mask of the base symbol then the modules are changed in place,
+   * as masking is also an XOR, otherwise the mask is removed and then selected again.
+   *
+   * @param base  the symbol to derive the new symbol from
+   * @param delta the XOR difference of every codeword, in interleaved order
+   * @param mask  the mask pattern to use, which is either -1 for automatic choice or from 0 to 7 for fixed choice
+   */
+  QrCode( @Nonnull final QrCode base, @Nonnull final byte[] delta, final int mask )
+  {
+    assert QrCodeTool.isMaskValid( mask ) || QrCodeTool.AUTO_MASK == mask;
+    if ( BrainCheckConfig.checkInvariants() )
+    {
+      invariant( () -> delta.length == QrCodeTool.getNumRawDataModules( base._version ) / 8,
+                 () -> "Invalid delta length" );
+    }
+    _version = base._version;
+    _size = base._size;
+    _errorCorrectionLevel = base._errorCorrectionLevel;
+    _codewords = base._codewords.clone();
+    for ( int i = 0; i < delta.length; i++ )
+    {
+      _codewords[ i ] ^= delta[ i ];
+    }
+    _modules = new boolean[ _size ][];
+    for ( int y = 0; y < _size; y++ )
+    {
+      _modules[ y ] = base._modules[ y ].clone();
+    }
+
+    final ModuleLayout layout = ModuleLayout.get( _version, base._isFunction );
+    for ( int i = 0; i < delta.length; i++ )
+    {
+      final int value = delta[ i ] & 0xFF;
+      if ( 0 != value )
+      {
+        for ( int bit = 0; bit < 8; bit++ )
+        {
+          if ( 0 != ( value & ( 0x80 >>> bit ) ) )
+          {
+            final int index = i * 8 + bit;
+            _modules[ layout.getY( index ) ][ layout.getX( index ) ] ^= true;
+          }
+        }
+      }
+    }
+
+    if ( mask == base._mask )
+    {
+      // The function modules are never modified once the symbol is complete so they can be shared
+      _isFunction = base._isFunction;
+      _mask = mask;
+    }
+    else
+    {
+      _isFunction = new boolean[ _size ][];
+      for ( int y = 0; y < _size; y++ )
+      {
+        _isFunction[ y ] = base._isFunction[ y ].clone();
+      }
+      applyMask( base._mask );  // Undoes the mask of the base symbol due to XOR
+      _mask = QrCodeTool.AUTO_MASK;
+      handleConstructorMasking( mask );
+    }
+  }
+
+  /**
+   * Return the QR Code symbol's version number, which is always between 1 and 40 (inclusive).
+   *
+   * @return the QR Code symbol's version number, which is always between 1 and 40 (inclusive).
+   */
+  public int getVersion()
+  {
+    return _version;
+  }
+
+  /**
+   * The width and height of this QR Code symbol, measured in modules.
+   * Always equal to version &times; 4 + 17, in the range 21 to 177.
+   *
+   * @return the width and height of this QR Code symbol, measured in modules.
+   */
+  public int getSize()
+  {
+    return _size;
+  }
+
+  /**
+   * The error correction level used in this QR Code symbol.
+   *
+   * @return the error correction level used in this QR Code symbol.
+   */
+  @Nonnull
+  public Ecc getErrorCorrectionLevel()
+  {
+    return _errorCorrectionLevel;
+  }
+
+  /**
+   * The mask pattern used in this QR Code symbol, in the range 0 to 7 (i.e. unsigned 3-bit integer).
+   * Note that even if a constructor was called with automatic masking requested
+   * (_mask = -1), the resulting object will still have a mask value between 0 and 7.
+   *
+   * @return the mask
+   */
+  public int getMask()
+  {
+    return _mask;
+  }
+
+  /**
+   * Return the interleaved data and error correction codewords of the symbol, in the order they are placed.
+   * The returned array must not be modified.
+   *
+   * @return the interleaved data and error correction codewords of the symbol.
+   */
+  @Nonnull
+  byte[] getCodewords()
+  {
+    return _codewords;
+  }
+
+  /**
+   * Return the modules packed into 32-bit words row by row, where each row starts at a new word and bit
+   * (x &amp; 31) of word (x &gt;&gt;&gt; 5) of the row is set for a black module. The returned array must not be modified.
+   *
+   * @return the packed modules.
+   */
+  @Nonnull
+  int[] getPackedModules()
+  {
+    int[] packed = _packedModules;
+    if ( null == packed )
+    {
+      final int words = ( _size + 31 ) >>> 5;
+      packed = new int[ words * _size ];
+      for ( int y = 0; y < _size; y++ )
+      {
+        final boolean[] row = _modules[ y ];
+        for ( int x = 0; x < _size; x++ )
+        {
+          packed[ y * words + ( x >>> 5 ) ] |= ( row[ x ] ? 1 : 0 ) << ( x & 31 );
+        }
+      }
+      // A race between threads at worst packs the modules twice
+      _packedModules = packed;
+    }
+    return packed;
+  }
+
+  /**
+   * Return the grid indicating which modules are function modules, which are never masked.
+   * The returned array must not be modified.
+   *
+   * @return the function modules.
+   */
+  @Nonnull
+  boolean[][] getFunctionModules()
+  {
+    return _isFunction;
+  }
+
+  /**
+   * Returns the color of the module (pixel) at the specified coordinates, which is either
+   * false for white or true for black. The top left corner has the coordinates (x=0, y=0).
+   * If the specified coordinates are out of bounds, then false (white) is returned.
+   *
+   * @param x the x coordinate, where 0 is the left edge and size&minus;1 is the right edge
+   * @param y the y coordinate, where 0 is the top edge and size&minus;1 is the bottom edge
+   * @return the module's color, which is either false (white) or true (black)
+   */
+  public boolean getModule( final int x, final int y )
+  {
+    return 0 <= x && x < _size && 0 <= y && y < _size && _modules[ y ][ x ];
+  }
+
+  /**
+   * Find the runs of consecutive dark modules in the specified row and store them in the array as pairs of
+   * the x coordinate of the first module of the run and the length of the run, from left to right.
+   * A row never contains more than <code>(getSize() + 1) / 2</code> runs so an array with a length of
+   * <code>getSize() + 1</code> can hold the runs of any row and can be reused for every row.
+   *
+   * @param y    the y coordinate of the row, where 0 is the top edge and size&minus;1 is the bottom edge
+   * @param runs the array that the runs are stored in
+   * @return the number of runs stored in the array
+   */
+  public int getRowRuns( final int y, @Nonnull final int[] runs )
+  {
+    Objects.requireNonNull( runs );
+    if ( BrainCheckConfig.checkApiInvariants() )
+    {
+      apiInvariant( () -> 0 <= y && y < _size, () -> "Row " + y + " is out of range" );
+    }
+    final boolean[] row = _modules[ y ];
+    int count = 0;
+    int x = 0;
+    while ( x < _size )
+    {
+      if ( row[ x ] )
+      {
+        final int start = x;
+        do
+        {
+          x++;
+        }
+        while ( x < _size && row[ x ] );
+        runs[ count * 2 ] = start;
+        runs[ count * 2 + 1 ] = x - start;
+        count++;
+      }
+      else
+      {
+        x++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Invoke the consumer for each horizontal run of consecutive dark modules, row by row from the top edge
+   * and from left to right within each row. Renderers can draw one rectangle per run rather than one
+   * per module.
+   *
+   * @param consumer the consumer to invoke with the y coordinate, starting x coordinate and length of each run
+   */
+  public void forEachRowRun( @Nonnull final ModuleRunConsumer consumer )
+  {
+    Objects.requireNonNull( consumer );
+    for ( int y = 0; y < _size; y++ )
+    {
+      final boolean[] row = _modules[ y ];
+      int start = -1;
+      for ( int x = 0; x < _size; x++ )
+      {
+        if ( row[ x ] )
+        {
+          if ( start < 0 )
+          {
+            start = x;
+          }
+        }
+        else if ( start >= 0 )
+        {
+          consumer.accept( y, start, x - start );
+          start = -1;
+        }
+      }
+      if ( start >= 0 )
+      {
+        consumer.accept( y, start, _size - start );
+      }
+    }
+  }
+
+  /**
+   * Invoke the consumer for each horizontal run of modules that differ from the previous symbol and are dark,
+   * or light, in this symbol. The runs are reported row by row from the top edge and from left to right within
+   * each row. Both symbols must have the same version. The rows of each symbol are packed into words and compared
+   * a word at a time, so the cost depends upon the number of changed modules rather than the size of the symbol.
+   *
+   * @param previous the symbol to compare against
+   * @param dark     true to report runs of modules that changed to dark, false for runs that changed to light
+   * @param consumer the consumer to invoke with the y coordinate, starting x coordinate and length of each run
+   */
+  public void forEachChangedRun( @Nonnull final QrCode previous,
+                                 final boolean dark,
+                                 @Nonnull final ModuleRunConsumer consumer )
+  {
+    Objects.requireNonNull( previous );
+    Objects.requireNonNull( consumer );
+    if ( BrainCheckConfig.checkApiInvariants() )
+    {
+      apiInvariant( () -> previous._size == _size,
+                    () -> "Symbol of version " + previous._version + " can not be compared to version " + _version );
+    }
+    final int[] current = getPackedModules();
+    final int[] other = previous.getPackedModules();
+    final int words = ( _size + 31 ) >>> 5;
+    for ( int y = 0; y < _size; y++ )
+    {
+      int start = -1;
+      int end = -1;
+      for ( int w = y * words; w < ( y + 1 ) * words; w++ )
+      {
+        // The modules that changed and have the requested color in this symbol
+        int changed = ( current[ w ] ^ other[ w ] ) & ( dark ? current[ w ] : ~current[ w ] );
+        while ( 0 != changed )
+        {
+          final int x = ( w - y * words ) * 32 + Integer.numberOfTrailingZeros( changed );
+          changed &= changed - 1;
+          if ( x != end )
+          {
+            if ( start >= 0 )
+            {
+              consumer.accept( y, start, end - start );
+            }
+            start = x;
+          }
+          end = x + 1;
+        }
+      }
+      if ( start >= 0 )
+      {
+        consumer.accept( y, start, end - start );
+      }
+    }
+  }
+
+  /**
+   * Invoke the consumer for each vertical run of consecutive dark modules, column by column from the left edge
+   * and from top to bottom within each column.
+   *
+   * @param consumer the consumer to invoke with the x coordinate, starting y coordinate and length of each run
+   */
+  public void forEachColumnRun( @Nonnull final ModuleRunConsumer consumer )
+  {
+    Objects.requireNonNull( consumer );
+    for ( int x = 0; x < _size; x++ )
+    {
+      int start = -1;
+      for ( int y = 0; y < _size; y++ )
+      {
+        if ( _modules[ y ][ x ] )
+        {
+          if ( start < 0 )
+          {
+            start = y;
+          }
+        }
+        else if ( start >= 0 )
+        {
+          consumer.accept( x, start, y - start );
+          start = -1;
+        }
+      }
+      if ( start >= 0 )
+      {
+        consumer.accept( x, start, _size - start );
+      }
+    }
+  }
+
+  /**
+   * Draw the image representing this QR Code into a caller supplied buffer of 32-bit pixels, such as ARGB pixels.
+   * The arguments scale=10, border=4 means to pad the QR Code symbol with 4 light border modules on all four
+   * edges, then use 10*10 pixels to represent each module. The image is square with a width and height of
+   * <code>(getSize() + border * 2) * scale</code> pixels. Only the pixels within the image are written.
+   *
+   * @param scale      the module scale factor, which must be positive
+   * @param border     the number of border modules to add, which must be non-negative
+   * @param foreground the value of the pixels of dark modules
+   * @param background the value of the pixels of light modules and the border
+   * @param pixels     the buffer to draw into
+   * @param offset     the index in the buffer of the top left pixel of the image
+   * @param stride     the distance in the buffer between the first pixels of consecutive rows, which must be at
+   *                   least the width of the image
+   */
+  public void drawArgb( final int scale,
+                        final int border,
+                        final int foreground,
+                        final int background,
+                        @Nonnull final int[] pixels,
+                        final int offset,
+                        final int stride )
+  {
+    RasterRenderer.drawArgb( this, scale, border, foreground, background, Objects.requireNonNull( pixels ), offset, stride );
+  }
+
+  /**
+   * Update a buffer that was drawn from the previous symbol via {@link #drawArgb(int, int, int, int, int[], int, int)}
+   * so that it represents this symbol, writing only the pixels of the modules that differ between the symbols.
+   * If there is no previous symbol or the symbols differ in version then the entire image is drawn.
+   *
+   * @param previous   the symbol that the buffer was last drawn from, if any
+   * @param scale      the module scale factor that the buffer was drawn with
+   * @param border     the number of border modules that the buffer was drawn with
+   * @param foreground the value of the pixels of dark modules
+   * @param background the value of the pixels of light modules and the border
+   * @param pixels     the buffer to draw into
+   * @param offset     the index in the buffer of the top left pixel of the image
+   * @param stride     the distance in the buffer between the first pixels of consecutive rows
+   */
+  public void drawArgbChanges( @Nullable final QrCode previous,
+                               final int scale,
+                               final int border,
+                               final int foreground,
+                               final int background,
+                               @Nonnull final int[] pixels,
+                               final int offset,
+                               final int stride )
+  {
+    if ( null == previous || previous._size != _size )
+    {
+      drawArgb( scale, border, foreground, background, pixels, offset, stride );
+    }
+    else
+    {
+      Objects.requireNonNull( pixels );
+      final int origin = offset + border * scale * stride + border * scale;
+      forEachChangedRun( previous, true, ( y, x, length ) ->
+        RasterRenderer.fillArgb( pixels, origin + y * scale * stride + x * scale, stride, length * scale, scale, foreground ) );
+      forEachChangedRun( previous, false, ( y, x, length ) ->
+        RasterRenderer.fillArgb( pixels, origin + y * scale * stride + x * scale, stride, length * scale, scale, background ) );
+    }
+  }
+
+  /**
+   * Draw the image representing this QR Code into a caller supplied buffer of 8-bit pixels, such as grayscale
+   * pixels. The image has the same dimensions as described in {@link #drawArgb(int, int, int, int, int[], int, int)}.
+   *
+   * @param scale      the module scale factor, which must be positive
+   * @param border     the number of border modules to add, which must be non-negative
+   * @param foreground the value of the pixels of dark modules
+   * @param background the value of the pixels of light modules and the border
+   * @param pixels     the buffer to draw into
+   * @param offset     the index in the buffer of the top left pixel of the image
+   * @param stride     the distance in the buffer between the first pixels of consecutive rows, which must be at
+   *                   least the width of the image
+   */
+  public void drawGray( final int scale,
+                        final int border,
+                        final byte foreground,
+                        final byte background,
+                        @Nonnull final byte[] pixels,
+                        final int offset,
+                        final int stride )
+  {
+    RasterRenderer.drawGray( this, scale, border, foreground, background, Objects.requireNonNull( pixels ), offset, stride );
+  }
+
+  /**
+   * Draw the image representing this QR Code into a caller supplied buffer of 1-bit pixels. The image has the
+   * same dimensions as described in {@link #drawArgb(int, int, int, int, int[], int, int)}. Each row starts on a
+   * byte boundary and the pixels are packed 8 to a byte with the leftmost pixel in the most significant bit.
+   * The unused bits in the last byte of each row are set to the background value.
+   *
+   * @param scale      the module scale factor, which must be positive
+   * @param border     the number of border modules to add, which must be non-negative
+   * @param foreground the bit value of the pixels of dark modules, which must be 0 or 1
+   * @param background the bit value of the pixels of light modules and the border, which must be 0 or 1
+   * @param pixels     the buffer to draw into
+   * @param offset     the index in the buffer of the first byte of the image
+   * @param stride     the distance in bytes between the start of consecutive rows, which must be at least
+   *                   the number of bytes in a row
+   */
+  public void drawBits( final int scale,
+                        final int border,
+                        final int foreground,
+                        final int background,
+                        @Nonnull final byte[] pixels,
+                        final int offset,
+                        final int stride )
+  {
+    RasterRenderer.drawBits( _modules, scale, border, foreground, background, Objects.requireNonNull( pixels ), offset, stride );
+  }
+
+  /**
+   * Based on the specified number of border modules to add as padding, this returns a
+   * string whose contents represents an SVG XML file that depicts this QR Code symbol.
+   * Note that Unix newlines (\n) are always used, regardless of the platform.
+   *
+   * @param border the number of border modules to add, which must be non-negative
+   * @return a string representing this QR Code as an SVG document
+   */
+  @Nonnull
+  public String toSvgString( final int border )
+  {
+    if ( BrainCheckConfig.checkApiInvariants() )
+    {
+      apiInvariant( () -> border >= 0, () -> "Border must be non-negative" );
+      apiInvariant( () -> !( _size + border * 2L > Integer.MAX_VALUE ), () -> "Border too large" );
+    }
+
+    final StringBuilder sb = new StringBuilder();
+    final int dimension = _size + border * 2;
+    sb.append( "<svg xmlns=\"http://www.w3.org/2000/svg\" version=\"1.1\" viewBox=\"0 0 " )
+      .append( dimension )
+      .append( " " )
+      .append( dimension )
+      .append( "\" stroke=\"none\">\n" )
+      .append( "<rect width=\"100%\" height=\"100%\" fill=\"#FFFFFF\"/>\n" )
+      .append( "<path d=\"" );
+    boolean head = true;
+    for ( int y = -border; y < _size + border; y++ )
+    {
+      for ( int x = -border; x < _size + border; x++ )
+      {
+        if ( getModule( x, y ) )
+        {
+          if ( head )
+          {
+            head = false;
+          }
+          else
+          {
+            sb.append( " " );
+          }
+          sb.append( "M" ).append( x + border ).append( "," ).append( y + border ).append( "h1v1h-1z" );
+        }
+      }
+    }
+    sb.append( "\" fill=\"#000000\"/>\n" );
+    sb.append( "</svg>\n" );
+    return sb.toString();
+  }
+
+  private void drawFunctionPatterns()
+  {
+    // Draw horizontal and vertical timing patterns
+    for ( int i = 0; i < _size; i++ )
+    {
+      setFunctionModule( 6, i, i % 2 == 0 );
+      setFunctionModule( i, 6, i % 2 == 0 );
+    }
+
+    // Draw 3 finder patterns (all corners except bottom right; overwrites some timing modules)
+    drawFinderPattern( 3, 3 );
+    drawFinderPattern( _size - 4, 3 );
+    drawFinderPattern( 3, _size - 4 );
+
+    // Draw numerous alignment patterns
+    int[] alignPatPos = QrCodeTool.getAlignmentPatternPositions( _version );
+    int numAlign = alignPatPos.length;
+    for ( int i = 0; i < numAlign; i++ )
+    {
+      for ( int j = 0; j < numAlign; j++ )
+      {
+        if ( ( i != 0 || j != 0 ) && ( i != 0 || j != numAlign - 1 ) && ( i != numAlign - 1 || j != 0 ) )
+        {
+          drawAlignmentPattern( alignPatPos[ i ], alignPatPos[ j ] );
+        }
+      }
+    }
+
+    // Draw configuration data
+    drawFormatBits( 0 );  // Dummy mask value; overwritten later in the constructor
+    drawVersion();
+  }
+
+  // Draws two copies of the format bits (with its own error correction code)
+  // based on the given mask and this object's error correction level field.
+  private void drawFormatBits( int mask )
+  {
+    // Calculate error correction code and pack bits
+    int data = _errorCorrectionLevel.getFormatBits() << 3 | mask;  // errCorrLvl is uint2, mask is uint3
+    int rem = data;
+    for ( int i = 0; i < 10; i++ )
+    {
+      rem = ( rem << 1 ) ^ ( ( rem >>> 9 ) * 0x537 );
+    }
+    data = data << 10 | rem;
+    data ^= 0x5412;  // uint15
+    if ( BrainCheckConfig.checkInvariants() )
+    {
+      final int d = data;
+      invariant( () -> d >>> 15 == 0, () -> "Data alignment error" );
+    }
+
+    // Draw first copy
+    for ( int i = 0; i <= 5; i++ )
+    {
+      setFunctionModule( 8, i, ( ( data >>> i ) & 1 ) != 0 );
+    }
+    setFunctionModule( 8, 7, ( ( data >>> 6 ) & 1 ) != 0 );
+    setFunctionModule( 8, 8, ( ( data >>> 7 ) & 1 ) != 0 );
+    setFunctionModule( 7, 8, ( ( data >>> 8 ) & 1 ) != 0 );
+    for ( int i = 9; i < 15; i++ )
+    {
+      setFunctionModule( 14 - i, 8, ( ( data >>> i ) & 1 ) != 0 );
+    }
+
+    // Draw second copy
+    for ( int i = 0; i <= 7; i++ )
+    {
+      setFunctionModule( _size - 1 - i, 8, ( ( data >>> i ) & 1 ) != 0 );
+    }
+    for ( int i = 8; i < 15; i++ )
+    {
+      setFunctionModule( 8, _size - 15 + i, ( ( data >>> i ) & 1 ) != 0 );
+    }
+    setFunctionModule( 8, _size - 8, true );
+  }
+
+  // Draws two copies of the version bits (with its own error correction code),
+  // based on this object's version field (which only has an effect for 7 <= version <= 40).
+  private void drawVersion()
+  {
+    if ( _version < 7 )
+    {
+      return;
+    }
+
+    // Calculate error correction code and pack bits
+    int rem = _version;  // version is uint6, in the range [7, 40]
+    for ( int i = 0; i < 12; i++ )
+    {
+      rem = ( rem << 1 ) ^ ( ( rem >>> 11 ) * 0x1F25 );
+    }
+    int data = _version << 12 | rem;  // uint18
+    if ( BrainCheckConfig.checkInvariants() )
+    {
+      final int d = data;
+      invariant( () -> d >>> 18 == 0, () -> "Data alignment error" );
+    }
+
+    // Draw two copies
+    for ( int i = 0; i < 18; i++ )
+    {
+      boolean bit = ( ( data >>> i ) & 1 ) != 0;
+      int a = _size - 11 + i % 3, b = i / 3;
+      setFunctionModule( a, b, bit );
+      setFunctionModule( b, a, bit );
+    }
+  }
+
+  // Draws a 9*9 finder pattern including the border separator, with the center module at (x, y).
+  private void drawFinderPattern( int x, int y )
+  {
+    for ( int i = -4; i <= 4; i++ )
+    {
+      for ( int j = -4; j <= 4; j++ )
+      {
+        int dist = Math.max( Math.abs( i ), Math.abs( j ) );  // Chebyshev/infinity norm
+        int xx = x + j, yy = y + i;
+        if ( 0 <= xx && xx < _size && 0 <= yy && yy < _size )
+        {
+          setFunctionModule( xx, yy, dist != 2 && dist != 4 );
+        }
+      }
+    }
+  }
+
+  // Draws a 5*5 alignment pattern, with the center module at (x, y).
+  private void drawAlignmentPattern( int x, int y )
+  {
+    for ( int i = -2; i <= 2; i++ )
+    {
+      for ( int j = -2; j <= 2; j++ )
+      {
+        setFunctionModule( x + j, y + i, Math.max( Math.abs( i ), Math.abs( j ) ) != 1 );
+      }
+    }
+  }
+
+  // Sets the color of a module and marks it as a function module.
+  // Only used by the constructor. Coordinates must be in range.
+  private void setFunctionModule( int x, int y, boolean isBlack )
+  {
+    _modules[ y ][ x ] = isBlack;
+    _isFunction[ y ][ x ] = true;
+  }
+
+
+	/*---- Private helper methods for constructor: Codewords and masking ----*/
+
+  // Returns a new byte string representing the given data with the appropriate error correction
+  // codewords appended to it, based on the given version and error correction level.
+  private static byte[] appendErrorCorrection( final int version, @Nonnull final Ecc ecl, @Nonnull final byte[] data )
+  {
+    if ( BrainCheckConfig.checkInvariants() )
+    {
+      invariant( () -> QrCodeTool.isDataLengthValid( version, ecl, data.length ),
+                 () -> "Invalid data length for version and correction level" );
+    }
+
+    // Split into blocks, calculate the error correction codewords and interleave (not concatenate) the
+    // codewords from every block into a single sequence, using the cached layout for this version and level
+    return BlockLayout.get( version, ecl ).appendErrorCorrection( data );
+  }
+
+  // Draws the given sequence of 8-bit codewords (data and error correction) onto the entire
+  // data area of this QR Code symbol. Function modules need to be marked off before this is called.
+  private void drawCodewords( @Nonnull final byte[] data )
+  {
+    Objects.requireNonNull( data );
+    if ( BrainCheckConfig.checkInvariants() )
+    {
+      invariant( () -> data.length == QrCodeTool.getNumRawDataModules( _version ) / 8, () -> "Invalid data length" );
+    }
+
+    // Place the bits using the zigzag scan order that is computed once per version
+    final ModuleLayout layout = ModuleLayout.get( _version, _isFunction );
+    final int bitCount = data.length * 8;
+    for ( int i = 0; i < bitCount; i++ )
+    {
+      _modules[ layout.getY( i ) ][ layout.getX( i ) ] = ( ( data[ i >>> 3 ] >>> ( 7 - ( i & 7 ) ) ) & 1 ) != 0;
+    }
+    // If there are any remainder bits (0 to 7), they are already
+    // set to 0/false/white when the grid of modules was initialized
+  }
+
+  // XORs the data modules in this QR Code with the given mask pattern. Due to XOR's mathematical
+  // properties, calling applyMask(m) twice with the same value is equivalent to no change at all.
+  // This means it is possible to apply a mask, undo it, and try another mask. Note that a final
+  // well-formed QR Code symbol needs exactly one mask applied (not zero, not two, etc.).
+  private void applyMask( final int mask )
+  {
+    assert QrCodeTool.isMaskValid( mask );
+    final int words = ( _size + 31 ) >>> 5;
+    final int[] pattern = MaskPatterns.get( _version, _isFunction ).getRows( mask );
+    for ( int y = 0; y < _size; y++ )
+    {
+      final boolean[] row = _modules[ y ];
+      for ( int x = 0; x < _size; x++ )
+      {
+        row[ x ] ^= 0 != ( pattern[ y * words + ( x >>> 5 ) ] & ( 1 << ( x & 31 ) ) );
+      }
+    }
+  }
+
+  // A messy helper function for the constructors. This QR Code must be in an unmasked state when this
+  // method is called. The given argument is the requested mask, which is -1 for auto or 0 to 7 for fixed.
+  // This method chooses and applies the actual mask, from 0 to 7.
+  private void handleConstructorMasking( final int mask )
+  {
+    int actualMask = mask;
+    if ( QrCodeTool.AUTO_MASK == mask )
+    {
+      // Automatically choose best _mask
+      int minPenalty = Integer.MAX_VALUE;
+      for ( int i = 0; i < 8; i++ )
+      {
+        final int penalty = getMaskPenalty( i );
+        if ( penalty < minPenalty )
+        {
+          actualMask = i;
+          minPenalty = penalty;
+        }
+      }
+    }
+    completeMasking( actualMask );
+  }
+
+  /**
+   * Return the penalty score of this unmasked symbol if the specified mask were applied.
+   * The symbol is left unmasked although the format bits are overwritten.
+   *
+   * @param mask the candidate mask, from 0 to 7.
+   * @return the penalty score, where lower is better.
+   */
+  int getMaskPenalty( final int mask )
+  {
+    assert QrCodeTool.AUTO_MASK == _mask;
+    drawFormatBits( mask );
+    if ( null == _maskEvaluator )
+    {
+      _maskEvaluator = new MaskEvaluator( _modules );
+    }
+    else
+    {
+      // The format bits are the only modules that differ between candidates and are all in row 8 or column 8
+      _maskEvaluator.updateLine( _modules, 8 );
+    }
+    return _maskEvaluator.getPenalty( MaskPatterns.get( _version, _isFunction ), mask );
+  }
+
+  /**
+   * Apply the specified mask to this unmasked symbol, completing the symbol.
+   *
+   * @param mask the mask, from 0 to 7.
+   */
+  void completeMasking( final int mask )
+  {
+    assert QrCodeTool.AUTO_MASK == _mask;
+    assert QrCodeTool.isMaskValid( mask );
+    drawFormatBits( mask );  // Overwrite old format bits
+    applyMask( mask );  // Apply the final choice of mask
+    _mask = mask;
+    _maskEvaluator = null;
+  }
+}
@@ -28,13 +28,14 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import org.realityforge.braincheck.BrainCheckConfig;
 import static org.realityforge.braincheck.Guards.*;
 
 public final class QrCodeTool
 {
-  private static final int MIN_VERSION = 1;
-  private static final int MAX_VERSION = 40;
+  static final int MIN_VERSION = 1;
+  static final int MAX_VERSION = 40;
   static final int AUTO_MASK = -1;
   private static final int MIN_MASK = 0;
   private static final int MAX_MASK = 7;
@@ -56,11 +57,27 @@ public final class QrCodeTool
     {-1, 1, 1, 2, 4, 4, 4, 5, 6, 8, 8, 11, 11, 16, 16, 18, 16, 19, 21, 25, 25, 25, 34, 30, 32, 35, 37, 40, 42, 45, 48, 51, 54, 57, 60, 63, 66, 70, 74, 77, 81},  // High
   };
   // @formatter:on
+  // The number of data codewords of every version and error correction level, indexed by level and then version
+  private static final int[][] NUM_DATA_CODEWORDS = new int[ Ecc.values().length ][ MAX_VERSION + 1 ];
+  // The positions of the alignment patterns of every version, indexed by version
+  private static final int[][] ALIGNMENT_PATTERN_POSITIONS = new int[ MAX_VERSION + 1 ][];
+
+  static
+  {
+    for ( int version = MIN_VERSION; version <= MAX_VERSION; version++ )
+    {
+      for ( final Ecc ecl : Ecc.values() )
+      {
+        NUM_DATA_CODEWORDS[ ecl.ordinal() ][ version ] = computeNumDataCodewords( version, ecl );
+      }
+      ALIGNMENT_PATTERN_POSITIONS[ version ] = computeAlignmentPatternPositions( version );
+    }
+  }
 
   /**
    * The set of all legal characters in alphanumeric mode, where each character value maps to the index in the string.
    */
-  private static final String ALPHANUMERIC_CHARSET = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ $%*+-./:";
+  static final String ALPHANUMERIC_CHARSET = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ $%*+-./:";
 
   /**
    * Returns a QR Code symbol representing the specified Unicode text string at the specified error correction level.
@@ -78,7 +95,28 @@ public final class QrCodeTool
   public static QrCode encodeText( @Nonnull final String text,
                                    @Nonnull final Ecc ecl )
   {
-    return encodeSegments( makeSegments( Objects.requireNonNull( text ) ), Objects.requireNonNull( ecl ) );
+    return encodeText( text, ecl, false );
+  }
+
+  /**
+   * Returns a QR Code symbol representing the specified Unicode text string at the specified error correction level,
+   * optionally verifying that the symbol decodes back to the text. See {@link #encodeText(String, Ecc)}.
+   *
+   * @param text   the text to be encoded, which can be any Unicode string
+   * @param ecl    the error correction level to use (will be boosted)
+   * @param verify true to decode the symbol via {@link QrDecoder} and check that it holds the text
+   * @return a QR Code representing the text
+   * @throws IllegalStateException if the symbol is verified and does not decode to the text
+   */
+  public static QrCode encodeText( @Nonnull final String text, @Nonnull final Ecc ecl, final boolean verify )
+  {
+    return encodeSegments( makeSegments( Objects.requireNonNull( text ) ),
+                           Objects.requireNonNull( ecl ),
+                           MIN_VERSION,
+                           MAX_VERSION,
+                           AUTO_MASK,
+                           true,
+                           verify );
   }
 
   /**
@@ -94,9 +132,29 @@ public final class QrCodeTool
    * @throws IllegalArgumentException if the data fails to fit in the largest version QR Code, which means it is too long
    */
   public static QrCode encodeBinary( @Nonnull final byte[] data, @Nonnull final Ecc ecl )
+  {
+    return encodeBinary( data, ecl, false );
+  }
+
+  /**
+   * Returns a QR Code symbol representing the specified binary data string at the specified error correction level,
+   * optionally verifying that the symbol decodes back to the data. See {@link #encodeBinary(byte[], Ecc)}.
+   *
+   * @param data   the binary data to encode
+   * @param ecl    the error correction level to use (will be boosted)
+   * @param verify true to decode the symbol via {@link QrDecoder} and check that it holds the data
+   * @return a QR Code representing the binary data
+   * @throws IllegalStateException if the symbol is verified and does not decode to the data
+   */
+  public static QrCode encodeBinary( @Nonnull final byte[] data, @Nonnull final Ecc ecl, final boolean verify )
   {
     return encodeSegments( Collections.singletonList( makeBytesSegment( Objects.requireNonNull( data ) ) ),
-                           Objects.requireNonNull( ecl ) );
+                           Objects.requireNonNull( ecl ),
+                           MIN_VERSION,
+                           MAX_VERSION,
+                           AUTO_MASK,
+                           true,
+                           verify );
   }
 
   /**
@@ -141,9 +199,67 @@ public final class QrCodeTool
                                        int maxVersion,
                                        int mask,
                                        boolean boostEcl )
+  {
+    return encodeSegments( segments, ecl, minVersion, maxVersion, mask, boostEcl, false );
+  }
+
+  /**
+   * Returns a QR Code symbol representing the specified data segments with the specified encoding parameters,
+   * optionally verifying that the symbol decodes back to the segments. Verification decodes the symbol via
+   * {@link QrDecoder}, which costs a fraction of the encoding, and fails if the symbol does not hold exactly
+   * the segments or if any codeword needs to be corrected. See {@link #encodeSegments(List, Ecc, int, int, int, boolean)}.
+   *
+   * @param segments   the segments to encode
+   * @param ecl        the error correction level to use (may be boosted)
+   * @param minVersion the minimum allowed version of the QR symbol (at least 1)
+   * @param maxVersion the maximum allowed version of the QR symbol (at most 40)
+   * @param mask       the mask pattern to use, which is either -1 for automatic choice or from 0 to 7 for fixed choice
+   * @param boostEcl   increases the error correction level if it can be done without increasing the version number
+   * @param verify     true to decode the symbol and check that it holds the segments
+   * @return a QR Code representing the segments
+   * @throws IllegalStateException if the symbol is verified and does not decode to the segments
+   */
+  public static QrCode encodeSegments( @Nonnull final List<QrSegment> segments,
+                                       @Nonnull Ecc ecl,
+                                       int minVersion,
+                                       int maxVersion,
+                                       int mask,
+                                       boolean boostEcl,
+                                       boolean verify )
   {
     Objects.requireNonNull( segments );
     Objects.requireNonNull( ecl );
+    checkEncodeParameters( minVersion, maxVersion, mask );
+
+    // Find the minimal version number to use
+    final int version = findMinimumVersion( segments, ecl, minVersion, maxVersion );
+    if ( BrainCheckConfig.checkInvariants() )
+    {
+      invariant( () -> -1 != version, () -> "All versions in the range could not fit the given data" );
+    }
+    final int dataUsedBits = getTotalBits( segments, version );
+
+    // Increase the error correction level while the data still fits in the current version number
+    ecl = boostErrorCorrectionLevel( ecl, version, dataUsedBits, boostEcl );
+
+    // Create the QR Code symbol
+    final QrCode qrCode = new QrCode( version, ecl, toDataCodewords( segments, version, ecl ), mask );
+    if ( verify )
+    {
+      QrDecoder.verify( qrCode, segments );
+    }
+    return qrCode;
+  }
+
+  /**
+   * Check the version range and mask passed to one of the encode methods.
+   *
+   * @param minVersion the minimum allowed version of the QR symbol.
+   * @param maxVersion the maximum allowed version of the QR symbol.
+   * @param mask       the mask pattern to use, which is either -1 for automatic choice or from 0 to 7 for fixed choice.
+   */
+  static void checkEncodeParameters( final int minVersion, final int maxVersion, final int mask )
+  {
     if ( BrainCheckConfig.checkApiInvariants() )
     {
       apiInvariant( () -> isVersionValid( minVersion ),
@@ -154,59 +270,296 @@ public final class QrCodeTool
                     () -> "MinVersion " + minVersion + " is greater than MaxVersion " + maxVersion );
       apiInvariant( () -> isMaskValid( mask ) || AUTO_MASK == mask, () -> "Mask " + mask + " is out of range." );
     }
+  }
 
-    // Find the minimal version number to use
-    int version, dataUsedBits;
-    for ( version = minVersion; ; version++ )
+  /**
+   * Returns the plan for the symbol that {@link #encodeText(String, Ecc)} would produce for the specified text,
+   * without encoding the symbol. No segments are created and the cost is proportional to the length of the text.
+   *
+   * @param text the text to be encoded, which can be any Unicode string
+   * @param ecl  the error correction level to use (will be boosted)
+   * @return the plan, or null if the text fails to fit in the largest version QR Code
+   */
+  @Nullable
+  public static QrPlan planText( @Nonnull final String text, @Nonnull final Ecc ecl )
+  {
+    Objects.requireNonNull( text );
+    Objects.requireNonNull( ecl );
+    final int length = text.length();
+    if ( 0 == length )
     {
-      int dataCapacityBits = getNumDataCodewords( version, ecl ) * 8;  // Number of data bits available
-      dataUsedBits = getTotalBits( segments, version );
-      if ( dataUsedBits != -1 && dataUsedBits <= dataCapacityBits )
+      return plan( null, 0, 0, ecl, MIN_VERSION, MAX_VERSION, true );
+    }
+    else if ( isNumeric( text ) )
+    {
+      return plan( Mode.NUMERIC, length, length / 3 * 10 + ( 0 == length % 3 ? 0 : length % 3 * 3 + 1 ),
+                   ecl, MIN_VERSION, MAX_VERSION, true );
+    }
+    else if ( isAlphaNumeric( text ) )
+    {
+      return plan( Mode.ALPHANUMERIC, length, length / 2 * 11 + length % 2 * 6, ecl, MIN_VERSION, MAX_VERSION, true );
+    }
+    else
+    {
+      final int byteLength = getUtf8Length( text );
+      return plan( Mode.BYTE, byteLength, byteLength * 8, ecl, MIN_VERSION, MAX_VERSION, true );
+    }
+  }
+
+  /**
+   * Returns the plan for the symbol that {@link #encodeBinary(byte[], Ecc)} would produce for binary data
+   * of the specified length, without encoding the symbol.
+   *
+   * @param length the number of bytes of binary data
+   * @param ecl    the error correction level to use (will be boosted)
+   * @return the plan, or null if the data fails to fit in the largest version QR Code
+   */
+  @Nullable
+  public static QrPlan planBinary( final int length, @Nonnull final Ecc ecl )
+  {
+    Objects.requireNonNull( ecl );
+    if ( BrainCheckConfig.checkApiInvariants() )
+    {
+      apiInvariant( () -> length >= 0, () -> "Length must be non-negative" );
+    }
+    return plan( Mode.BYTE, length, length * 8, ecl, MIN_VERSION, MAX_VERSION, true );
+  }
+
+  /**
+   * Returns the plan for the symbol that {@link #encodeSegments(List, Ecc, int, int, int, boolean)} would
+   * produce for the specified segments and parameters, without encoding the symbol.
+   *
+   * @param segments   the segments to encode
+   * @param ecl        the error correction level to use (may be boosted)
+   * @param minVersion the minimum allowed version of the QR symbol (at least 1)
+   * @param maxVersion the maximum allowed version of the QR symbol (at most 40)
+   * @param boostEcl   increases the error correction level if it can be done without increasing the version number
+   * @return the plan, or null if the data fails to fit in a QR Code at maxVersion at the ECL
+   */
+  @Nullable
+  public static QrPlan planSegments( @Nonnull final List<QrSegment> segments,
+                                     @Nonnull final Ecc ecl,
+                                     final int minVersion,
+                                     final int maxVersion,
+                                     final boolean boostEcl )
+  {
+    Objects.requireNonNull( segments );
+    Objects.requireNonNull( ecl );
+    if ( BrainCheckConfig.checkApiInvariants() )
+    {
+      apiInvariant( () -> isVersionValid( minVersion ),
+                    () -> "MinVersion value specified '" + minVersion + "' is out of range." );
+      apiInvariant( () -> isVersionValid( maxVersion ),
+                    () -> "MaxVersion value specified '" + maxVersion + "' is out of range." );
+      apiInvariant( () -> minVersion <= maxVersion,
+                    () -> "MinVersion " + minVersion + " is greater than MaxVersion " + maxVersion );
+    }
+    final int version = findMinimumVersion( segments, ecl, minVersion, maxVersion );
+    if ( -1 == version )
+    {
+      return null;
+    }
+    else
+    {
+      final int dataUsedBits = getTotalBits( segments, version );
+      final Ecc actualEcl = boostErrorCorrectionLevel( ecl, version, dataUsedBits, boostEcl );
+      final List<Mode> modes = new ArrayList<>( segments.size() );
+      for ( final QrSegment segment : segments )
       {
-        break;  // This version number is found to be suitable
+        modes.add( segment.getMode() );
       }
-      if ( BrainCheckConfig.checkInvariants() )
+      return new QrPlan( version, actualEcl, modes, dataUsedBits, getNumDataCodewords( version, actualEcl ) * 8 );
+    }
+  }
+
+  /**
+   * Returns the maximum number of characters that a single segment of the specified mode can hold in a
+   * symbol with the specified version and error correction level. For byte mode the result is measured
+   * in bytes rather than characters.
+   *
+   * @param version the version number, which is between 1 to 40, inclusive
+   * @param ecl     the error correction level
+   * @param mode    the mode of the segment, which must not be ECI or STRUCTURED_APPEND
+   * @return the maximum number of characters
+   */
+  public static int getMaxCharacters( final int version, @Nonnull final Ecc ecl, @Nonnull final Mode mode )
+  {
+    Objects.requireNonNull( ecl );
+    Objects.requireNonNull( mode );
+    if ( BrainCheckConfig.checkApiInvariants() )
+    {
+      apiInvariant( () -> isVersionValid( version ),
+                    () -> "Version value specified '" + version + "' is out of range." );
+      apiInvariant( () -> Mode.ECI != mode && Mode.STRUCTURED_APPEND != mode,
+                    () -> "Mode " + mode + " does not hold characters." );
+    }
+    final int charCountBits = mode.numCharCountBits( version );
+    final int available = getNumDataCodewords( version, ecl ) * 8 - 4 - charCountBits;
+    final int characters;
+    if ( Mode.NUMERIC == mode )
+    {
+      final int remainder = available % 10;
+      characters = available / 10 * 3 + ( remainder >= 7 ? 2 : remainder >= 4 ? 1 : 0 );
+    }
+    else if ( Mode.ALPHANUMERIC == mode )
+    {
+      characters = available / 11 * 2 + ( available % 11 >= 6 ? 1 : 0 );
+    }
+    else if ( Mode.BYTE == mode )
+    {
+      characters = available / 8;
+    }
+    else
+    {
+      characters = available / 13;
+    }
+    // The number of characters is also limited by the width of the character count field
+    return Math.min( characters, ( 1 << charCountBits ) - 1 );
+  }
+
+  // Returns the plan for a single segment (or no segment if mode is null) with the given
+  // number of characters and data bits, or null if the segment does not fit in the range.
+  @Nullable
+  private static QrPlan plan( @Nullable final Mode mode,
+                              final int numChars,
+                              final int dataBits,
+                              @Nonnull final Ecc ecl,
+                              final int minVersion,
+                              final int maxVersion,
+                              final boolean boostEcl )
+  {
+    for ( int version = minVersion; version <= maxVersion; version++ )
+    {
+      final int dataUsedBits;
+      if ( null == mode )
+      {
+        dataUsedBits = 0;
+      }
+      else
+      {
+        final int ccbits = mode.numCharCountBits( version );
+        // Skip the version if the segment length value doesn't fit in the length field's bit-width
+        dataUsedBits = numChars >= ( 1 << ccbits ) ? Integer.MAX_VALUE : 4 + ccbits + dataBits;
+      }
+      if ( dataUsedBits <= getNumDataCodewords( version, ecl ) * 8 )
       {
-        final int v = version;
-        invariant( () -> v < maxVersion, () -> "All versions in the range could not fit the given data" );
+        final Ecc actualEcl = boostErrorCorrectionLevel( ecl, version, dataUsedBits, boostEcl );
+        return new QrPlan( version,
+                           actualEcl,
+                           null == mode ? Collections.emptyList() : Collections.singletonList( mode ),
+                           dataUsedBits,
+                           getNumDataCodewords( version, actualEcl ) * 8 );
       }
     }
+    return null;
+  }
 
-    // Increase the error correction level while the data still fits in the current version number
+  // Returns the highest error correction level that can hold the data bits in the version if boosting
+  // is enabled, otherwise the specified error correction level.
+  @Nonnull
+  static Ecc boostErrorCorrectionLevel( @Nonnull final Ecc ecl,
+                                        final int version,
+                                        final int dataUsedBits,
+                                        final boolean boostEcl )
+  {
+    Ecc result = ecl;
     for ( final Ecc newEcl : Ecc.values() )
     {
       if ( boostEcl && dataUsedBits <= getNumDataCodewords( version, newEcl ) * 8 )
       {
-        ecl = newEcl;
+        result = newEcl;
       }
     }
+    return result;
+  }
 
-    // Create the data bit string by concatenating all segments
-    final int dataCapacityBits = getNumDataCodewords( version, ecl ) * 8;
-    final BitBuffer bb = new BitBuffer();
-    for ( final QrSegment seg : segments )
+  // Returns the number of bytes in the UTF-8 encoding of the text, which matches String.getBytes(UTF_8)
+  // including the replacement of unpaired surrogates with a single byte.
+  private static int getUtf8Length( @Nonnull final String text )
+  {
+    final int length = text.length();
+    int result = 0;
+    for ( int i = 0; i < length; i++ )
     {
-      bb.appendBits( seg.getMode().getModeBits(), 4 );
-      bb.appendBits( seg.getNumChars(), seg.getMode().numCharCountBits( version ) );
-      bb.appendData( seg.getData(), seg.getBitLength() );
+      final char ch = text.charAt( i );
+      if ( ch < 0x80 )
+      {
+        result += 1;
+      }
+      else if ( ch < 0x800 )
+      {
+        result += 2;
+      }
+      else if ( Character.isSurrogate( ch ) )
+      {
+        if ( Character.isHighSurrogate( ch ) && i + 1 < length && Character.isLowSurrogate( text.charAt( i + 1 ) ) )
+        {
+          result += 4;
+          i++;
+        }
+        else
+        {
+          result += 1;
+        }
+      }
+      else
+      {
+        result += 3;
+      }
     }
+    return result;
+  }
 
-    // Add terminator and pad up to a byte if applicable
-    bb.appendBits( 0, Math.min( 4, dataCapacityBits - bb.getBitLength() ) );
-    bb.appendBits( 0, ( 8 - bb.getBitLength() % 8 ) % 8 );
-
-    // Pad with alternate bytes until data capacity is reached
-    for ( int padByte = 0xEC; bb.getBitLength() < dataCapacityBits; padByte ^= 0xEC ^ 0x11 )
+  /**
+   * Return the data codewords for the segments in a symbol with the specified version and error correction level.
+   * The segments must fit within the data capacity of the symbol.
+   *
+   * @param segments the segments to encode.
+   * @param version  the version number.
+   * @param ecl      the error correction level.
+   * @return the data codewords.
+   */
+  @Nonnull
+  static byte[] toDataCodewords( @Nonnull final List<QrSegment> segments, final int version, @Nonnull final Ecc ecl )
+  {
+    // Create the data codewords by concatenating all segments directly into the codeword array
+    final CodewordBuilder builder = new CodewordBuilder( getNumDataCodewords( version, ecl ) );
+    for ( final QrSegment seg : segments )
     {
-      bb.appendBits( padByte, 8 );
+      builder.appendBits( seg.getMode().getModeBits(), 4 );
+      builder.appendBits( seg.getNumChars(), seg.getMode().numCharCountBits( version ) );
+      builder.appendData( seg.getData(), seg.getBitLength() );
     }
-    if ( BrainCheckConfig.checkInvariants() )
+
+    // Add terminator, pad up to a byte and then pad with alternate bytes until data capacity is reached
+    builder.appendPadding();
+    return builder.getCodewords();
+  }
+
+  /**
+   * Return the smallest version in the specified range that can hold the segments at the error correction level.
+   *
+   * @param segments   the segments to encode.
+   * @param ecl        the error correction level.
+   * @param minVersion the minimum allowed version.
+   * @param maxVersion the maximum allowed version.
+   * @return the smallest version that can hold the segments or -1 if no version in the range can hold the segments.
+   */
+  static int findMinimumVersion( @Nonnull final List<QrSegment> segments,
+                                 @Nonnull final Ecc ecl,
+                                 final int minVersion,
+                                 final int maxVersion )
+  {
+    for ( int version = minVersion; version <= maxVersion; version++ )
     {
-      invariant( () -> bb.getBitLength() % 8 == 0, () -> "Invalid remainder." );
+      final int dataCapacityBits = getNumDataCodewords( version, ecl ) * 8;  // Number of data bits available
+      final int dataUsedBits = getTotalBits( segments, version );
+      if ( dataUsedBits != -1 && dataUsedBits <= dataCapacityBits )
+      {
+        return version;  // This version number is found to be suitable
+      }
     }
-
-    // Create the QR Code symbol
-    return new QrCode( version, ecl, bb.getBytes(), mask );
+    return -1;
   }
 
   // Returns the number of data bits that can be stored in a QR Code of the given version number, after
@@ -372,9 +725,34 @@ public final class QrCodeTool
     return new QrSegment( Mode.ECI, 0, bb.getData(), bb.getBitLength() );
   }
 
+  /**
+   * Returns a segment representing a Structured Append header. The header identifies the position of a symbol
+   * within a sequence of up to 16 symbols that together hold a single message, and it must be the first segment
+   * of every symbol in the sequence.
+   *
+   * @param index  the zero-based position of the symbol in the sequence.
+   * @param count  the number of symbols in the sequence, which is between 1 and 16, inclusive.
+   * @param parity the exclusive or of every byte of the complete message.
+   * @return a segment containing the header.
+   * @see StructuredAppend
+   */
+  public static QrSegment makeStructuredAppendSegment( final int index, final int count, final int parity )
+  {
+    if ( BrainCheckConfig.checkApiInvariants() )
+    {
+      apiInvariant( () -> count >= 1 && count <= StructuredAppend.MAX_SYMBOLS,
+                    () -> "Structured Append symbol count " + count + " is out of range." );
+      apiInvariant( () -> index >= 0 && index < count,
+                    () -> "Structured Append symbol index " + index + " is out of range." );
+      apiInvariant( () -> parity >= 0 && parity <= 0xFF,
+                    () -> "Structured Append parity " + parity + " is out of range." );
+    }
+    final int header = ( index << 12 ) | ( ( count - 1 ) << 8 ) | parity;
+    return new QrSegment( Mode.STRUCTURED_APPEND, 0, new int[]{ header << 16 }, 16 );
+  }
+
   // Returns the number of 8-bit data (i.e. not error correction) codewords contained in any
   // QR Code of the given version number and error correction level, with remainder bits discarded.
-  // This stateless pure function could be implemented as a (40*4)-cell lookup table.
   private static int getNumDataCodewords( final int version, @Nonnull final Ecc ecl )
   {
     if ( BrainCheckConfig.checkApiInvariants() )
@@ -382,6 +760,11 @@ public final class QrCodeTool
       apiInvariant( () -> isVersionValid( version ),
                     () -> "Version value specified '" + version + "' is out of range." );
     }
+    return NUM_DATA_CODEWORDS[ ecl.ordinal() ][ version ];
+  }
+
+  private static int computeNumDataCodewords( final int version, @Nonnull final Ecc ecl )
+  {
     return getNumRawDataModules( version ) /
            8 -
            ECC_CODEWORDS_PER_BLOCK[ ecl.ordinal() ][ version ] *
@@ -390,7 +773,7 @@ public final class QrCodeTool
 
   // Returns a set of positions of the alignment patterns in ascending order. These positions are
   // used on both the x and y axes. Each value in the resulting array is in the range [0, 177).
-  // This stateless pure function could be implemented as table of 40 variable-length lists of unsigned bytes.
+  // The array is shared and must not be modified.
   static int[] getAlignmentPatternPositions( final int version )
   {
     if ( BrainCheckConfig.checkApiInvariants() )
@@ -398,6 +781,11 @@ public final class QrCodeTool
       apiInvariant( () -> isVersionValid( version ),
                     () -> "Version value specified '" + version + "' is out of range." );
     }
+    return ALIGNMENT_PATTERN_POSITIONS[ version ];
+  }
+
+  private static int[] computeAlignmentPatternPositions( final int version )
+  {
     if ( 1 == version )
     {
       return new int[]{};
@@ -449,7 +837,7 @@ public final class QrCodeTool
    * @return a list of segments containing the text
    */
   @Nonnull
-  private static List<QrSegment> makeSegments( @Nonnull final String text )
+  static List<QrSegment> makeSegments( @Nonnull final String text )
   {
     Objects.requireNonNull( text );
 
@@ -523,13 +911,16 @@ public final class QrCodeTool
     return true;
   }
 
-  private static int getTotalBits( @Nonnull final List<QrSegment> segments, final int version )
+  static int getTotalBits( @Nonnull final List<QrSegment> segments, final int version )
   {
     Objects.requireNonNull( segments );
-    apiInvariant( () -> isVersionValid( version ),
-                  () -> "Version value specified '" + version + "' is out of range." );
+    if ( BrainCheckConfig.checkApiInvariants() )
+    {
+      apiInvariant( () -> isVersionValid( version ),
+                    () -> "Version value specified '" + version + "' is out of range." );
+    }
 
-    long result = 0;
+    int result = 0;
     for ( QrSegment seg : segments )
     {
       Objects.requireNonNull( seg );
@@ -539,12 +930,14 @@ public final class QrCodeTool
       {
         return -1;
       }
-      result += 4L + ccbits + seg.getBitLength();
-      if ( result > Integer.MAX_VALUE )
+      // Compare against the remaining range rather than summing so the total never overflows 32 bits
+      final int bits = 4 + ccbits + seg.getBitLength();
+      if ( bits < 0 || result > Integer.MAX_VALUE - bits )
       {
         return -1;
       }
+      result += bits;
     }
-    return (int) result;
+    return result;
   }
 }
@@ -0,0 +1,117 @@
+package org.realityforge.gwt.qr_code;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import javax.annotation.Nonnull;
+
+/**
+ * The content of a symbol that was read by {@link QrDecoder}. Instances of this class are immutable.
+ */
+public final class QrDecodeResult
+{
+  private final int _version;
+  @Nonnull
+  private final Ecc _errorCorrectionLevel;
+  private final int _mask;
+  @Nonnull
+  private final List<QrSegment> _segments;
+  @Nonnull
+  private final byte[] _data;
+  private final int _correctedErrors;
+
+  QrDecodeResult( final int version,
+                  @Nonnull final Ecc errorCorrectionLevel,
+                  final int mask,
+                  @Nonnull final List<QrSegment> segments,
+                  @Nonnull final byte[] data,
+                  final int correctedErrors )
+  {
+    _version = version;
+    _errorCorrectionLevel = Objects.requireNonNull( errorCorrectionLevel );
+    _mask = mask;
+    _segments = Collections.unmodifiableList( segments );
+    _data = Objects.requireNonNull( data );
+    _correctedErrors = correctedErrors;
+  }
+
+  /**
+   * Return the version of the symbol, which is always between 1 and 40 (inclusive).
+   *
+   * @return the version of the symbol.
+   */
+  public int getVersion()
+  {
+    return _version;
+  }
+
+  /**
+   * Return the error correction level of the symbol.
+   *
+   * @return the error correction level of the symbol.
+   */
+  @Nonnull
+  public Ecc getErrorCorrectionLevel()
+  {
+    return _errorCorrectionLevel;
+  }
+
+  /**
+   * Return the mask pattern of the symbol, in the range 0 to 7.
+   *
+   * @return the mask pattern of the symbol.
+   */
+  public int getMask()
+  {
+    return _mask;
+  }
+
+  /**
+   * Return the segments of the symbol in the order they were encoded, including any ECI and Structured Append
+   * segments. The segments hold the same bits as the segments that were passed to the encoder.
+   *
+   * @return the segments of the symbol.
+   */
+  @Nonnull
+  public List<QrSegment> getSegments()
+  {
+    return _segments;
+  }
+
+  /**
+   * Return the bytes of the message, which is the concatenation of the characters of every numeric,
+   * alphanumeric, byte and kanji segment. Numeric and alphanumeric characters are returned as ASCII and kanji
+   * characters as Shift JIS. The returned array must not be modified.
+   *
+   * @return the bytes of the message.
+   */
+  @Nonnull
+  public byte[] getData()
+  {
+    return _data;
+  }
+
+  /**
+   * Return the message decoded as UTF-8, which is how {@link QrCodeTool#encodeText(String, Ecc)} encodes
+   * characters that are not numeric or alphanumeric. ECI designators are not interpreted.
+   *
+   * @return the message decoded as UTF-8.
+   */
+  @Nonnull
+  public String getText()
+  {
+    return new String( _data, StandardCharsets.UTF_8 );
+  }
+
+  /**
+   * Return the number of codewords that were corrected by the Reed-Solomon decoder, which is 0 for a symbol
+   * that was read exactly as it was encoded.
+   *
+   * @return the number of codewords that were corrected.
+   */
+  public int getCorrectedErrors()
+  {
+    return _correctedErrors;
+  }
+}
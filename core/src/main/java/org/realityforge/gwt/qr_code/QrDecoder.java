@@ -0,0 +1,834 @@
+package org.realityforge.gwt.qr_code;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.realityforge.braincheck.BrainCheckConfig;
+import static org.realityforge.braincheck.Guards.*;
+
+/**
+ * Decodes a symbol directly from its grid of modules, without any image processing. The decoder reads the
+ * format and version information, removes the mask, gathers the codewords in the zigzag order that they
+ * were placed in, splits the codewords into blocks, corrects errors with a Reed-Solomon decoder and parses
+ * the segments. The function modules, the placement of the codewords, the mask patterns, the interleaving of
+ * the blocks and the arithmetic of the field are derived from the specification within this class rather than
+ * taken from the encoder, so verifying a symbol detects a fault in the layouts or kernels of the encoder rather
+ * than repeating it.
+ */
+public final class QrDecoder
+{
+  // The 15 bit format information, including the mask 0x5412, indexed by (error correction format bits << 3 | mask)
+  private static final int[] FORMAT_CODES = new int[ 32 ];
+  // The 18 bit version information indexed by version, for versions 7 and above
+  private static final int[] VERSION_CODES = new int[ QrCodeTool.MAX_VERSION + 1 ];
+  // The most bits that may differ from a valid format or version information code for it to be corrected
+  private static final int MAX_INFO_ERRORS = 3;
+  // The row and column coordinates of the centres of the alignment patterns indexed by version (ISO/IEC 18004 Annex E)
+  private static final int[][] ALIGNMENT_PATTERN_POSITIONS = {
+    {}, {}, { 6, 18 }, { 6, 22 }, { 6, 26 }, { 6, 30 }, { 6, 34 }, { 6, 22, 38 }, { 6, 24, 42 }, { 6, 26, 46 },
+    { 6, 28, 50 }, { 6, 30, 54 }, { 6, 32, 58 }, { 6, 34, 62 }, { 6, 26, 46, 66 }, { 6, 26, 48, 70 },
+    { 6, 26, 50, 74 }, { 6, 30, 54, 78 }, { 6, 30, 56, 82 }, { 6, 30, 58, 86 }, { 6, 34, 62, 90 },
+    { 6, 28, 50, 72, 94 }, { 6, 26, 50, 74, 98 }, { 6, 30, 54, 78, 102 }, { 6, 28, 54, 80, 106 },
+    { 6, 32, 58, 84, 110 }, { 6, 30, 58, 86, 114 }, { 6, 34, 62, 90, 118 }, { 6, 26, 50, 74, 98, 122 },
+    { 6, 30, 54, 78, 102, 126 }, { 6, 26, 52, 78, 104, 130 }, { 6, 30, 56, 82, 108, 134 },
+    { 6, 34, 60, 86, 112, 138 }, { 6, 30, 58, 86, 114, 142 }, { 6, 34, 62, 90, 118, 146 },
+    { 6, 30, 54, 78, 102, 126, 150 }, { 6, 24, 50, 76, 102, 128, 154 }, { 6, 28, 54, 80, 106, 132, 158 },
+    { 6, 32, 58, 84, 110, 136, 162 }, { 6, 26, 54, 82, 110, 138, 166 }, { 6, 30, 58, 86, 114, 142, 170 }
+  };
+  // The powers of 0x02 in GF(256) with the primitive polynomial x^8 + x^4 + x^3 + x^2 + 1, repeated so that the
+  // sum of two logarithms can be used as an index
+  private static final int[] EXP = new int[ 510 ];
+  // The logarithms of the elements of GF(256) to the base 0x02
+  private static final int[] LOG = new int[ 256 ];
+  // The coordinates of each codeword bit of each version in the order the bits are placed, encoded as
+  // (y << 8) | x, computed when a symbol of the version is first decoded
+  private static final int[][] CODEWORD_POSITIONS = new int[ QrCodeTool.MAX_VERSION + 1 ][];
+
+  static
+  {
+    for ( int data = 0; data < FORMAT_CODES.length; data++ )
+    {
+      int rem = data;
+      for ( int i = 0; i < 10; i++ )
+      {
+        rem = ( rem << 1 ) ^ ( ( rem >>> 9 ) * 0x537 );
+      }
+      FORMAT_CODES[ data ] = ( data << 10 | rem ) ^ 0x5412;
+    }
+    for ( int version = 7; version <= QrCodeTool.MAX_VERSION; version++ )
+    {
+      int rem = version;
+      for ( int i = 0; i < 12; i++ )
+      {
+        rem = ( rem << 1 ) ^ ( ( rem >>> 11 ) * 0x1F25 );
+      }
+      VERSION_CODES[ version ] = version << 12 | rem;
+    }
+    for ( int i = 0, value = 1; i < 255; i++ )
+    {
+      EXP[ i ] = value;
+      EXP[ i + 255 ] = value;
+      LOG[ value ] = i;
+      value = ( value << 1 ) ^ ( ( value >>> 7 ) * 0x11D );
+    }
+  }
+
+  private QrDecoder()
+  {
+  }
+
+  /**
+   * Decode the specified symbol.
+   *
+   * @param qrCode the symbol.
+   * @return the content of the symbol, or null if the symbol could not be decoded.
+   */
+  @Nullable
+  public static QrDecodeResult decode( @Nonnull final QrCode qrCode )
+  {
+    return decode( qrCode.getSize(), qrCode.getPackedModules() );
+  }
+
+  /**
+   * Decode the symbol represented by the specified grid of modules, where true is a dark module.
+   *
+   * @param modules the modules indexed by y and then by x.
+   * @return the content of the symbol, or null if the symbol could not be decoded.
+   */
+  @Nullable
+  public static QrDecodeResult decode( @Nonnull final boolean[][] modules )
+  {
+    final int size = modules.length;
+    final int words = ( size + 31 ) >>> 5;
+    final int[] rows = new int[ words * size ];
+    for ( int y = 0; y < size; y++ )
+    {
+      final boolean[] row = modules[ y ];
+      if ( BrainCheckConfig.checkApiInvariants() )
+      {
+        apiInvariant( () -> row.length == size, () -> "The grid of modules is not square" );
+      }
+      for ( int x = 0; x < size; x++ )
+      {
+        rows[ y * words + ( x >>> 5 ) ] |= ( row[ x ] ? 1 : 0 ) << ( x & 31 );
+      }
+    }
+    return decode( size, rows );
+  }
+
+  /**
+   * Decode the symbol represented by the specified modules packed into 32-bit words row by row. Each row
+   * starts at a new word and bit (x &amp; 31) of word (x &gt;&gt;&gt; 5) of the row is set for a dark module.
+   *
+   * @param size the width and height of the symbol, measured in modules.
+   * @param rows the packed modules.
+   * @return the content of the symbol, or null if the symbol could not be decoded.
+   */
+  @Nullable
+  public static QrDecodeResult decode( final int size, @Nonnull final int[] rows )
+  {
+    if ( BrainCheckConfig.checkApiInvariants() )
+    {
+      apiInvariant( () -> size >= 21 && size <= 177 && 1 == size % 4,
+                    () -> "Size " + size + " is not the size of a symbol." );
+      apiInvariant( () -> rows.length >= ( ( size + 31 ) >>> 5 ) * size,
+                    () -> "The packed modules do not contain " + size + " rows." );
+    }
+    Objects.requireNonNull( rows );
+    final int version = ( size - 17 ) / 4;
+    final int words = ( size + 31 ) >>> 5;
+    if ( version >= 7 && readVersion( size, rows, words ) != version )
+    {
+      return null;
+    }
+    final int format = readFormat( size, rows, words );
+    if ( -1 == format )
+    {
+      return null;
+    }
+    final Ecc ecl = toEcc( format >>> 3 );
+    final int mask = format & 7;
+
+    // Gather the codewords in the order that their bits were placed, removing the mask as each module is read
+    final int[] positions = getCodewordPositions( version );
+    final int[] codewords = new int[ positions.length >>> 3 ];
+    for ( int i = 0; i < positions.length; i++ )
+    {
+      final int x = positions[ i ] & 0xFF;
+      final int y = positions[ i ] >>> 8;
+      final int module = getModule( rows, words, x, y ) ^ ( isMasked( mask, x, y ) ? 1 : 0 );
+      codewords[ i >>> 3 ] = ( codewords[ i >>> 3 ] << 1 ) | module;
+    }
+
+    // The codewords interleave the blocks codeword by codeword, first the data codewords and then the error
+    // correction codewords. The short blocks come first and each long block has one more data codeword.
+    final int numBlocks = QrCodeTool.NUM_ERROR_CORRECTION_BLOCKS[ ecl.ordinal() ][ version ];
+    final int eccLen = QrCodeTool.ECC_CODEWORDS_PER_BLOCK[ ecl.ordinal() ][ version ];
+    final int numShortBlocks = numBlocks - codewords.length % numBlocks;
+    final int shortDataLen = codewords.length / numBlocks - eccLen;
+    final int numDataCodewords = codewords.length - numBlocks * eccLen;
+    final int capacity = ( eccLen - getMisdecodeProtection( version, ecl ) ) / 2;
+    final byte[] data = new byte[ numDataCodewords ];
+    int correctedErrors = 0;
+    for ( int block = 0, offset = 0; block < numBlocks; block++ )
+    {
+      final int dataLen = shortDataLen + ( block < numShortBlocks ? 0 : 1 );
+      // The index of each codeword of the block, from the coefficient of the highest power
+      final int[] indexes = new int[ dataLen + eccLen ];
+      for ( int i = 0; i < dataLen; i++ )
+      {
+        indexes[ i ] = i < shortDataLen ? i * numBlocks + block : shortDataLen * numBlocks + block - numShortBlocks;
+      }
+      for ( int i = 0; i < eccLen; i++ )
+      {
+        indexes[ dataLen + i ] = numDataCodewords + i * numBlocks + block;
+      }
+      final int errors = correctBlock( codewords, indexes, eccLen, capacity );
+      if ( -1 == errors )
+      {
+        return null;
+      }
+      correctedErrors += errors;
+      for ( int i = 0; i < dataLen; i++ )
+      {
+        data[ offset++ ] = (byte) codewords[ indexes[ i ] ];
+      }
+    }
+
+    final List<QrSegment> segments = new ArrayList<>();
+    final byte[] content = parseSegments( data, version, segments );
+    return null == content ? null : new QrDecodeResult( version, ecl, mask, segments, content, correctedErrors );
+  }
+
+  /**
+   * Decode the specified symbol and check that it holds exactly the specified segments. This is used to
+   * verify a symbol after it has been encoded, so any difference is a failure of the encoder.
+   *
+   * @param qrCode   the symbol.
+   * @param segments the segments that were encoded.
+   * @throws IllegalStateException if the symbol does not decode to the segments without errors.
+   */
+  static void verify( @Nonnull final QrCode qrCode, @Nonnull final List<QrSegment> segments )
+  {
+    final QrDecodeResult result = decode( qrCode );
+    if ( null == result )
+    {
+      throw new IllegalStateException( "The encoded symbol could not be decoded" );
+    }
+    else if ( result.getVersion() != qrCode.getVersion() ||
+              result.getErrorCorrectionLevel() != qrCode.getErrorCorrectionLevel() ||
+              result.getMask() != qrCode.getMask() )
+    {
+      throw new IllegalStateException( "The format of the encoded symbol does not match the symbol" );
+    }
+    else if ( 0 != result.getCorrectedErrors() )
+    {
+      throw new IllegalStateException( "The encoded symbol contains " + result.getCorrectedErrors() +
+                                       " incorrect codewords" );
+    }
+    else if ( !matches( segments, result.getSegments() ) )
+    {
+      throw new IllegalStateException( "The encoded symbol does not decode to the encoded segments" );
+    }
+  }
+
+  // Return the coordinates of each codeword bit of the version in the order that the bits are placed. The bits
+  // are placed in pairs of columns from the right, alternately upwards and downwards, skipping the function
+  // modules and the column of the vertical timing pattern. Any remainder bits after the last codeword are omitted.
+  @Nonnull
+  private static int[] getCodewordPositions( final int version )
+  {
+    int[] positions = CODEWORD_POSITIONS[ version ];
+    if ( null == positions )
+    {
+      final int size = version * 4 + 17;
+      final boolean[][] isFunction = getFunctionModules( version );
+      positions = new int[ size * size ];
+      int count = 0;
+      boolean upward = true;
+      for ( int right = size - 1; right > 0; right -= 2 )
+      {
+        if ( 6 == right )
+        {
+          right--;
+        }
+        for ( int i = 0; i < size; i++ )
+        {
+          final int y = upward ? size - 1 - i : i;
+          for ( int x = right; x >= right - 1; x-- )
+          {
+            if ( !isFunction[ y ][ x ] )
+            {
+              positions[ count++ ] = ( y << 8 ) | x;
+            }
+          }
+        }
+        upward = !upward;
+      }
+      // The positions are immutable so a race between threads at worst computes the same positions twice
+      positions = Arrays.copyOf( positions, count & ~7 );
+      CODEWORD_POSITIONS[ version ] = positions;
+    }
+    return positions;
+  }
+
+  // Return the grid indicating which modules of a symbol of the version are function modules, i.e. the finder
+  // patterns and their separators, the format information and the dark module beside them, the timing patterns,
+  // the alignment patterns and the version information.
+  @Nonnull
+  private static boolean[][] getFunctionModules( final int version )
+  {
+    final int size = version * 4 + 17;
+    final boolean[][] isFunction = new boolean[ size ][ size ];
+    markRegion( isFunction, 0, 0, 9, 9 );
+    markRegion( isFunction, size - 8, 0, 8, 9 );
+    markRegion( isFunction, 0, size - 8, 9, 8 );
+    markRegion( isFunction, 6, 0, 1, size );
+    markRegion( isFunction, 0, 6, size, 1 );
+    final int[] centres = ALIGNMENT_PATTERN_POSITIONS[ version ];
+    final int last = size - 7;
+    for ( final int y : centres )
+    {
+      for ( final int x : centres )
+      {
+        // There are no alignment patterns where they would overlap the finder patterns
+        if ( !( 6 == x && 6 == y ) && !( 6 == x && last == y ) && !( last == x && 6 == y ) )
+        {
+          markRegion( isFunction, x - 2, y - 2, 5, 5 );
+        }
+      }
+    }
+    if ( version >= 7 )
+    {
+      markRegion( isFunction, size - 11, 0, 3, 6 );
+      markRegion( isFunction, 0, size - 11, 6, 3 );
+    }
+    return isFunction;
+  }
+
+  private static void markRegion( @Nonnull final boolean[][] grid,
+                                  final int left,
+                                  final int top,
+                                  final int width,
+                                  final int height )
+  {
+    for ( int y = top; y < top + height; y++ )
+    {
+      Arrays.fill( grid[ y ], left, left + width, true );
+    }
+  }
+
+  // Return true if the mask inverts the data module in row y and column x, as defined by ISO/IEC 18004 Table 10
+  private static boolean isMasked( final int mask, final int x, final int y )
+  {
+    switch ( mask )
+    {
+      case 0:
+        return 0 == ( y + x ) % 2;
+      case 1:
+        return 0 == y % 2;
+      case 2:
+        return 0 == x % 3;
+      case 3:
+        return 0 == ( y + x ) % 3;
+      case 4:
+        return 0 == ( y / 2 + x / 3 ) % 2;
+      case 5:
+        return 0 == y * x % 2 + y * x % 3;
+      case 6:
+        return 0 == ( y * x % 2 + y * x % 3 ) % 2;
+      default:
+        return 0 == ( ( y + x ) % 2 + y * x % 3 ) % 2;
+    }
+  }
+
+  // Read both copies of the format information and return the data of the nearest valid code,
+  // or -1 if neither copy is near enough to a valid code.
+  private static int readFormat( final int size, @Nonnull final int[] rows, final int words )
+  {
+    int first = 0;
+    int second = 0;
+    for ( int i = 0; i <= 5; i++ )
+    {
+      first |= getModule( rows, words, 8, i ) << i;
+    }
+    first |= getModule( rows, words, 8, 7 ) << 6;
+    first |= getModule( rows, words, 8, 8 ) << 7;
+    first |= getModule( rows, words, 7, 8 ) << 8;
+    for ( int i = 9; i < 15; i++ )
+    {
+      first |= getModule( rows, words, 14 - i, 8 ) << i;
+    }
+    for ( int i = 0; i <= 7; i++ )
+    {
+      second |= getModule( rows, words, size - 1 - i, 8 ) << i;
+    }
+    for ( int i = 8; i < 15; i++ )
+    {
+      second |= getModule( rows, words, 8, size - 15 + i ) << i;
+    }
+    return findNearest( FORMAT_CODES, 0, first, second );
+  }
+
+  // Read both copies of the version information and return the nearest valid version,
+  // or -1 if neither copy is near enough to a valid code.
+  private static int readVersion( final int size, @Nonnull final int[] rows, final int words )
+  {
+    int first = 0;
+    int second = 0;
+    for ( int i = 0; i < 18; i++ )
+    {
+      final int a = size - 11 + i % 3;
+      final int b = i / 3;
+      first |= getModule( rows, words, a, b ) << i;
+      second |= getModule( rows, words, b, a ) << i;
+    }
+    return findNearest( VERSION_CODES, 7, first, second );
+  }
+
+  private static int findNearest( @Nonnull final int[] codes, final int start, final int first, final int second )
+  {
+    int nearest = -1;
+    int minDistance = MAX_INFO_ERRORS + 1;
+    for ( int i = start; i < codes.length; i++ )
+    {
+      final int distance =
+        Math.min( Integer.bitCount( codes[ i ] ^ first ), Integer.bitCount( codes[ i ] ^ second ) );
+      if ( distance < minDistance )
+      {
+        nearest = i;
+        minDistance = distance;
+      }
+    }
+    return nearest;
+  }
+
+  private static int getModule( @Nonnull final int[] rows, final int words, final int x, final int y )
+  {
+    return ( rows[ y * words + ( x >>> 5 ) ] >>> ( x & 31 ) ) & 1;
+  }
+
+  @Nonnull
+  private static Ecc toEcc( final int formatBits )
+  {
+    for ( final Ecc ecc : Ecc.values() )
+    {
+      if ( ecc.getFormatBits() == formatBits )
+      {
+        return ecc;
+      }
+    }
+    throw new IllegalStateException();
+  }
+
+  // Return the number of error correction codewords of each block that are reserved to detect errors rather
+  // than correct them, which is only non-zero for the smallest symbols.
+  private static int getMisdecodeProtection( final int version, @Nonnull final Ecc ecl )
+  {
+    if ( 1 == version )
+    {
+      return Ecc.LOW == ecl ? 3 : Ecc.MEDIUM == ecl ? 2 : 1;
+    }
+    else if ( 2 == version )
+    {
+      return Ecc.LOW == ecl ? 2 : 0;
+    }
+    else
+    {
+      return 3 == version && Ecc.LOW == ecl ? 1 : 0;
+    }
+  }
+
+  // Correct the errors in the block made up of the codewords at the specified indexes, from the coefficient of
+  // the highest power. Returns the number of corrected codewords or -1 if the block has more errors than can be
+  // corrected.
+  private static int correctBlock( @Nonnull final int[] codewords,
+                                   @Nonnull final int[] indexes,
+                                   final int eccLen,
+                                   final int capacity )
+  {
+    // The generator has the roots 0x02^0 to 0x02^(eccLen - 1) so the syndromes are the block evaluated at them,
+    // which are all zero unless the block contains errors
+    final int[] syndromes = new int[ eccLen ];
+    boolean hasErrors = false;
+    for ( int j = 0; j < eccLen; j++ )
+    {
+      final int root = EXP[ j ];
+      int value = 0;
+      for ( final int index : indexes )
+      {
+        value = multiply( value, root ) ^ codewords[ index ];
+      }
+      syndromes[ j ] = value;
+      hasErrors |= 0 != value;
+    }
+    if ( !hasErrors )
+    {
+      return 0;
+    }
+
+    // Find the error locator polynomial using the Berlekamp-Massey algorithm, where coefficients are
+    // stored from the lowest power
+    int[] locator = new int[ eccLen + 1 ];
+    int[] previous = new int[ eccLen + 1 ];
+    locator[ 0 ] = 1;
+    previous[ 0 ] = 1;
+    int errors = 0;
+    int shift = 1;
+    int previousDiscrepancy = 1;
+    for ( int n = 0; n < eccLen; n++ )
+    {
+      int discrepancy = syndromes[ n ];
+      for ( int i = 1; i <= errors; i++ )
+      {
+        discrepancy ^= multiply( locator[ i ], syndromes[ n - i ] );
+      }
+      if ( 0 == discrepancy )
+      {
+        shift++;
+      }
+      else
+      {
+        final int factor = multiply( discrepancy, inverse( previousDiscrepancy ) );
+        final int[] saved = 2 * errors <= n ? locator.clone() : null;
+        for ( int i = 0; i + shift <= eccLen; i++ )
+        {
+          locator[ i + shift ] ^= multiply( factor, previous[ i ] );
+        }
+        if ( null != saved )
+        {
+          errors = n + 1 - errors;
+          previous = saved;
+          previousDiscrepancy = discrepancy;
+          shift = 1;
+        }
+        else
+        {
+          shift++;
+        }
+      }
+    }
+    if ( errors > capacity )
+    {
+      return -1;
+    }
+
+    // The error evaluator polynomial is the product of the syndrome and locator polynomials modulo x^eccLen
+    final int[] evaluator = new int[ eccLen ];
+    for ( int k = 0; k < eccLen; k++ )
+    {
+      int value = 0;
+      for ( int i = 0; i <= Math.min( k, errors ); i++ )
+      {
+        value ^= multiply( locator[ i ], syndromes[ k - i ] );
+      }
+      evaluator[ k ] = value;
+    }
+
+    // Search for the roots of the locator, which are the inverses of the locations of the errors, and
+    // calculate the value of each error using the Forney algorithm
+    final int length = indexes.length;
+    int found = 0;
+    for ( int index = 0; index < length && found < errors; index++ )
+    {
+      // The codeword at the index is the coefficient of x^(length - 1 - index)
+      final int exponent = length - 1 - index;
+      final int location = EXP[ exponent ];
+      final int root = EXP[ 255 - exponent ];
+      if ( 0 == evaluate( locator, errors, root ) )
+      {
+        // The formal derivative of the locator only has the odd powers as the field has characteristic 2
+        int derivative = 0;
+        for ( int i = errors - ( 0 == ( errors & 1 ) ? 1 : 0 ); i >= 1; i -= 2 )
+        {
+          derivative = multiply( derivative, multiply( root, root ) ) ^ locator[ i ];
+        }
+        if ( 0 == derivative )
+        {
+          return -1;
+        }
+        final int magnitude =
+          multiply( location, multiply( evaluate( evaluator, eccLen - 1, root ), inverse( derivative ) ) );
+        codewords[ indexes[ index ] ] ^= magnitude;
+        found++;
+      }
+    }
+    return found == errors ? errors : -1;
+  }
+
+  // Evaluate the polynomial with coefficients stored from the lowest power up to the specified degree.
+  private static int evaluate( @Nonnull final int[] polynomial, final int degree, final int x )
+  {
+    int value = 0;
+    for ( int i = degree; i >= 0; i-- )
+    {
+      value = multiply( value, x ) ^ polynomial[ i ];
+    }
+    return value;
+  }
+
+  private static int multiply( final int x, final int y )
+  {
+    return 0 == x || 0 == y ? 0 : EXP[ LOG[ x ] + LOG[ y ] ];
+  }
+
+  private static int inverse( final int x )
+  {
+    return EXP[ 255 - LOG[ x ] ];
+  }
+
+  // Parse the segments from the data codewords, adding them to the list and returning the content of the
+  // segments, or return null if the data codewords do not hold a valid sequence of segments.
+  @Nullable
+  private static byte[] parseSegments( @Nonnull final byte[] data,
+                                       final int version,
+                                       @Nonnull final List<QrSegment> segments )
+  {
+    final BitReader reader = new BitReader( data );
+    final ByteBuilder content = new ByteBuilder( data.length * 2 );
+    // A terminator shorter than 4 bits is permitted when the data fills the symbol
+    while ( reader.available() >= 4 )
+    {
+      final int modeBits = reader.read( 4 );
+      if ( 0 == modeBits )
+      {
+        break;
+      }
+      final Mode mode = toMode( modeBits );
+      if ( null == mode )
+      {
+        return null;
+      }
+      final int countBits = mode.numCharCountBits( version );
+      if ( reader.available() < countBits )
+      {
+        return null;
+      }
+      final int numChars = reader.read( countBits );
+      final BitBuffer bits = new BitBuffer();
+      if ( Mode.NUMERIC == mode )
+      {
+        for ( int i = 0; i < numChars; i += 3 )
+        {
+          final int digits = Math.min( 3, numChars - i );
+          final int length = digits * 3 + 1;
+          if ( reader.available() < length )
+          {
+            return null;
+          }
+          final int value = reader.read( length );
+          if ( value >= ( 3 == digits ? 1000 : 2 == digits ? 100 : 10 ) )
+          {
+            return null;
+          }
+          bits.appendBits( value, length );
+          for ( int divisor = 3 == digits ? 100 : 2 == digits ? 10 : 1; divisor > 0; divisor /= 10 )
+          {
+            content.append( '0' + value / divisor % 10 );
+          }
+        }
+      }
+      else if ( Mode.ALPHANUMERIC == mode )
+      {
+        for ( int i = 0; i < numChars; i += 2 )
+        {
+          final boolean pair = numChars - i >= 2;
+          final int length = pair ? 11 : 6;
+          if ( reader.available() < length )
+          {
+            return null;
+          }
+          final int value = reader.read( length );
+          if ( value >= ( pair ? 45 * 45 : 45 ) )
+          {
+            return null;
+          }
+          bits.appendBits( value, length );
+          if ( pair )
+          {
+            content.append( QrCodeTool.ALPHANUMERIC_CHARSET.charAt( value / 45 ) );
+          }
+          content.append( QrCodeTool.ALPHANUMERIC_CHARSET.charAt( value % 45 ) );
+        }
+      }
+      else if ( Mode.BYTE == mode )
+      {
+        if ( reader.available() < numChars * 8 )
+        {
+          return null;
+        }
+        for ( int i = 0; i < numChars; i++ )
+        {
+          final int value = reader.read( 8 );
+          bits.appendBits( value, 8 );
+          content.append( value );
+        }
+      }
+      else if ( Mode.KANJI == mode )
+      {
+        if ( reader.available() < numChars * 13 )
+        {
+          return null;
+        }
+        for ( int i = 0; i < numChars; i++ )
+        {
+          final int value = reader.read( 13 );
+          bits.appendBits( value, 13 );
+          // Each character is the offset of a Shift JIS code from 0x8140 or 0xC140, split into base 0xC0 digits
+          final int code = ( value / 0xC0 << 8 | value % 0xC0 ) + ( value < 0x1F00 ? 0x8140 : 0xC140 );
+          content.append( code >>> 8 );
+          content.append( code & 0xFF );
+        }
+      }
+      else if ( Mode.ECI == mode )
+      {
+        if ( reader.available() < 8 )
+        {
+          return null;
+        }
+        final int first = reader.read( 8 );
+        final int extra = 0 == ( first & 0x80 ) ? 0 : 0x80 == ( first & 0xC0 ) ? 8 : 0xC0 == ( first & 0xE0 ) ? 16 : -1;
+        if ( -1 == extra || reader.available() < extra )
+        {
+          return null;
+        }
+        bits.appendBits( first, 8 );
+        if ( 0 != extra )
+        {
+          bits.appendBits( reader.read( extra ), extra );
+        }
+      }
+      else
+      {
+        assert Mode.STRUCTURED_APPEND == mode;
+        if ( reader.available() < 16 )
+        {
+          return null;
+        }
+        bits.appendBits( reader.read( 16 ), 16 );
+      }
+      segments.add( new QrSegment( mode, numChars, bits.getData(), bits.getBitLength() ) );
+    }
+    return content.toByteArray();
+  }
+
+  @Nullable
+  private static Mode toMode( final int modeBits )
+  {
+    for ( final Mode mode : Mode.values() )
+    {
+      if ( mode.getModeBits() == modeBits )
+      {
+        return mode;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Return true if the segments hold the same modes, character counts and bits.
+   *
+   * @param expected the expected segments.
+   * @param actual   the actual segments.
+   * @return true if the segments hold the same modes, character counts and bits.
+   */
+  static boolean matches( @Nonnull final List<QrSegment> expected, @Nonnull final List<QrSegment> actual )
+  {
+    if ( expected.size() != actual.size() )
+    {
+      return false;
+    }
+    for ( int j = 0; j < expected.size(); j++ )
+    {
+      final QrSegment segment = expected.get( j );
+      final QrSegment other = actual.get( j );
+      if ( segment.getMode() != other.getMode() ||
+           segment.getNumChars() != other.getNumChars() ||
+           segment.getBitLength() != other.getBitLength() )
+      {
+        return false;
+      }
+      final int bitLength = segment.getBitLength();
+      for ( int i = 0; i < bitLength; i += 32 )
+      {
+        // The bits after the end of the segment are ignored in the last word
+        final int unused = Math.max( 0, i + 32 - bitLength );
+        if ( ( segment.getData()[ i >>> 5 ] ^ other.getData()[ i >>> 5 ] ) >>> unused << unused != 0 )
+        {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  // Reads bits from the most significant bit of the first byte
+  private static final class BitReader
+  {
+    @Nonnull
+    private final byte[] _data;
+    private int _position;
+
+    BitReader( @Nonnull final byte[] data )
+    {
+      _data = data;
+    }
+
+    int available()
+    {
+      return _data.length * 8 - _position;
+    }
+
+    int read( final int length )
+    {
+      // Take the bits from each byte that the value spans at once
+      int value = 0;
+      int remaining = length;
+      while ( remaining > 0 )
+      {
+        final int available = 8 - ( _position & 7 );
+        final int count = Math.min( available, remaining );
+        final int bits = ( _data[ _position >>> 3 ] & 0xFF ) >>> ( available - count );
+        value = ( value << count ) | ( bits & ( ( 1 << count ) - 1 ) );
+        _position += count;
+        remaining -= count;
+      }
+      return value;
+    }
+  }
+
+  // A growable array of bytes
+  private static final class ByteBuilder
+  {
+    @Nonnull
+    private byte[] _bytes;
+    private int _length;
+
+    ByteBuilder( final int capacity )
+    {
+      _bytes = new byte[ capacity ];
+    }
+
+    void append( final int value )
+    {
+      if ( _length == _bytes.length )
+      {
+        final byte[] bytes = new byte[ _bytes.length * 2 + 1 ];
+        System.arraycopy( _bytes, 0, bytes, 0, _length );
+        _bytes = bytes;
+      }
+      _bytes[ _length++ ] = (byte) value;
+    }
+
+    @Nonnull
+    byte[] toByteArray()
+    {
+      final byte[] bytes = new byte[ _length ];
+      System.arraycopy( _bytes, 0, bytes, 0, _length );
+      return bytes;
+    }
+  }
+}
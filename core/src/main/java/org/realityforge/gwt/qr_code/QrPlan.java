@@ -0,0 +1,109 @@
+package org.realityforge.gwt.qr_code;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import javax.annotation.Nonnull;
+
+/**
+ * The parameters of the symbol that would be produced when encoding a payload, calculated without encoding
+ * the symbol. Plans are produced by {@link QrCodeTool#planText(String, Ecc)} and related methods and make it
+ * possible to cheaply validate a payload, for example by rejecting payloads that need too large a symbol.
+ * Instances of this class are immutable.
+ */
+public final class QrPlan
+{
+  private final int _version;
+  @Nonnull
+  private final Ecc _errorCorrectionLevel;
+  @Nonnull
+  private final List<Mode> _modes;
+  private final int _dataBits;
+  private final int _capacityBits;
+
+  QrPlan( final int version,
+          @Nonnull final Ecc errorCorrectionLevel,
+          @Nonnull final List<Mode> modes,
+          final int dataBits,
+          final int capacityBits )
+  {
+    _version = version;
+    _errorCorrectionLevel = Objects.requireNonNull( errorCorrectionLevel );
+    _modes = Collections.unmodifiableList( modes );
+    _dataBits = dataBits;
+    _capacityBits = capacityBits;
+  }
+
+  /**
+   * Return the version of the symbol, which is always between 1 and 40 (inclusive).
+   *
+   * @return the version of the symbol.
+   */
+  public int getVersion()
+  {
+    return _version;
+  }
+
+  /**
+   * Return the width and height of the symbol, measured in modules.
+   *
+   * @return the width and height of the symbol, measured in modules.
+   */
+  public int getSize()
+  {
+    return _version * 4 + 17;
+  }
+
+  /**
+   * Return the error correction level of the symbol, after any boost has been applied.
+   *
+   * @return the error correction level of the symbol.
+   */
+  @Nonnull
+  public Ecc getErrorCorrectionLevel()
+  {
+    return _errorCorrectionLevel;
+  }
+
+  /**
+   * Return the modes of the segments in the symbol, in order.
+   *
+   * @return the modes of the segments in the symbol.
+   */
+  @Nonnull
+  public List<Mode> getModes()
+  {
+    return _modes;
+  }
+
+  /**
+   * Return the number of data bits used by the segments, including the mode and character count headers
+   * but excluding the terminator and padding.
+   *
+   * @return the number of data bits used by the segments.
+   */
+  public int getDataBits()
+  {
+    return _dataBits;
+  }
+
+  /**
+   * Return the number of data bits that the symbol can hold.
+   *
+   * @return the number of data bits that the symbol can hold.
+   */
+  public int getCapacityBits()
+  {
+    return _capacityBits;
+  }
+
+  /**
+   * Return the number of data bits that are unused in the symbol.
+   *
+   * @return the number of data bits that are unused in the symbol.
+   */
+  public int getRemainingBits()
+  {
+    return _capacityBits - _dataBits;
+  }
+}
@@ -0,0 +1,280 @@
+package org.realityforge.gwt.qr_code;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import javax.annotation.Nonnull;
+import org.realityforge.braincheck.BrainCheckConfig;
+import static org.realityforge.braincheck.Guards.*;
+
+/**
+ * A precompiled payload template that rapidly encodes payloads that differ only in a fixed set of
+ * character positions, such as a URL with a fixed length serial number. i.e.
+ *
+ * <pre>{@code
+ * final QrTemplate template = QrTemplate.compile( "https://t.example.com/v/########", '#', Mode.BYTE, Ecc.MEDIUM, 3 );
+ * final QrCode qrCode = template.encode( "00004711" );
+ * }</pre>
+ *
+ * <p>A base symbol is encoded once when the template is compiled. Every payload produced from the template has
+ * the same length and thus the same version and error correction level, and differs from the base payload in
+ * a small number of data codewords. As the Reed-Solomon error correction codewords are linear, the change to
+ * the error correction codewords is calculated from the changed data codewords alone and only the modules
+ * that hold changed codewords are updated. If the mask is fixed then no further work is required, otherwise
+ * the mask is evaluated again for each payload, which dominates the cost of encoding.</p>
+ *
+ * <p>Templates are immutable and may be used concurrently.</p>
+ */
+public final class QrTemplate
+{
+  @Nonnull
+  private final char[] _pattern;
+  @Nonnull
+  private final int[] _fieldPositions;
+  @Nonnull
+  private final Mode _mode;
+  private final int _mask;
+  @Nonnull
+  private final QrCode _base;
+  @Nonnull
+  private final byte[] _baseData;
+  private final int _baseNumChars;
+  @Nonnull
+  private final BlockLayout _layout;
+  // The error correction codewords of a unit change to a data codeword, indexed by the distance of the
+  // codeword from the end of its block
+  @Nonnull
+  private final byte[][] _unitRemainders;
+  // The range of data codewords that may differ between payloads
+  private final int _firstVariableCodeword;
+  private final int _lastVariableCodeword;
+
+  private QrTemplate( @Nonnull final char[] pattern,
+                      @Nonnull final int[] fieldPositions,
+                      @Nonnull final Mode mode,
+                      @Nonnull final Ecc ecl,
+                      final int mask )
+  {
+    _pattern = pattern;
+    _fieldPositions = fieldPositions;
+    _mode = mode;
+    _mask = mask;
+
+    // Every field is filled with '0' in the base symbol, as it can be encoded in every supported mode
+    final char[] chars = pattern.clone();
+    for ( final int position : fieldPositions )
+    {
+      chars[ position ] = '0';
+    }
+    final List<QrSegment> segments = Collections.singletonList( makeSegment( new String( chars ) ) );
+    _baseNumChars = segments.get( 0 ).getNumChars();
+    _base = QrCodeTool.encodeSegments( segments, ecl, QrCodeTool.MIN_VERSION, QrCodeTool.MAX_VERSION, mask, true );
+    final int version = _base.getVersion();
+    _baseData = QrCodeTool.toDataCodewords( segments, version, _base.getErrorCorrectionLevel() );
+    _layout = BlockLayout.get( version, _base.getErrorCorrectionLevel() );
+    _unitRemainders =
+      ReedSolomonGenerator
+        .forDegree( _layout.getBlockEccLen() )
+        .computeUnitRemainders( _layout.getBlockDataLen( _layout.getNumBlocks() - 1 ) );
+
+    // Determine the data codewords that hold the bits of the fields
+    final int headerBits = 4 + mode.numCharCountBits( version );
+    int first = Integer.MAX_VALUE;
+    int last = -1;
+    for ( final int position : fieldPositions )
+    {
+      final int startBit;
+      final int bitCount;
+      if ( Mode.NUMERIC == mode )
+      {
+        final int group = position / 3;
+        final int remaining = pattern.length - group * 3;
+        startBit = headerBits + group * 10;
+        bitCount = remaining >= 3 ? 10 : remaining * 3 + 1;
+      }
+      else if ( Mode.ALPHANUMERIC == mode )
+      {
+        final int group = position / 2;
+        startBit = headerBits + group * 11;
+        bitCount = pattern.length - group * 2 >= 2 ? 11 : 6;
+      }
+      else
+      {
+        // The offset is measured in the base payload as the placeholder may not be encoded as a single byte
+        startBit = headerBits + new String( chars, 0, position ).getBytes( StandardCharsets.UTF_8 ).length * 8;
+        bitCount = 8;
+      }
+      first = Math.min( first, startBit / 8 );
+      last = Math.max( last, ( startBit + bitCount - 1 ) / 8 );
+    }
+    _firstVariableCodeword = first;
+    _lastVariableCodeword = last;
+  }
+
+  /**
+   * Compile a template where the payload is encoded in byte mode and the mask is selected for every payload.
+   *
+   * @param pattern     the payload with every variable character replaced by the placeholder character
+   * @param placeholder the character that marks the variable characters of the payload
+   * @param ecl         the error correction level to use (may be boosted)
+   * @return the template
+   * @see #compile(String, char, Mode, Ecc, int)
+   */
+  @Nonnull
+  public static QrTemplate compile( @Nonnull final String pattern, final char placeholder, @Nonnull final Ecc ecl )
+  {
+    return compile( pattern, placeholder, Mode.BYTE, ecl, QrCodeTool.AUTO_MASK );
+  }
+
+  /**
+   * Compile a template. The values of the variable characters must be encodable in the specified mode
+   * and in byte mode they must be ASCII characters so that the encoded length of the payload is fixed.
+   *
+   * @param pattern     the payload with every variable character replaced by the placeholder character
+   * @param placeholder the character that marks the variable characters of the payload
+   * @param mode        the mode used to encode the payload, which must be NUMERIC, ALPHANUMERIC or BYTE
+   * @param ecl         the error correction level to use (may be boosted)
+   * @param mask        the mask pattern to use, which is either -1 for automatic choice for each payload or
+   *                    from 0 to 7 for fixed choice. A fixed mask is significantly faster.
+   * @return the template
+   */
+  @Nonnull
+  public static QrTemplate compile( @Nonnull final String pattern,
+                                    final char placeholder,
+                                    @Nonnull final Mode mode,
+                                    @Nonnull final Ecc ecl,
+                                    final int mask )
+  {
+    Objects.requireNonNull( pattern );
+    Objects.requireNonNull( mode );
+    Objects.requireNonNull( ecl );
+    if ( BrainCheckConfig.checkApiInvariants() )
+    {
+      apiInvariant( () -> Mode.NUMERIC == mode || Mode.ALPHANUMERIC == mode || Mode.BYTE == mode,
+                    () -> "Mode " + mode + " is not supported by templates." );
+      apiInvariant( () -> QrCodeTool.isMaskValid( mask ) || QrCodeTool.AUTO_MASK == mask,
+                    () -> "Mask " + mask + " is out of range." );
+    }
+    final char[] chars = pattern.toCharArray();
+    int count = 0;
+    for ( final char ch : chars )
+    {
+      if ( placeholder == ch )
+      {
+        count++;
+      }
+    }
+    final int[] fieldPositions = new int[ count ];
+    for ( int i = 0, j = 0; i < chars.length; i++ )
+    {
+      if ( placeholder == chars[ i ] )
+      {
+        fieldPositions[ j++ ] = i;
+      }
+    }
+    return new QrTemplate( chars, fieldPositions, mode, ecl, mask );
+  }
+
+  /**
+   * Return the number of variable characters in the template.
+   *
+   * @return the number of variable characters in the template.
+   */
+  public int getFieldLength()
+  {
+    return _fieldPositions.length;
+  }
+
+  /**
+   * Return the version of every symbol produced by the template.
+   *
+   * @return the version of every symbol produced by the template.
+   */
+  public int getVersion()
+  {
+    return _base.getVersion();
+  }
+
+  /**
+   * Return the error correction level of every symbol produced by the template.
+   *
+   * @return the error correction level of every symbol produced by the template.
+   */
+  @Nonnull
+  public Ecc getErrorCorrectionLevel()
+  {
+    return _base.getErrorCorrectionLevel();
+  }
+
+  /**
+   * Return the symbol for the payload produced by replacing the variable characters of the template, in order,
+   * with the characters of the specified value.
+   *
+   * @param values the characters of the variable fields, which must have the length {@link #getFieldLength()}
+   * @return the symbol
+   * @throws IllegalArgumentException if the values have the wrong length or, in byte mode, are not ASCII characters
+   */
+  @Nonnull
+  public QrCode encode( @Nonnull final String values )
+  {
+    Objects.requireNonNull( values );
+    // The checks are not invariants as values that change the length of the payload would otherwise silently
+    // produce a symbol that does not hold the payload
+    if ( values.length() != _fieldPositions.length )
+    {
+      throw new IllegalArgumentException( "Template expects " + _fieldPositions.length +
+                                          " characters but was passed " + values.length() + " characters." );
+    }
+    final char[] chars = _pattern.clone();
+    for ( int i = 0; i < _fieldPositions.length; i++ )
+    {
+      chars[ _fieldPositions[ i ] ] = values.charAt( i );
+    }
+    final QrSegment segment = makeSegment( new String( chars ) );
+    if ( segment.getNumChars() != _baseNumChars )
+    {
+      throw new IllegalArgumentException( "Template values must be ASCII characters when using byte mode." );
+    }
+    final byte[] data =
+      QrCodeTool.toDataCodewords( Collections.singletonList( segment ), getVersion(), getErrorCorrectionLevel() );
+
+    // Calculate the change to the data and error correction codewords in interleaved order
+    final byte[] delta = new byte[ _layout.getNumRawCodewords() ];
+    final int eccLength = _layout.getBlockEccLen();
+    for ( int i = _firstVariableCodeword; i <= _lastVariableCodeword; i++ )
+    {
+      final int change = ( data[ i ] ^ _baseData[ i ] ) & 0xFF;
+      if ( 0 != change )
+      {
+        delta[ _layout.getDataPosition( i ) ] = (byte) change;
+        final int block = _layout.getBlock( i );
+        final int distance = _layout.getBlockDataOffset( block ) + _layout.getBlockDataLen( block ) - 1 - i;
+        final byte[] remainder = _unitRemainders[ distance ];
+        for ( int j = 0; j < eccLength; j++ )
+        {
+          delta[ _layout.getEccPosition( block, j ) ] ^=
+            (byte) ReedSolomonGenerator.multiply( change, remainder[ j ] & 0xFF );
+        }
+      }
+    }
+    return new QrCode( _base, delta, _mask );
+  }
+
+  @Nonnull
+  private QrSegment makeSegment( @Nonnull final String text )
+  {
+    if ( Mode.NUMERIC == _mode )
+    {
+      return QrCodeTool.makeNumericSegment( text );
+    }
+    else if ( Mode.ALPHANUMERIC == _mode )
+    {
+      return QrCodeTool.makeAlphanumericSegment( text );
+    }
+    else
+    {
+      return QrCodeTool.makeBytesSegment( text.getBytes( StandardCharsets.UTF_8 ) );
+    }
+  }
+}
@@ -0,0 +1,230 @@
+package org.realityforge.gwt.qr_code;
+
+import java.util.Arrays;
+import javax.annotation.Nonnull;
+import org.realityforge.braincheck.BrainCheckConfig;
+import static org.realityforge.braincheck.Guards.*;
+
+/**
+ * Renders the modules of a symbol into caller supplied pixel buffers.
+ * ARGB and grayscale rows are filled with the background and then each run of dark modules is filled with
+ * the foreground, so there is no work per module. For 1-bit pixels each row of modules is packed into bits
+ * and expanded into pixels using lookup tables so there is no branch per pixel. Each scaled row is only
+ * rendered once and is then copied for the remaining pixel rows of the module row.
+ */
+final class RasterRenderer
+{
+  // The largest scale for which the expansion table is computed in advance
+  private static final int MAX_CACHED_SCALE = 8;
+  // Tables that expand a byte of 8 packed modules into the 8 * scale packed pixels, indexed by scale
+  private static final byte[][] EXPANSIONS = new byte[ MAX_CACHED_SCALE + 1 ][];
+
+  static
+  {
+    for ( int scale = 1; scale <= MAX_CACHED_SCALE; scale++ )
+    {
+      EXPANSIONS[ scale ] = createExpansion( scale );
+    }
+  }
+
+  private RasterRenderer()
+  {
+  }
+
+  static void drawArgb( @Nonnull final QrCode qrCode,
+                        final int scale,
+                        final int border,
+                        final int foreground,
+                        final int background,
+                        @Nonnull final int[] pixels,
+                        final int offset,
+                        final int stride )
+  {
+    final int size = qrCode.getSize();
+    final int dimension = ( size + border * 2 ) * scale;
+    checkBuffer( size, scale, border, pixels.length, offset, stride, dimension );
+    final int[] runs = new int[ size + 1 ];
+    int row = offset;
+    for ( int y = -border; y < size + border; y++ )
+    {
+      Arrays.fill( pixels, row, row + dimension, background );
+      if ( y >= 0 && y < size )
+      {
+        final int count = qrCode.getRowRuns( y, runs );
+        for ( int i = 0; i < count; i++ )
+        {
+          final int start = row + ( runs[ i * 2 ] + border ) * scale;
+          Arrays.fill( pixels, start, start + runs[ i * 2 + 1 ] * scale, foreground );
+        }
+      }
+      repeatRow( pixels, row, stride, dimension, scale );
+      row += stride * scale;
+    }
+  }
+
+  static void drawGray( @Nonnull final QrCode qrCode,
+                        final int scale,
+                        final int border,
+                        final byte foreground,
+                        final byte background,
+                        @Nonnull final byte[] pixels,
+                        final int offset,
+                        final int stride )
+  {
+    final int size = qrCode.getSize();
+    final int dimension = ( size + border * 2 ) * scale;
+    checkBuffer( size, scale, border, pixels.length, offset, stride, dimension );
+    final int[] runs = new int[ size + 1 ];
+    int row = offset;
+    for ( int y = -border; y < size + border; y++ )
+    {
+      Arrays.fill( pixels, row, row + dimension, background );
+      if ( y >= 0 && y < size )
+      {
+        final int count = qrCode.getRowRuns( y, runs );
+        for ( int i = 0; i < count; i++ )
+        {
+          final int start = row + ( runs[ i * 2 ] + border ) * scale;
+          Arrays.fill( pixels, start, start + runs[ i * 2 + 1 ] * scale, foreground );
+        }
+      }
+      repeatRow( pixels, row, stride, dimension, scale );
+      row += stride * scale;
+    }
+  }
+
+  static void drawBits( @Nonnull final boolean[][] modules,
+                        final int scale,
+                        final int border,
+                        final int foreground,
+                        final int background,
+                        @Nonnull final byte[] pixels,
+                        final int offset,
+                        final int stride )
+  {
+    if ( BrainCheckConfig.checkApiInvariants() )
+    {
+      apiInvariant( () -> 0 == ( foreground & ~1 ) && 0 == ( background & ~1 ),
+                    () -> "Foreground and background must be 0 or 1" );
+    }
+    final int dimension = ( modules.length + border * 2 ) * scale;
+    final int rowLength = ( dimension + 7 ) / 8;
+    checkBuffer( modules.length, scale, border, pixels.length, offset, stride, rowLength );
+    final byte[] expansion = scale <= MAX_CACHED_SCALE ? EXPANSIONS[ scale ] : createExpansion( scale );
+    // The expansion sets bits for dark modules so flip the bits that differ from the requested values
+    final int change = -( foreground ^ background ) & 0xFF;
+    final int inversion = -background & 0xFF;
+    final byte[] packed = new byte[ getPackedLength( modules.length, border ) ];
+    int row = offset;
+    for ( int y = -border; y < modules.length + border; y++ )
+    {
+      packRow( modules, y, border, packed );
+      // Each byte of packed modules expands to exactly scale bytes of pixels. The bits beyond the
+      // width of the image expand from the padding bits of the packed row and are the background.
+      for ( int k = 0, start = 0; start < rowLength; k++, start += scale )
+      {
+        final int source = ( packed[ k ] & 0xFF ) * scale;
+        final int count = Math.min( scale, rowLength - start );
+        for ( int i = 0; i < count; i++ )
+        {
+          pixels[ row + start + i ] = (byte) ( ( expansion[ source + i ] & change ) ^ inversion );
+        }
+      }
+      repeatRow( pixels, row, stride, rowLength, scale );
+      row += stride * scale;
+    }
+  }
+
+  /**
+   * Fill a rectangle of pixels with a single value.
+   *
+   * @param pixels the buffer.
+   * @param start  the index of the top left pixel of the rectangle.
+   * @param stride the distance in the buffer between the first pixels of consecutive rows.
+   * @param width  the width of the rectangle.
+   * @param height the height of the rectangle.
+   * @param value  the value of the pixels.
+   */
+  static void fillArgb( @Nonnull final int[] pixels,
+                        final int start,
+                        final int stride,
+                        final int width,
+                        final int height,
+                        final int value )
+  {
+    Arrays.fill( pixels, start, start + width, value );
+    repeatRow( pixels, start, stride, width, height );
+  }
+
+  private static void checkBuffer( final int size,
+                                   final int scale,
+                                   final int border,
+                                   final int capacity,
+                                   final int offset,
+                                   final int stride,
+                                   final int rowLength )
+  {
+    if ( BrainCheckConfig.checkApiInvariants() )
+    {
+      apiInvariant( () -> scale > 0, () -> "Scale must be positive" );
+      apiInvariant( () -> border >= 0, () -> "Border must be non-negative" );
+      apiInvariant( () -> ( size + border * 2L ) * scale <= Integer.MAX_VALUE, () -> "Scale or border too large" );
+      apiInvariant( () -> stride >= rowLength, () -> "Stride " + stride + " is less than the row length " + rowLength );
+      final long rows = ( size + border * 2L ) * scale;
+      apiInvariant( () -> offset >= 0 && offset + ( rows - 1 ) * stride + rowLength <= capacity,
+                    () -> "Pixel buffer is too small to hold the image" );
+    }
+  }
+
+  private static int getPackedLength( final int size, final int border )
+  {
+    return ( size + border * 2 + 7 ) / 8;
+  }
+
+  // Pack the modules of row y, including the border modules, into bits where 1 is a dark module.
+  // The border rows and any padding bits are zero.
+  private static void packRow( @Nonnull final boolean[][] modules,
+                               final int y,
+                               final int border,
+                               @Nonnull final byte[] packed )
+  {
+    Arrays.fill( packed, (byte) 0 );
+    if ( y >= 0 && y < modules.length )
+    {
+      final boolean[] row = modules[ y ];
+      for ( int x = 0; x < row.length; x++ )
+      {
+        final int position = x + border;
+        packed[ position >>> 3 ] |= ( row[ x ] ? 1 : 0 ) << ( 7 - ( position & 7 ) );
+      }
+    }
+  }
+
+  // Copy the pixel row that starts at the specified index over the following count - 1 rows
+  private static void repeatRow( @Nonnull final Object pixels,
+                                 final int row,
+                                 final int stride,
+                                 final int length,
+                                 final int count )
+  {
+    for ( int i = 1; i < count; i++ )
+    {
+      System.arraycopy( pixels, row, pixels, row + i * stride, length );
+    }
+  }
+
+  @Nonnull
+  private static byte[] createExpansion( final int scale )
+  {
+    final byte[] expansion = new byte[ 256 * scale ];
+    for ( int value = 0; value < 256; value++ )
+    {
+      for ( int bit = 0; bit < 8 * scale; bit++ )
+      {
+        final int module = ( value >>> ( 7 - bit / scale ) ) & 1;
+        expansion[ value * scale + ( bit >>> 3 ) ] |= module << ( 7 - ( bit & 7 ) );
+      }
+    }
+    return expansion;
+  }
+}
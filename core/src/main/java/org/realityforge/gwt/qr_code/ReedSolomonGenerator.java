@@ -0,0 +1,258 @@
+package org.realityforge.gwt.qr_code;
+
+import java.util.Objects;
+import javax.annotation.Nonnull;
+import org.realityforge.braincheck.BrainCheckConfig;
+import static org.realityforge.braincheck.Guards.*;
+
+/**
+ * Computes the Reed-Solomon error correction codewords for a sequence of data codewords
+ * at a given degree. Objects are immutable, and the state only depends on the degree.
+ * This class exists because each data block in a QR Code shares the same the divisor polynomial.
+ */
+final class ReedSolomonGenerator
+{
+  // The powers of the generator element 0x02 of the field GF(2^8/0x11D), repeated so that the sum of two
+  // logarithms can be used as an index without reducing it modulo 255
+  private static final int[] EXP = new int[ 512 ];
+  // The logarithm to the base 0x02 of each non-zero field element
+  private static final int[] LOG = new int[ 256 ];
+  // Generators are immutable and only depend on the degree so they are shared between all symbols
+  private static final ReedSolomonGenerator[] GENERATORS = new ReedSolomonGenerator[ 256 ];
+
+  static
+  {
+    int value = 1;
+    for ( int i = 0; i < 255; i++ )
+    {
+      EXP[ i ] = value;
+      EXP[ i + 255 ] = value;
+      LOG[ value ] = i;
+      value = ( value << 1 ) ^ ( ( value >>> 7 ) * 0x11D );
+    }
+    if ( NativeImage.isBuildTime() )
+    {
+      // Create every generator used by a symbol so that they are stored in the image heap
+      for ( final byte[] degrees : QrCodeTool.ECC_CODEWORDS_PER_BLOCK )
+      {
+        for ( int version = QrCodeTool.MIN_VERSION; version <= QrCodeTool.MAX_VERSION; version++ )
+        {
+          forDegree( degrees[ version ] );
+        }
+      }
+    }
+  }
+  // Coefficients of the divisor polynomial, stored from highest to lowest power, excluding the leading term which
+  // is always 1. For example the polynomial x^3 + 255x^2 + 8x + 93 is stored as the uint8 array {255, 8, 93}.
+  private final byte[] _coefficients;
+  // The logarithm of each coefficient, or -1 for a zero coefficient, so that the division only requires table lookups
+  private final int[] _logCoefficients;
+
+  /**
+   * Return the Reed-Solomon ECC generator for the specified degree, creating it if it has not already been created.
+   *
+   * @param degree the divisor polynomial degree, which must be between 1 and 255
+   * @return the generator.
+   */
+  @Nonnull
+  static ReedSolomonGenerator forDegree( final int degree )
+  {
+    if ( BrainCheckConfig.checkApiInvariants() )
+    {
+      apiInvariant( () -> !( degree < 1 || degree > 255 ), () -> "Degree out of range" );
+    }
+    ReedSolomonGenerator generator = GENERATORS[ degree ];
+    if ( null == generator )
+    {
+      // A race between threads at worst creates the same generator twice
+      generator = new ReedSolomonGenerator( degree );
+      GENERATORS[ degree ] = generator;
+    }
+    return generator;
+  }
+
+  /**
+   * Creates a Reed-Solomon ECC generator for the specified degree. This could be implemented
+   * as a lookup table over all possible parameter values, instead of as an algorithm.
+   *
+   * @param degree the divisor polynomial degree, which must be between 1 and 255
+   * @throws IllegalArgumentException if degree &lt; 1 or degree > 255
+   */
+  ReedSolomonGenerator( final int degree )
+  {
+    if ( BrainCheckConfig.checkApiInvariants() )
+    {
+      apiInvariant( () -> !( degree < 1 || degree > 255 ), () -> "Degree out of range" );
+    }
+
+    // Start with the monomial x^0
+    _coefficients = new byte[ degree ];
+    _coefficients[ degree - 1 ] = 1;
+
+    // Compute the product polynomial (x - r^0) * (x - r^1) * (x - r^2) * ... * (x - r^{degree-1}),
+    // drop the highest term, and store the rest of the _coefficients in order of descending powers.
+    // Note that r = 0x02, which is a generator element of this field GF(2^8/0x11D).
+    int root = 1;
+    for ( int i = 0; i < degree; i++ )
+    {
+      // Multiply the current product by (x - r^i)
+      for ( int j = 0; j < _coefficients.length; j++ )
+      {
+        _coefficients[ j ] = (byte) multiply( _coefficients[ j ] & 0xFF, root );
+        if ( j + 1 < _coefficients.length )
+        {
+          _coefficients[ j ] ^= _coefficients[ j + 1 ];
+        }
+      }
+      root = multiply( root, 0x02 );
+    }
+    _logCoefficients = new int[ degree ];
+    for ( int i = 0; i < degree; i++ )
+    {
+      final int coefficient = _coefficients[ i ] & 0xFF;
+      _logCoefficients[ i ] = 0 == coefficient ? -1 : LOG[ coefficient ];
+    }
+  }
+
+  /**
+   * Computes and returns the Reed-Solomon error correction codewords for the specified
+   * sequence of data codewords. The returned object is always a new byte array.
+   * This method does not alter this object's state (because it is immutable).
+   *
+   * @param data the sequence of data codewords
+   * @return the Reed-Solomon error correction codewords
+   * @throws NullPointerException if the data is {@code null}
+   */
+  @Nonnull
+  byte[] getRemainder( @Nonnull final byte[] data )
+  {
+    final int[] remainder = new int[ _logCoefficients.length ];
+    for ( final byte codeword : Objects.requireNonNull( data ) )
+    {
+      divide( remainder, codeword & 0xFF );
+    }
+    final byte[] result = new byte[ remainder.length ];
+    for ( int i = 0; i < remainder.length; i++ )
+    {
+      result[ i ] = (byte) remainder[ i ];
+    }
+    return result;
+  }
+
+  /**
+   * Performs a single step of the polynomial division, dividing the remainder of the preceding data codewords
+   * with the next data codeword appended by the divisor. The remainder is held in an int register, which avoids
+   * narrowing every intermediate value to a byte and moving the register with an array copy.
+   *
+   * @param remainder the remainder of the preceding data codewords, which is updated in place, and whose length
+   *                  must equal the degree
+   * @param codeword  the next data codeword, as an unsigned 8-bit integer
+   */
+  void divide( @Nonnull final int[] remainder, final int codeword )
+  {
+    if ( BrainCheckConfig.checkInvariants() )
+    {
+      invariant( () -> remainder.length == _logCoefficients.length, () -> "Remainder length does not match degree" );
+    }
+    final int degree = _logCoefficients.length;
+    final int factor = codeword ^ remainder[ 0 ];
+    if ( 0 == factor )
+    {
+      for ( int i = 0; i < degree - 1; i++ )
+      {
+        remainder[ i ] = remainder[ i + 1 ];
+      }
+      remainder[ degree - 1 ] = 0;
+    }
+    else
+    {
+      final int logFactor = LOG[ factor ];
+      for ( int i = 0; i < degree; i++ )
+      {
+        final int logCoefficient = _logCoefficients[ i ];
+        final int next = i + 1 < degree ? remainder[ i + 1 ] : 0;
+        remainder[ i ] = next ^ ( logCoefficient < 0 ? 0 : EXP[ logCoefficient + logFactor ] );
+      }
+    }
+  }
+
+  /**
+   * Return the number of error correction codewords produced by this generator.
+   *
+   * @return the degree of the divisor polynomial.
+   */
+  int getDegree()
+  {
+    return _coefficients.length;
+  }
+
+  /**
+   * Return the coefficient of the divisor polynomial at the specified index, excluding the leading term,
+   * in order of descending powers.
+   *
+   * @param index the index of the coefficient.
+   * @return the coefficient as an unsigned 8-bit integer.
+   */
+  int getCoefficient( final int index )
+  {
+    return _coefficients[ index ] & 0xFF;
+  }
+
+  /**
+   * Computes the error correction codewords of every data sequence that consists of a single codeword
+   * with the value 1 followed by between 0 and count&minus;1 zero codewords. As the remainder is linear,
+   * the change in the error correction codewords caused by changing a single data codeword by a value
+   * is the product of that value and the entry for the distance of the codeword from the end of its block.
+   * Each entry is derived from the previous entry by a single step of the polynomial division.
+   *
+   * @param count the number of entries to compute
+   * @return the error correction codewords indexed by the number of trailing zero codewords
+   */
+  @Nonnull
+  byte[][] computeUnitRemainders( final int count )
+  {
+    final int degree = _coefficients.length;
+    final byte[][] results = new byte[ count ][];
+    final byte[] result = new byte[ degree ];
+    for ( int k = 0; k < count; k++ )
+    {
+      // Divide by one more codeword, which is 1 for the leading codeword and 0 for every later codeword
+      final int factor = ( ( 0 == k ? 1 : 0 ) ^ result[ 0 ] ) & 0xFF;
+      System.arraycopy( result, 1, result, 0, degree - 1 );
+      result[ degree - 1 ] = 0;
+      for ( int i = 0; i < degree; i++ )
+      {
+        result[ i ] ^= multiply( _coefficients[ i ] & 0xFF, factor );
+      }
+      results[ k ] = result.clone();
+    }
+    return results;
+  }
+
+  // Returns the generator element 0x02 raised to the specified non-negative power in GF(2^8/0x11D).
+  static int power( final int exponent )
+  {
+    return EXP[ exponent % 255 ];
+  }
+
+  // Returns the multiplicative inverse of the specified non-zero field element in GF(2^8/0x11D).
+  static int inverse( final int x )
+  {
+    if ( BrainCheckConfig.checkApiInvariants() )
+    {
+      apiInvariant( () -> x > 0 && x <= 0xFF, () -> "Element out of range" );
+    }
+    return EXP[ 255 - LOG[ x ] ];
+  }
+
+  // Returns the product of the two given field elements modulo GF(2^8/0x11D). The arguments and result
+  // are unsigned 8-bit integers. The product is the power of the sum of the logarithms of the arguments.
+  static int multiply( final int x, final int y )
+  {
+    if ( BrainCheckConfig.checkApiInvariants() )
+    {
+      apiInvariant( () -> !( x >>> 8 != 0 || y >>> 8 != 0 ), () -> "Byte out of range" );
+    }
+    return 0 == x || 0 == y ? 0 : EXP[ LOG[ x ] + LOG[ y ] ];
+  }
+}
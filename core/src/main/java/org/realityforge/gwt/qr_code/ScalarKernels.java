@@ -0,0 +1,154 @@
+package org.realityforge.gwt.qr_code;
+
+import javax.annotation.Nonnull;
+
+/**
+ * The reference implementation of the kernels, which only uses 32-bit scalar arithmetic so that it is equally
+ * suited to the JVM and to javascript.
+ */
+final class ScalarKernels
+  implements Kernels
+{
+  static final ScalarKernels INSTANCE = new ScalarKernels();
+
+  private ScalarKernels()
+  {
+  }
+
+  @Override
+  public int applyMask( @Nonnull final int[] modules, @Nonnull final int[] pattern, @Nonnull final int[] masked )
+  {
+    int black = 0;
+    for ( int i = 0; i < modules.length; i++ )
+    {
+      masked[ i ] = modules[ i ] ^ pattern[ i ];
+      black += Integer.bitCount( masked[ i ] );
+    }
+    return black;
+  }
+
+  @Override
+  public int getLinePenalty( @Nonnull final int[] grid, @Nonnull final MaskPatterns patterns )
+  {
+    final int size = patterns.getSize();
+    final int words = patterns.getWords();
+    int result = 0;
+    for ( int w = 0; w < words; w++ )
+    {
+      final int valid = w == words - 1 ? patterns.getLastWordMask() : -1;
+      int previous = grid[ w ];
+      // The lanes in which each of the last four pairs of adjacent modules have the same color
+      int same1 = 0;
+      int same2 = 0;
+      int same3 = 0;
+      // The lanes in which the five modules ending at the previous line have the same color
+      int previousRun = 0;
+      for ( int i = 1; i < size; i++ )
+      {
+        final int current = grid[ i * words + w ];
+        final int same = ~( previous ^ current );
+        // A run of n >= 5 modules contains n - 4 windows of five modules so counting every window
+        // and then adding two for the first window of each run yields the penalty of 3 + (n - 5). The
+        // registers of the first lines are clear so no window is counted until five lines have been read.
+        final int run = same & same1 & same2 & same3 & valid;
+        result += Integer.bitCount( run ) +
+                  ( MaskEvaluator.PENALTY_N1 - 1 ) * Integer.bitCount( run & ~previousRun );
+        previousRun = run;
+        same3 = same2;
+        same2 = same1;
+        same1 = same;
+        previous = current;
+      }
+
+      // Finder-like patterns of 1:1:3:1:1 with four light modules before or after
+      for ( int line = 10 * words + w; line < size * words; line += words )
+      {
+        result += MaskEvaluator.PENALTY_N3 * Integer.bitCount( getFinderLikePatterns( grid, line, words ) & valid );
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public int getBlockPenalty( @Nonnull final int[] grid, @Nonnull final MaskPatterns patterns )
+  {
+    final int size = patterns.getSize();
+    final int words = patterns.getWords();
+    int result = 0;
+    for ( int y = 0; y < size - 1; y++ )
+    {
+      final int top = y * words;
+      final int bottom = top + words;
+      for ( int w = 0; w < words; w++ )
+      {
+        final int same = ~( grid[ top + w ] ^ grid[ bottom + w ] );
+        // Shift the next module in the row into the bit of each module, carrying across words
+        final boolean last = w == words - 1;
+        final int nextTop = ( grid[ top + w ] >>> 1 ) | ( last ? 0 : grid[ top + w + 1 ] << 31 );
+        final int nextSame = ( same >>> 1 ) | ( last ? 0 : ~( grid[ top + w + 1 ] ^ grid[ bottom + w + 1 ] ) << 31 );
+        // The block starting at the last module in the row is not a block
+        final int valid = last ? patterns.getLastWordMask() >>> 1 : -1;
+        result += MaskEvaluator.PENALTY_N2 *
+                  Integer.bitCount( same & nextSame & ~( grid[ top + w ] ^ nextTop ) & valid );
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public void divide( @Nonnull final ReedSolomonGenerator generator,
+                      @Nonnull final byte[] codewords,
+                      final int dataOffset,
+                      final int steps,
+                      final int eccOffset,
+                      final int stride,
+                      final int startBlock,
+                      final int endBlock )
+  {
+    final int degree = generator.getDegree();
+    final int[] remainder = new int[ degree ];
+    for ( int block = startBlock; block < endBlock; block++ )
+    {
+      for ( int i = 0; i < degree; i++ )
+      {
+        remainder[ i ] = codewords[ eccOffset + i * stride + block ] & 0xFF;
+      }
+      for ( int k = 0; k < steps; k++ )
+      {
+        generator.divide( remainder, codewords[ dataOffset + k * stride + block ] & 0xFF );
+      }
+      for ( int i = 0; i < degree; i++ )
+      {
+        codewords[ eccOffset + i * stride + block ] = (byte) remainder[ i ];
+      }
+    }
+  }
+
+  /**
+   * Return the lanes in which the eleven modules ending at the specified word of the packed grid form the
+   * finder-like pattern 1:1:3:1:1 with four light modules either before or after. The two patterns can not
+   * match at the same position so both are returned together.
+   *
+   * @param grid  the packed modules.
+   * @param index the index of the word, which must be at least ten lines into the grid.
+   * @param words the number of words in each line.
+   * @return the lanes that match.
+   */
+  static int getFinderLikePatterns( @Nonnull final int[] grid, final int index, final int words )
+  {
+    final int m0 = grid[ index ];
+    final int m1 = grid[ index - words ];
+    final int m2 = grid[ index - 2 * words ];
+    final int m3 = grid[ index - 3 * words ];
+    final int m4 = grid[ index - 4 * words ];
+    final int m5 = grid[ index - 5 * words ];
+    final int m6 = grid[ index - 6 * words ];
+    final int m7 = grid[ index - 7 * words ];
+    final int m8 = grid[ index - 8 * words ];
+    final int m9 = grid[ index - 9 * words ];
+    final int m10 = grid[ index - 10 * words ];
+    final int before = ~( m10 | m9 | m8 | m7 ) & m6 & ~m5 & m4 & m3 & m2 & ~m1 & m0;
+    final int after = m10 & ~m9 & m8 & m7 & m6 & ~m5 & m4 & ~( m3 | m2 | m1 | m0 );
+    return before | after;
+  }
+}
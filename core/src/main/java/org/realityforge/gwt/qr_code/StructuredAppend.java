@@ -0,0 +1,364 @@
+package org.realityforge.gwt.qr_code;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.realityforge.braincheck.BrainCheckConfig;
+import static org.realityforge.braincheck.Guards.*;
+
+/**
+ * A plan that splits a message across a sequence of QR Code symbols using the Structured Append mode.
+ * Every symbol starts with a header that identifies its position in the sequence, the number of symbols
+ * in the sequence and a parity byte calculated from the complete message. A reader that supports
+ * Structured Append reassembles the message regardless of the order in which the symbols are scanned.
+ *
+ * <p>The message is split into the smallest number of symbols that fit within the maximum version and the
+ * parts are balanced so that every symbol shares the same, smallest possible, version. A message that fits in
+ * a single symbol is planned as one plain symbol without a Structured Append header. Each symbol can be
+ * encoded independently via {@link #encode(int)} so the symbols may be encoded concurrently.</p>
+ */
+public final class StructuredAppend
+{
+  /**
+   * The maximum number of symbols in a Structured Append sequence.
+   */
+  public static final int MAX_SYMBOLS = 16;
+  /**
+   * The maximum version of the symbols when no maximum version is specified. Symbols of version 10, which are
+   * 57 modules wide, hold up to 271 bytes at the low error correction level and are readily scanned by phone
+   * cameras. A message that does not fit in 16 symbols of this version is split into the smallest number of
+   * symbols of any version.
+   */
+  public static final int DEFAULT_MAX_VERSION = 10;
+  @Nonnull
+  private final Ecc _ecl;
+  private final int _version;
+  private final int _parity;
+  @Nonnull
+  private final List<List<QrSegment>> _parts;
+
+  private StructuredAppend( @Nonnull final Ecc ecl,
+                            final int version,
+                            final int parity,
+                            @Nonnull final List<List<QrSegment>> parts )
+  {
+    _ecl = Objects.requireNonNull( ecl );
+    _version = version;
+    _parity = parity;
+    _parts = Collections.unmodifiableList( parts );
+  }
+
+  /**
+   * Returns a Structured Append plan for the specified Unicode text using symbols of at most
+   * {@link #DEFAULT_MAX_VERSION}, or of any version if the text does not fit in 16 such symbols.
+   *
+   * @param text the text to be encoded, which can be any Unicode string
+   * @param ecl  the error correction level to use (may be boosted)
+   * @return the plan.
+   * @throws IllegalArgumentException if the text does not fit in 16 symbols
+   * @see #planText(String, Ecc, int)
+   */
+  @Nonnull
+  public static StructuredAppend planText( @Nonnull final String text, @Nonnull final Ecc ecl )
+  {
+    final StructuredAppend plan = tryPlanText( text, ecl, DEFAULT_MAX_VERSION );
+    return null != plan ? plan : planText( text, ecl, QrCodeTool.MAX_VERSION );
+  }
+
+  /**
+   * Returns a Structured Append plan for the specified Unicode text. The text is split into the smallest
+   * number of symbols of at most the specified version. Each part is encoded using the most efficient
+   * segment mode for that part and parts are never split within a character.
+   *
+   * @param text       the text to be encoded, which can be any Unicode string
+   * @param ecl        the error correction level to use (may be boosted)
+   * @param maxVersion the maximum allowed version of the symbols (at most 40)
+   * @return the plan.
+   * @throws IllegalArgumentException if the text does not fit in 16 symbols of the maximum version
+   */
+  @Nonnull
+  public static StructuredAppend planText( @Nonnull final String text, @Nonnull final Ecc ecl, final int maxVersion )
+  {
+    final StructuredAppend plan = tryPlanText( text, ecl, maxVersion );
+    if ( null == plan )
+    {
+      throw new IllegalArgumentException( "Text does not fit in " + MAX_SYMBOLS + " symbols of version " +
+                                          maxVersion );
+    }
+    return plan;
+  }
+
+  // Return the plan for the text with the smallest number of symbols of at most the maximum version,
+  // or null if the text does not fit in 16 symbols of the maximum version
+  @Nullable
+  private static StructuredAppend tryPlanText( @Nonnull final String text,
+                                               @Nonnull final Ecc ecl,
+                                               final int maxVersion )
+  {
+    Objects.requireNonNull( text );
+    final byte[] bytes = text.getBytes( StandardCharsets.UTF_8 );
+    final int parity = computeParity( bytes );
+    for ( int count = 1; count <= MAX_SYMBOLS; count++ )
+    {
+      final List<String> values = splitText( text, bytes.length, count );
+      if ( null != values )
+      {
+        final List<List<QrSegment>> parts = new ArrayList<>( count );
+        for ( int i = 0; i < count; i++ )
+        {
+          final List<QrSegment> segments = QrCodeTool.makeSegments( values.get( i ) );
+          if ( count > 1 )
+          {
+            segments.add( 0, QrCodeTool.makeStructuredAppendSegment( i, count, parity ) );
+          }
+          parts.add( segments );
+        }
+        final StructuredAppend plan = createPlan( ecl, maxVersion, parity, parts );
+        if ( null != plan )
+        {
+          return plan;
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns a Structured Append plan for the specified binary data using symbols of at most
+   * {@link #DEFAULT_MAX_VERSION}, or of any version if the data does not fit in 16 such symbols.
+   *
+   * @param data the binary data to encode
+   * @param ecl  the error correction level to use (may be boosted)
+   * @return the plan.
+   * @throws IllegalArgumentException if the data does not fit in 16 symbols
+   * @see #planBinary(byte[], Ecc, int)
+   */
+  @Nonnull
+  public static StructuredAppend planBinary( @Nonnull final byte[] data, @Nonnull final Ecc ecl )
+  {
+    final StructuredAppend plan = tryPlanBinary( data, ecl, DEFAULT_MAX_VERSION );
+    return null != plan ? plan : planBinary( data, ecl, QrCodeTool.MAX_VERSION );
+  }
+
+  /**
+   * Returns a Structured Append plan for the specified binary data. The data is split into the smallest
+   * number of symbols of at most the specified version and each part is encoded in byte mode.
+   *
+   * @param data       the binary data to encode
+   * @param ecl        the error correction level to use (may be boosted)
+   * @param maxVersion the maximum allowed version of the symbols (at most 40)
+   * @return the plan.
+   * @throws IllegalArgumentException if the data does not fit in 16 symbols of the maximum version
+   */
+  @Nonnull
+  public static StructuredAppend planBinary( @Nonnull final byte[] data, @Nonnull final Ecc ecl, final int maxVersion )
+  {
+    final StructuredAppend plan = tryPlanBinary( data, ecl, maxVersion );
+    if ( null == plan )
+    {
+      throw new IllegalArgumentException( "Data does not fit in " + MAX_SYMBOLS + " symbols of version " +
+                                          maxVersion );
+    }
+    return plan;
+  }
+
+  // Return the plan for the data with the smallest number of symbols of at most the maximum version,
+  // or null if the data does not fit in 16 symbols of the maximum version
+  @Nullable
+  private static StructuredAppend tryPlanBinary( @Nonnull final byte[] data,
+                                                 @Nonnull final Ecc ecl,
+                                                 final int maxVersion )
+  {
+    Objects.requireNonNull( data );
+    final int parity = computeParity( data );
+    for ( int count = 1; count <= MAX_SYMBOLS && ( count == 1 || count <= data.length ); count++ )
+    {
+      final List<List<QrSegment>> parts = new ArrayList<>( count );
+      for ( int i = 0; i < count; i++ )
+      {
+        final int start = (int) ( (long) data.length * i / count );
+        final int end = (int) ( (long) data.length * ( i + 1 ) / count );
+        final byte[] part = Arrays.copyOfRange( data, start, end );
+        final List<QrSegment> segments = new ArrayList<>( 2 );
+        if ( count > 1 )
+        {
+          segments.add( QrCodeTool.makeStructuredAppendSegment( i, count, parity ) );
+        }
+        segments.add( QrCodeTool.makeBytesSegment( part ) );
+        parts.add( segments );
+      }
+      final StructuredAppend plan = createPlan( ecl, maxVersion, parity, parts );
+      if ( null != plan )
+      {
+        return plan;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Return the parity byte for the specified message, which is the exclusive or of every byte.
+   *
+   * @param data the message.
+   * @return the parity byte.
+   */
+  public static int computeParity( @Nonnull final byte[] data )
+  {
+    int parity = 0;
+    for ( final byte b : data )
+    {
+      parity ^= b;
+    }
+    return parity & 0xFF;
+  }
+
+  /**
+   * Return the number of symbols in the sequence.
+   *
+   * @return the number of symbols in the sequence.
+   */
+  public int getSymbolCount()
+  {
+    return _parts.size();
+  }
+
+  /**
+   * Return the version shared by every symbol in the sequence.
+   *
+   * @return the version shared by every symbol in the sequence.
+   */
+  public int getVersion()
+  {
+    return _version;
+  }
+
+  /**
+   * Return the minimum error correction level of the symbols in the sequence.
+   * Individual symbols may have a higher level if it can be achieved without increasing the version.
+   *
+   * @return the minimum error correction level of the symbols in the sequence.
+   */
+  @Nonnull
+  public Ecc getErrorCorrectionLevel()
+  {
+    return _ecl;
+  }
+
+  /**
+   * Return the parity byte of the message.
+   *
+   * @return the parity byte of the message.
+   */
+  public int getParity()
+  {
+    return _parity;
+  }
+
+  /**
+   * Return the segments of the symbol at the specified position, starting with the Structured Append header
+   * unless the plan has a single symbol.
+   *
+   * @param index the zero-based position of the symbol in the sequence.
+   * @return the segments of the symbol.
+   */
+  @Nonnull
+  public List<QrSegment> getSegments( final int index )
+  {
+    return Collections.unmodifiableList( _parts.get( index ) );
+  }
+
+  /**
+   * Encode the symbol at the specified position in the sequence.
+   * This method may be invoked concurrently for different positions.
+   *
+   * @param index the zero-based position of the symbol in the sequence.
+   * @return the symbol.
+   */
+  @Nonnull
+  public QrCode encode( final int index )
+  {
+    if ( BrainCheckConfig.checkApiInvariants() )
+    {
+      apiInvariant( () -> index >= 0 && index < _parts.size(),
+                    () -> "Structured Append symbol index " + index + " is out of range." );
+    }
+    return QrCodeTool.encodeSegments( _parts.get( index ), _ecl, _version, _version, QrCodeTool.AUTO_MASK, true );
+  }
+
+  /**
+   * Encode every symbol in the sequence, in order.
+   *
+   * @return the symbols.
+   */
+  @Nonnull
+  public List<QrCode> encodeAll()
+  {
+    final int count = _parts.size();
+    final List<QrCode> symbols = new ArrayList<>( count );
+    for ( int i = 0; i < count; i++ )
+    {
+      symbols.add( encode( i ) );
+    }
+    return symbols;
+  }
+
+  // Return the plan if every part fits within the maximum version, otherwise null.
+  // Every symbol uses the largest of the minimum versions of the parts so the symbols are uniform.
+  @Nullable
+  private static StructuredAppend createPlan( @Nonnull final Ecc ecl,
+                                              final int maxVersion,
+                                              final int parity,
+                                              @Nonnull final List<List<QrSegment>> parts )
+  {
+    Objects.requireNonNull( ecl );
+    if ( BrainCheckConfig.checkApiInvariants() )
+    {
+      apiInvariant( () -> QrCodeTool.isVersionValid( maxVersion ),
+                    () -> "MaxVersion value specified '" + maxVersion + "' is out of range." );
+    }
+    int version = QrCodeTool.MIN_VERSION;
+    for ( final List<QrSegment> part : parts )
+    {
+      version = QrCodeTool.findMinimumVersion( part, ecl, version, maxVersion );
+      if ( -1 == version )
+      {
+        return null;
+      }
+    }
+    return new StructuredAppend( ecl, version, parity, parts );
+  }
+
+  // Split the text into the specified number of parts of approximately equal UTF-8 length without
+  // splitting a character. Returns null if the text is too short to produce the number of parts.
+  @Nullable
+  private static List<String> splitText( @Nonnull final String text, final int byteLength, final int count )
+  {
+    final List<String> parts = new ArrayList<>( count );
+    final int length = text.length();
+    int start = 0;
+    int bytes = 0;
+    int i = 0;
+    while ( i < length && parts.size() < count - 1 )
+    {
+      final char ch = text.charAt( i );
+      final boolean isPair = Character.isHighSurrogate( ch ) && i + 1 < length;
+      bytes += ch < 0x80 ? 1 : ch < 0x800 ? 2 : isPair ? 4 : 3;
+      i += isPair ? 2 : 1;
+      if ( bytes >= (long) byteLength * ( parts.size() + 1 ) / count )
+      {
+        parts.add( text.substring( start, i ) );
+        start = i;
+      }
+    }
+    if ( start < length || 1 == count )
+    {
+      parts.add( text.substring( start ) );
+    }
+    return count == parts.size() ? parts : null;
+  }
+}
@@ -0,0 +1,337 @@
+package org.realityforge.gwt.qr_code.bulk;
+
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.realityforge.braincheck.BrainCheckConfig;
+import static org.realityforge.braincheck.Guards.*;
+
+/**
+ * Generates results from a large sequence of payloads in parallel. A typical task encodes the payload and
+ * renders the resulting symbol. i.e.
+ *
+ * <pre>{@code
+ * final BulkGenerator generator = new BulkGenerator( BulkGenerator.newExecutor( 64 ), 1024, true );
+ * generator.run( payloads, p -> QrCodeTool.encodeText( p, Ecc.MEDIUM ).toSvgString( 4 ), listener );
+ * }</pre>
+ *
+ * <p>The payloads are pulled from the input lazily and at most {@code maxInFlight} items are submitted to the
+ * executor, or are waiting to be reported, at any one time. This bounds the memory used by a run regardless of
+ * the number of payloads. A failure to generate an item is reported to the listener and does not stop the run.
+ * When the generator is ordered, results are reported in the same order as the payloads were supplied.</p>
+ */
+public final class BulkGenerator
+{
+  @Nonnull
+  private final Executor _executor;
+  private final int _maxInFlight;
+  private final boolean _ordered;
+
+  /**
+   * Create a generator.
+   *
+   * @param executor    the executor used to generate items.
+   * @param maxInFlight the maximum number of items that are either being generated or waiting to be reported.
+   * @param ordered     true if results should be reported in the same order as the payloads were supplied.
+   */
+  public BulkGenerator( @Nonnull final Executor executor, final int maxInFlight, final boolean ordered )
+  {
+    if ( BrainCheckConfig.checkApiInvariants() )
+    {
+      apiInvariant( () -> maxInFlight > 0, () -> "MaxInFlight must be positive" );
+    }
+    _executor = Objects.requireNonNull( executor );
+    _maxInFlight = maxInFlight;
+    _ordered = ordered;
+  }
+
+  /**
+   * Create an executor suitable for use by a generator. An executor that creates a virtual thread per
+   * task is returned if the JVM supports virtual threads, otherwise a pool of the specified number of
+   * platform threads is returned. The caller is responsible for shutting down the executor.
+   *
+   * @param parallelism the number of platform threads to create if virtual threads are not supported.
+   * @return the executor.
+   */
+  @Nonnull
+  public static ExecutorService newExecutor( final int parallelism )
+  {
+    final ExecutorService executor = newVirtualThreadExecutor();
+    return null != executor ? executor : newPlatformExecutor( parallelism );
+  }
+
+  /**
+   * Create an executor backed by a fixed number of daemon platform threads.
+   * The caller is responsible for shutting down the executor.
+   *
+   * @param parallelism the number of threads.
+   * @return the executor.
+   */
+  @Nonnull
+  public static ExecutorService newPlatformExecutor( final int parallelism )
+  {
+    if ( BrainCheckConfig.checkApiInvariants() )
+    {
+      apiInvariant( () -> parallelism > 0, () -> "Parallelism must be positive" );
+    }
+    final AtomicInteger threadId = new AtomicInteger();
+    final ThreadFactory threadFactory = r -> {
+      final Thread thread = new Thread( r, "qr-bulk-" + threadId.incrementAndGet() );
+      thread.setDaemon( true );
+      return thread;
+    };
+    // The queue is unbounded but the generator never has more than maxInFlight tasks queued
+    return new ThreadPoolExecutor( parallelism,
+                                   parallelism,
+                                   0L,
+                                   TimeUnit.MILLISECONDS,
+                                   new LinkedBlockingQueue<>(),
+                                   threadFactory );
+  }
+
+  @Nullable
+  private static ExecutorService newVirtualThreadExecutor()
+  {
+    try
+    {
+      // Looked up reflectively as the library targets a JVM that predates virtual threads
+      return (ExecutorService) Executors.class.getMethod( "newVirtualThreadPerTaskExecutor" ).invoke( null );
+    }
+    catch ( final ReflectiveOperationException | RuntimeException e )
+    {
+      return null;
+    }
+  }
+
+  /**
+   * Generate a result for every payload in the stream.
+   *
+   * @param payloads the payloads.
+   * @param task     the function that generates a result from a payload.
+   * @param listener the listener notified of the outcome of each item.
+   * @param <P>      the type of the payload.
+   * @param <R>      the type of the result.
+   * @return the summary of the run.
+   * @throws InterruptedException if the calling thread is interrupted while waiting for capacity.
+   * @see #run(Iterator, Function, BulkListener)
+   */
+  @Nonnull
+  public <P, R> BulkSummary run( @Nonnull final Stream<P> payloads,
+                                 @Nonnull final Function<? super P, ? extends R> task,
+                                 @Nonnull final BulkListener<? super P, ? super R> listener )
+    throws InterruptedException
+  {
+    return run( payloads.iterator(), task, listener );
+  }
+
+  /**
+   * Generate a result for every payload supplied by the iterator. This method returns after the
+   * outcome of every item has been reported to the listener. If the listener throws an exception
+   * then no further payloads are submitted and the exception is rethrown once the items already
+   * submitted have completed.
+   *
+   * @param payloads the payloads.
+   * @param task     the function that generates a result from a payload.
+   * @param listener the listener notified of the outcome of each item.
+   * @param <P>      the type of the payload.
+   * @param <R>      the type of the result.
+   * @return the summary of the run.
+   * @throws InterruptedException if the calling thread is interrupted while waiting for capacity.
+   */
+  @Nonnull
+  public <P, R> BulkSummary run( @Nonnull final Iterator<P> payloads,
+                                 @Nonnull final Function<? super P, ? extends R> task,
+                                 @Nonnull final BulkListener<? super P, ? super R> listener )
+    throws InterruptedException
+  {
+    Objects.requireNonNull( payloads );
+    final long start = System.nanoTime();
+    final Run<P, R> run = new Run<>( Objects.requireNonNull( task ), Objects.requireNonNull( listener ) );
+    long index = 0;
+    try
+    {
+      while ( null == run._abortError && payloads.hasNext() )
+      {
+        final P payload = Objects.requireNonNull( payloads.next() );
+        run._permits.acquire();
+        final long itemIndex = index++;
+        try
+        {
+          _executor.execute( () -> run.process( itemIndex, payload ) );
+        }
+        catch ( final RejectedExecutionException e )
+        {
+          run._permits.release();
+          throw e;
+        }
+      }
+    }
+    finally
+    {
+      // Wait for every submitted item to be reported
+      run._permits.acquire( _maxInFlight );
+      run._permits.release( _maxInFlight );
+    }
+    final Throwable error = run._abortError;
+    if ( error instanceof RuntimeException )
+    {
+      throw (RuntimeException) error;
+    }
+    else if ( error instanceof Error )
+    {
+      throw (Error) error;
+    }
+    else if ( null != error )
+    {
+      throw new IllegalStateException( "Bulk generation aborted", error );
+    }
+    return new BulkSummary( run._completed, run._failed, System.nanoTime() - start );
+  }
+
+  /**
+   * The state of a single invocation of run.
+   * All fields other than the permits are guarded by the lock of the run.
+   */
+  private final class Run<P, R>
+  {
+    @Nonnull
+    private final Function<? super P, ? extends R> _task;
+    @Nonnull
+    private final BulkListener<? super P, ? super R> _listener;
+    @Nonnull
+    private final Semaphore _permits = new Semaphore( _maxInFlight );
+    // An explicit lock rather than a monitor, as a virtual thread that blocks in a listener while holding a
+    // monitor pins its carrier thread
+    @Nonnull
+    private final ReentrantLock _lock = new ReentrantLock();
+    // Ring buffers, indexed by item index modulo maxInFlight, holding items that completed before their
+    // predecessors. Only allocated when ordered. A slot can not be reused before it is reported as the
+    // permit for an item is only released after the item is reported.
+    @Nullable
+    private final Object[] _payloads;
+    @Nullable
+    private final Object[] _results;
+    @Nullable
+    private final Throwable[] _errors;
+    @Nullable
+    private final boolean[] _complete;
+    private long _nextIndex;
+    private long _completed;
+    private long _failed;
+    @Nullable
+    private volatile Throwable _abortError;
+
+    Run( @Nonnull final Function<? super P, ? extends R> task,
+         @Nonnull final BulkListener<? super P, ? super R> listener )
+    {
+      _task = task;
+      _listener = listener;
+      _payloads = _ordered ? new Object[ _maxInFlight ] : null;
+      _results = _ordered ? new Object[ _maxInFlight ] : null;
+      _errors = _ordered ? new Throwable[ _maxInFlight ] : null;
+      _complete = _ordered ? new boolean[ _maxInFlight ] : null;
+    }
+
+    void process( final long index, @Nonnull final P payload )
+    {
+      R result = null;
+      Throwable error = null;
+      try
+      {
+        result = Objects.requireNonNull( _task.apply( payload ), "Task returned null result" );
+      }
+      catch ( final Throwable t )
+      {
+        error = t;
+      }
+      _lock.lock();
+      try
+      {
+        if ( _ordered )
+        {
+          assert null != _payloads && null != _results && null != _errors && null != _complete;
+          final int slot = (int) ( index % _maxInFlight );
+          _payloads[ slot ] = payload;
+          _results[ slot ] = result;
+          _errors[ slot ] = error;
+          _complete[ slot ] = true;
+          int next = (int) ( _nextIndex % _maxInFlight );
+          while ( _complete[ next ] )
+          {
+            @SuppressWarnings( "unchecked" )
+            final P p = (P) _payloads[ next ];
+            @SuppressWarnings( "unchecked" )
+            final R r = (R) _results[ next ];
+            report( _nextIndex, p, r, _errors[ next ] );
+            _payloads[ next ] = null;
+            _results[ next ] = null;
+            _errors[ next ] = null;
+            _complete[ next ] = false;
+            _nextIndex++;
+            _permits.release();
+            next = (int) ( _nextIndex % _maxInFlight );
+          }
+        }
+        else
+        {
+          report( index, payload, result, error );
+          _permits.release();
+        }
+      }
+      finally
+      {
+        _lock.unlock();
+      }
+    }
+
+    private void report( final long index, @Nonnull final P payload, @Nullable final R result, @Nullable final Throwable error )
+    {
+      if ( error instanceof Error )
+      {
+        // Errors such as running out of memory are not considered per-item failures
+        abort( error );
+      }
+      try
+      {
+        if ( null != error )
+        {
+          _failed++;
+          _listener.onFailure( index, payload, error );
+        }
+        else
+        {
+          assert null != result;
+          _completed++;
+          _listener.onResult( index, payload, result );
+        }
+        _listener.onProgress( _completed, _failed );
+      }
+      catch ( final Throwable t )
+      {
+        abort( t );
+      }
+    }
+
+    private void abort( @Nonnull final Throwable error )
+    {
+      if ( null == _abortError )
+      {
+        _abortError = error;
+      }
+    }
+  }
+}
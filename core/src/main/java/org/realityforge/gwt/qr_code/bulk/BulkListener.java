@@ -0,0 +1,43 @@
+package org.realityforge.gwt.qr_code.bulk;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Receives the outcome of every item processed by a {@link BulkGenerator}.
+ * The generator never invokes the methods of a listener concurrently, so implementations need not be
+ * thread-safe, but they should return quickly as the generator does not complete other items while
+ * a listener method is executing.
+ *
+ * @param <P> the type of the payload.
+ * @param <R> the type of the result generated from a payload.
+ */
+public interface BulkListener<P, R>
+{
+  /**
+   * Invoked when an item has been successfully generated.
+   *
+   * @param index   the zero-based position of the payload in the input sequence.
+   * @param payload the payload.
+   * @param result  the result generated from the payload.
+   */
+  void onResult( long index, @Nonnull P payload, @Nonnull R result );
+
+  /**
+   * Invoked when generating an item failed. The failure does not stop the run.
+   *
+   * @param index   the zero-based position of the payload in the input sequence.
+   * @param payload the payload.
+   * @param error   the error raised while generating the item.
+   */
+  void onFailure( long index, @Nonnull P payload, @Nonnull Throwable error );
+
+  /**
+   * Invoked after the outcome of each item has been reported.
+   *
+   * @param completed the number of items that have been successfully generated.
+   * @param failed    the number of items that have failed.
+   */
+  default void onProgress( final long completed, final long failed )
+  {
+  }
+}
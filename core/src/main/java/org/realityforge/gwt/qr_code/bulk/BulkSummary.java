@@ -0,0 +1,64 @@
+package org.realityforge.gwt.qr_code.bulk;
+
+/**
+ * The totals collected over a single run of a {@link BulkGenerator}.
+ */
+public final class BulkSummary
+{
+  private final long _completed;
+  private final long _failed;
+  private final long _elapsedNanos;
+
+  BulkSummary( final long completed, final long failed, final long elapsedNanos )
+  {
+    _completed = completed;
+    _failed = failed;
+    _elapsedNanos = elapsedNanos;
+  }
+
+  /**
+   * Return the number of items that were successfully generated.
+   *
+   * @return the number of items that were successfully generated.
+   */
+  public long getCompleted()
+  {
+    return _completed;
+  }
+
+  /**
+   * Return the number of items that failed.
+   *
+   * @return the number of items that failed.
+   */
+  public long getFailed()
+  {
+    return _failed;
+  }
+
+  /**
+   * Return the wall clock duration of the run in nanoseconds.
+   *
+   * @return the wall clock duration of the run in nanoseconds.
+   */
+  public long getElapsedNanos()
+  {
+    return _elapsedNanos;
+  }
+
+  /**
+   * Return the number of items processed per second, including failed items.
+   *
+   * @return the number of items processed per second.
+   */
+  public double getItemsPerSecond()
+  {
+    return 0 == _elapsedNanos ? 0 : ( _completed + _failed ) * 1_000_000_000D / _elapsedNanos;
+  }
+
+  @Override
+  public String toString()
+  {
+    return "BulkSummary[completed=" + _completed + ", failed=" + _failed + ", elapsedNanos=" + _elapsedNanos + "]";
+  }
+}
@@ -0,0 +1,113 @@
+package org.realityforge.gwt.qr_code.bulk;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import javax.annotation.Nonnull;
+import org.realityforge.gwt.qr_code.Ecc;
+import org.realityforge.gwt.qr_code.QrCode;
+import org.realityforge.gwt.qr_code.StructuredAppend;
+
+/**
+ * Encodes the symbols of a Structured Append sequence concurrently. i.e.
+ *
+ * <pre>{@code
+ * final StructuredAppend plan = StructuredAppendEncoder.planBinary( inputStream, Ecc.MEDIUM, 20 );
+ * final List<QrCode> symbols = StructuredAppendEncoder.encode( plan, executor );
+ * }</pre>
+ */
+public final class StructuredAppendEncoder
+{
+  /**
+   * The maximum number of bytes that a Structured Append sequence can hold, which is the capacity of
+   * 16 version 40 symbols with low error correction.
+   */
+  static final int MAX_BYTES = StructuredAppend.MAX_SYMBOLS * 2953;
+
+  private StructuredAppendEncoder()
+  {
+  }
+
+  /**
+   * Read the binary data from the stream and return a Structured Append plan for the data.
+   * The stream is read until the end of the stream but is not closed. At most {@link #MAX_BYTES}
+   * bytes are buffered, larger streams are rejected without reading the remainder of the stream.
+   *
+   * @param input      the stream containing the binary data to encode
+   * @param ecl        the error correction level to use (may be boosted)
+   * @param maxVersion the maximum allowed version of the symbols (at most 40)
+   * @return the plan.
+   * @throws IOException              if an error occurs reading the stream
+   * @throws IllegalArgumentException if the data does not fit in 16 symbols of the maximum version
+   */
+  @Nonnull
+  public static StructuredAppend planBinary( @Nonnull final InputStream input,
+                                             @Nonnull final Ecc ecl,
+                                             final int maxVersion )
+    throws IOException
+  {
+    Objects.requireNonNull( input );
+    final ByteArrayOutputStream buffer = new ByteArrayOutputStream( 4096 );
+    final byte[] chunk = new byte[ 4096 ];
+    int count;
+    while ( -1 != ( count = input.read( chunk ) ) )
+    {
+      buffer.write( chunk, 0, count );
+      if ( buffer.size() > MAX_BYTES )
+      {
+        throw new IllegalArgumentException( "Data exceeds the " + MAX_BYTES + " bytes that can be encoded in " +
+                                            StructuredAppend.MAX_SYMBOLS + " symbols" );
+      }
+    }
+    return StructuredAppend.planBinary( buffer.toByteArray(), ecl, maxVersion );
+  }
+
+  /**
+   * Encode every symbol in the plan concurrently using the executor.
+   *
+   * @param plan     the plan.
+   * @param executor the executor used to encode the symbols.
+   * @return the symbols, in sequence order.
+   */
+  @Nonnull
+  public static List<QrCode> encode( @Nonnull final StructuredAppend plan, @Nonnull final Executor executor )
+  {
+    Objects.requireNonNull( plan );
+    Objects.requireNonNull( executor );
+    final int symbolCount = plan.getSymbolCount();
+    final List<CompletableFuture<QrCode>> futures = new ArrayList<>( symbolCount );
+    for ( int i = 0; i < symbolCount; i++ )
+    {
+      final int index = i;
+      futures.add( CompletableFuture.supplyAsync( () -> plan.encode( index ), executor ) );
+    }
+    final List<QrCode> symbols = new ArrayList<>( symbolCount );
+    for ( final CompletableFuture<QrCode> future : futures )
+    {
+      try
+      {
+        symbols.add( future.join() );
+      }
+      catch ( final CompletionException ce )
+      {
+        final Throwable cause = ce.getCause();
+        if ( cause instanceof RuntimeException )
+        {
+          throw (RuntimeException) cause;
+        }
+        else if ( cause instanceof Error )
+        {
+          throw (Error) cause;
+        }
+        throw ce;
+      }
+    }
+    return symbols;
+  }
+}
@@ -0,0 +1,222 @@
+package org.realityforge.gwt.qr_code.cli;
+
+import java.util.Locale;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.realityforge.gwt.qr_code.Ecc;
+
+/**
+ * The options that control a run of the batch tool.
+ */
+final class BatchOptions
+{
+  enum Format
+  {
+    SVG,
+    PNG
+  }
+
+  enum Archive
+  {
+    ZIP,
+    TAR,
+    DIR
+  }
+
+  static final String USAGE =
+    "Usage: BatchTool [options]\n" +
+    "Generates a QR Code for every payload in the input.\n" +
+    "\n" +
+    "Options:\n" +
+    "  --input FILE           Read payloads from FILE, or standard input if FILE is - (default: -)\n" +
+    "  --csv                  Parse the input as CSV rather than one payload per line\n" +
+    "  --delimiter CHAR       The CSV field delimiter (default: ,)\n" +
+    "  --column N             The 1-based CSV column containing the payload (default: 1)\n" +
+    "  --name-column N        The 1-based CSV column used to name the generated files, suffixed with the line\n" +
+    "                         number to keep the names unique, e.g. a-7.png (default: row number)\n" +
+    "  --skip-header          Ignore the first record of the input\n" +
+    "  --format svg|png       The format of the generated files (default: svg)\n" +
+    "  --ecc L|M|Q|H          The minimum error correction level, which may be boosted (default: M)\n" +
+    "  --border N             The number of border modules (default: 4)\n" +
+    "  --scale N              The number of pixels per module in png files (default: 8)\n" +
+    "  --output PATH          The archive to write, - for standard output, or the directory to write files into\n" +
+    "  --archive zip|tar|dir  The type of output (default: zip or tar based on the output extension, otherwise dir)\n" +
+    "  --threads N            The number of threads used when virtual threads are unavailable (default: processors)\n" +
+    "  --max-in-flight N      The maximum number of codes held in memory at once (default: threads * 64)\n" +
+    "  --help                 Print this message\n";
+  boolean _help;
+  @Nonnull
+  String _input = "-";
+  boolean _csv;
+  char _delimiter = ',';
+  int _column;
+  int _nameColumn = -1;
+  boolean _skipHeader;
+  @Nonnull
+  Format _format = Format.SVG;
+  @Nonnull
+  Ecc _ecc = Ecc.MEDIUM;
+  int _border = 4;
+  int _scale = 8;
+  @Nullable
+  String _output;
+  @Nullable
+  Archive _archive;
+  int _threads = Runtime.getRuntime().availableProcessors();
+  int _maxInFlight;
+
+  /**
+   * Parse the command line arguments.
+   *
+   * @param args the arguments.
+   * @return the options.
+   * @throws IllegalArgumentException if the arguments are invalid.
+   */
+  @Nonnull
+  static BatchOptions parse( @Nonnull final String[] args )
+  {
+    final BatchOptions options = new BatchOptions();
+    for ( int i = 0; i < args.length; i++ )
+    {
+      final String arg = args[ i ];
+      switch ( arg )
+      {
+        case "--help":
+          options._help = true;
+          break;
+        case "--input":
+          options._input = value( args, ++i, arg );
+          break;
+        case "--csv":
+          options._csv = true;
+          break;
+        case "--delimiter":
+          final String delimiter = value( args, ++i, arg );
+          if ( 1 != delimiter.length() )
+          {
+            throw new IllegalArgumentException( "The delimiter must be a single character" );
+          }
+          options._delimiter = delimiter.charAt( 0 );
+          break;
+        case "--column":
+          options._column = intValue( args, ++i, arg, 1 ) - 1;
+          break;
+        case "--name-column":
+          options._nameColumn = intValue( args, ++i, arg, 1 ) - 1;
+          break;
+        case "--skip-header":
+          options._skipHeader = true;
+          break;
+        case "--format":
+          options._format = enumValue( Format.class, args, ++i, arg );
+          break;
+        case "--ecc":
+          options._ecc = eccValue( value( args, ++i, arg ) );
+          break;
+        case "--border":
+          options._border = intValue( args, ++i, arg, 0 );
+          break;
+        case "--scale":
+          options._scale = intValue( args, ++i, arg, 1 );
+          break;
+        case "--output":
+          options._output = value( args, ++i, arg );
+          break;
+        case "--archive":
+          options._archive = enumValue( Archive.class, args, ++i, arg );
+          break;
+        case "--threads":
+          options._threads = intValue( args, ++i, arg, 1 );
+          break;
+        case "--max-in-flight":
+          options._maxInFlight = intValue( args, ++i, arg, 1 );
+          break;
+        default:
+          throw new IllegalArgumentException( "Unknown argument: " + arg );
+      }
+    }
+    if ( !options._help )
+    {
+      if ( null == options._output )
+      {
+        throw new IllegalArgumentException( "The --output option must be specified" );
+      }
+      if ( null == options._archive )
+      {
+        final String output = options._output.toLowerCase( Locale.ROOT );
+        options._archive = output.endsWith( ".zip" ) ? Archive.ZIP : output.endsWith( ".tar" ) ? Archive.TAR : Archive.DIR;
+      }
+      if ( Archive.DIR == options._archive && "-".equals( options._output ) )
+      {
+        throw new IllegalArgumentException( "Standard output can only be used with a zip or tar archive" );
+      }
+      if ( 0 == options._maxInFlight )
+      {
+        options._maxInFlight = options._threads * 64;
+      }
+    }
+    return options;
+  }
+
+  @Nonnull
+  private static String value( @Nonnull final String[] args, final int index, @Nonnull final String arg )
+  {
+    if ( index >= args.length )
+    {
+      throw new IllegalArgumentException( "The " + arg + " option requires a value" );
+    }
+    return args[ index ];
+  }
+
+  private static int intValue( @Nonnull final String[] args,
+                               final int index,
+                               @Nonnull final String arg,
+                               final int minimum )
+  {
+    final String value = value( args, index, arg );
+    try
+    {
+      final int result = Integer.parseInt( value );
+      if ( result >= minimum )
+      {
+        return result;
+      }
+    }
+    catch ( final NumberFormatException ignored )
+    {
+      // Fall through to report the error below
+    }
+    throw new IllegalArgumentException( "The " + arg + " option requires an integer of at least " + minimum +
+                                        " but was '" + value + "'" );
+  }
+
+  @Nonnull
+  private static <T extends Enum<T>> T enumValue( @Nonnull final Class<T> type,
+                                                  @Nonnull final String[] args,
+                                                  final int index,
+                                                  @Nonnull final String arg )
+  {
+    final String value = value( args, index, arg );
+    try
+    {
+      return Enum.valueOf( type, value.toUpperCase( Locale.ROOT ) );
+    }
+    catch ( final IllegalArgumentException iae )
+    {
+      throw new IllegalArgumentException( "Unknown value '" + value + "' for the " + arg + " option" );
+    }
+  }
+
+  @Nonnull
+  private static Ecc eccValue( @Nonnull final String value )
+  {
+    for ( final Ecc ecc : Ecc.values() )
+    {
+      if ( ecc.name().startsWith( value.toUpperCase( Locale.ROOT ) ) && !value.isEmpty() )
+      {
+        return ecc;
+      }
+    }
+    throw new IllegalArgumentException( "Unknown error correction level '" + value + "'" );
+  }
+}
@@ -0,0 +1,74 @@
+package org.realityforge.gwt.qr_code.cli;
+
+import java.util.Objects;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * A single payload read from the input of the batch tool, or a description of why it could not be read.
+ */
+final class BatchRecord
+{
+  private final long _lineNumber;
+  @Nonnull
+  private final String _name;
+  @Nullable
+  private final String _payload;
+  @Nullable
+  private final String _error;
+
+  BatchRecord( final long lineNumber,
+               @Nonnull final String name,
+               @Nullable final String payload,
+               @Nullable final String error )
+  {
+    assert ( null == payload ) != ( null == error );
+    _lineNumber = lineNumber;
+    _name = Objects.requireNonNull( name );
+    _payload = payload;
+    _error = error;
+  }
+
+  /**
+   * Return the line of the input on which the record starts.
+   *
+   * @return the line of the input on which the record starts.
+   */
+  long getLineNumber()
+  {
+    return _lineNumber;
+  }
+
+  /**
+   * Return the name used to derive the name of the generated file, without an extension.
+   *
+   * @return the name used to derive the name of the generated file.
+   */
+  @Nonnull
+  String getName()
+  {
+    return _name;
+  }
+
+  /**
+   * Return the text to encode, or null if the record could not be parsed.
+   *
+   * @return the text to encode, or null if the record could not be parsed.
+   */
+  @Nullable
+  String getPayload()
+  {
+    return _payload;
+  }
+
+  /**
+   * Return a description of why the record could not be parsed, or null if it was parsed.
+   *
+   * @return a description of why the record could not be parsed, or null if it was parsed.
+   */
+  @Nullable
+  String getError()
+  {
+    return _error;
+  }
+}
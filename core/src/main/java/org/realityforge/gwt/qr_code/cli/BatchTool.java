@@ -0,0 +1,348 @@
+package org.realityforge.gwt.qr_code.cli;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import javax.annotation.Nonnull;
+import org.realityforge.gwt.qr_code.QrCode;
+import org.realityforge.gwt.qr_code.QrCodeTool;
+import org.realityforge.gwt.qr_code.bulk.BulkGenerator;
+import org.realityforge.gwt.qr_code.bulk.BulkListener;
+import org.realityforge.gwt.qr_code.bulk.BulkSummary;
+import org.realityforge.gwt.qr_code.image.PngWriter;
+
+/**
+ * A command line tool that generates a QR Code for every payload in a newline delimited or CSV file.
+ * The input is read incrementally and codes are generated in parallel and written, in input order,
+ * into a streaming zip or tar archive or as separate files in a directory. A manifest describing
+ * every generated code is added to the output and a summary is printed when the run completes.
+ */
+public final class BatchTool
+{
+  static final String MANIFEST_NAME = "manifest.csv";
+  // The number of codes between progress messages
+  private static final long PROGRESS_INTERVAL = 100_000;
+
+  private BatchTool()
+  {
+  }
+
+  public static void main( final String[] args )
+  {
+    System.exit( run( args, System.in, System.out, System.err ) );
+  }
+
+  /**
+   * Run the tool.
+   *
+   * @param args   the command line arguments.
+   * @param stdin  the stream to read payloads from when the input is not a file.
+   * @param stdout the stream to write the archive to when the output is not a file.
+   * @param stderr the stream to write messages to.
+   * @return the exit code, which is 0 on success, 1 if any code could not be generated and 2 if the arguments are invalid.
+   */
+  static int run( @Nonnull final String[] args,
+                  @Nonnull final InputStream stdin,
+                  @Nonnull final OutputStream stdout,
+                  @Nonnull final PrintStream stderr )
+  {
+    final BatchOptions options;
+    try
+    {
+      options = BatchOptions.parse( args );
+    }
+    catch ( final IllegalArgumentException iae )
+    {
+      stderr.println( "Error: " + iae.getMessage() );
+      stderr.print( BatchOptions.USAGE );
+      return 2;
+    }
+    if ( options._help )
+    {
+      stderr.print( BatchOptions.USAGE );
+      return 0;
+    }
+
+    try
+    {
+      final BulkSummary summary = generate( options, stdin, stdout, stderr );
+      return 0 == summary.getFailed() ? 0 : 1;
+    }
+    catch ( final IOException | UncheckedIOException e )
+    {
+      stderr.println( "Error: " + e.getMessage() );
+      return 1;
+    }
+    catch ( final InterruptedException ie )
+    {
+      Thread.currentThread().interrupt();
+      stderr.println( "Error: Interrupted" );
+      return 1;
+    }
+  }
+
+  @Nonnull
+  private static BulkSummary generate( @Nonnull final BatchOptions options,
+                                       @Nonnull final InputStream stdin,
+                                       @Nonnull final OutputStream stdout,
+                                       @Nonnull final PrintStream stderr )
+    throws IOException, InterruptedException
+  {
+    // The manifest is streamed to a temporary file as it can be arbitrarily large and
+    // the archive formats require that one entry is completed before the next is started
+    final Path manifest = Files.createTempFile( "qr-batch", ".csv" );
+    try
+    {
+      final BatchListener listener;
+      final BulkSummary summary;
+      try ( final BufferedReader reader = openInput( options, stdin );
+            final OutputSink sink = openOutput( options, stdout ) )
+      {
+        try ( final Writer manifestWriter = Files.newBufferedWriter( manifest, StandardCharsets.UTF_8 ) )
+        {
+          manifestWriter.write( "index,line,file,version,ecc,mask,status,error\n" );
+          listener = new BatchListener( sink, manifestWriter, stderr );
+          final ExecutorService executor = BulkGenerator.newExecutor( options._threads );
+          try
+          {
+            summary =
+              new BulkGenerator( executor, options._maxInFlight, true )
+                .run( new PayloadReader( reader,
+                                         options._csv,
+                                         options._delimiter,
+                                         options._column,
+                                         options._nameColumn,
+                                         options._skipHeader ),
+                      record -> generate( options, record ),
+                      listener );
+          }
+          finally
+          {
+            executor.shutdown();
+          }
+        }
+        sink.write( MANIFEST_NAME, manifest );
+      }
+      printSummary( stderr, summary, listener );
+      return summary;
+    }
+    finally
+    {
+      Files.deleteIfExists( manifest );
+    }
+  }
+
+  @Nonnull
+  private static GeneratedCode generate( @Nonnull final BatchOptions options, @Nonnull final BatchRecord record )
+  {
+    final String payload = record.getPayload();
+    if ( null == payload )
+    {
+      throw new IllegalArgumentException( record.getError() );
+    }
+    final QrCode qrCode = QrCodeTool.encodeText( payload, options._ecc );
+    final byte[] content;
+    final String fileName;
+    if ( BatchOptions.Format.PNG == options._format )
+    {
+      content = PngWriter.toPng( qrCode, options._scale, options._border );
+      fileName = record.getName() + ".png";
+    }
+    else
+    {
+      content = qrCode.toSvgString( options._border ).getBytes( StandardCharsets.UTF_8 );
+      fileName = record.getName() + ".svg";
+    }
+    return new GeneratedCode( fileName, content, qrCode );
+  }
+
+  @Nonnull
+  private static BufferedReader openInput( @Nonnull final BatchOptions options, @Nonnull final InputStream stdin )
+    throws IOException
+  {
+    return "-".equals( options._input ) ?
+           new BufferedReader( new InputStreamReader( stdin, StandardCharsets.UTF_8 ) ) :
+           Files.newBufferedReader( Paths.get( options._input ), StandardCharsets.UTF_8 );
+  }
+
+  @Nonnull
+  private static OutputSink openOutput( @Nonnull final BatchOptions options, @Nonnull final OutputStream stdout )
+    throws IOException
+  {
+    final String output = Objects.requireNonNull( options._output );
+    if ( BatchOptions.Archive.DIR == options._archive )
+    {
+      return new DirectoryOutputSink( Paths.get( output ) );
+    }
+    else
+    {
+      final OutputStream stream =
+        new BufferedOutputStream( "-".equals( output ) ? stdout : Files.newOutputStream( Paths.get( output ) ),
+                                  64 * 1024 );
+      return BatchOptions.Archive.ZIP == options._archive ? new ZipOutputSink( stream ) : new TarOutputSink( stream );
+    }
+  }
+
+  private static void printSummary( @Nonnull final PrintStream stderr,
+                                    @Nonnull final BulkSummary summary,
+                                    @Nonnull final BatchListener listener )
+  {
+    final double seconds = summary.getElapsedNanos() / 1_000_000_000D;
+    stderr.println( String.format( Locale.ROOT,
+                                   "Generated %d codes (%d failed) in %.3fs, %.1f codes/s, %d bytes written",
+                                   summary.getCompleted(),
+                                   summary.getFailed(),
+                                   seconds,
+                                   summary.getItemsPerSecond(),
+                                   listener._bytesWritten ) );
+    if ( summary.getCompleted() > 0 )
+    {
+      stderr.println( "Version distribution:" );
+      for ( int version = 1; version < listener._versionCounts.length; version++ )
+      {
+        final long count = listener._versionCounts[ version ];
+        if ( count > 0 )
+        {
+          stderr.println( String.format( Locale.ROOT,
+                                         "  %2d: %d (%.1f%%)",
+                                         version,
+                                         count,
+                                         count * 100D / summary.getCompleted() ) );
+        }
+      }
+    }
+  }
+
+  /**
+   * A generated file and the symbol it was generated from.
+   */
+  private static final class GeneratedCode
+  {
+    @Nonnull
+    private final String _fileName;
+    @Nonnull
+    private final byte[] _content;
+    @Nonnull
+    private final QrCode _qrCode;
+
+    GeneratedCode( @Nonnull final String fileName, @Nonnull final byte[] content, @Nonnull final QrCode qrCode )
+    {
+      _fileName = fileName;
+      _content = content;
+      _qrCode = qrCode;
+    }
+  }
+
+  /**
+   * Writes every generated file and its manifest row and collects the statistics for the summary.
+   */
+  private static final class BatchListener
+    implements BulkListener<BatchRecord, GeneratedCode>
+  {
+    @Nonnull
+    private final OutputSink _sink;
+    @Nonnull
+    private final Writer _manifest;
+    @Nonnull
+    private final PrintStream _stderr;
+    private final long[] _versionCounts = new long[ 41 ];
+    private long _bytesWritten;
+
+    BatchListener( @Nonnull final OutputSink sink, @Nonnull final Writer manifest, @Nonnull final PrintStream stderr )
+    {
+      _sink = sink;
+      _manifest = manifest;
+      _stderr = stderr;
+    }
+
+    @Override
+    public void onResult( final long index, @Nonnull final BatchRecord record, @Nonnull final GeneratedCode code )
+    {
+      final QrCode qrCode = code._qrCode;
+      try
+      {
+        _sink.write( code._fileName, code._content );
+        writeManifestRow( index,
+                          record,
+                          code._fileName,
+                          String.valueOf( qrCode.getVersion() ),
+                          qrCode.getErrorCorrectionLevel().name(),
+                          String.valueOf( qrCode.getMask() ),
+                          "ok",
+                          "" );
+      }
+      catch ( final IOException ioe )
+      {
+        throw new UncheckedIOException( ioe );
+      }
+      _versionCounts[ qrCode.getVersion() ]++;
+      _bytesWritten += code._content.length;
+    }
+
+    @Override
+    public void onFailure( final long index, @Nonnull final BatchRecord record, @Nonnull final Throwable error )
+    {
+      final String message = null == error.getMessage() ? error.toString() : error.getMessage();
+      _stderr.println( "Line " + record.getLineNumber() + ": " + message );
+      try
+      {
+        writeManifestRow( index, record, "", "", "", "", "error", message );
+      }
+      catch ( final IOException ioe )
+      {
+        throw new UncheckedIOException( ioe );
+      }
+    }
+
+    @Override
+    public void onProgress( final long completed, final long failed )
+    {
+      if ( 0 == ( completed + failed ) % PROGRESS_INTERVAL )
+      {
+        _stderr.println( "Processed " + ( completed + failed ) + " payloads (" + failed + " failed)" );
+      }
+    }
+
+    private void writeManifestRow( final long index, @Nonnull final BatchRecord record, @Nonnull final String... values )
+      throws IOException
+    {
+      _manifest.write( String.valueOf( index ) );
+      _manifest.write( ',' );
+      _manifest.write( String.valueOf( record.getLineNumber() ) );
+      for ( final String value : values )
+      {
+        _manifest.write( ',' );
+        writeCsvValue( value );
+      }
+      _manifest.write( '\n' );
+    }
+
+    private void writeCsvValue( @Nonnull final String value )
+      throws IOException
+    {
+      if ( value.indexOf( ',' ) >= 0 || value.indexOf( '"' ) >= 0 || value.indexOf( '\n' ) >= 0 )
+      {
+        _manifest.write( '"' );
+        _manifest.write( value.replace( "\"", "\"\"" ) );
+        _manifest.write( '"' );
+      }
+      else
+      {
+        _manifest.write( value );
+      }
+    }
+  }
+}
@@ -0,0 +1,43 @@
+package org.realityforge.gwt.qr_code.cli;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Objects;
+import javax.annotation.Nonnull;
+
+/**
+ * Writes every entry as a separate file in a directory.
+ */
+final class DirectoryOutputSink
+  implements OutputSink
+{
+  @Nonnull
+  private final Path _directory;
+
+  DirectoryOutputSink( @Nonnull final Path directory )
+    throws IOException
+  {
+    _directory = Files.createDirectories( Objects.requireNonNull( directory ) );
+  }
+
+  @Override
+  public void write( @Nonnull final String name, @Nonnull final byte[] content )
+    throws IOException
+  {
+    Files.write( _directory.resolve( name ), content );
+  }
+
+  @Override
+  public void write( @Nonnull final String name, @Nonnull final Path file )
+    throws IOException
+  {
+    Files.copy( file, _directory.resolve( name ), StandardCopyOption.REPLACE_EXISTING );
+  }
+
+  @Override
+  public void close()
+  {
+  }
+}
@@ -0,0 +1,34 @@
+package org.realityforge.gwt.qr_code.cli;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import javax.annotation.Nonnull;
+
+/**
+ * The destination for the files generated by the batch tool.
+ * Entries are written in the order they are supplied and are never buffered in their entirety.
+ */
+interface OutputSink
+  extends Closeable
+{
+  /**
+   * Write an entry with the specified content.
+   *
+   * @param name    the name of the entry.
+   * @param content the content of the entry.
+   * @throws IOException if an error occurs writing the entry.
+   */
+  void write( @Nonnull String name, @Nonnull byte[] content )
+    throws IOException;
+
+  /**
+   * Write an entry with the content copied from the specified file.
+   *
+   * @param name the name of the entry.
+   * @param file the file containing the content of the entry.
+   * @throws IOException if an error occurs writing the entry.
+   */
+  void write( @Nonnull String name, @Nonnull Path file )
+    throws IOException;
+}
@@ -0,0 +1,239 @@
+package org.realityforge.gwt.qr_code.cli;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Reads payloads incrementally from newline delimited or CSV input.
+ * Only the current record is held in memory so the input can be arbitrarily large.
+ */
+final class PayloadReader
+  implements Iterator<BatchRecord>
+{
+  // The maximum length of a name derived from the input before it is truncated
+  private static final int MAX_NAME_LENGTH = 80;
+  @Nonnull
+  private final BufferedReader _reader;
+  private final boolean _csv;
+  private final char _delimiter;
+  private final int _payloadColumn;
+  private final int _nameColumn;
+  private boolean _skipRecord;
+  private long _lineNumber;
+  private long _recordCount;
+  @Nullable
+  private BatchRecord _next;
+  private boolean _done;
+
+  /**
+   * Create a reader.
+   *
+   * @param reader        the source of the input.
+   * @param csv           true if the input is CSV, false if every line is a payload.
+   * @param delimiter     the field delimiter used when the input is CSV.
+   * @param payloadColumn the zero-based index of the CSV field that contains the payload.
+   * @param nameColumn    the zero-based index of the CSV field used to name the record, or -1 to name records by position.
+   * @param skipHeader    true to ignore the first record in the input.
+   */
+  PayloadReader( @Nonnull final BufferedReader reader,
+                 final boolean csv,
+                 final char delimiter,
+                 final int payloadColumn,
+                 final int nameColumn,
+                 final boolean skipHeader )
+  {
+    _reader = Objects.requireNonNull( reader );
+    _csv = csv;
+    _delimiter = delimiter;
+    _payloadColumn = payloadColumn;
+    _nameColumn = nameColumn;
+    _skipRecord = skipHeader;
+  }
+
+  @Override
+  public boolean hasNext()
+  {
+    if ( null == _next && !_done )
+    {
+      try
+      {
+        _next = readRecord();
+      }
+      catch ( final IOException ioe )
+      {
+        throw new UncheckedIOException( ioe );
+      }
+      _done = null == _next;
+    }
+    return null != _next;
+  }
+
+  @Nonnull
+  @Override
+  public BatchRecord next()
+  {
+    if ( !hasNext() )
+    {
+      throw new NoSuchElementException();
+    }
+    final BatchRecord record = _next;
+    assert null != record;
+    _next = null;
+    return record;
+  }
+
+  @Nullable
+  private BatchRecord readRecord()
+    throws IOException
+  {
+    while ( true )
+    {
+      final long lineNumber = _lineNumber + 1;
+      final List<String> fields;
+      if ( _csv )
+      {
+        fields = readCsvFields();
+      }
+      else
+      {
+        final String line = _reader.readLine();
+        _lineNumber++;
+        fields = null == line ? null : Collections.singletonList( line );
+      }
+      if ( null == fields )
+      {
+        return null;
+      }
+      else if ( _skipRecord )
+      {
+        _skipRecord = false;
+      }
+      else if ( fields.size() > 1 || !fields.get( 0 ).isEmpty() )
+      {
+        final String name = deriveName( fields, lineNumber );
+        _recordCount++;
+        if ( _payloadColumn >= fields.size() )
+        {
+          return new BatchRecord( lineNumber, name, null, "Record has no column " + ( _payloadColumn + 1 ) );
+        }
+        else
+        {
+          return new BatchRecord( lineNumber, name, fields.get( _payloadColumn ), null );
+        }
+      }
+    }
+  }
+
+  // Derive the name from the name column, suffixed with a hyphen and the line of the record, or otherwise from the
+  // position of the record. The line follows the last hyphen of a derived name and a positional name is only
+  // digits, so names are unique, even ignoring case, without remembering the names of earlier records.
+  @Nonnull
+  private String deriveName( @Nonnull final List<String> fields, final long lineNumber )
+  {
+    if ( _nameColumn >= 0 && _nameColumn < fields.size() )
+    {
+      final String value = fields.get( _nameColumn );
+      final StringBuilder sb = new StringBuilder();
+      for ( int i = 0; i < value.length() && sb.length() < MAX_NAME_LENGTH; i++ )
+      {
+        final char ch = value.charAt( i );
+        final boolean safe = ( ch >= 'a' && ch <= 'z' ) ||
+                             ( ch >= 'A' && ch <= 'Z' ) ||
+                             ( ch >= '0' && ch <= '9' ) ||
+                             '-' == ch ||
+                             '_' == ch ||
+                             ( '.' == ch && 0 != i );
+        sb.append( safe ? ch : '_' );
+      }
+      if ( sb.length() > 0 )
+      {
+        return sb.append( '-' ).append( lineNumber ).toString();
+      }
+    }
+    return String.format( Locale.ROOT, "%09d", _recordCount );
+  }
+
+  // Reads the fields of the next CSV record or returns null at the end of the input.
+  // Quoted fields may contain delimiters, newlines and doubled quotes.
+  @Nullable
+  private List<String> readCsvFields()
+    throws IOException
+  {
+    final List<String> fields = new ArrayList<>();
+    final StringBuilder field = new StringBuilder();
+    boolean quoted = false;
+    boolean empty = true;
+    while ( true )
+    {
+      final int ch = _reader.read();
+      if ( -1 == ch )
+      {
+        if ( empty )
+        {
+          return null;
+        }
+        fields.add( field.toString() );
+        _lineNumber++;
+        return fields;
+      }
+      empty = false;
+      if ( quoted )
+      {
+        if ( '"' == ch )
+        {
+          _reader.mark( 1 );
+          final int next = _reader.read();
+          if ( '"' == next )
+          {
+            field.append( '"' );
+          }
+          else
+          {
+            quoted = false;
+            if ( -1 != next )
+            {
+              _reader.reset();
+            }
+          }
+        }
+        else
+        {
+          if ( '\n' == ch )
+          {
+            _lineNumber++;
+          }
+          field.append( (char) ch );
+        }
+      }
+      else if ( '"' == ch && 0 == field.length() )
+      {
+        quoted = true;
+      }
+      else if ( _delimiter == ch )
+      {
+        fields.add( field.toString() );
+        field.setLength( 0 );
+      }
+      else if ( '\n' == ch )
+      {
+        fields.add( field.toString() );
+        _lineNumber++;
+        return fields;
+      }
+      else if ( '\r' != ch )
+      {
+        field.append( (char) ch );
+      }
+    }
+  }
+}
@@ -0,0 +1,118 @@
+package org.realityforge.gwt.qr_code.cli;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Objects;
+import javax.annotation.Nonnull;
+
+/**
+ * Writes entries into an uncompressed POSIX ustar archive as they are generated.
+ */
+final class TarOutputSink
+  implements OutputSink
+{
+  private static final int BLOCK_SIZE = 512;
+  @Nonnull
+  private final OutputStream _output;
+  private final long _modificationTime = System.currentTimeMillis() / 1000;
+
+  TarOutputSink( @Nonnull final OutputStream output )
+  {
+    _output = Objects.requireNonNull( output );
+  }
+
+  @Override
+  public void write( @Nonnull final String name, @Nonnull final byte[] content )
+    throws IOException
+  {
+    writeHeader( name, content.length );
+    _output.write( content );
+    writePadding( content.length );
+  }
+
+  @Override
+  public void write( @Nonnull final String name, @Nonnull final Path file )
+    throws IOException
+  {
+    final long size = Files.size( file );
+    writeHeader( name, size );
+    Files.copy( file, _output );
+    writePadding( size );
+  }
+
+  @Override
+  public void close()
+    throws IOException
+  {
+    // The end of the archive is marked by two empty blocks
+    _output.write( new byte[ BLOCK_SIZE * 2 ] );
+    _output.close();
+  }
+
+  private void writeHeader( @Nonnull final String name, final long size )
+    throws IOException
+  {
+    final byte[] nameBytes = name.getBytes( StandardCharsets.UTF_8 );
+    if ( nameBytes.length > 100 )
+    {
+      throw new IOException( "Entry name '" + name + "' is too long for a tar archive" );
+    }
+    final byte[] header = new byte[ BLOCK_SIZE ];
+    System.arraycopy( nameBytes, 0, header, 0, nameBytes.length );
+    writeOctal( header, 100, 8, 0644 );
+    writeOctal( header, 108, 8, 0 );
+    writeOctal( header, 116, 8, 0 );
+    writeOctal( header, 124, 12, size );
+    writeOctal( header, 136, 12, _modificationTime );
+    header[ 156 ] = '0';
+    writeAscii( header, 257, "ustar" );
+    writeAscii( header, 263, "00" );
+
+    // The checksum is calculated with the checksum field filled with spaces
+    for ( int i = 148; i < 156; i++ )
+    {
+      header[ i ] = ' ';
+    }
+    long checksum = 0;
+    for ( final byte b : header )
+    {
+      checksum += b & 0xFF;
+    }
+    writeOctal( header, 148, 7, checksum );
+    _output.write( header );
+  }
+
+  private void writePadding( final long size )
+    throws IOException
+  {
+    final int remainder = (int) ( size % BLOCK_SIZE );
+    if ( 0 != remainder )
+    {
+      _output.write( new byte[ BLOCK_SIZE - remainder ] );
+    }
+  }
+
+  // Writes the value as zero padded octal digits followed by a NUL terminator into a field of the specified length
+  private static void writeOctal( @Nonnull final byte[] header, final int offset, final int length, final long value )
+  {
+    final String octal = Long.toOctalString( value );
+    final int digits = length - 1;
+    for ( int i = 0; i < digits; i++ )
+    {
+      final int index = octal.length() - digits + i;
+      header[ offset + i ] = (byte) ( index < 0 ? '0' : octal.charAt( index ) );
+    }
+    header[ offset + digits ] = 0;
+  }
+
+  private static void writeAscii( @Nonnull final byte[] header, final int offset, @Nonnull final String value )
+  {
+    for ( int i = 0; i < value.length(); i++ )
+    {
+      header[ offset + i ] = (byte) value.charAt( i );
+    }
+  }
+}
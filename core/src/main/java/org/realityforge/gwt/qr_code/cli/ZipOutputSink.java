@@ -0,0 +1,62 @@
+package org.realityforge.gwt.qr_code.cli;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import javax.annotation.Nonnull;
+
+/**
+ * Writes entries into a zip archive as they are generated.
+ * Entries that are already compressed (i.e. PNG images) are stored rather than deflated again.
+ */
+final class ZipOutputSink
+  implements OutputSink
+{
+  @Nonnull
+  private final ZipOutputStream _output;
+
+  ZipOutputSink( @Nonnull final OutputStream output )
+  {
+    _output = new ZipOutputStream( Objects.requireNonNull( output ) );
+  }
+
+  @Override
+  public void write( @Nonnull final String name, @Nonnull final byte[] content )
+    throws IOException
+  {
+    final ZipEntry entry = new ZipEntry( name );
+    if ( name.endsWith( ".png" ) )
+    {
+      final CRC32 crc = new CRC32();
+      crc.update( content );
+      entry.setMethod( ZipEntry.STORED );
+      entry.setSize( content.length );
+      entry.setCompressedSize( content.length );
+      entry.setCrc( crc.getValue() );
+    }
+    _output.putNextEntry( entry );
+    _output.write( content );
+    _output.closeEntry();
+  }
+
+  @Override
+  public void write( @Nonnull final String name, @Nonnull final Path file )
+    throws IOException
+  {
+    _output.putNextEntry( new ZipEntry( name ) );
+    Files.copy( file, _output );
+    _output.closeEntry();
+  }
+
+  @Override
+  public void close()
+    throws IOException
+  {
+    _output.close();
+  }
+}
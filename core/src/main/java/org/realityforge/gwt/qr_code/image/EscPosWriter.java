@@ -0,0 +1,100 @@
+package org.realityforge.gwt.qr_code.image;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Objects;
+import javax.annotation.Nonnull;
+import org.realityforge.braincheck.BrainCheckConfig;
+import org.realityforge.gwt.qr_code.QrCode;
+import static org.realityforge.braincheck.Guards.*;
+
+/**
+ * Encodes QR Code symbols as ESC/POS raster bit images for thermal receipt printers.
+ * The image is sent as a single <code>GS v 0</code> command where each row of dots is packed 8 to a byte.
+ * When the scale is even the image is sent at half the scale using the double width and double height mode
+ * of the command, so that the printer enlarges the image and only a quarter of the data is sent.
+ */
+public final class EscPosWriter
+{
+  // The largest number of rows and bytes per row that can be described by the command
+  private static final int MAX_DIMENSION = 0xFFFF;
+  private static final int MODE_NORMAL = 0;
+  private static final int MODE_QUADRUPLE = 3;
+
+  private EscPosWriter()
+  {
+  }
+
+  /**
+   * Return the ESC/POS command that prints the symbol.
+   *
+   * @param qrCode the symbol.
+   * @param scale  the width and height of each module in printer dots, which must be positive.
+   * @param border the number of border modules to add, which must be non-negative.
+   * @return the bytes of the command.
+   */
+  @Nonnull
+  public static byte[] toRasterCommand( @Nonnull final QrCode qrCode, final int scale, final int border )
+  {
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    try
+    {
+      writeRasterCommand( qrCode, scale, border, output );
+    }
+    catch ( final IOException ioe )
+    {
+      // ByteArrayOutputStream never raises an IOException
+      throw new IllegalStateException( ioe );
+    }
+    return output.toByteArray();
+  }
+
+  /**
+   * Write the ESC/POS command that prints the symbol to the output stream.
+   * The symbol is printed at the current print position and the command does not feed or cut the paper.
+   *
+   * @param qrCode the symbol.
+   * @param scale  the width and height of each module in printer dots, which must be positive.
+   * @param border the number of border modules to add, which must be non-negative.
+   * @param output the stream to write to. The stream is not closed.
+   * @throws IOException if an error occurs writing to the stream.
+   */
+  public static void writeRasterCommand( @Nonnull final QrCode qrCode,
+                                         final int scale,
+                                         final int border,
+                                         @Nonnull final OutputStream output )
+    throws IOException
+  {
+    Objects.requireNonNull( qrCode );
+    Objects.requireNonNull( output );
+    if ( BrainCheckConfig.checkApiInvariants() )
+    {
+      apiInvariant( () -> scale > 0, () -> "Scale must be positive" );
+      apiInvariant( () -> border >= 0, () -> "Border must be non-negative" );
+      apiInvariant( () -> ( qrCode.getSize() + border * 2L ) * scale <= MAX_DIMENSION, () -> "Image too large" );
+    }
+    final int mode = 0 == scale % 2 ? MODE_QUADRUPLE : MODE_NORMAL;
+    final int dotScale = MODE_QUADRUPLE == mode ? scale / 2 : scale;
+    final int rowLength = PixelRows.getRowLength( qrCode, dotScale, border );
+    final int height = PixelRows.getWidth( qrCode, dotScale, border );
+
+    final byte[] header = { 0x1D, 'v', '0', (byte) mode,
+                            (byte) rowLength, (byte) ( rowLength >>> 8 ),
+                            (byte) height, (byte) ( height >>> 8 ) };
+    output.write( header );
+
+    // Each module row is filled once and repeated for every row of dots in the module
+    final int[] runs = PixelRows.newRunBuffer( qrCode );
+    final byte[] rows = new byte[ rowLength * dotScale ];
+    for ( int y = -border; y < qrCode.getSize() + border; y++ )
+    {
+      PixelRows.fillRow( rows, 0, qrCode, y, dotScale, border, runs );
+      for ( int i = 1; i < dotScale; i++ )
+      {
+        System.arraycopy( rows, 0, rows, i * rowLength, rowLength );
+      }
+      output.write( rows );
+    }
+  }
+}
@@ -0,0 +1,175 @@
+package org.realityforge.gwt.qr_code.image;
+
+import java.util.Objects;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.realityforge.braincheck.BrainCheckConfig;
+import static org.realityforge.braincheck.Guards.*;
+
+/**
+ * Describes a page of labels laid out in a grid.
+ * All measurements are in PDF points (1/72 inch) and positions are measured from the top left corner of the page.
+ * Labels are filled from left to right and then from top to bottom. Instances of this class are immutable.
+ */
+public final class LabelSheet
+{
+  private final double _pageWidth;
+  private final double _pageHeight;
+  private final double _marginLeft;
+  private final double _marginTop;
+  private final int _columns;
+  private final int _rows;
+  private final double _columnPitch;
+  private final double _rowPitch;
+  @Nonnull
+  private final LabelTemplate _template;
+  @Nullable
+  private final String _artwork;
+
+  /**
+   * Create a sheet without any static page artwork.
+   *
+   * @param pageWidth   the width of the page.
+   * @param pageHeight  the height of the page.
+   * @param marginLeft  the distance from the left edge of the page to the left edge of the first column.
+   * @param marginTop   the distance from the top edge of the page to the top edge of the first row.
+   * @param columns     the number of labels across the page.
+   * @param rows        the number of labels down the page.
+   * @param columnPitch the distance between the left edges of adjacent columns.
+   * @param rowPitch    the distance between the top edges of adjacent rows.
+   * @param template    the template of every label on the sheet.
+   */
+  public LabelSheet( final double pageWidth,
+                     final double pageHeight,
+                     final double marginLeft,
+                     final double marginTop,
+                     final int columns,
+                     final int rows,
+                     final double columnPitch,
+                     final double rowPitch,
+                     @Nonnull final LabelTemplate template )
+  {
+    this( pageWidth, pageHeight, marginLeft, marginTop, columns, rows, columnPitch, rowPitch, template, null );
+  }
+
+  /**
+   * Create a sheet.
+   * The artwork is a sequence of PDF content stream operators that is drawn on every page beneath the labels,
+   * in the default PDF coordinate space of the page. It is written to the document once and shared by every page.
+   *
+   * @param pageWidth   the width of the page.
+   * @param pageHeight  the height of the page.
+   * @param marginLeft  the distance from the left edge of the page to the left edge of the first column.
+   * @param marginTop   the distance from the top edge of the page to the top edge of the first row.
+   * @param columns     the number of labels across the page.
+   * @param rows        the number of labels down the page.
+   * @param columnPitch the distance between the left edges of adjacent columns.
+   * @param rowPitch    the distance between the top edges of adjacent rows.
+   * @param template    the template of every label on the sheet.
+   * @param artwork     the PDF content stream operators drawn on every page, if any.
+   */
+  public LabelSheet( final double pageWidth,
+                     final double pageHeight,
+                     final double marginLeft,
+                     final double marginTop,
+                     final int columns,
+                     final int rows,
+                     final double columnPitch,
+                     final double rowPitch,
+                     @Nonnull final LabelTemplate template,
+                     @Nullable final String artwork )
+  {
+    Objects.requireNonNull( template );
+    if ( BrainCheckConfig.checkApiInvariants() )
+    {
+      apiInvariant( () -> pageWidth > 0 && pageHeight > 0, () -> "Page dimensions must be positive" );
+      apiInvariant( () -> columns > 0 && rows > 0, () -> "Sheet must have at least one column and row" );
+      apiInvariant( () -> columnPitch >= template.getWidth() && rowPitch >= template.getHeight(),
+                    () -> "Labels must not overlap" );
+      apiInvariant( () -> marginLeft >= 0 &&
+                          marginLeft + ( columns - 1 ) * columnPitch + template.getWidth() <= pageWidth &&
+                          marginTop >= 0 &&
+                          marginTop + ( rows - 1 ) * rowPitch + template.getHeight() <= pageHeight,
+                    () -> "Labels do not fit within the page" );
+    }
+    _pageWidth = pageWidth;
+    _pageHeight = pageHeight;
+    _marginLeft = marginLeft;
+    _marginTop = marginTop;
+    _columns = columns;
+    _rows = rows;
+    _columnPitch = columnPitch;
+    _rowPitch = rowPitch;
+    _template = template;
+    _artwork = artwork;
+  }
+
+  double getPageWidth()
+  {
+    return _pageWidth;
+  }
+
+  double getPageHeight()
+  {
+    return _pageHeight;
+  }
+
+  double getMarginLeft()
+  {
+    return _marginLeft;
+  }
+
+  double getMarginTop()
+  {
+    return _marginTop;
+  }
+
+  int getColumns()
+  {
+    return _columns;
+  }
+
+  int getRows()
+  {
+    return _rows;
+  }
+
+  double getColumnPitch()
+  {
+    return _columnPitch;
+  }
+
+  double getRowPitch()
+  {
+    return _rowPitch;
+  }
+
+  @Nonnull
+  LabelTemplate getTemplate()
+  {
+    return _template;
+  }
+
+  @Nullable
+  String getArtwork()
+  {
+    return _artwork;
+  }
+
+  /**
+   * Return the number of labels on each page.
+   *
+   * @return the number of labels on each page.
+   */
+  public int getLabelsPerPage()
+  {
+    return _columns * _rows;
+  }
+
+  @Nonnull
+  @Override
+  public String toString()
+  {
+    return "LabelSheet[" + _columns + "x" + _rows + " on " + _pageWidth + "x" + _pageHeight + " " + _template + "]";
+  }
+}
@@ -0,0 +1,126 @@
+package org.realityforge.gwt.qr_code.image;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.realityforge.braincheck.BrainCheckConfig;
+import static org.realityforge.braincheck.Guards.*;
+
+/**
+ * Describes a single label and where the symbol is placed within it.
+ * All measurements are in PDF points (1/72 inch) and positions are measured from the top left corner of the label.
+ * Instances of this class are immutable.
+ */
+public final class LabelTemplate
+{
+  private final double _width;
+  private final double _height;
+  private final double _symbolX;
+  private final double _symbolY;
+  private final double _symbolSize;
+  private final int _border;
+  @Nullable
+  private final String _artwork;
+
+  /**
+   * Create a template for labels without any static artwork.
+   *
+   * @param width      the width of the label.
+   * @param height     the height of the label.
+   * @param symbolX    the distance from the left edge of the label to the left edge of the symbol, including the border.
+   * @param symbolY    the distance from the top edge of the label to the top edge of the symbol, including the border.
+   * @param symbolSize the width and height of the symbol, including the border.
+   * @param border     the number of light border modules around the symbol, which must be non-negative.
+   */
+  public LabelTemplate( final double width,
+                        final double height,
+                        final double symbolX,
+                        final double symbolY,
+                        final double symbolSize,
+                        final int border )
+  {
+    this( width, height, symbolX, symbolY, symbolSize, border, null );
+  }
+
+  /**
+   * Create a template for labels.
+   * The artwork is a sequence of PDF content stream operators, such as lines and rectangles, that is drawn on
+   * every label. It is drawn in the default PDF coordinate space of the label, with the origin at the bottom left
+   * corner of the label, and is written to the document once and shared by every label.
+   *
+   * @param width      the width of the label.
+   * @param height     the height of the label.
+   * @param symbolX    the distance from the left edge of the label to the left edge of the symbol, including the border.
+   * @param symbolY    the distance from the top edge of the label to the top edge of the symbol, including the border.
+   * @param symbolSize the width and height of the symbol, including the border.
+   * @param border     the number of light border modules around the symbol, which must be non-negative.
+   * @param artwork    the PDF content stream operators drawn on every label, if any.
+   */
+  public LabelTemplate( final double width,
+                        final double height,
+                        final double symbolX,
+                        final double symbolY,
+                        final double symbolSize,
+                        final int border,
+                        @Nullable final String artwork )
+  {
+    if ( BrainCheckConfig.checkApiInvariants() )
+    {
+      apiInvariant( () -> width > 0 && height > 0, () -> "Label dimensions must be positive" );
+      apiInvariant( () -> symbolSize > 0, () -> "Symbol size must be positive" );
+      apiInvariant( () -> border >= 0, () -> "Border must be non-negative" );
+      apiInvariant( () -> symbolX >= 0 && symbolX + symbolSize <= width &&
+                          symbolY >= 0 && symbolY + symbolSize <= height,
+                    () -> "Symbol does not fit within the label" );
+    }
+    _width = width;
+    _height = height;
+    _symbolX = symbolX;
+    _symbolY = symbolY;
+    _symbolSize = symbolSize;
+    _border = border;
+    _artwork = artwork;
+  }
+
+  double getWidth()
+  {
+    return _width;
+  }
+
+  double getHeight()
+  {
+    return _height;
+  }
+
+  double getSymbolX()
+  {
+    return _symbolX;
+  }
+
+  double getSymbolY()
+  {
+    return _symbolY;
+  }
+
+  double getSymbolSize()
+  {
+    return _symbolSize;
+  }
+
+  int getBorder()
+  {
+    return _border;
+  }
+
+  @Nullable
+  String getArtwork()
+  {
+    return _artwork;
+  }
+
+  @Nonnull
+  @Override
+  public String toString()
+  {
+    return "LabelTemplate[" + _width + "x" + _height + " symbol=" + _symbolSize + "@" + _symbolX + "," + _symbolY + "]";
+  }
+}
@@ -0,0 +1,387 @@
+package org.realityforge.gwt.qr_code.image;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.realityforge.braincheck.BrainCheckConfig;
+import org.realityforge.gwt.qr_code.QrCode;
+import static org.realityforge.braincheck.Guards.*;
+
+/**
+ * Writes sheets of labels containing QR Code symbols as a PDF document.
+ * Each page is written to the stream as soon as it is full, so the memory used does not depend upon the number
+ * of labels beyond a few bytes per page to record the position of each object. Each symbol is drawn as one
+ * rectangle per horizontal run of dark modules in a Flate compressed content stream, and the static artwork of the
+ * labels and pages is written once as Form XObjects that are shared by every page.
+ *
+ * <pre>{@code
+ * final LabelTemplate template = new LabelTemplate( 144, 72, 36, 0, 72, 2 );
+ * final LabelSheet sheet = new LabelSheet( 612, 792, 18, 36, 4, 10, 144, 72, template );
+ * final PdfLabelWriter writer = new PdfLabelWriter( sheet, output );
+ * for ( final QrCode qrCode : qrCodes )
+ * {
+ *   writer.addLabel( qrCode );
+ * }
+ * writer.finish();
+ * }</pre>
+ *
+ * <p>Instances of this class are not thread-safe.</p>
+ */
+public final class PdfLabelWriter
+{
+  private static final int CATALOG_OBJECT = 1;
+  private static final int PAGES_OBJECT = 2;
+  private static final int LABEL_ARTWORK_OBJECT = 3;
+  private static final int PAGE_ARTWORK_OBJECT = 4;
+  // Objects from this number are allocated in pairs of a content stream followed by a page
+  private static final int FIRST_PAGE_OBJECT = 5;
+  @Nonnull
+  private final LabelSheet _sheet;
+  @Nonnull
+  private final OutputStream _output;
+  @Nonnull
+  private final Deflater _deflater = new Deflater( Deflater.BEST_SPEED );
+  // The uncompressed content of the current page
+  @Nonnull
+  private final StringBuilder _content = new StringBuilder();
+  @Nonnull
+  private final ByteArrayOutputStream _compressed = new ByteArrayOutputStream();
+  // Large enough to hold the runs of any row of the largest symbol
+  @Nonnull
+  private final int[] _runs = new int[ 177 + 1 ];
+  // The offset of each object in the document, indexed by the object number
+  @Nonnull
+  private long[] _offsets = new long[ 64 ];
+  private long _position;
+  private int _pageCount;
+  private long _labelCount;
+  // The number of labels placed on the current page
+  private int _pageLabels;
+  private boolean _finished;
+
+  /**
+   * Create a writer and write the start of the document to the stream.
+   *
+   * @param sheet  the layout of the labels on each page.
+   * @param output the stream to write to. The stream is not closed.
+   * @throws IOException if an error occurs writing to the stream.
+   */
+  public PdfLabelWriter( @Nonnull final LabelSheet sheet, @Nonnull final OutputStream output )
+    throws IOException
+  {
+    _sheet = Objects.requireNonNull( sheet );
+    _output = Objects.requireNonNull( output );
+
+    // The binary comment marks the file as binary for transfer programs
+    write( "%PDF-1.4\n%\u00E2\u00E3\u00CF\u00D3\n" );
+    startObject( CATALOG_OBJECT );
+    write( "<< /Type /Catalog /Pages " + PAGES_OBJECT + " 0 R >>\nendobj\n" );
+
+    final LabelTemplate template = sheet.getTemplate();
+    writeArtwork( LABEL_ARTWORK_OBJECT, template.getArtwork(), template.getWidth(), template.getHeight() );
+    writeArtwork( PAGE_ARTWORK_OBJECT, sheet.getArtwork(), sheet.getPageWidth(), sheet.getPageHeight() );
+  }
+
+  /**
+   * Write a complete document containing a label for each symbol to the stream.
+   *
+   * @param qrCodes the symbols.
+   * @param sheet   the layout of the labels on each page.
+   * @param output  the stream to write to. The stream is not closed.
+   * @throws IOException if an error occurs writing to the stream.
+   */
+  public static void writePdf( @Nonnull final Iterator<QrCode> qrCodes,
+                               @Nonnull final LabelSheet sheet,
+                               @Nonnull final OutputStream output )
+    throws IOException
+  {
+    final PdfLabelWriter writer = new PdfLabelWriter( sheet, output );
+    while ( qrCodes.hasNext() )
+    {
+      writer.addLabel( qrCodes.next() );
+    }
+    writer.finish();
+  }
+
+  /**
+   * Add a label containing the symbol in the next position on the sheet, writing the current page to the stream
+   * if it is full.
+   *
+   * @param qrCode the symbol.
+   * @throws IOException if an error occurs writing to the stream.
+   */
+  public void addLabel( @Nonnull final QrCode qrCode )
+    throws IOException
+  {
+    Objects.requireNonNull( qrCode );
+    if ( BrainCheckConfig.checkApiInvariants() )
+    {
+      apiInvariant( () -> !_finished, () -> "Labels can not be added after the document is finished" );
+    }
+    if ( _pageLabels == _sheet.getLabelsPerPage() )
+    {
+      writePage();
+    }
+    final LabelTemplate template = _sheet.getTemplate();
+    final int column = _pageLabels % _sheet.getColumns();
+    final int row = _pageLabels / _sheet.getColumns();
+    final double left = _sheet.getMarginLeft() + column * _sheet.getColumnPitch();
+    final double top = _sheet.getPageHeight() - _sheet.getMarginTop() - row * _sheet.getRowPitch();
+
+    if ( null != template.getArtwork() )
+    {
+      _content.append( "q 1 0 0 1 " );
+      appendNumber( _content, left ).append( ' ' );
+      appendNumber( _content, top - template.getHeight() ).append( " cm /L Do Q\n" );
+    }
+
+    // Draw the symbol in a coordinate space where each module is a unit square and y increases downwards
+    final int size = qrCode.getSize();
+    final double moduleSize = template.getSymbolSize() / ( size + template.getBorder() * 2 );
+    final double offset = template.getBorder() * moduleSize;
+    _content.append( "q " );
+    appendNumber( _content, moduleSize ).append( " 0 0 " );
+    appendNumber( _content, -moduleSize ).append( ' ' );
+    appendNumber( _content, left + template.getSymbolX() + offset ).append( ' ' );
+    appendNumber( _content, top - template.getSymbolY() - offset ).append( " cm\n" );
+    for ( int y = 0; y < size; y++ )
+    {
+      final int count = qrCode.getRowRuns( y, _runs );
+      for ( int i = 0; i < count; i++ )
+      {
+        _content
+          .append( _runs[ i * 2 ] )
+          .append( ' ' )
+          .append( y )
+          .append( ' ' )
+          .append( _runs[ i * 2 + 1 ] )
+          .append( " 1 re\n" );
+      }
+    }
+    _content.append( "f Q\n" );
+
+    _pageLabels++;
+    _labelCount++;
+  }
+
+  /**
+   * Write the current page and the end of the document to the stream. The stream is flushed but not closed.
+   * No labels may be added once the document is finished.
+   *
+   * @throws IOException if an error occurs writing to the stream.
+   */
+  public void finish()
+    throws IOException
+  {
+    if ( BrainCheckConfig.checkApiInvariants() )
+    {
+      apiInvariant( () -> !_finished, () -> "Document is already finished" );
+    }
+    _finished = true;
+    try
+    {
+      // A document must have at least one page, even if it is empty
+      if ( _pageLabels > 0 || 0 == _pageCount )
+      {
+        writePage();
+      }
+
+      startObject( PAGES_OBJECT );
+      write( "<< /Type /Pages /Count " + _pageCount + " /Kids [" );
+      final StringBuilder kids = new StringBuilder();
+      for ( int i = 0; i < _pageCount; i++ )
+      {
+        kids.append( i % 16 == 0 ? "\n" : " " ).append( FIRST_PAGE_OBJECT + i * 2 + 1 ).append( " 0 R" );
+        if ( kids.length() > 8192 )
+        {
+          write( kids.toString() );
+          kids.setLength( 0 );
+        }
+      }
+      write( kids.append( "\n] >>\nendobj\n" ).toString() );
+
+      final int objectCount = FIRST_PAGE_OBJECT + _pageCount * 2;
+      final long xref = _position;
+      final StringBuilder sb = new StringBuilder();
+      sb.append( "xref\n0 " ).append( objectCount ).append( "\n0000000000 65535 f \n" );
+      for ( int i = 1; i < objectCount; i++ )
+      {
+        final long offset = _offsets[ i ];
+        if ( 0 == offset )
+        {
+          // Unused artwork objects are recorded as free
+          sb.append( "0000000000 65535 f \n" );
+        }
+        else
+        {
+          final String digits = Long.toString( offset );
+          for ( int j = digits.length(); j < 10; j++ )
+          {
+            sb.append( '0' );
+          }
+          sb.append( digits ).append( " 00000 n \n" );
+        }
+        if ( sb.length() > 8192 )
+        {
+          write( sb.toString() );
+          sb.setLength( 0 );
+        }
+      }
+      sb.append( "trailer\n<< /Size " ).append( objectCount ).append( " /Root " ).append( CATALOG_OBJECT );
+      sb.append( " 0 R >>\nstartxref\n" ).append( xref ).append( "\n%%EOF\n" );
+      write( sb.toString() );
+      _output.flush();
+    }
+    finally
+    {
+      _deflater.end();
+    }
+  }
+
+  /**
+   * Return the number of labels added to the document.
+   *
+   * @return the number of labels added to the document.
+   */
+  public long getLabelCount()
+  {
+    return _labelCount;
+  }
+
+  /**
+   * Return the number of pages written to the stream, which excludes the page currently being filled.
+   *
+   * @return the number of pages written to the stream.
+   */
+  public int getPageCount()
+  {
+    return _pageCount;
+  }
+
+  private void writePage()
+    throws IOException
+  {
+    final int contentObject = FIRST_PAGE_OBJECT + _pageCount * 2;
+    final int pageObject = contentObject + 1;
+
+    _compressed.reset();
+    _deflater.reset();
+    final DeflaterOutputStream deflaterOutput = new DeflaterOutputStream( _compressed, _deflater, 8192 );
+    if ( null != _sheet.getArtwork() )
+    {
+      deflaterOutput.write( "/P Do\n".getBytes( StandardCharsets.ISO_8859_1 ) );
+    }
+    deflaterOutput.write( _content.toString().getBytes( StandardCharsets.ISO_8859_1 ) );
+    deflaterOutput.finish();
+    _content.setLength( 0 );
+
+    startObject( contentObject );
+    write( "<< /Length " + _compressed.size() + " /Filter /FlateDecode >>\nstream\n" );
+    _compressed.writeTo( _output );
+    _position += _compressed.size();
+    write( "\nendstream\nendobj\n" );
+
+    final StringBuilder sb = new StringBuilder();
+    sb.append( "<< /Type /Page /Parent " ).append( PAGES_OBJECT ).append( " 0 R /MediaBox [0 0 " );
+    appendNumber( sb, _sheet.getPageWidth() ).append( ' ' );
+    appendNumber( sb, _sheet.getPageHeight() ).append( "] /Contents " ).append( contentObject ).append( " 0 R" );
+    if ( null != _sheet.getTemplate().getArtwork() || null != _sheet.getArtwork() )
+    {
+      sb.append( " /Resources << /XObject <<" );
+      if ( null != _sheet.getTemplate().getArtwork() )
+      {
+        sb.append( " /L " ).append( LABEL_ARTWORK_OBJECT ).append( " 0 R" );
+      }
+      if ( null != _sheet.getArtwork() )
+      {
+        sb.append( " /P " ).append( PAGE_ARTWORK_OBJECT ).append( " 0 R" );
+      }
+      sb.append( " >> >>" );
+    }
+    sb.append( " >>\nendobj\n" );
+    startObject( pageObject );
+    write( sb.toString() );
+
+    _pageCount++;
+    _pageLabels = 0;
+  }
+
+  private void writeArtwork( final int objectNumber,
+                             @Nullable final String artwork,
+                             final double width,
+                             final double height )
+    throws IOException
+  {
+    if ( null != artwork )
+    {
+      final byte[] data = artwork.getBytes( StandardCharsets.ISO_8859_1 );
+      startObject( objectNumber );
+      final StringBuilder sb = new StringBuilder();
+      sb.append( "<< /Type /XObject /Subtype /Form /BBox [0 0 " );
+      appendNumber( sb, width ).append( ' ' );
+      appendNumber( sb, height ).append( "] /Length " ).append( data.length ).append( " >>\nstream\n" );
+      write( sb.toString() );
+      _output.write( data );
+      _position += data.length;
+      write( "\nendstream\nendobj\n" );
+    }
+  }
+
+  // Append a number with at most 4 decimal places, which is well below the resolution of any printer
+  @Nonnull
+  private static StringBuilder appendNumber( @Nonnull final StringBuilder sb, final double value )
+  {
+    final long scaled = Math.round( value * 10000 );
+    if ( scaled < 0 )
+    {
+      sb.append( '-' );
+    }
+    final long magnitude = Math.abs( scaled );
+    sb.append( magnitude / 10000 );
+    long fraction = magnitude % 10000;
+    if ( 0 != fraction )
+    {
+      int digits = 4;
+      while ( 0 == fraction % 10 )
+      {
+        fraction /= 10;
+        digits--;
+      }
+      sb.append( '.' );
+      final String text = Long.toString( fraction );
+      for ( int i = text.length(); i < digits; i++ )
+      {
+        sb.append( '0' );
+      }
+      sb.append( text );
+    }
+    return sb;
+  }
+
+  private void startObject( final int objectNumber )
+    throws IOException
+  {
+    if ( objectNumber >= _offsets.length )
+    {
+      _offsets = Arrays.copyOf( _offsets, Math.max( objectNumber + 1, _offsets.length * 2 ) );
+    }
+    _offsets[ objectNumber ] = _position;
+    write( objectNumber + " 0 obj\n" );
+  }
+
+  private void write( @Nonnull final String text )
+    throws IOException
+  {
+    final byte[] data = text.getBytes( StandardCharsets.ISO_8859_1 );
+    _output.write( data );
+    _position += data.length;
+  }
+}
@@ -0,0 +1,106 @@
+package org.realityforge.gwt.qr_code.image;
+
+import java.util.Arrays;
+import javax.annotation.Nonnull;
+import org.realityforge.gwt.qr_code.QrCode;
+
+/**
+ * Packs scaled rows of modules into 1-bit pixel rows, shared by the writers of 1-bit image and printer formats.
+ * Pixels are packed 8 to a byte with the leftmost pixel in the most significant bit and dark pixels are 1 bits.
+ * Rows are filled from the runs of dark modules, setting whole bytes where possible.
+ */
+final class PixelRows
+{
+  private PixelRows()
+  {
+  }
+
+  /**
+   * Return the number of pixels in each row of the image.
+   *
+   * @param qrCode the symbol.
+   * @param scale  the width and height of each module in pixels.
+   * @param border the number of border modules.
+   * @return the number of pixels in each row of the image.
+   */
+  static int getWidth( @Nonnull final QrCode qrCode, final int scale, final int border )
+  {
+    return ( qrCode.getSize() + border * 2 ) * scale;
+  }
+
+  /**
+   * Return the number of bytes in each packed row of the image.
+   *
+   * @param qrCode the symbol.
+   * @param scale  the width and height of each module in pixels.
+   * @param border the number of border modules.
+   * @return the number of bytes in each packed row of the image.
+   */
+  static int getRowLength( @Nonnull final QrCode qrCode, final int scale, final int border )
+  {
+    return ( getWidth( qrCode, scale, border ) + 7 ) / 8;
+  }
+
+  /**
+   * Return an array large enough to hold the runs of any row of the symbol.
+   *
+   * @param qrCode the symbol.
+   * @return the array.
+   */
+  @Nonnull
+  static int[] newRunBuffer( @Nonnull final QrCode qrCode )
+  {
+    return new int[ qrCode.getSize() + 1 ];
+  }
+
+  /**
+   * Fill the packed pixel row for the module row y, which is a row of the border if it is outside the symbol.
+   * The padding bits at the end of the row are cleared.
+   *
+   * @param row    the array holding the row.
+   * @param offset the index of the first byte of the row.
+   * @param qrCode the symbol.
+   * @param y      the y coordinate of the module row.
+   * @param scale  the width and height of each module in pixels.
+   * @param border the number of border modules.
+   * @param runs   the buffer used to hold the runs of the module row.
+   */
+  static void fillRow( @Nonnull final byte[] row,
+                       final int offset,
+                       @Nonnull final QrCode qrCode,
+                       final int y,
+                       final int scale,
+                       final int border,
+                       @Nonnull final int[] runs )
+  {
+    Arrays.fill( row, offset, offset + getRowLength( qrCode, scale, border ), (byte) 0 );
+    if ( y >= 0 && y < qrCode.getSize() )
+    {
+      final int count = qrCode.getRowRuns( y, runs );
+      for ( int i = 0; i < count; i++ )
+      {
+        final int start = ( runs[ i * 2 ] + border ) * scale;
+        setBits( row, offset, start, start + runs[ i * 2 + 1 ] * scale );
+      }
+    }
+  }
+
+  // Set the bits from start (inclusive) to end (exclusive)
+  private static void setBits( @Nonnull final byte[] row, final int offset, final int start, final int end )
+  {
+    final int first = offset + ( start >>> 3 );
+    final int last = offset + ( ( end - 1 ) >>> 3 );
+    final int firstMask = 0xFF >>> ( start & 7 );
+    final int lastMask = ( 0xFF << ( 7 - ( ( end - 1 ) & 7 ) ) ) & 0xFF;
+    if ( first == last )
+    {
+      row[ first ] |= firstMask & lastMask;
+    }
+    else
+    {
+      row[ first ] |= firstMask;
+      Arrays.fill( row, first + 1, last, (byte) 0xFF );
+      row[ last ] |= lastMask;
+    }
+  }
+}
@@ -0,0 +1,176 @@
+package org.realityforge.gwt.qr_code.image;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Objects;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import javax.annotation.Nonnull;
+import org.realityforge.braincheck.BrainCheckConfig;
+import org.realityforge.gwt.qr_code.QrCode;
+import static org.realityforge.braincheck.Guards.*;
+
+/**
+ * Encodes QR Code symbols as 1-bit grayscale PNG images.
+ * The image is written directly from the runs of dark modules of the symbol without creating an intermediate
+ * image object, and each scaled row is only constructed once and then repeated.
+ */
+public final class PngWriter
+{
+  private static final byte[] SIGNATURE = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' };
+
+  private PngWriter()
+  {
+  }
+
+  /**
+   * Return a PNG image representing the specified symbol.
+   *
+   * @param qrCode the symbol.
+   * @param scale  the width and height of each module in pixels, which must be positive.
+   * @param border the number of border modules to add, which must be non-negative.
+   * @return the bytes of the PNG image.
+   */
+  @Nonnull
+  public static byte[] toPng( @Nonnull final QrCode qrCode, final int scale, final int border )
+  {
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    try
+    {
+      writePng( qrCode, scale, border, output );
+    }
+    catch ( final IOException ioe )
+    {
+      // ByteArrayOutputStream never raises an IOException
+      throw new IllegalStateException( ioe );
+    }
+    return output.toByteArray();
+  }
+
+  /**
+   * Write a PNG image representing the specified symbol to the output stream.
+   * Dark modules are black and light modules are white.
+   *
+   * @param qrCode the symbol.
+   * @param scale  the width and height of each module in pixels, which must be positive.
+   * @param border the number of border modules to add, which must be non-negative.
+   * @param output the stream to write to. The stream is not closed.
+   * @throws IOException if an error occurs writing to the stream.
+   */
+  public static void writePng( @Nonnull final QrCode qrCode,
+                               final int scale,
+                               final int border,
+                               @Nonnull final OutputStream output )
+    throws IOException
+  {
+    Objects.requireNonNull( qrCode );
+    Objects.requireNonNull( output );
+    if ( BrainCheckConfig.checkApiInvariants() )
+    {
+      apiInvariant( () -> scale > 0, () -> "Scale must be positive" );
+      apiInvariant( () -> border >= 0, () -> "Border must be non-negative" );
+      apiInvariant( () -> ( qrCode.getSize() + border * 2L ) * scale <= Short.MAX_VALUE, () -> "Image too large" );
+    }
+    final int size = qrCode.getSize();
+    final int dimension = ( size + border * 2 ) * scale;
+
+    output.write( SIGNATURE );
+
+    final byte[] header = new byte[ 13 ];
+    writeInt( header, 0, dimension );
+    writeInt( header, 4, dimension );
+    header[ 8 ] = 1;  // Bit depth
+    header[ 9 ] = 0;  // Color type: grayscale
+    header[ 10 ] = 0; // Compression method: deflate
+    header[ 11 ] = 0; // Filter method: adaptive
+    header[ 12 ] = 0; // Interlace method: none
+    writeChunk( output, "IHDR", header, header.length );
+
+    // Each row is a filter type byte followed by the packed pixels where a 1 bit is white
+    final int rowLength = 1 + ( dimension + 7 ) / 8;
+    final byte[] row = new byte[ rowLength ];
+    final int[] runs = PixelRows.newRunBuffer( qrCode );
+    final ByteArrayOutputStream imageData = new ByteArrayOutputStream( rowLength * 16 );
+    final Deflater deflater = new Deflater( Deflater.BEST_SPEED );
+    try
+    {
+      final DeflaterOutputStream deflaterOutput = new DeflaterOutputStream( imageData, deflater, rowLength );
+      fillRow( row, -1, border, scale, qrCode, runs );
+      for ( int i = 0; i < border * scale; i++ )
+      {
+        deflaterOutput.write( row );
+      }
+      for ( int y = 0; y < size; y++ )
+      {
+        fillRow( row, y, border, scale, qrCode, runs );
+        for ( int i = 0; i < scale; i++ )
+        {
+          deflaterOutput.write( row );
+        }
+      }
+      fillRow( row, -1, border, scale, qrCode, runs );
+      for ( int i = 0; i < border * scale; i++ )
+      {
+        deflaterOutput.write( row );
+      }
+      deflaterOutput.finish();
+    }
+    finally
+    {
+      deflater.end();
+    }
+    writeChunk( output, "IDAT", imageData.toByteArray(), imageData.size() );
+    writeChunk( output, "IEND", new byte[ 0 ], 0 );
+  }
+
+  // Fill the row with the pixels for module row y, or an entirely white row if y is outside the symbol.
+  // Padding bits beyond the width of the image are left set which PNG readers ignore.
+  private static void fillRow( @Nonnull final byte[] row,
+                               final int y,
+                               final int border,
+                               final int scale,
+                               @Nonnull final QrCode qrCode,
+                               @Nonnull final int[] runs )
+  {
+    row[ 0 ] = 0;
+    PixelRows.fillRow( row, 1, qrCode, y, scale, border, runs );
+    // PNG grayscale uses 1 bits for white pixels
+    for ( int i = 1; i < row.length; i++ )
+    {
+      row[ i ] = (byte) ~row[ i ];
+    }
+  }
+
+  private static void writeChunk( @Nonnull final OutputStream output,
+                                  @Nonnull final String type,
+                                  @Nonnull final byte[] data,
+                                  final int length )
+    throws IOException
+  {
+    final byte[] prefix = new byte[ 8 ];
+    writeInt( prefix, 0, length );
+    for ( int i = 0; i < 4; i++ )
+    {
+      prefix[ 4 + i ] = (byte) type.charAt( i );
+    }
+    final CRC32 crc = new CRC32();
+    crc.update( prefix, 4, 4 );
+    crc.update( data, 0, length );
+    final byte[] suffix = new byte[ 4 ];
+    writeInt( suffix, 0, (int) crc.getValue() );
+
+    output.write( prefix );
+    output.write( data, 0, length );
+    output.write( suffix );
+  }
+
+  private static void writeInt( @Nonnull final byte[] data, final int offset, final int value )
+  {
+    data[ offset ] = (byte) ( value >>> 24 );
+    data[ offset + 1 ] = (byte) ( value >>> 16 );
+    data[ offset + 2 ] = (byte) ( value >>> 8 );
+    data[ offset + 3 ] = (byte) value;
+  }
+}
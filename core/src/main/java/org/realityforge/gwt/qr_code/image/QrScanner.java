@@ -0,0 +1,825 @@
+package org.realityforge.gwt.qr_code.image;
+
+import java.util.Arrays;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.realityforge.braincheck.BrainCheckConfig;
+import org.realityforge.gwt.qr_code.QrDecodeResult;
+import org.realityforge.gwt.qr_code.QrDecoder;
+import static org.realityforge.braincheck.Guards.*;
+
+/**
+ * Scans a grayscale image for a symbol and decodes it, which is used to check rendered and printed output
+ * without a separate reader. The scanner chooses a global threshold for the image using Otsu's method and
+ * compares pixels against it as they are read, so no binarized copy of the image is created. Finder patterns
+ * are located by scanning rows for runs of dark and light pixels in the ratio 1:1:3:1:1 and confirming each
+ * candidate across the column and the diagonal. The dimension of the symbol is counted along the timing
+ * patterns, the bottom right alignment pattern is located near where the finder patterns predict it, and the
+ * modules are sampled through the perspective transform defined by the four patterns before being decoded by
+ * {@link QrDecoder}.
+ *
+ * <p>Axis aligned and moderately rotated or skewed images of a single symbol with a quiet zone are supported.
+ * A scanner holds buffers that are reused between scans, so a scan allocates little beyond the decoder and
+ * a scanner must only be used by one thread at a time.</p>
+ */
+public final class QrScanner
+{
+  // The most finder pattern candidates that are tracked in an image
+  private static final int MAX_CANDIDATES = 64;
+  // The most finder pattern candidates that are considered when selecting the three patterns of the symbol
+  private static final int MAX_SELECTED = 12;
+  private static final int MAX_SIZE = 177;
+  private static final byte[] NO_PIXELS = new byte[ 0 ];
+  private final int[] _histogram = new int[ 256 ];
+  private final int[] _runs = new int[ 5 ];
+  private final int[] _crossRuns = new int[ 5 ];
+  private final float[] _candidateX = new float[ MAX_CANDIDATES ];
+  private final float[] _candidateY = new float[ MAX_CANDIDATES ];
+  private final float[] _candidateModuleSize = new float[ MAX_CANDIDATES ];
+  private final int[] _candidateHits = new int[ MAX_CANDIDATES ];
+  private final int[] _selected = new int[ MAX_SELECTED ];
+  // The modules sampled from the image, packed in the format accepted by QrDecoder
+  private final int[] _modules = new int[ MAX_SIZE * ( ( MAX_SIZE + 31 ) >>> 5 ) ];
+  // The transform from module coordinates to image coordinates and scratch space used to compute it
+  private final double[] _transform = new double[ 9 ];
+  private final double[] _toSquare = new double[ 9 ];
+  private final double[] _fromSquare = new double[ 9 ];
+  private final int[] _dimensions = new int[ 5 ];
+  @Nonnull
+  private byte[] _pixels = NO_PIXELS;
+  private int _offset;
+  private int _stride;
+  private int _width;
+  private int _height;
+  private int _threshold;
+  private int _candidateCount;
+  // The centers of the top left, top right and bottom left finder patterns and the estimated module size
+  private float _topLeftX;
+  private float _topLeftY;
+  private float _topRightX;
+  private float _topRightY;
+  private float _bottomLeftX;
+  private float _bottomLeftY;
+  private float _moduleSize;
+  // The center of the most recently located alignment pattern
+  private float _alignmentX;
+  private float _alignmentY;
+
+  /**
+   * Scan the image for a symbol and decode it.
+   *
+   * @param pixels the buffer holding the 8-bit grayscale pixels of the image, where dark modules have low values.
+   * @param offset the index in the buffer of the top left pixel of the image.
+   * @param stride the distance in the buffer between the first pixels of consecutive rows.
+   * @param width  the width of the image in pixels.
+   * @param height the height of the image in pixels.
+   * @return the content of the symbol, or null if no symbol could be located and decoded.
+   */
+  @Nullable
+  public QrDecodeResult scan( @Nonnull final byte[] pixels,
+                              final int offset,
+                              final int stride,
+                              final int width,
+                              final int height )
+  {
+    if ( BrainCheckConfig.checkApiInvariants() )
+    {
+      apiInvariant( () -> width > 0 && height > 0, () -> "Image dimensions must be positive" );
+      apiInvariant( () -> stride >= width, () -> "Stride " + stride + " is less than the width " + width );
+      apiInvariant( () -> offset >= 0 && offset + (long) ( height - 1 ) * stride + width <= pixels.length,
+                    () -> "The image does not fit in the buffer" );
+    }
+    _pixels = pixels;
+    _offset = offset;
+    _stride = stride;
+    _width = width;
+    _height = height;
+    try
+    {
+      _threshold = computeThreshold();
+      findCandidates();
+      if ( !selectFinderPatterns() )
+      {
+        return null;
+      }
+      final int count = collectDimensions();
+      for ( int i = 0; i < count; i++ )
+      {
+        final QrDecodeResult result = sampleAndDecode( _dimensions[ i ] );
+        if ( null != result )
+        {
+          return result;
+        }
+      }
+      return null;
+    }
+    finally
+    {
+      // Do not retain the image of the caller
+      _pixels = NO_PIXELS;
+    }
+  }
+
+  // Choose the threshold that best separates dark and light pixels using Otsu's method, sampling a grid of
+  // about 128 by 128 pixels as that is sufficient for the histogram of a symbol.
+  private int computeThreshold()
+  {
+    Arrays.fill( _histogram, 0 );
+    final int step = Math.max( 1, Math.min( _width, _height ) / 128 );
+    long count = 0;
+    long sum = 0;
+    for ( int y = 0; y < _height; y += step )
+    {
+      final int row = _offset + y * _stride;
+      for ( int x = 0; x < _width; x += step )
+      {
+        final int value = _pixels[ row + x ] & 0xFF;
+        _histogram[ value ]++;
+        sum += value;
+        count++;
+      }
+    }
+    long darkCount = 0;
+    long darkSum = 0;
+    double maxVariance = -1;
+    // When the dark and light pixels are well separated every threshold between them is equally good,
+    // so the middle of the range of the best thresholds is chosen
+    int first = 0;
+    int last = 0;
+    for ( int t = 0; t < 256; t++ )
+    {
+      darkCount += _histogram[ t ];
+      darkSum += (long) t * _histogram[ t ];
+      final long lightCount = count - darkCount;
+      if ( 0 == darkCount )
+      {
+        continue;
+      }
+      else if ( 0 == lightCount )
+      {
+        break;
+      }
+      final double difference = darkSum / (double) darkCount - ( sum - darkSum ) / (double) lightCount;
+      final double variance = (double) darkCount * lightCount * difference * difference;
+      if ( variance > maxVariance )
+      {
+        maxVariance = variance;
+        first = t;
+        last = t;
+      }
+      else if ( variance == maxVariance )
+      {
+        last = t;
+      }
+    }
+    return ( first + last ) / 2;
+  }
+
+  private boolean isDark( final int x, final int y )
+  {
+    return ( _pixels[ _offset + y * _stride + x ] & 0xFF ) <= _threshold;
+  }
+
+  private boolean contains( final int x, final int y )
+  {
+    return x >= 0 && y >= 0 && x < _width && y < _height;
+  }
+
+  // Scan rows of the image for runs in the ratio 1:1:3:1:1, recording the confirmed finder pattern candidates
+  private void findCandidates()
+  {
+    _candidateCount = 0;
+    // The center band of a finder pattern is 3 modules high, so skip rows in proportion to the module size of
+    // the largest symbol that fills the image, while scanning every row of small images
+    int skip = Math.max( 1, 3 * _height / ( 4 * ( MAX_SIZE + 8 ) ) );
+    final int[] runs = _runs;
+    final byte[] pixels = _pixels;
+    final int threshold = _threshold;
+    for ( int y = skip - 1; y < _height; y += skip )
+    {
+      // The lengths of the last five runs, where the runs alternate in color
+      Arrays.fill( runs, 0 );
+      final int row = _offset + y * _stride;
+      int x = 0;
+      while ( x < _width )
+      {
+        final boolean dark = ( pixels[ row + x ] & 0xFF ) <= threshold;
+        int end = x + 1;
+        while ( end < _width && ( ( pixels[ row + end ] & 0xFF ) <= threshold ) == dark )
+        {
+          end++;
+        }
+        runs[ 0 ] = runs[ 1 ];
+        runs[ 1 ] = runs[ 2 ];
+        runs[ 2 ] = runs[ 3 ];
+        runs[ 3 ] = runs[ 4 ];
+        runs[ 4 ] = end - x;
+        // A light run before the first dark run leaves the first run empty so it is never accepted
+        if ( dark && 0 != runs[ 0 ] && isFinderRatio( runs ) )
+        {
+          checkCandidate( end - runs[ 4 ] - runs[ 3 ] - runs[ 2 ] / 2F, y, runs[ 2 ], sum( runs ) );
+          if ( 1 == _candidateCount )
+          {
+            // Every finder pattern is crossed at least twice when skipping rows by up to a third of the
+            // center band, which is 3 modules high
+            skip = Math.max( skip, (int) _candidateModuleSize[ 0 ] );
+          }
+        }
+        x = end;
+      }
+    }
+  }
+
+  private static int sum( @Nonnull final int[] runs )
+  {
+    return runs[ 0 ] + runs[ 1 ] + runs[ 2 ] + runs[ 3 ] + runs[ 4 ];
+  }
+
+  private static boolean isFinderRatio( @Nonnull final int[] runs )
+  {
+    final int total = sum( runs );
+    if ( total < 7 )
+    {
+      return false;
+    }
+    final float moduleSize = total / 7F;
+    final float maxVariance = moduleSize / 2F;
+    return Math.abs( moduleSize - runs[ 0 ] ) < maxVariance &&
+           Math.abs( moduleSize - runs[ 1 ] ) < maxVariance &&
+           Math.abs( 3F * moduleSize - runs[ 2 ] ) < 3F * maxVariance &&
+           Math.abs( moduleSize - runs[ 3 ] ) < maxVariance &&
+           Math.abs( moduleSize - runs[ 4 ] ) < maxVariance;
+  }
+
+  // Confirm a candidate found in a row by checking the column through its center, then the row through the
+  // refined center and finally the diagonal, and record it if every check passes.
+  private void checkCandidate( final float rowCenterX, final int y, final int centerRun, final int rowTotal )
+  {
+    final int x = (int) rowCenterX;
+    final float verticalOffset = crossCheck( x, y, 0, 1, centerRun * 2, rowTotal );
+    if ( Float.isNaN( verticalOffset ) )
+    {
+      return;
+    }
+    final float centerY = y + verticalOffset;
+    final int verticalTotal = sum( _crossRuns );
+    final float horizontalOffset = crossCheck( x, (int) centerY, 1, 0, centerRun * 2, rowTotal );
+    if ( Float.isNaN( horizontalOffset ) )
+    {
+      return;
+    }
+    final float centerX = x + horizontalOffset;
+    final int horizontalTotal = sum( _crossRuns );
+    if ( Float.isNaN( crossCheck( (int) centerX, (int) centerY, 1, 1, centerRun * 2, 0 ) ) )
+    {
+      return;
+    }
+    // The width of the pattern along a line through the center is least when the line is parallel to a side.
+    // A rotated pattern is nearer to parallel to either the rows or the diagonal, so the lesser of the two
+    // estimates is within 8% of the module size at any rotation.
+    final float moduleSize =
+      Math.min( ( verticalTotal + horizontalTotal ) / 14F, (float) ( sum( _crossRuns ) * Math.sqrt( 2 ) / 7 ) );
+    for ( int i = 0; i < _candidateCount; i++ )
+    {
+      final float size = _candidateModuleSize[ i ];
+      if ( Math.abs( _candidateX[ i ] - centerX ) <= size &&
+           Math.abs( _candidateY[ i ] - centerY ) <= size &&
+           ( Math.abs( moduleSize - size ) <= 1F || Math.abs( moduleSize - size ) <= size / 4F ) )
+      {
+        // Average the positions of every row that crosses the same pattern
+        final int hits = _candidateHits[ i ];
+        _candidateX[ i ] = ( _candidateX[ i ] * hits + centerX ) / ( hits + 1 );
+        _candidateY[ i ] = ( _candidateY[ i ] * hits + centerY ) / ( hits + 1 );
+        _candidateModuleSize[ i ] = ( size * hits + moduleSize ) / ( hits + 1 );
+        _candidateHits[ i ] = hits + 1;
+        return;
+      }
+    }
+    if ( _candidateCount < MAX_CANDIDATES )
+    {
+      _candidateX[ _candidateCount ] = centerX;
+      _candidateY[ _candidateCount ] = centerY;
+      _candidateModuleSize[ _candidateCount ] = moduleSize;
+      _candidateHits[ _candidateCount ] = 1;
+      _candidateCount++;
+    }
+  }
+
+  // Count the runs of a finder pattern along the direction (dx, dy) through the pixel at (x, y), which must be
+  // in the center of the pattern. The runs are left in _crossRuns and the offset of the center of the pattern
+  // from the top left corner of the pixel is returned, or NaN if the runs are not in the ratio 1:1:3:1:1 or the
+  // total differs from the expected total by 40% or more. An expected total of 0 skips the check of the total.
+  private float crossCheck( final int x, final int y, final int dx, final int dy, final int maxRun, final int expectedTotal )
+  {
+    final int[] runs = _crossRuns;
+    Arrays.fill( runs, 0 );
+    int cx = x;
+    int cy = y;
+    int before = 0;
+    while ( contains( cx, cy ) && isDark( cx, cy ) )
+    {
+      before++;
+      cx -= dx;
+      cy -= dy;
+    }
+    if ( 0 == before )
+    {
+      return Float.NaN;
+    }
+    while ( contains( cx, cy ) && !isDark( cx, cy ) && runs[ 1 ] <= maxRun )
+    {
+      runs[ 1 ]++;
+      cx -= dx;
+      cy -= dy;
+    }
+    while ( contains( cx, cy ) && isDark( cx, cy ) && runs[ 0 ] <= maxRun )
+    {
+      runs[ 0 ]++;
+      cx -= dx;
+      cy -= dy;
+    }
+    cx = x + dx;
+    cy = y + dy;
+    int after = 0;
+    while ( contains( cx, cy ) && isDark( cx, cy ) )
+    {
+      after++;
+      cx += dx;
+      cy += dy;
+    }
+    while ( contains( cx, cy ) && !isDark( cx, cy ) && runs[ 3 ] <= maxRun )
+    {
+      runs[ 3 ]++;
+      cx += dx;
+      cy += dy;
+    }
+    while ( contains( cx, cy ) && isDark( cx, cy ) && runs[ 4 ] <= maxRun )
+    {
+      runs[ 4 ]++;
+      cx += dx;
+      cy += dy;
+    }
+    runs[ 2 ] = before + after;
+    if ( !isFinderRatio( runs ) ||
+         ( 0 != expectedTotal && 5 * Math.abs( sum( runs ) - expectedTotal ) >= 2 * expectedTotal ) )
+    {
+      return Float.NaN;
+    }
+    // The center run covers the pixels from -(before - 1) to after along the direction
+    return ( after - before + 2 ) / 2F;
+  }
+
+  // Select the three candidates that are most likely to be the finder patterns of a symbol, preferring
+  // candidates that were crossed by more than one row, and order them as top left, top right and bottom left.
+  private boolean selectFinderPatterns()
+  {
+    for ( int minHits = 2; minHits >= 1; minHits-- )
+    {
+      // Keep the candidates with the most hits
+      int selected = 0;
+      for ( int i = 0; i < _candidateCount; i++ )
+      {
+        if ( _candidateHits[ i ] >= minHits )
+        {
+          int j = Math.min( selected, MAX_SELECTED - 1 );
+          if ( selected < MAX_SELECTED || _candidateHits[ i ] > _candidateHits[ _selected[ j ] ] )
+          {
+            while ( j > 0 && _candidateHits[ _selected[ j - 1 ] ] < _candidateHits[ i ] )
+            {
+              _selected[ j ] = _selected[ j - 1 ];
+              j--;
+            }
+            _selected[ j ] = i;
+            selected = Math.min( selected + 1, MAX_SELECTED );
+          }
+        }
+      }
+      if ( selectTriangle( selected ) )
+      {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // Choose the three selected candidates whose centers form the triangle nearest to an isosceles right
+  // triangle, which is the shape formed by the finder patterns of an undistorted symbol.
+  private boolean selectTriangle( final int selected )
+  {
+    double bestScore = 0.5;
+    int bestA = -1;
+    int bestB = -1;
+    int bestC = -1;
+    for ( int i = 0; i < selected; i++ )
+    {
+      for ( int j = i + 1; j < selected; j++ )
+      {
+        for ( int k = j + 1; k < selected; k++ )
+        {
+          final int a = _selected[ i ];
+          final int b = _selected[ j ];
+          final int c = _selected[ k ];
+          final float minSize =
+            Math.min( _candidateModuleSize[ a ], Math.min( _candidateModuleSize[ b ], _candidateModuleSize[ c ] ) );
+          final float maxSize =
+            Math.max( _candidateModuleSize[ a ], Math.max( _candidateModuleSize[ b ], _candidateModuleSize[ c ] ) );
+          if ( maxSize > minSize * 1.5F )
+          {
+            continue;
+          }
+          final double ab = distanceSquared( a, b );
+          final double ac = distanceSquared( a, c );
+          final double bc = distanceSquared( b, c );
+          // The hypotenuse is opposite the top left pattern
+          final double hypotenuse = Math.max( ab, Math.max( ac, bc ) );
+          final double side1 = hypotenuse == ab ? ac : ab;
+          final double side2 = hypotenuse == bc ? ac : bc;
+          // The finder patterns of the smallest symbol are 14 modules apart
+          if ( Math.min( side1, side2 ) < 14 * 14 * minSize * minSize )
+          {
+            continue;
+          }
+          final double score = Math.abs( hypotenuse - side1 - side2 ) / hypotenuse +
+                               Math.abs( side1 - side2 ) / Math.max( side1, side2 );
+          if ( score < bestScore )
+          {
+            bestScore = score;
+            // Place the top left pattern first
+            bestA = hypotenuse == ab ? c : hypotenuse == ac ? b : a;
+            bestB = hypotenuse == ab ? a : hypotenuse == ac ? a : b;
+            bestC = hypotenuse == ab ? b : hypotenuse == ac ? c : c;
+          }
+        }
+      }
+    }
+    if ( -1 == bestA )
+    {
+      return false;
+    }
+    _topLeftX = _candidateX[ bestA ];
+    _topLeftY = _candidateY[ bestA ];
+    // In image coordinates where y increases downwards the top right pattern is clockwise from the bottom left
+    final double cross = ( _candidateX[ bestB ] - _topLeftX ) * ( _candidateY[ bestC ] - _topLeftY ) -
+                         ( _candidateY[ bestB ] - _topLeftY ) * ( _candidateX[ bestC ] - _topLeftX );
+    final int topRight = cross > 0 ? bestB : bestC;
+    final int bottomLeft = cross > 0 ? bestC : bestB;
+    _topRightX = _candidateX[ topRight ];
+    _topRightY = _candidateY[ topRight ];
+    _bottomLeftX = _candidateX[ bottomLeft ];
+    _bottomLeftY = _candidateY[ bottomLeft ];
+    _moduleSize =
+      ( _candidateModuleSize[ bestA ] + _candidateModuleSize[ topRight ] + _candidateModuleSize[ bottomLeft ] ) / 3F;
+    return true;
+  }
+
+  private double distanceSquared( final int a, final int b )
+  {
+    final double dx = _candidateX[ a ] - _candidateX[ b ];
+    final double dy = _candidateY[ a ] - _candidateY[ b ];
+    return dx * dx + dy * dy;
+  }
+
+  // Collect the candidate dimensions of the symbol in the order that they are tried. The dimensions counted
+  // along the timing patterns are exact when the patterns are read cleanly, while the dimension estimated from
+  // the distances between the finder patterns depends upon the accuracy of the module size.
+  private int collectDimensions()
+  {
+    final double right = Math.hypot( _topRightX - _topLeftX, _topRightY - _topLeftY );
+    final double down = Math.hypot( _bottomLeftX - _topLeftX, _bottomLeftY - _topLeftY );
+    // Steps of one module along and across the rows of the symbol
+    final double rowX = ( _topRightX - _topLeftX ) / right * _moduleSize;
+    final double rowY = ( _topRightY - _topLeftY ) / right * _moduleSize;
+    final double columnX = ( _bottomLeftX - _topLeftX ) / down * _moduleSize;
+    final double columnY = ( _bottomLeftY - _topLeftY ) / down * _moduleSize;
+
+    // The timing patterns run from the separator of one finder pattern to the separator of the other,
+    // 3 modules from the centers of the finder patterns
+    int count = 0;
+    count = addDimension( count, countTimingModules( _topLeftX + rowX * 4 + columnX * 3,
+                                                     _topLeftY + rowY * 4 + columnY * 3,
+                                                     _topRightX - rowX * 4 + columnX * 3,
+                                                     _topRightY - rowY * 4 + columnY * 3 ) );
+    count = addDimension( count, countTimingModules( _topLeftX + columnX * 4 + rowX * 3,
+                                                     _topLeftY + columnY * 4 + rowY * 3,
+                                                     _bottomLeftX - columnX * 4 + rowX * 3,
+                                                     _bottomLeftY - columnY * 4 + rowY * 3 ) );
+    int estimate = (int) Math.round( ( right + down ) / ( 2 * _moduleSize ) ) + 7;
+    switch ( estimate & 3 )
+    {
+      case 0:
+        estimate++;
+        break;
+      case 2:
+        estimate--;
+        break;
+      case 3:
+        estimate -= 2;
+        break;
+      default:
+        break;
+    }
+    count = addDimension( count, estimate );
+    count = addDimension( count, estimate + 4 );
+    count = addDimension( count, estimate - 4 );
+    return count;
+  }
+
+  private int addDimension( final int count, final int dimension )
+  {
+    if ( dimension < 21 || dimension > MAX_SIZE || 1 != ( dimension & 3 ) )
+    {
+      return count;
+    }
+    for ( int i = 0; i < count; i++ )
+    {
+      if ( _dimensions[ i ] == dimension )
+      {
+        return count;
+      }
+    }
+    _dimensions[ count ] = dimension;
+    return count + 1;
+  }
+
+  // Count the dark runs along a timing pattern between the centers of the light separator modules at each
+  // end, where runs much shorter than a module are ignored as noise, and return the implied dimension.
+  private int countTimingModules( final double startX, final double startY, final double endX, final double endY )
+  {
+    final int steps = (int) Math.ceil( Math.hypot( endX - startX, endY - startY ) );
+    final int minRun = Math.max( 1, Math.round( _moduleSize / 3F ) );
+    int darkRuns = 0;
+    int run = 0;
+    boolean dark = false;
+    for ( int i = 0; i <= steps; i++ )
+    {
+      final int x = (int) ( startX + ( endX - startX ) * i / steps );
+      final int y = (int) ( startY + ( endY - startY ) * i / steps );
+      if ( !contains( x, y ) )
+      {
+        return -1;
+      }
+      final boolean value = isDark( x, y );
+      if ( value == dark )
+      {
+        run++;
+      }
+      else
+      {
+        if ( dark && run >= minRun )
+        {
+          darkRuns++;
+        }
+        dark = value;
+        run = 1;
+      }
+    }
+    if ( dark && run >= minRun )
+    {
+      darkRuns++;
+    }
+    // The timing pattern starts and ends with a dark module, so the number of modules is 2 * runs - 1
+    return 2 * darkRuns + 15;
+  }
+
+  @Nullable
+  private QrDecodeResult sampleAndDecode( final int dimension )
+  {
+    final double far = dimension - 3.5;
+    // The distances between the finder patterns give a better estimate of the module size once the dimension is known
+    final float moduleSize =
+      (float) ( ( Math.hypot( _topRightX - _topLeftX, _topRightY - _topLeftY ) +
+                  Math.hypot( _bottomLeftX - _topLeftX, _bottomLeftY - _topLeftY ) ) / ( 2 * ( dimension - 7 ) ) );
+    if ( dimension > 21 && findAlignmentPattern( dimension, moduleSize ) )
+    {
+      // The bottom right alignment pattern is centered 6.5 modules from the bottom and right edges
+      final double near = dimension - 6.5;
+      computeTransform( 3.5, 3.5, far, 3.5, near, near, 3.5, far,
+                        _topLeftX, _topLeftY, _topRightX, _topRightY, _alignmentX, _alignmentY, _bottomLeftX, _bottomLeftY );
+    }
+    else
+    {
+      // Assume that the symbol is a parallelogram
+      computeTransform( 3.5, 3.5, far, 3.5, far, far, 3.5, far,
+                        _topLeftX, _topLeftY, _topRightX, _topRightY,
+                        _topRightX + _bottomLeftX - _topLeftX, _topRightY + _bottomLeftY - _topLeftY,
+                        _bottomLeftX, _bottomLeftY );
+    }
+
+    final int words = ( dimension + 31 ) >>> 5;
+    Arrays.fill( _modules, 0, words * dimension, 0 );
+    final double[] t = _transform;
+    for ( int y = 0; y < dimension; y++ )
+    {
+      // The terms of the transform are linear along a row so they are stepped from the first module
+      final double my = y + 0.5;
+      double nx = t[ 0 ] * 0.5 + t[ 3 ] * my + t[ 6 ];
+      double ny = t[ 1 ] * 0.5 + t[ 4 ] * my + t[ 7 ];
+      double w = t[ 2 ] * 0.5 + t[ 5 ] * my + t[ 8 ];
+      for ( int x = 0; x < dimension; x++ )
+      {
+        final int px = (int) Math.floor( nx / w );
+        final int py = (int) Math.floor( ny / w );
+        if ( !contains( px, py ) )
+        {
+          return null;
+        }
+        if ( isDark( px, py ) )
+        {
+          _modules[ y * words + ( x >>> 5 ) ] |= 1 << ( x & 31 );
+        }
+        nx += t[ 0 ];
+        ny += t[ 1 ];
+        w += t[ 2 ];
+      }
+    }
+    return QrDecoder.decode( dimension, _modules );
+  }
+
+  // Search for the bottom right alignment pattern near the position predicted by the finder patterns, where
+  // a row through its center crosses runs of light, dark and light pixels 1 module long between dark pixels.
+  private boolean findAlignmentPattern( final int dimension, final float moduleSize )
+  {
+    final double scale = ( dimension - 10 ) / (double) ( dimension - 7 );
+    final float expectedX = (float) ( _topLeftX + ( _topRightX - _topLeftX + _bottomLeftX - _topLeftX ) * scale );
+    final float expectedY = (float) ( _topLeftY + ( _topRightY - _topLeftY + _bottomLeftY - _topLeftY ) * scale );
+    final int radius = Math.max( 4, Math.round( moduleSize * 4 ) );
+    final int minX = Math.max( 0, (int) expectedX - radius );
+    final int maxX = Math.min( _width - 1, (int) expectedX + radius );
+    final int minY = Math.max( 0, (int) expectedY - radius );
+    final int maxY = Math.min( _height - 1, (int) expectedY + radius );
+    float bestDistance = Float.MAX_VALUE;
+    for ( int y = minY; y <= maxY; y++ )
+    {
+      // Track the lengths of the last three runs and the color of the last run
+      int run0 = 0;
+      int run1 = 0;
+      int run2 = 0;
+      boolean dark = isDark( minX, y );
+      int run = 0;
+      for ( int x = minX; x <= maxX; x++ )
+      {
+        final boolean value = isDark( x, y );
+        if ( value == dark )
+        {
+          run++;
+        }
+        else
+        {
+          run0 = run1;
+          run1 = run2;
+          run2 = run;
+          run = 1;
+          dark = value;
+          // A light, dark, light sequence followed by a dark pixel
+          if ( dark &&
+               isAlignmentRun( run0, moduleSize ) &&
+               isAlignmentRun( run1, moduleSize ) &&
+               isAlignmentRun( run2, moduleSize ) )
+          {
+            final float centerX = x - run2 - run1 / 2F;
+            final float centerY = crossCheckAlignment( (int) centerX, y, moduleSize );
+            if ( !Float.isNaN( centerY ) )
+            {
+              final float distance = Math.abs( centerX - expectedX ) + Math.abs( centerY - expectedY );
+              if ( distance < bestDistance )
+              {
+                bestDistance = distance;
+                _alignmentX = centerX;
+                _alignmentY = centerY;
+              }
+            }
+          }
+        }
+      }
+    }
+    return bestDistance != Float.MAX_VALUE;
+  }
+
+  private static boolean isAlignmentRun( final int run, final float moduleSize )
+  {
+    return Math.abs( run - moduleSize ) < moduleSize / 2F + 0.5F;
+  }
+
+  // Check the column through a candidate alignment pattern center, returning the vertical center or NaN
+  private float crossCheckAlignment( final int x, final int y, final float moduleSize )
+  {
+    if ( !isDark( x, y ) )
+    {
+      return Float.NaN;
+    }
+    int top = y;
+    while ( top > 0 && isDark( x, top - 1 ) )
+    {
+      top--;
+    }
+    int bottom = y;
+    while ( bottom < _height - 1 && isDark( x, bottom + 1 ) )
+    {
+      bottom++;
+    }
+    if ( !isAlignmentRun( bottom - top + 1, moduleSize ) )
+    {
+      return Float.NaN;
+    }
+    int above = 0;
+    while ( top - above - 1 >= 0 && !isDark( x, top - above - 1 ) )
+    {
+      above++;
+    }
+    int below = 0;
+    while ( bottom + below + 1 < _height && !isDark( x, bottom + below + 1 ) )
+    {
+      below++;
+    }
+    return isAlignmentRun( above, moduleSize ) && isAlignmentRun( below, moduleSize ) && top - above > 0 && bottom + below + 1 < _height ?
+           ( top + bottom + 1 ) / 2F :
+           Float.NaN;
+  }
+
+  // Compute the perspective transform that maps the four points in module coordinates to the four points in
+  // image coordinates, by mapping the module points to the unit square and the unit square to the image points.
+  private void computeTransform( final double mx0, final double my0,
+                                 final double mx1, final double my1,
+                                 final double mx2, final double my2,
+                                 final double mx3, final double my3,
+                                 final double px0, final double py0,
+                                 final double px1, final double py1,
+                                 final double px2, final double py2,
+                                 final double px3, final double py3 )
+  {
+    squareToQuadrilateral( _toSquare, mx0, my0, mx1, my1, mx2, my2, mx3, my3 );
+    adjoint( _toSquare, _fromSquare );
+    squareToQuadrilateral( _toSquare, px0, py0, px1, py1, px2, py2, px3, py3 );
+    // The transform applies the inverse of the module mapping and then the image mapping
+    multiply( _fromSquare, _toSquare, _transform );
+  }
+
+  // Compute the transform that maps the corners (0,0), (1,0), (1,1) and (0,1) of the unit square to the points.
+  // The matrix is stored by column so that (x, y) maps to ((m0 x + m3 y + m6) / w, (m1 x + m4 y + m7) / w) where
+  // w = m2 x + m5 y + m8.
+  private static void squareToQuadrilateral( @Nonnull final double[] m,
+                                             final double x0, final double y0,
+                                             final double x1, final double y1,
+                                             final double x2, final double y2,
+                                             final double x3, final double y3 )
+  {
+    final double dx3 = x0 - x1 + x2 - x3;
+    final double dy3 = y0 - y1 + y2 - y3;
+    if ( 0 == dx3 && 0 == dy3 )
+    {
+      m[ 0 ] = x1 - x0;
+      m[ 1 ] = y1 - y0;
+      m[ 2 ] = 0;
+      m[ 3 ] = x2 - x1;
+      m[ 4 ] = y2 - y1;
+      m[ 5 ] = 0;
+    }
+    else
+    {
+      final double dx1 = x1 - x2;
+      final double dx2 = x3 - x2;
+      final double dy1 = y1 - y2;
+      final double dy2 = y3 - y2;
+      final double denominator = dx1 * dy2 - dx2 * dy1;
+      final double a13 = ( dx3 * dy2 - dx2 * dy3 ) / denominator;
+      final double a23 = ( dx1 * dy3 - dx3 * dy1 ) / denominator;
+      m[ 0 ] = x1 - x0 + a13 * x1;
+      m[ 1 ] = y1 - y0 + a13 * y1;
+      m[ 2 ] = a13;
+      m[ 3 ] = x3 - x0 + a23 * x3;
+      m[ 4 ] = y3 - y0 + a23 * y3;
+      m[ 5 ] = a23;
+    }
+    m[ 6 ] = x0;
+    m[ 7 ] = y0;
+    m[ 8 ] = 1;
+  }
+
+  // Compute the adjoint of the matrix, which is proportional to the inverse and so is an inverse transform
+  private static void adjoint( @Nonnull final double[] m, @Nonnull final double[] result )
+  {
+    result[ 0 ] = m[ 4 ] * m[ 8 ] - m[ 5 ] * m[ 7 ];
+    result[ 1 ] = m[ 2 ] * m[ 7 ] - m[ 1 ] * m[ 8 ];
+    result[ 2 ] = m[ 1 ] * m[ 5 ] - m[ 2 ] * m[ 4 ];
+    result[ 3 ] = m[ 5 ] * m[ 6 ] - m[ 3 ] * m[ 8 ];
+    result[ 4 ] = m[ 0 ] * m[ 8 ] - m[ 2 ] * m[ 6 ];
+    result[ 5 ] = m[ 2 ] * m[ 3 ] - m[ 0 ] * m[ 5 ];
+    result[ 6 ] = m[ 3 ] * m[ 7 ] - m[ 4 ] * m[ 6 ];
+    result[ 7 ] = m[ 1 ] * m[ 6 ] - m[ 0 ] * m[ 7 ];
+    result[ 8 ] = m[ 0 ] * m[ 4 ] - m[ 1 ] * m[ 3 ];
+  }
+
+  // Compute the transform that applies the first transform and then the second
+  private static void multiply( @Nonnull final double[] first, @Nonnull final double[] second, @Nonnull final double[] result )
+  {
+    for ( int column = 0; column < 3; column++ )
+    {
+      for ( int row = 0; row < 3; row++ )
+      {
+        result[ column * 3 + row ] = second[ row ] * first[ column * 3 ] +
+                                     second[ 3 + row ] * first[ column * 3 + 1 ] +
+                                     second[ 6 + row ] * first[ column * 3 + 2 ];
+      }
+    }
+  }
+}
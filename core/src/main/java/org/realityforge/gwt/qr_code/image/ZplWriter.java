@@ -0,0 +1,232 @@
+package org.realityforge.gwt.qr_code.image;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Objects;
+import javax.annotation.Nonnull;
+import org.realityforge.braincheck.BrainCheckConfig;
+import org.realityforge.gwt.qr_code.QrCode;
+import static org.realityforge.braincheck.Guards.*;
+
+/**
+ * Encodes QR Code symbols as ZPL graphic fields for Zebra and compatible label printers.
+ * The image is sent as a <code>^GF</code> graphic field in ASCII hex using the ZPL compression scheme, where
+ * repeated characters are replaced by a repeat count, trailing zeros by <code>,</code> and rows that repeat
+ * the previous row by <code>:</code>. As every module is a square of pixels, each module row is sent once and
+ * the remaining pixel rows of the module are each sent as a single character.
+ */
+public final class ZplWriter
+{
+  private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+  // The largest repeat count expressible by a single pair of count characters, i.e. "zY"
+  private static final int MAX_REPEAT = 419;
+
+  private ZplWriter()
+  {
+  }
+
+  /**
+   * Return a complete ZPL label containing the symbol at the specified position.
+   *
+   * @param qrCode the symbol.
+   * @param scale  the width and height of each module in printer dots, which must be positive.
+   * @param border the number of border modules to add, which must be non-negative.
+   * @param x      the distance of the symbol from the left edge of the label in printer dots.
+   * @param y      the distance of the symbol from the top edge of the label in printer dots.
+   * @return the ZPL label.
+   */
+  @Nonnull
+  public static String toZplLabel( @Nonnull final QrCode qrCode,
+                                   final int scale,
+                                   final int border,
+                                   final int x,
+                                   final int y )
+  {
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    try
+    {
+      writeZplLabel( qrCode, scale, border, x, y, output );
+    }
+    catch ( final IOException ioe )
+    {
+      // ByteArrayOutputStream never raises an IOException
+      throw new IllegalStateException( ioe );
+    }
+    return new String( output.toByteArray(), StandardCharsets.US_ASCII );
+  }
+
+  /**
+   * Write a complete ZPL label containing the symbol at the specified position to the output stream.
+   *
+   * @param qrCode the symbol.
+   * @param scale  the width and height of each module in printer dots, which must be positive.
+   * @param border the number of border modules to add, which must be non-negative.
+   * @param x      the distance of the symbol from the left edge of the label in printer dots.
+   * @param y      the distance of the symbol from the top edge of the label in printer dots.
+   * @param output the stream to write to. The stream is not closed.
+   * @throws IOException if an error occurs writing to the stream.
+   */
+  public static void writeZplLabel( @Nonnull final QrCode qrCode,
+                                    final int scale,
+                                    final int border,
+                                    final int x,
+                                    final int y,
+                                    @Nonnull final OutputStream output )
+    throws IOException
+  {
+    Objects.requireNonNull( output );
+    final StringBuilder sb = new StringBuilder();
+    sb.append( "^XA^FO" ).append( x ).append( ',' ).append( y );
+    appendGraphicField( sb, qrCode, scale, border, output );
+    sb.append( "^FS^XZ\n" );
+    write( sb, output );
+  }
+
+  /**
+   * Write the <code>^GF</code> graphic field command for the symbol to the output stream, so that it can be
+   * combined with other commands in a label. The field is placed by a preceding <code>^FO</code> command and
+   * must be followed by a <code>^FS</code> command.
+   *
+   * @param qrCode the symbol.
+   * @param scale  the width and height of each module in printer dots, which must be positive.
+   * @param border the number of border modules to add, which must be non-negative.
+   * @param output the stream to write to. The stream is not closed.
+   * @throws IOException if an error occurs writing to the stream.
+   */
+  public static void writeGraphicField( @Nonnull final QrCode qrCode,
+                                        final int scale,
+                                        final int border,
+                                        @Nonnull final OutputStream output )
+    throws IOException
+  {
+    Objects.requireNonNull( output );
+    final StringBuilder sb = new StringBuilder();
+    appendGraphicField( sb, qrCode, scale, border, output );
+    write( sb, output );
+  }
+
+  // Append the graphic field to the builder, writing the builder to the stream whenever it holds
+  // more than a few rows
+  private static void appendGraphicField( @Nonnull final StringBuilder sb,
+                                          @Nonnull final QrCode qrCode,
+                                          final int scale,
+                                          final int border,
+                                          @Nonnull final OutputStream output )
+    throws IOException
+  {
+    Objects.requireNonNull( qrCode );
+    if ( BrainCheckConfig.checkApiInvariants() )
+    {
+      apiInvariant( () -> scale > 0, () -> "Scale must be positive" );
+      apiInvariant( () -> border >= 0, () -> "Border must be non-negative" );
+      apiInvariant( () -> ( qrCode.getSize() + border * 2L ) * scale <= Short.MAX_VALUE, () -> "Image too large" );
+    }
+    final int rowLength = PixelRows.getRowLength( qrCode, scale, border );
+    final int height = PixelRows.getWidth( qrCode, scale, border );
+    final int totalBytes = rowLength * height;
+    sb.append( "^GFA," ).append( totalBytes ).append( ',' ).append( totalBytes ).append( ',' ).append( rowLength );
+    sb.append( ',' );
+
+    final int[] runs = PixelRows.newRunBuffer( qrCode );
+    final byte[] row = new byte[ rowLength ];
+    final byte[] previous = new byte[ rowLength ];
+    for ( int y = -border; y < qrCode.getSize() + border; y++ )
+    {
+      PixelRows.fillRow( row, 0, qrCode, y, scale, border, runs );
+      if ( y > -border && Arrays.equals( row, previous ) )
+      {
+        sb.append( ':' );
+      }
+      else
+      {
+        appendRow( sb, row );
+        System.arraycopy( row, 0, previous, 0, rowLength );
+      }
+      for ( int i = 1; i < scale; i++ )
+      {
+        sb.append( ':' );
+      }
+      if ( sb.length() > 8192 )
+      {
+        write( sb, output );
+      }
+    }
+  }
+
+  // Append a row as compressed hex where a run of a repeated digit is written as a count followed by the digit
+  private static void appendRow( @Nonnull final StringBuilder sb, @Nonnull final byte[] row )
+  {
+    final int digits = row.length * 2;
+    // Trailing zero or one digits are replaced by a single character that fills the rest of the row
+    int end = digits;
+    while ( end > 0 && '0' == digit( row, end - 1 ) )
+    {
+      end--;
+    }
+    char fill = ',';
+    if ( digits == end )
+    {
+      while ( end > 0 && 'F' == digit( row, end - 1 ) )
+      {
+        end--;
+      }
+      fill = '!';
+    }
+    int i = 0;
+    while ( i < end )
+    {
+      final char ch = digit( row, i );
+      int count = 1;
+      while ( i + count < end && ch == digit( row, i + count ) )
+      {
+        count++;
+      }
+      i += count;
+      appendRepeat( sb, ch, count );
+    }
+    if ( end < digits )
+    {
+      sb.append( fill );
+    }
+  }
+
+  private static void appendRepeat( @Nonnull final StringBuilder sb, final char ch, final int count )
+  {
+    int remaining = count;
+    while ( remaining > 2 )
+    {
+      // g to z represent 20 to 400 in steps of 20 and G to Y represent 1 to 19
+      final int chunk = Math.min( remaining, MAX_REPEAT );
+      if ( chunk >= 20 )
+      {
+        sb.append( (char) ( 'g' + chunk / 20 - 1 ) );
+      }
+      if ( 0 != chunk % 20 )
+      {
+        sb.append( (char) ( 'G' + chunk % 20 - 1 ) );
+      }
+      sb.append( ch );
+      remaining -= chunk;
+    }
+    for ( int i = 0; i < remaining; i++ )
+    {
+      sb.append( ch );
+    }
+  }
+
+  private static char digit( @Nonnull final byte[] row, final int index )
+  {
+    final int value = row[ index >>> 1 ];
+    return HEX_DIGITS[ 0 == ( index & 1 ) ? ( value >>> 4 ) & 0xF : value & 0xF ];
+  }
+
+  private static void write( @Nonnull final StringBuilder sb, @Nonnull final OutputStream output )
+    throws IOException
+  {
+    output.write( sb.toString().getBytes( StandardCharsets.US_ASCII ) );
+    sb.setLength( 0 );
+  }
+}
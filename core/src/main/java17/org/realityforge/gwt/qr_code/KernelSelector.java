@@ -0,0 +1,47 @@
+package org.realityforge.gwt.qr_code;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Selects the implementation of the {@link Kernels} used by the encoder. This version of the class is used by
+ * Java 17+ runtimes and selects the {@link VectorKernels} when the incubating <code>jdk.incubator.vector</code>
+ * module has been added to the runtime, i.e. via <code>--add-modules jdk.incubator.vector</code>, and the
+ * preferred vector shape is wide enough, otherwise it selects the {@link ScalarKernels}. The vector kernels
+ * can be disabled by setting the <code>org.realityforge.gwt.qr_code.vector</code> system property to false.
+ */
+final class KernelSelector
+{
+  private static final Kernels KERNELS = select();
+
+  private KernelSelector()
+  {
+  }
+
+  /**
+   * Return the kernels to use.
+   *
+   * @return the kernels to use.
+   */
+  @Nonnull
+  static Kernels get()
+  {
+    return KERNELS;
+  }
+
+  @Nonnull
+  private static Kernels select()
+  {
+    // The vector kernels are only referenced once the module is known to be present
+    // so that the class is not loaded, and does not fail to link, when it is absent
+    if ( !"false".equals( System.getProperty( "org.realityforge.gwt.qr_code.vector" ) ) &&
+         ModuleLayer.boot().findModule( "jdk.incubator.vector" ).isPresent() &&
+         VectorKernels.isSupported() )
+    {
+      return VectorKernels.INSTANCE;
+    }
+    else
+    {
+      return ScalarKernels.INSTANCE;
+    }
+  }
+}
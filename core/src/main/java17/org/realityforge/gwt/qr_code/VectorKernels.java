@@ -0,0 +1,336 @@
+package org.realityforge.gwt.qr_code;
+
+import javax.annotation.Nonnull;
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The kernels implemented using the incubating Vector API. The packed grids are processed as flat arrays so
+ * that each vector operation combines the words of many lines at once, where a module in a previous line is
+ * loaded from the same array at an offset of a multiple of the words in a line. The Reed-Solomon division is
+ * performed for many blocks at once, one block per lane, as the interleaved codewords place the codewords at
+ * the same position in successive blocks next to each other. The factor of every lane is multiplied by each
+ * coefficient of the divisor by summing the products of the factor with the powers of x present in the coefficient.
+ */
+final class VectorKernels
+  implements Kernels
+{
+  static final VectorKernels INSTANCE = new VectorKernels();
+  private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+  private static final VectorSpecies<Byte> BYTES = ByteVector.SPECIES_PREFERRED;
+  // The mask of the bits in each word of a packed grid that correspond to modules, indexed by version
+  private final int[][] _validLanes = new int[ 41 ][];
+  // The mask of the bits in each word of a grid packed by row that correspond to the top left module of a
+  // 2*2 block, indexed by version
+  private final int[][] _blockLanes = new int[ 41 ][];
+
+  private VectorKernels()
+  {
+  }
+
+  /**
+   * Return true if the preferred vectors are wide enough for the kernels to be faster than the scalar kernels.
+   *
+   * @return true if the preferred vectors are wide enough for the kernels to be faster than the scalar kernels.
+   */
+  static boolean isSupported()
+  {
+    return INTS.length() >= 8 && BYTES.length() >= 16;
+  }
+
+  @Override
+  public int applyMask( @Nonnull final int[] modules, @Nonnull final int[] pattern, @Nonnull final int[] masked )
+  {
+    IntVector black = IntVector.zero( INTS );
+    int i = 0;
+    for ( final int bound = INTS.loopBound( modules.length ); i < bound; i += INTS.length() )
+    {
+      final IntVector m =
+        IntVector.fromArray( INTS, modules, i ).lanewise( VectorOperators.XOR, IntVector.fromArray( INTS, pattern, i ) );
+      m.intoArray( masked, i );
+      black = black.add( bitCount( m ) );
+    }
+    int result = black.reduceLanes( VectorOperators.ADD );
+    for ( ; i < modules.length; i++ )
+    {
+      masked[ i ] = modules[ i ] ^ pattern[ i ];
+      result += Integer.bitCount( masked[ i ] );
+    }
+    return result;
+  }
+
+  @Override
+  public int getLinePenalty( @Nonnull final int[] grid, @Nonnull final MaskPatterns patterns )
+  {
+    final int words = patterns.getWords();
+    final int length = patterns.getSize() * words;
+    final int[] valid = getValidLanes( patterns );
+
+    // Windows of five modules with the same color, where the window ending at the fifth line is the first
+    // window in each lane and the window ending at every later line is preceded by the window ending at
+    // the line before it
+    int windows = 0;
+    int starts = 0;
+    for ( int j = 4 * words; j < 5 * words; j++ )
+    {
+      final int run = getRun( grid, j, words ) & valid[ j ];
+      windows += Integer.bitCount( run );
+      starts += Integer.bitCount( run );
+    }
+    IntVector windowCounts = IntVector.zero( INTS );
+    IntVector startCounts = IntVector.zero( INTS );
+    int j = 5 * words;
+    for ( final int bound = j + INTS.loopBound( length - j ); j < bound; j += INTS.length() )
+    {
+      final IntVector m0 = IntVector.fromArray( INTS, grid, j );
+      final IntVector m1 = IntVector.fromArray( INTS, grid, j - words );
+      final IntVector m2 = IntVector.fromArray( INTS, grid, j - 2 * words );
+      final IntVector m3 = IntVector.fromArray( INTS, grid, j - 3 * words );
+      final IntVector m4 = IntVector.fromArray( INTS, grid, j - 4 * words );
+      final IntVector m5 = IntVector.fromArray( INTS, grid, j - 5 * words );
+      final IntVector same1 = m0.lanewise( VectorOperators.XOR, m1 ).not();
+      final IntVector same2 = m1.lanewise( VectorOperators.XOR, m2 ).not();
+      final IntVector same3 = m2.lanewise( VectorOperators.XOR, m3 ).not();
+      final IntVector same4 = m3.lanewise( VectorOperators.XOR, m4 ).not();
+      final IntVector same5 = m4.lanewise( VectorOperators.XOR, m5 ).not();
+      final IntVector inner = same2.and( same3 ).and( same4 ).and( IntVector.fromArray( INTS, valid, j ) );
+      final IntVector run = same1.and( inner );
+      final IntVector previousRun = same5.and( inner );
+      windowCounts = windowCounts.add( bitCount( run ) );
+      startCounts = startCounts.add( bitCount( run.and( previousRun.not() ) ) );
+    }
+    windows += windowCounts.reduceLanes( VectorOperators.ADD );
+    starts += startCounts.reduceLanes( VectorOperators.ADD );
+    for ( ; j < length; j++ )
+    {
+      final int run = getRun( grid, j, words ) & valid[ j ];
+      windows += Integer.bitCount( run );
+      starts += Integer.bitCount( run & ~getRun( grid, j - words, words ) );
+    }
+
+    // Finder-like patterns of 1:1:3:1:1 with four light modules before or after
+    IntVector finderCounts = IntVector.zero( INTS );
+    j = 10 * words;
+    for ( final int bound = j + INTS.loopBound( length - j ); j < bound; j += INTS.length() )
+    {
+      final IntVector m0 = IntVector.fromArray( INTS, grid, j );
+      final IntVector m1 = IntVector.fromArray( INTS, grid, j - words );
+      final IntVector m2 = IntVector.fromArray( INTS, grid, j - 2 * words );
+      final IntVector m3 = IntVector.fromArray( INTS, grid, j - 3 * words );
+      final IntVector m4 = IntVector.fromArray( INTS, grid, j - 4 * words );
+      final IntVector m5 = IntVector.fromArray( INTS, grid, j - 5 * words );
+      final IntVector m6 = IntVector.fromArray( INTS, grid, j - 6 * words );
+      final IntVector m7 = IntVector.fromArray( INTS, grid, j - 7 * words );
+      final IntVector m8 = IntVector.fromArray( INTS, grid, j - 8 * words );
+      final IntVector m9 = IntVector.fromArray( INTS, grid, j - 9 * words );
+      final IntVector m10 = IntVector.fromArray( INTS, grid, j - 10 * words );
+      // The light modules then the 1:1:3:1:1 pattern, and the 1:1:3:1:1 pattern then the light modules
+      final IntVector before = m10.or( m9 ).or( m8 ).or( m7 ).not()
+        .and( m6 ).and( m5.not() ).and( m4 ).and( m3 ).and( m2 ).and( m1.not() ).and( m0 );
+      final IntVector after = m10.and( m9.not() ).and( m8 ).and( m7 ).and( m6 ).and( m5.not() ).and( m4 )
+        .and( m3.or( m2 ).or( m1 ).or( m0 ).not() );
+      finderCounts =
+        finderCounts.add( bitCount( before.or( after ).and( IntVector.fromArray( INTS, valid, j ) ) ) );
+    }
+    int finders = finderCounts.reduceLanes( VectorOperators.ADD );
+    for ( ; j < length; j++ )
+    {
+      finders += Integer.bitCount( ScalarKernels.getFinderLikePatterns( grid, j, words ) & valid[ j ] );
+    }
+
+    return windows + ( MaskEvaluator.PENALTY_N1 - 1 ) * starts + MaskEvaluator.PENALTY_N3 * finders;
+  }
+
+  @Override
+  public int getBlockPenalty( @Nonnull final int[] grid, @Nonnull final MaskPatterns patterns )
+  {
+    final int words = patterns.getWords();
+    final int length = patterns.getSize() * words;
+    final int end = length - words;
+    final int[] lanes = getBlockLanes( patterns );
+    IntVector blockCounts = IntVector.zero( INTS );
+    int j = 0;
+    // The next word of the bottom line is loaded so the vectors must stop one word before the end of the grid
+    for ( final int bound = INTS.loopBound( end - 1 ); j < bound; j += INTS.length() )
+    {
+      final IntVector top = IntVector.fromArray( INTS, grid, j );
+      final IntVector bottom = IntVector.fromArray( INTS, grid, j + words );
+      final IntVector nextTopWord = IntVector.fromArray( INTS, grid, j + 1 );
+      final IntVector nextBottomWord = IntVector.fromArray( INTS, grid, j + 1 + words );
+      final IntVector same = top.lanewise( VectorOperators.XOR, bottom ).not();
+      // Shift the next module in the row into the bit of each module, carrying across words
+      final IntVector nextTop =
+        top.lanewise( VectorOperators.LSHR, 1 ).or( nextTopWord.lanewise( VectorOperators.LSHL, 31 ) );
+      final IntVector nextSame = same.lanewise( VectorOperators.LSHR, 1 )
+        .or( nextTopWord.lanewise( VectorOperators.XOR, nextBottomWord ).not().lanewise( VectorOperators.LSHL, 31 ) );
+      final IntVector blocks = same.and( nextSame )
+        .and( top.lanewise( VectorOperators.XOR, nextTop ).not() )
+        .and( IntVector.fromArray( INTS, lanes, j ) );
+      blockCounts = blockCounts.add( bitCount( blocks ) );
+    }
+    int blocks = blockCounts.reduceLanes( VectorOperators.ADD );
+    for ( ; j < end; j++ )
+    {
+      final int same = ~( grid[ j ] ^ grid[ j + words ] );
+      final int nextTopWord = j + 1 < length ? grid[ j + 1 ] : 0;
+      final int nextBottomWord = j + 1 + words < length ? grid[ j + 1 + words ] : 0;
+      final int nextTop = ( grid[ j ] >>> 1 ) | ( nextTopWord << 31 );
+      final int nextSame = ( same >>> 1 ) | ( ~( nextTopWord ^ nextBottomWord ) << 31 );
+      blocks += Integer.bitCount( same & nextSame & ~( grid[ j ] ^ nextTop ) & lanes[ j ] );
+    }
+    return MaskEvaluator.PENALTY_N2 * blocks;
+  }
+
+  @Override
+  public void divide( @Nonnull final ReedSolomonGenerator generator,
+                      @Nonnull final byte[] codewords,
+                      final int dataOffset,
+                      final int steps,
+                      final int eccOffset,
+                      final int stride,
+                      final int startBlock,
+                      final int endBlock )
+  {
+    final int lanes = BYTES.length();
+    int block = startBlock;
+    for ( ; block + lanes <= endBlock; block += lanes )
+    {
+      divide( generator, codewords, dataOffset, steps, eccOffset, stride, block );
+    }
+    final int remaining = endBlock - block;
+    if ( remaining > 0 )
+    {
+      // The blocks that do not fill a vector are copied to a buffer with a stride of a vector, as loads and stores
+      // of partial vectors are much slower than loads and stores of complete vectors
+      final int degree = generator.getDegree();
+      final byte[] buffer = new byte[ ( steps + degree ) * lanes ];
+      for ( int k = 0; k < steps; k++ )
+      {
+        System.arraycopy( codewords, dataOffset + k * stride + block, buffer, k * lanes, remaining );
+      }
+      for ( int i = 0; i < degree; i++ )
+      {
+        System.arraycopy( codewords, eccOffset + i * stride + block, buffer, ( steps + i ) * lanes, remaining );
+      }
+      divide( generator, buffer, 0, steps, steps * lanes, lanes, 0 );
+      for ( int i = 0; i < degree; i++ )
+      {
+        System.arraycopy( buffer, ( steps + i ) * lanes, codewords, eccOffset + i * stride + block, remaining );
+      }
+    }
+  }
+
+  // Divide the blocks starting at the specified block, one block per lane
+  private static void divide( @Nonnull final ReedSolomonGenerator generator,
+                              @Nonnull final byte[] codewords,
+                              final int dataOffset,
+                              final int steps,
+                              final int eccOffset,
+                              final int stride,
+                              final int block )
+  {
+    final int degree = generator.getDegree();
+    for ( int k = 0; k < steps; k++ )
+    {
+      // The products of the factor with x^0 to x^7, reduced modulo the field polynomial
+      final ByteVector p0 = ByteVector
+        .fromArray( BYTES, codewords, dataOffset + k * stride + block )
+        .lanewise( VectorOperators.XOR, ByteVector.fromArray( BYTES, codewords, eccOffset + block ) );
+      final ByteVector p1 = multiplyByX( p0 );
+      final ByteVector p2 = multiplyByX( p1 );
+      final ByteVector p3 = multiplyByX( p2 );
+      final ByteVector p4 = multiplyByX( p3 );
+      final ByteVector p5 = multiplyByX( p4 );
+      final ByteVector p6 = multiplyByX( p5 );
+      final ByteVector p7 = multiplyByX( p6 );
+      for ( int i = 0; i < degree; i++ )
+      {
+        final int position = eccOffset + i * stride + block;
+        ByteVector product =
+          i + 1 < degree ? ByteVector.fromArray( BYTES, codewords, position + stride ) : ByteVector.zero( BYTES );
+        // The product with the coefficient is the sum of the products with the powers of x in the coefficient
+        final int coefficient = generator.getCoefficient( i );
+        product = 0 != ( coefficient & 0x01 ) ? product.lanewise( VectorOperators.XOR, p0 ) : product;
+        product = 0 != ( coefficient & 0x02 ) ? product.lanewise( VectorOperators.XOR, p1 ) : product;
+        product = 0 != ( coefficient & 0x04 ) ? product.lanewise( VectorOperators.XOR, p2 ) : product;
+        product = 0 != ( coefficient & 0x08 ) ? product.lanewise( VectorOperators.XOR, p3 ) : product;
+        product = 0 != ( coefficient & 0x10 ) ? product.lanewise( VectorOperators.XOR, p4 ) : product;
+        product = 0 != ( coefficient & 0x20 ) ? product.lanewise( VectorOperators.XOR, p5 ) : product;
+        product = 0 != ( coefficient & 0x40 ) ? product.lanewise( VectorOperators.XOR, p6 ) : product;
+        product = 0 != ( coefficient & 0x80 ) ? product.lanewise( VectorOperators.XOR, p7 ) : product;
+        product.intoArray( codewords, position );
+      }
+    }
+  }
+
+  // Return the product of every lane with x, reduced modulo the field polynomial x^8 + x^4 + x^3 + x^2 + 1
+  @Nonnull
+  private static ByteVector multiplyByX( @Nonnull final ByteVector value )
+  {
+    return value
+      .lanewise( VectorOperators.LSHL, 1 )
+      .lanewise( VectorOperators.XOR, (byte) 0x1D, value.compare( VectorOperators.LT, (byte) 0 ) );
+  }
+
+  // Return the lanes in which the five modules ending at the specified word have the same color
+  private static int getRun( @Nonnull final int[] grid, final int index, final int words )
+  {
+    final int m0 = grid[ index ];
+    final int m1 = grid[ index - words ];
+    final int m2 = grid[ index - 2 * words ];
+    final int m3 = grid[ index - 3 * words ];
+    final int m4 = grid[ index - 4 * words ];
+    return ~( m0 ^ m1 ) & ~( m1 ^ m2 ) & ~( m2 ^ m3 ) & ~( m3 ^ m4 );
+  }
+
+  // Return the number of set bits in each lane, as the operator is not available in the Java 17 Vector API
+  @Nonnull
+  private static IntVector bitCount( @Nonnull final IntVector value )
+  {
+    IntVector v = value.sub( value.lanewise( VectorOperators.LSHR, 1 ).and( 0x55555555 ) );
+    v = v.and( 0x33333333 ).add( v.lanewise( VectorOperators.LSHR, 2 ).and( 0x33333333 ) );
+    v = v.add( v.lanewise( VectorOperators.LSHR, 4 ) ).and( 0x0F0F0F0F );
+    return v.mul( 0x01010101 ).lanewise( VectorOperators.LSHR, 24 );
+  }
+
+  @Nonnull
+  private int[] getValidLanes( @Nonnull final MaskPatterns patterns )
+  {
+    final int version = ( patterns.getSize() - 17 ) / 4;
+    int[] lanes = _validLanes[ version ];
+    if ( null == lanes )
+    {
+      final int words = patterns.getWords();
+      lanes = new int[ patterns.getSize() * words ];
+      for ( int i = 0; i < lanes.length; i++ )
+      {
+        lanes[ i ] = words - 1 == i % words ? patterns.getLastWordMask() : -1;
+      }
+      // A race between threads at worst computes the same lanes twice
+      _validLanes[ version ] = lanes;
+    }
+    return lanes;
+  }
+
+  @Nonnull
+  private int[] getBlockLanes( @Nonnull final MaskPatterns patterns )
+  {
+    final int version = ( patterns.getSize() - 17 ) / 4;
+    int[] lanes = _blockLanes[ version ];
+    if ( null == lanes )
+    {
+      final int words = patterns.getWords();
+      // The last row and the last module of each row do not start a block
+      lanes = new int[ patterns.getSize() * words ];
+      for ( int i = 0; i < lanes.length - words; i++ )
+      {
+        lanes[ i ] = words - 1 == i % words ? patterns.getLastWordMask() >>> 1 : -1;
+      }
+      // A race between threads at worst computes the same lanes twice
+      _blockLanes[ version ] = lanes;
+    }
+    return lanes;
+  }
+}
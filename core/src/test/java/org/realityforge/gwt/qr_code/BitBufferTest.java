@@ -0,0 +1,72 @@
+package org.realityforge.gwt.qr_code;
+
+import java.util.Random;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+public class BitBufferTest
+{
+  @Test
+  public void appendBits_longMatchesBitByBit()
+  {
+    final Random random = new Random( 42 );
+    // Every length, including those of 33 to 64 bits that span two words, at every alignment within a word
+    for ( int offset = 0; offset < 40; offset++ )
+    {
+      for ( int len = 0; len <= 64; len++ )
+      {
+        final long value = 64 == len ? random.nextLong() : random.nextLong() & ( ( 1L << len ) - 1 );
+        final BitBuffer actual = new BitBuffer();
+        final BitBuffer expected = new BitBuffer();
+        for ( int i = 0; i < offset; i++ )
+        {
+          final int bit = random.nextInt( 2 );
+          actual.appendBits( bit, 1 );
+          expected.appendBits( bit, 1 );
+        }
+        actual.appendBits( value, len );
+        appendBitByBit( expected, value, len );
+        // Later bits must continue from the end of the value
+        actual.appendBits( 5, 3 );
+        expected.appendBits( 5, 3 );
+        assertSameBits( actual, expected, "Offset " + offset + " length " + len );
+      }
+    }
+  }
+
+  @Test
+  public void appendBits_longGrowsBuffer()
+  {
+    final Random random = new Random( 7 );
+    final BitBuffer actual = new BitBuffer();
+    final BitBuffer expected = new BitBuffer();
+    actual.appendBits( 1, 1 );
+    expected.appendBits( 1, 1 );
+    // Far more than the initial capacity of 2048 bits, with every value unaligned
+    for ( int i = 0; i < 200; i++ )
+    {
+      final int len = 33 + random.nextInt( 32 );
+      final long value = 64 == len ? random.nextLong() : random.nextLong() & ( ( 1L << len ) - 1 );
+      actual.appendBits( value, len );
+      appendBitByBit( expected, value, len );
+    }
+    assertSameBits( actual, expected, "Grown buffer" );
+  }
+
+  private static void appendBitByBit( final BitBuffer buffer, final long value, final int len )
+  {
+    for ( int i = len - 1; i >= 0; i-- )
+    {
+      buffer.appendBits( (int) ( value >>> i ) & 1, 1 );
+    }
+  }
+
+  private static void assertSameBits( final BitBuffer actual, final BitBuffer expected, final String message )
+  {
+    assertEquals( actual.getBitLength(), expected.getBitLength(), message );
+    for ( int i = 0; i < expected.getBitLength(); i++ )
+    {
+      assertEquals( actual.getBit( i ), expected.getBit( i ), message + " bit " + i );
+    }
+  }
+}
@@ -0,0 +1,125 @@
+package org.realityforge.gwt.qr_code;
+
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+public class BlockLayoutTest
+{
+  @Test
+  public void version5Quartile()
+  {
+    // Two blocks of 15 data codewords and two of 16, each with 18 error correction codewords
+    final BlockLayout layout = BlockLayout.get( 5, Ecc.QUARTILE );
+    assertEquals( layout.getNumRawCodewords(), 134 );
+    assertEquals( layout.getNumDataCodewords(), 62 );
+    assertEquals( layout.getNumBlocks(), 4 );
+    assertEquals( layout.getNumShortBlocks(), 2 );
+    assertEquals( layout.getBlockEccLen(), 18 );
+    assertEquals( layout.getBlockDataLen( 0 ), 15 );
+    assertEquals( layout.getBlockDataLen( 1 ), 15 );
+    assertEquals( layout.getBlockDataLen( 2 ), 16 );
+    assertEquals( layout.getBlockDataLen( 3 ), 16 );
+
+    // The first data codeword of each block, then the second and so on, until the short blocks are exhausted
+    assertEquals( layout.getDataPosition( 0 ), 0 );
+    assertEquals( layout.getDataPosition( 15 ), 1 );
+    assertEquals( layout.getDataPosition( 30 ), 2 );
+    assertEquals( layout.getDataPosition( 46 ), 3 );
+    assertEquals( layout.getDataPosition( 1 ), 4 );
+    assertEquals( layout.getDataPosition( 14 ), 56 );
+    assertEquals( layout.getDataPosition( 29 ), 57 );
+    assertEquals( layout.getDataPosition( 44 ), 58 );
+    assertEquals( layout.getDataPosition( 60 ), 59 );
+    assertEquals( layout.getDataPosition( 45 ), 60 );
+    assertEquals( layout.getDataPosition( 61 ), 61 );
+    assertEquals( layout.getEccPosition( 0, 0 ), 62 );
+    assertEquals( layout.getEccPosition( 3, 0 ), 65 );
+    assertEquals( layout.getEccPosition( 0, 1 ), 66 );
+    assertEquals( layout.getEccPosition( 3, 17 ), 133 );
+
+    assertMatchesInterleave( layout, 5, Ecc.QUARTILE );
+  }
+
+  @Test
+  public void version40High()
+  {
+    // 20 blocks of 15 data codewords and 61 of 16, each with 30 error correction codewords
+    final BlockLayout layout = BlockLayout.get( 40, Ecc.HIGH );
+    assertEquals( layout.getNumRawCodewords(), 3706 );
+    assertEquals( layout.getNumDataCodewords(), 1276 );
+    assertEquals( layout.getNumBlocks(), 81 );
+    assertEquals( layout.getNumShortBlocks(), 20 );
+    assertEquals( layout.getBlockEccLen(), 30 );
+    assertEquals( layout.getBlockDataLen( 19 ), 15 );
+    assertEquals( layout.getBlockDataLen( 20 ), 16 );
+    assertEquals( layout.getBlockDataOffset( 20 ), 300 );
+    assertEquals( layout.getBlockDataOffset( 80 ), 1260 );
+
+    assertMatchesInterleave( layout, 40, Ecc.HIGH );
+  }
+
+  @Test
+  public void everyVersionAndLevel()
+  {
+    for ( int version = QrCodeTool.MIN_VERSION; version <= QrCodeTool.MAX_VERSION; version++ )
+    {
+      for ( final Ecc ecl : Ecc.values() )
+      {
+        assertMatchesInterleave( BlockLayout.get( version, ecl ), version, ecl );
+      }
+    }
+  }
+
+  /**
+   * Assert that the layout places every codeword where the interleaving process of ISO/IEC 18004 section 7.6
+   * places it. The blocks are built from the tables and the codewords are taken from each block in turn, data
+   * codewords first, skipping any block that has run out of codewords.
+   */
+  private static void assertMatchesInterleave( final BlockLayout layout, final int version, final Ecc ecl )
+  {
+    final String name = "Version " + version + " level " + ecl;
+    final int numBlocks = QrCodeTool.NUM_ERROR_CORRECTION_BLOCKS[ ecl.ordinal() ][ version ];
+    final int eccLen = QrCodeTool.ECC_CODEWORDS_PER_BLOCK[ ecl.ordinal() ][ version ];
+    final int numRaw = QrCodeTool.getNumRawDataModules( version ) / 8;
+    final int numData = numRaw - numBlocks * eccLen;
+    assertEquals( layout.getNumBlocks(), numBlocks, name );
+    assertEquals( layout.getBlockEccLen(), eccLen, name );
+    assertEquals( layout.getNumRawCodewords(), numRaw, name );
+    assertEquals( layout.getNumDataCodewords(), numData, name );
+
+    // Split the data codewords into blocks, where the short blocks come first
+    final int numShortBlocks = numBlocks - numRaw % numBlocks;
+    final int[][] blocks = new int[ numBlocks ][];
+    for ( int block = 0, next = 0; block < numBlocks; block++ )
+    {
+      blocks[ block ] = new int[ numRaw / numBlocks - eccLen + ( block < numShortBlocks ? 0 : 1 ) ];
+      assertEquals( layout.getBlockDataLen( block ), blocks[ block ].length, name );
+      assertEquals( layout.getBlockDataOffset( block ), next, name );
+      for ( int i = 0; i < blocks[ block ].length; i++ )
+      {
+        assertEquals( layout.getBlock( next ), block, name );
+        blocks[ block ][ i ] = next++;
+      }
+    }
+
+    int position = 0;
+    for ( int i = 0; i < blocks[ numBlocks - 1 ].length; i++ )
+    {
+      for ( int block = 0; block < numBlocks; block++ )
+      {
+        if ( i < blocks[ block ].length )
+        {
+          assertEquals( layout.getDataPosition( blocks[ block ][ i ] ), position++, name );
+        }
+      }
+    }
+    for ( int i = 0; i < eccLen; i++ )
+    {
+      for ( int block = 0; block < numBlocks; block++ )
+      {
+        assertEquals( layout.getEccPosition( block, i ), position++, name );
+      }
+    }
+    assertEquals( position, numRaw, name );
+  }
+}
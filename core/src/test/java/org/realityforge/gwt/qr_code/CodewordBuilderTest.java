@@ -0,0 +1,88 @@
+package org.realityforge.gwt.qr_code;
+
+import java.util.Random;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+public class CodewordBuilderTest
+{
+  @Test
+  public void appendBits_longMatchesBitByBit()
+  {
+    final Random random = new Random( 42 );
+    // Every length, including those of 33 to 64 bits that span two words, at every alignment within a byte
+    // and a word
+    for ( int offset = 0; offset < 40; offset++ )
+    {
+      for ( int len = 0; len <= 64; len++ )
+      {
+        final long value = 64 == len ? random.nextLong() : random.nextLong() & ( ( 1L << len ) - 1 );
+        final CodewordBuilder actual = new CodewordBuilder( 16 );
+        final CodewordBuilder expected = new CodewordBuilder( 16 );
+        for ( int i = 0; i < offset; i++ )
+        {
+          final int bit = random.nextInt( 2 );
+          actual.appendBits( bit, 1 );
+          expected.appendBits( bit, 1 );
+        }
+        actual.appendBits( value, len );
+        for ( int i = len - 1; i >= 0; i-- )
+        {
+          expected.appendBits( (int) ( value >>> i ) & 1, 1 );
+        }
+        assertEquals( actual.getBitLength(), expected.getBitLength() );
+        actual.appendPadding();
+        expected.appendPadding();
+        assertEquals( actual.getCodewords(), expected.getCodewords(), "Offset " + offset + " length " + len );
+      }
+    }
+  }
+
+  @Test
+  public void appendData_matchesBitByBit()
+  {
+    final Random random = new Random( 7 );
+    for ( int offset = 0; offset < 9; offset++ )
+    {
+      for ( int len = 0; len <= 100; len++ )
+      {
+        final int[] values = new int[ ( len + 31 ) / 32 + 1 ];
+        for ( int i = 0; i < values.length; i++ )
+        {
+          values[ i ] = random.nextInt();
+        }
+        final CodewordBuilder actual = new CodewordBuilder( 16 );
+        final CodewordBuilder expected = new CodewordBuilder( 16 );
+        for ( int i = 0; i < offset; i++ )
+        {
+          actual.appendBits( 1, 1 );
+          expected.appendBits( 1, 1 );
+        }
+        actual.appendData( values, len );
+        for ( int i = 0; i < len; i++ )
+        {
+          expected.appendBits( values[ i >>> 5 ] >>> ( 31 - ( i & 31 ) ) & 1, 1 );
+        }
+        actual.appendPadding();
+        expected.appendPadding();
+        assertEquals( actual.getCodewords(), expected.getCodewords(), "Offset " + offset + " length " + len );
+      }
+    }
+  }
+
+  @Test
+  public void appendPadding()
+  {
+    final CodewordBuilder builder = new CodewordBuilder( 5 );
+    builder.appendBits( 5, 3 );
+    builder.appendPadding();
+    // The terminator and the padding to a byte boundary follow the bits and then the pad codewords alternate
+    assertEquals( builder.getCodewords(), new byte[]{ (byte) 0xA0, (byte) 0xEC, 0x11, (byte) 0xEC, 0x11 } );
+
+    // The terminator is truncated when the data almost fills the capacity
+    final CodewordBuilder full = new CodewordBuilder( 1 );
+    full.appendBits( 0x3F, 6 );
+    full.appendPadding();
+    assertEquals( full.getCodewords(), new byte[]{ (byte) 0xFC } );
+  }
+}
@@ -0,0 +1,64 @@
+package org.realityforge.gwt.qr_code;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+public class CompactQrCodeTest
+{
+  @Test
+  public void roundTrip()
+  {
+    final QrCode qrCode = QrCodeTool.encodeText( "https://realityforge.org/some/long/path?with=query&and=more", Ecc.QUARTILE );
+    final CompactQrCode compact = CompactQrCode.from( qrCode );
+
+    assertEquals( compact.getVersion(), qrCode.getVersion() );
+    assertEquals( compact.getErrorCorrectionLevel(), qrCode.getErrorCorrectionLevel() );
+    assertEquals( compact.getMask(), qrCode.getMask() );
+    assertEquals( compact.getSerializedSize(),
+                  CompactQrCode.HEADER_SIZE + QrCodeTool.getNumRawDataModules( qrCode.getVersion() ) / 8 );
+    assertEquals( compact.toQrCode().toSvgString( 0 ), qrCode.toSvgString( 0 ) );
+
+    // Heap buffers are read without copying and the position is advanced past each symbol
+    final ByteBuffer buffer = ByteBuffer.allocate( 3 + compact.getSerializedSize() * 2 );
+    buffer.position( 3 );
+    compact.writeTo( buffer );
+    compact.writeTo( buffer );
+    buffer.flip();
+    buffer.position( 3 );
+    assertEquals( CompactQrCode.readFrom( buffer ).toQrCode().toSvgString( 0 ), qrCode.toSvgString( 0 ) );
+    assertEquals( CompactQrCode.readFrom( buffer ).toByteArray(), compact.toByteArray() );
+    assertFalse( buffer.hasRemaining() );
+
+    final ByteBuffer direct = ByteBuffer.allocateDirect( compact.getSerializedSize() );
+    compact.writeTo( direct );
+    direct.flip();
+    assertEquals( CompactQrCode.readFrom( direct ).toByteArray(), compact.toByteArray() );
+
+    final byte[] corrupt = compact.toByteArray();
+    corrupt[ 3 ] = 41;
+    assertThrows( IllegalArgumentException.class, () -> CompactQrCode.fromBytes( corrupt ) );
+  }
+
+  @Test
+  public void readFrom_littleEndianDirectBuffer()
+  {
+    // The codeword count is big-endian regardless of the order of the buffer. Version 29 has 2051 codewords, which
+    // would be read as 776 codewords in little-endian order
+    final QrCode large = QrCodeTool.encodeSegments( QrCodeTool.makeSegments( "0123456789" ), Ecc.LOW, 29, 29, -1, false );
+    final CompactQrCode first = CompactQrCode.from( large );
+    final CompactQrCode second = CompactQrCode.from( QrCodeTool.encodeText( "HELLO WORLD", Ecc.HIGH ) );
+    final ByteBuffer direct =
+      ByteBuffer.allocateDirect( 5 + first.getSerializedSize() + second.getSerializedSize() )
+        .order( ByteOrder.LITTLE_ENDIAN );
+    direct.position( 5 );
+    first.writeTo( direct );
+    second.writeTo( direct );
+    direct.flip();
+    direct.position( 5 );
+    assertEquals( CompactQrCode.readFrom( direct ).toByteArray(), first.toByteArray() );
+    assertEquals( CompactQrCode.readFrom( direct ).toByteArray(), second.toByteArray() );
+    assertFalse( direct.hasRemaining() );
+  }
+}
@@ -0,0 +1,326 @@
+package org.realityforge.gwt.qr_code;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Compares every path through the optimized encoder with the frozen {@link ReferenceQrCode}. For each input the
+ * version, error correction level, interleaved codewords, chosen mask, the penalty score of every mask and the
+ * final modules must be identical. The paths compared are {@link QrCodeTool#encodeSegments(List, Ecc, int, int, int, boolean)},
+ * the time-sliced {@link EncodeTask}, symbols restored from a {@link CompactQrCode} and symbols derived from
+ * another symbol by a codeword delta as {@link QrTemplate} does, with the {@link Kernels} selected for the runtime.
+ *
+ * <p>The main method compares a corpus of payloads, such as a sample of production payloads, with one payload
+ * per line, or a corpus of random payloads when no file is specified. The harness and {@link ReferenceQrCode} are
+ * packaged as the verify classifier jar of the core artifact. i.e.</p>
+ *
+ * <pre>
+ * java -cp gwt-qr-code-core-VERSION.jar:gwt-qr-code-core-VERSION-verify.jar:braincheck-1.26.0.jar \
+ *   org.realityforge.gwt.qr_code.DifferentialHarness --corpus payloads.txt --ecc M
+ * </pre>
+ *
+ * <p>The options are --corpus, a file with one payload per line, otherwise --count random payloads (default: 10000)
+ * are generated from --seed (default: 1), --ecc, L, M, Q or H, otherwise every level is compared, --mask, the fixed
+ * mask (default: automatic) and --binary to encode each line as UTF-8 bytes rather than as text. The process exits
+ * with a non-zero status if any symbol differs. Run it with and without
+ * <code>-Dorg.realityforge.gwt.qr_code.vector=false</code> to compare both the vector and scalar kernels.</p>
+ */
+public final class DifferentialHarness
+{
+  private String _corpusFile;
+  private int _count = 10000;
+  private long _seed = 1;
+  @Nullable
+  private Ecc _ecc;
+  private int _mask = QrCodeTool.AUTO_MASK;
+  private boolean _binary;
+
+  private DifferentialHarness()
+  {
+  }
+
+  public static void main( final String[] args )
+    throws IOException
+  {
+    final DifferentialHarness harness = new DifferentialHarness();
+    for ( int i = 0; i < args.length; i++ )
+    {
+      switch ( args[ i ] )
+      {
+        case "--corpus":
+          harness._corpusFile = args[ ++i ];
+          break;
+        case "--count":
+          harness._count = Integer.parseInt( args[ ++i ] );
+          break;
+        case "--seed":
+          harness._seed = Long.parseLong( args[ ++i ] );
+          break;
+        case "--ecc":
+          harness._ecc = eccValue( args[ ++i ] );
+          break;
+        case "--mask":
+          harness._mask = Integer.parseInt( args[ ++i ] );
+          break;
+        case "--binary":
+          harness._binary = true;
+          break;
+        default:
+          throw new IllegalArgumentException( "Unknown option " + args[ i ] );
+      }
+    }
+    System.exit( harness.run() > 0 ? 1 : 0 );
+  }
+
+  private int run()
+    throws IOException
+  {
+    final long start = System.nanoTime();
+    int payloads = 0;
+    int differences = 0;
+    if ( null != _corpusFile )
+    {
+      try ( BufferedReader reader = Files.newBufferedReader( Paths.get( _corpusFile ), StandardCharsets.UTF_8 ) )
+      {
+        String line;
+        while ( null != ( line = reader.readLine() ) )
+        {
+          payloads++;
+          differences += compare( "line " + payloads, line );
+        }
+      }
+    }
+    else
+    {
+      final Random random = new Random( _seed );
+      for ( ; payloads < _count; payloads++ )
+      {
+        differences += compare( "payload " + payloads, randomText( random, random.nextInt( 300 ) ) );
+      }
+    }
+    System.out.printf( "Compared %d payloads in %.1fs using %s, %d symbols differ%n",
+                       payloads,
+                       ( System.nanoTime() - start ) / 1e9,
+                       KernelSelector.get().getClass().getSimpleName(),
+                       differences );
+    return differences;
+  }
+
+  private int compare( @Nonnull final String name, @Nonnull final String payload )
+  {
+    final List<QrSegment> segments =
+      _binary ?
+      Collections.singletonList( QrCodeTool.makeBytesSegment( payload.getBytes( StandardCharsets.UTF_8 ) ) ) :
+      QrCodeTool.makeSegments( payload );
+    int differences = 0;
+    for ( final Ecc ecl : Ecc.values() )
+    {
+      if ( null == _ecc || ecl == _ecc )
+      {
+        final String difference;
+        if ( -1 == QrCodeTool.findMinimumVersion( segments, ecl, QrCodeTool.MIN_VERSION, QrCodeTool.MAX_VERSION ) )
+        {
+          // Too long for the level, which both encoders must agree on
+          difference = canEncode( segments, ecl ) ? "Reference encoder accepted a payload that is too long" : null;
+        }
+        else
+        {
+          difference = compare( segments, ecl, QrCodeTool.MIN_VERSION, QrCodeTool.MAX_VERSION, _mask, true );
+        }
+        if ( null != difference )
+        {
+          System.out.println( name + " at level " + ecl + ": " + difference );
+          differences++;
+        }
+      }
+    }
+    return differences;
+  }
+
+  /**
+   * Encode the segments with every path through the optimized encoder and with the reference encoder and
+   * return a description of the first difference, if any.
+   *
+   * @param segments   the segments to encode.
+   * @param ecl        the error correction level to use (may be boosted).
+   * @param minVersion the minimum allowed version of the QR symbol.
+   * @param maxVersion the maximum allowed version of the QR symbol.
+   * @param mask       the mask pattern to use, which is either -1 for automatic choice or from 0 to 7 for fixed choice.
+   * @param boostEcl   increases the error correction level if it can be done without increasing the version number.
+   * @return a description of the first difference, or null if every path produced the reference symbol.
+   */
+  @Nullable
+  static String compare( @Nonnull final List<QrSegment> segments,
+                         @Nonnull final Ecc ecl,
+                         final int minVersion,
+                         final int maxVersion,
+                         final int mask,
+                         final boolean boostEcl )
+  {
+    final ReferenceQrCode reference =
+      ReferenceQrCode.encodeSegments( segments, ecl, minVersion, maxVersion, mask, boostEcl );
+    final QrCode qrCode = QrCodeTool.encodeSegments( segments, ecl, minVersion, maxVersion, mask, boostEcl );
+    if ( qrCode.getVersion() != reference.getVersion() )
+    {
+      return "Version " + qrCode.getVersion() + " differs from the reference version " + reference.getVersion();
+    }
+    if ( qrCode.getErrorCorrectionLevel() != reference.getErrorCorrectionLevel() )
+    {
+      return "Level " + qrCode.getErrorCorrectionLevel() +
+             " differs from the reference level " + reference.getErrorCorrectionLevel();
+    }
+    final int version = reference.getVersion();
+    final Ecc level = reference.getErrorCorrectionLevel();
+    final byte[] codewords = reference.getCodewords();
+    final byte[] actual = qrCode.getCodewords();
+    for ( int i = 0; i < codewords.length; i++ )
+    {
+      if ( codewords[ i ] != actual[ i ] )
+      {
+        return "Codeword " + i + " is " + ( actual[ i ] & 0xFF ) + " rather than " + ( codewords[ i ] & 0xFF );
+      }
+    }
+
+    final QrCode unmasked = QrCode.newUnmasked( version, level, codewords );
+    for ( int candidate = 0; candidate < 8; candidate++ )
+    {
+      final int penalty = unmasked.getMaskPenalty( candidate );
+      if ( penalty != reference.getPenalty( candidate ) )
+      {
+        return "Penalty of mask " + candidate + " is " + penalty + " rather than " + reference.getPenalty( candidate );
+      }
+    }
+
+    String difference = compareSymbol( "Encoded symbol", reference, qrCode );
+    if ( null == difference )
+    {
+      final EncodeTask task = new EncodeTask( segments, ecl, minVersion, maxVersion, mask, boostEcl );
+      while ( !task.isComplete() )
+      {
+        task.step();
+      }
+      difference = compareSymbol( "Time-sliced symbol", reference, task.getSymbol() );
+    }
+    if ( null == difference )
+    {
+      difference = compareSymbol( "Restored symbol", reference, CompactQrCode.from( qrCode ).toQrCode() );
+    }
+    if ( null == difference )
+    {
+      // Derive the symbol from another symbol with the same mask, which updates the modules in place, and
+      // from a symbol with a different mask, which removes the mask and selects the mask again
+      final int rawCodewords = codewords.length;
+      final QrCode sameMask = QrCode.fromCodewords( version, level, new byte[ rawCodewords ], reference.getMask() );
+      difference = compareSymbol( "Delta symbol", reference, new QrCode( sameMask, codewords, reference.getMask() ) );
+      if ( null == difference )
+      {
+        final QrCode otherMask =
+          QrCode.fromCodewords( version, level, new byte[ rawCodewords ], ( reference.getMask() + 1 ) % 8 );
+        difference = compareSymbol( "Remasked delta symbol", reference, new QrCode( otherMask, codewords, mask ) );
+      }
+    }
+    return difference;
+  }
+
+  @Nullable
+  private static String compareSymbol( @Nonnull final String name,
+                                       @Nonnull final ReferenceQrCode reference,
+                                       @Nonnull final QrCode qrCode )
+  {
+    if ( qrCode.getMask() != reference.getMask() )
+    {
+      return name + " has mask " + qrCode.getMask() + " rather than " + reference.getMask();
+    }
+    final int size = reference.getSize();
+    final int words = ( size + 31 ) >>> 5;
+    final int[] packed = qrCode.getPackedModules();
+    for ( int y = 0; y < size; y++ )
+    {
+      for ( int x = 0; x < size; x++ )
+      {
+        final boolean expected = reference.getModule( x, y );
+        if ( qrCode.getModule( x, y ) != expected ||
+             ( 0 != ( packed[ y * words + ( x >>> 5 ) ] & ( 1 << ( x & 31 ) ) ) ) != expected )
+        {
+          return name + " differs at module (" + x + ", " + y + ")";
+        }
+      }
+    }
+    return null;
+  }
+
+  private static boolean canEncode( @Nonnull final List<QrSegment> segments, @Nonnull final Ecc ecl )
+  {
+    try
+    {
+      ReferenceQrCode.encodeSegments( segments, ecl, QrCodeTool.MIN_VERSION, QrCodeTool.MAX_VERSION, -1, true );
+      return true;
+    }
+    catch ( final IllegalArgumentException e )
+    {
+      return false;
+    }
+  }
+
+  /**
+   * Return random text that mixes runs of digits, uppercase alphanumeric characters, lowercase ASCII and
+   * characters outside of ASCII, so that the segments use every text mode.
+   *
+   * @param random the source of randomness.
+   * @param length the number of characters.
+   * @return the text.
+   */
+  @Nonnull
+  static String randomText( @Nonnull final Random random, final int length )
+  {
+    final StringBuilder sb = new StringBuilder( length );
+    final int kind = random.nextInt( 4 );
+    while ( sb.length() < length )
+    {
+      final int c = random.nextInt( 100 );
+      if ( 0 == kind || c < 10 )
+      {
+        sb.append( (char) ( '0' + random.nextInt( 10 ) ) );
+      }
+      else if ( 1 == kind || c < 20 )
+      {
+        sb.append( QrCodeTool.ALPHANUMERIC_CHARSET.charAt( random.nextInt( 45 ) ) );
+      }
+      else if ( 2 == kind || c < 95 )
+      {
+        sb.append( (char) ( ' ' + random.nextInt( 95 ) ) );
+      }
+      else
+      {
+        sb.append( (char) ( 0x3040 + random.nextInt( 0x60 ) ) );
+      }
+    }
+    return sb.toString();
+  }
+
+  @Nonnull
+  private static Ecc eccValue( @Nonnull final String value )
+  {
+    switch ( value )
+    {
+      case "L":
+        return Ecc.LOW;
+      case "M":
+        return Ecc.MEDIUM;
+      case "Q":
+        return Ecc.QUARTILE;
+      case "H":
+        return Ecc.HIGH;
+      default:
+        throw new IllegalArgumentException( "Unknown error correction level " + value );
+    }
+  }
+}
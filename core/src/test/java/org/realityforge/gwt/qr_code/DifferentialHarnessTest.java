@@ -0,0 +1,101 @@
+package org.realityforge.gwt.qr_code;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+public class DifferentialHarnessTest
+{
+  @Test
+  public void everyVersionLevelAndMaskMatchesReference()
+  {
+    final Random random = new Random( 42 );
+    for ( int version = QrCodeTool.MIN_VERSION; version <= QrCodeTool.MAX_VERSION; version++ )
+    {
+      for ( final Ecc ecl : Ecc.values() )
+      {
+        for ( int mask = QrCodeTool.AUTO_MASK; mask < 8; mask++ )
+        {
+          final int capacity = QrCodeTool.getMaxCharacters( version, ecl, Mode.BYTE );
+          final byte[] data = new byte[ random.nextInt( capacity + 1 ) ];
+          random.nextBytes( data );
+          final List<QrSegment> segments = Collections.singletonList( QrCodeTool.makeBytesSegment( data ) );
+          assertNull( DifferentialHarness.compare( segments, ecl, version, version, mask, false ),
+                      "Version " + version + " level " + ecl + " mask " + mask );
+        }
+      }
+    }
+  }
+
+  @Test
+  public void randomPayloadsMatchReference()
+  {
+    final Random random = new Random( 7 );
+    for ( int i = 0; i < 400; i++ )
+    {
+      final List<QrSegment> segments =
+        QrCodeTool.makeSegments( DifferentialHarness.randomText( random, random.nextInt( i < 300 ? 120 : 1500 ) ) );
+      final Ecc ecl = Ecc.values()[ random.nextInt( 4 ) ];
+      final int minVersion = 1 + random.nextInt( 10 );
+      final int mask = random.nextInt( 4 ) > 0 ? QrCodeTool.AUTO_MASK : random.nextInt( 8 );
+      if ( -1 != QrCodeTool.findMinimumVersion( segments, ecl, minVersion, QrCodeTool.MAX_VERSION ) )
+      {
+        assertNull( DifferentialHarness.compare( segments, ecl, minVersion, QrCodeTool.MAX_VERSION, mask, 0 == i % 2 ),
+                    "Payload " + i );
+      }
+    }
+  }
+
+  @Test
+  public void uniformPayloadsMatchReference()
+  {
+    // Long runs of the same color exercise the run and finder-like pattern penalties much more than random data
+    for ( final int version : new int[]{ 1, 2, 6, 7, 14, 21, 32, 40 } )
+    {
+      for ( final int value : new int[]{ 0x00, 0xFF, 0x0F, 0xAA } )
+      {
+        final byte[] data = new byte[ QrCodeTool.getMaxCharacters( version, Ecc.LOW, Mode.BYTE ) ];
+        Arrays.fill( data, (byte) value );
+        assertNull( DifferentialHarness.compare( Collections.singletonList( QrCodeTool.makeBytesSegment( data ) ),
+                                                 Ecc.LOW,
+                                                 version,
+                                                 version,
+                                                 QrCodeTool.AUTO_MASK,
+                                                 false ),
+                    "Version " + version + " value " + value );
+      }
+    }
+  }
+
+  @Test
+  public void headerSegmentsMatchReference()
+  {
+    final List<QrSegment> segments =
+      Arrays.asList( QrCodeTool.makeStructuredAppendSegment( 1, 3, 0x2C ),
+                     QrCodeTool.makeEciSegment( 26 ),
+                     QrCodeTool.makeEciSegment( 999999 ),
+                     QrCodeTool.makeNumericSegment( "0123456789" ),
+                     QrCodeTool.makeAlphanumericSegment( "HELLO WORLD" ) );
+    assertNull( DifferentialHarness.compare( segments, Ecc.QUARTILE, 1, 40, QrCodeTool.AUTO_MASK, true ) );
+  }
+
+  @Test
+  public void referenceMatchesSpecificationExample()
+  {
+    // The worked example of encoding "01234567" as a version 1-M symbol from ISO/IEC 18004 Annex I
+    final ReferenceQrCode reference =
+      ReferenceQrCode.encodeSegments( QrCodeTool.makeSegments( "01234567" ), Ecc.MEDIUM, 1, 1, 2, false );
+    final int[] expected = {
+      0x10, 0x20, 0x0C, 0x56, 0x61, 0x80, 0xEC, 0x11, 0xEC, 0x11, 0xEC, 0x11, 0xEC, 0x11, 0xEC, 0x11,
+      0xA5, 0x24, 0xD4, 0xC1, 0xED, 0x36, 0xC7, 0x87, 0x2C, 0x55 };
+    final byte[] codewords = reference.getCodewords();
+    assertEquals( codewords.length, expected.length );
+    for ( int i = 0; i < expected.length; i++ )
+    {
+      assertEquals( codewords[ i ] & 0xFF, expected[ i ], "Codeword " + i );
+    }
+  }
+}
@@ -0,0 +1,73 @@
+package org.realityforge.gwt.qr_code;
+
+import java.util.Arrays;
+import java.util.List;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+public class EncodeTaskTest
+{
+  @Test
+  public void encodeText()
+  {
+    final StringBuilder sb = new StringBuilder();
+    for ( int i = 0; i < 2900; i++ )
+    {
+      sb.append( (char) ( 'a' + i % 26 ) );
+    }
+    for ( final String text : Arrays.asList( "", "314159265358979", "HELLO WORLD", "Hello, world! 🎉",
+                                             sb.toString() ) )
+    {
+      for ( final Ecc ecl : Ecc.values() )
+      {
+        if ( text.length() < 1000 || Ecc.LOW == ecl )
+        {
+          assertSymbolEquals( runToCompletion( new EncodeTask( text, ecl ) ), QrCodeTool.encodeText( text, ecl ) );
+        }
+      }
+    }
+  }
+
+  @Test
+  public void encodeSegments()
+  {
+    final List<QrSegment> segments = QrCodeTool.makeSegments( "https://example.com/asset/0001234" );
+    for ( int mask = -1; mask < 8; mask++ )
+    {
+      final EncodeTask task = new EncodeTask( segments, Ecc.MEDIUM, 5, 12, mask, false );
+      assertSymbolEquals( runToCompletion( task ), QrCodeTool.encodeSegments( segments, Ecc.MEDIUM, 5, 12, mask, false ) );
+    }
+  }
+
+  @Test
+  public void stepsAreFineGrained()
+  {
+    // Data, two groups of blocks, placement and eight masks
+    final EncodeTask task = new EncodeTask( QrCodeTool.makeSegments( "X" ), Ecc.HIGH, 40, 40, -1, true );
+    int steps = 0;
+    while ( !task.isComplete() )
+    {
+      task.step();
+      steps++;
+    }
+    assertEquals( steps, 12 );
+    assertEquals( task.getSymbol().getVersion(), 40 );
+  }
+
+  private QrCode runToCompletion( final EncodeTask task )
+  {
+    while ( !task.isComplete() )
+    {
+      task.step();
+    }
+    return task.getSymbol();
+  }
+
+  private void assertSymbolEquals( final QrCode actual, final QrCode expected )
+  {
+    assertEquals( actual.getVersion(), expected.getVersion() );
+    assertEquals( actual.getErrorCorrectionLevel(), expected.getErrorCorrectionLevel() );
+    assertEquals( actual.getMask(), expected.getMask() );
+    assertEquals( actual.toSvgString( 0 ), expected.toSvgString( 0 ) );
+  }
+}
@@ -0,0 +1,125 @@
+package org.realityforge.gwt.qr_code;
+
+import java.lang.reflect.Field;
+import java.util.Random;
+import org.testng.SkipException;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+public class KernelsTest
+{
+  @Test
+  public void vectorMaskKernelsMatchScalarKernels()
+  {
+    final Kernels kernels = getVectorKernels();
+    final Random random = new Random( 42 );
+    for ( int version = QrCodeTool.MIN_VERSION; version <= QrCodeTool.MAX_VERSION; version++ )
+    {
+      final MaskPatterns patterns = getMaskPatterns( version );
+      for ( int iteration = 0; iteration < 20; iteration++ )
+      {
+        // Sparse and dense grids produce more runs and finder-like patterns than uniformly random grids
+        final int[] grid = createGrid( random, patterns, iteration % 4 );
+        final int mask = iteration % 8;
+        final int[] expected = new int[ grid.length ];
+        final int[] actual = new int[ grid.length ];
+        assertEquals( kernels.applyMask( grid, patterns.getRows( mask ), actual ),
+                      ScalarKernels.INSTANCE.applyMask( grid, patterns.getRows( mask ), expected ) );
+        assertEquals( actual, expected );
+        assertEquals( kernels.getLinePenalty( expected, patterns ),
+                      ScalarKernels.INSTANCE.getLinePenalty( expected, patterns ),
+                      "Version " + version );
+        assertEquals( kernels.getBlockPenalty( expected, patterns ),
+                      ScalarKernels.INSTANCE.getBlockPenalty( expected, patterns ),
+                      "Version " + version );
+      }
+    }
+  }
+
+  @Test
+  public void vectorReedSolomonKernelMatchesScalarKernel()
+  {
+    final Kernels kernels = getVectorKernels();
+    final Random random = new Random( 42 );
+    for ( final int degree : new int[]{ 7, 10, 22, 30, 255 } )
+    {
+      final ReedSolomonGenerator generator = ReedSolomonGenerator.forDegree( degree );
+      for ( final int blocks : new int[]{ 1, 15, 16, 17, 33, 64, 81, 127 } )
+      {
+        final int steps = 1 + random.nextInt( 40 );
+        final byte[] codewords = new byte[ ( steps + degree ) * blocks ];
+        for ( int i = 0; i < steps * blocks; i++ )
+        {
+          codewords[ i ] = (byte) random.nextInt();
+        }
+        final byte[] expected = codewords.clone();
+        ScalarKernels.INSTANCE.divide( generator, expected, 0, steps, steps * blocks, blocks, 0, blocks );
+        kernels.divide( generator, codewords, 0, steps, steps * blocks, blocks, 0, blocks );
+        assertEquals( codewords, expected, "Degree " + degree + " blocks " + blocks );
+      }
+    }
+  }
+
+  private int[] createGrid( final Random random, final MaskPatterns patterns, final int density )
+  {
+    final int words = patterns.getWords();
+    final int[] grid = new int[ patterns.getSize() * words ];
+    for ( int i = 0; i < grid.length; i++ )
+    {
+      int word = random.nextInt();
+      if ( 1 == density )
+      {
+        word &= random.nextInt() & random.nextInt();
+      }
+      else if ( 2 == density )
+      {
+        word |= random.nextInt() | random.nextInt();
+      }
+      else if ( 3 == density )
+      {
+        // Repeat rows so that there are long runs within columns
+        word = i >= words && random.nextInt( 4 ) > 0 ? grid[ i - words ] : word;
+      }
+      // Bits beyond the last module of each row are always clear
+      grid[ i ] = words - 1 == i % words ? word & patterns.getLastWordMask() : word;
+    }
+    return grid;
+  }
+
+  private MaskPatterns getMaskPatterns( final int version )
+  {
+    // Encoding a symbol computes the patterns from the function modules, after which they are cached
+    // so the grid passed to retrieve them is not used
+    final int size = QrCode.fromCodewords( version, Ecc.LOW, new byte[ QrCodeTool.getNumRawDataModules( version ) / 8 ], 0 )
+      .getSize();
+    return MaskPatterns.get( version, new boolean[ size ][ size ] );
+  }
+
+  private Kernels getVectorKernels()
+  {
+    try
+    {
+      final Class<?> type = Class.forName( "org.realityforge.gwt.qr_code.VectorKernels" );
+      if ( !(Boolean) type.getDeclaredMethod( "isSupported" ).invoke( null ) )
+      {
+        throw new SkipException( "The preferred vectors are too narrow for the vector kernels" );
+      }
+      final Field field = type.getDeclaredField( "INSTANCE" );
+      return (Kernels) field.get( null );
+    }
+    catch ( final ClassNotFoundException | LinkageError e )
+    {
+      // The test run with the Java 17 layer and the incubator module sets the property, so that the tests
+      // of the vector kernels can not silently be skipped
+      if ( Boolean.getBoolean( "org.realityforge.gwt.qr_code.test.require_vector" ) )
+      {
+        throw new AssertionError( "The vector kernels could not be loaded", e );
+      }
+      throw new SkipException( "The vector kernels are not available: " + e );
+    }
+    catch ( final ReflectiveOperationException e )
+    {
+      throw new AssertionError( e );
+    }
+  }
+}
@@ -0,0 +1,100 @@
+package org.realityforge.gwt.qr_code;
+
+import java.util.Random;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+public class MaskEvaluatorTest
+{
+  @Test
+  public void penaltyMatchesModuleByModuleEvaluation()
+  {
+    final Random random = new Random( 42 );
+    for ( int version = QrCodeTool.MIN_VERSION; version <= QrCodeTool.MAX_VERSION; version++ )
+    {
+      final Ecc ecl = Ecc.values()[ version % 4 ];
+      final byte[] codewords = new byte[ QrCodeTool.getNumRawDataModules( version ) / 8 ];
+      random.nextBytes( codewords );
+      final QrCode unmasked = QrCode.newUnmasked( version, ecl, codewords );
+      for ( int mask = 0; mask < 8; mask++ )
+      {
+        final QrCode masked = QrCode.fromCodewords( version, ecl, codewords, mask );
+        assertEquals( unmasked.getMaskPenalty( mask ), getPenaltyScore( masked ), "Version " + version + " mask " + mask );
+      }
+    }
+  }
+
+  @Test
+  public void penaltyOfUniformCodewords()
+  {
+    // Long runs of the same color exercise the run and finder-like pattern rules much more than random data
+    for ( final int value : new int[]{ 0x00, 0xFF, 0x0F, 0xAA } )
+    {
+      for ( final int version : new int[]{ 1, 4, 7, 28, 40 } )
+      {
+        final byte[] codewords = new byte[ QrCodeTool.getNumRawDataModules( version ) / 8 ];
+        for ( int i = 0; i < codewords.length; i++ )
+        {
+          codewords[ i ] = (byte) value;
+        }
+        final QrCode unmasked = QrCode.newUnmasked( version, Ecc.LOW, codewords );
+        for ( int mask = 0; mask < 8; mask++ )
+        {
+          assertEquals( unmasked.getMaskPenalty( mask ),
+                        getPenaltyScore( QrCode.fromCodewords( version, Ecc.LOW, codewords, mask ) ) );
+        }
+      }
+    }
+  }
+
+  // The penalty rules evaluated one module at a time
+  private int getPenaltyScore( final QrCode qrCode )
+  {
+    final int size = qrCode.getSize();
+    int result = 0;
+    for ( int a = 0; a < size; a++ )
+    {
+      int runX = 0;
+      int runY = 0;
+      int bitsX = 0;
+      int bitsY = 0;
+      for ( int b = 0; b < size; b++ )
+      {
+        final boolean moduleX = qrCode.getModule( b, a );
+        final boolean moduleY = qrCode.getModule( a, b );
+        runX = b > 0 && moduleX == qrCode.getModule( b - 1, a ) ? runX + 1 : 1;
+        runY = b > 0 && moduleY == qrCode.getModule( a, b - 1 ) ? runY + 1 : 1;
+        result += ( 5 == runX ? 3 : runX > 5 ? 1 : 0 ) + ( 5 == runY ? 3 : runY > 5 ? 1 : 0 );
+        bitsX = ( ( bitsX << 1 ) & 0x7FF ) | ( moduleX ? 1 : 0 );
+        bitsY = ( ( bitsY << 1 ) & 0x7FF ) | ( moduleY ? 1 : 0 );
+        if ( b >= 10 )
+        {
+          result += ( 0x05D == bitsX || 0x5D0 == bitsX ? 40 : 0 ) + ( 0x05D == bitsY || 0x5D0 == bitsY ? 40 : 0 );
+        }
+      }
+    }
+    int black = 0;
+    for ( int y = 0; y < size; y++ )
+    {
+      for ( int x = 0; x < size; x++ )
+      {
+        final boolean color = qrCode.getModule( x, y );
+        black += color ? 1 : 0;
+        if ( x < size - 1 &&
+             y < size - 1 &&
+             color == qrCode.getModule( x + 1, y ) &&
+             color == qrCode.getModule( x, y + 1 ) &&
+             color == qrCode.getModule( x + 1, y + 1 ) )
+        {
+          result += 3;
+        }
+      }
+    }
+    final int total = size * size;
+    for ( int k = 0; black * 20 < ( 9 - k ) * total || black * 20 > ( 11 + k ) * total; k++ )
+    {
+      result += 10;
+    }
+    return result;
+  }
+}
@@ -0,0 +1,84 @@
+package org.realityforge.gwt.qr_code;
+
+import java.util.Collections;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+public class ModuleDiffTest
+{
+  @Test
+  public void forEachChangedRun()
+  {
+    final QrCode previous = QrCodeTool.encodeText( "TOKEN-000000", Ecc.MEDIUM );
+    final QrCode current = QrCodeTool.encodeText( "TOKEN-918273", Ecc.MEDIUM );
+    assertEquals( current.getVersion(), previous.getVersion() );
+
+    // Applying the changed runs to the previous modules yields the current modules
+    final int size = current.getSize();
+    final boolean[][] modules = new boolean[ size ][ size ];
+    for ( int y = 0; y < size; y++ )
+    {
+      for ( int x = 0; x < size; x++ )
+      {
+        modules[ y ][ x ] = previous.getModule( x, y );
+      }
+    }
+    final int[] changed = new int[ 1 ];
+    current.forEachChangedRun( previous, true, ( y, x, length ) -> apply( modules, y, x, length, true, changed ) );
+    current.forEachChangedRun( previous, false, ( y, x, length ) -> apply( modules, y, x, length, false, changed ) );
+    int expected = 0;
+    for ( int y = 0; y < size; y++ )
+    {
+      for ( int x = 0; x < size; x++ )
+      {
+        assertEquals( modules[ y ][ x ], current.getModule( x, y ) );
+        expected += previous.getModule( x, y ) != current.getModule( x, y ) ? 1 : 0;
+      }
+    }
+    assertEquals( changed[ 0 ], expected );
+
+    // A symbol never differs from itself
+    current.forEachChangedRun( current, true, ( y, x, length ) -> fail() );
+  }
+
+  @Test
+  public void drawArgbChanges()
+  {
+    final QrCode previous = QrCodeTool.encodeText( "TOKEN-000000", Ecc.MEDIUM );
+    final QrCode current = QrCodeTool.encodeText( "TOKEN-918273", Ecc.MEDIUM );
+    final QrCode larger =
+      QrCodeTool.encodeSegments( Collections.singletonList( QrCodeTool.makeAlphanumericSegment( "TOKEN" ) ),
+                                 Ecc.MEDIUM, 7, 7, QrCodeTool.AUTO_MASK, false );
+    final int scale = 3;
+    final int border = 2;
+    final int stride = ( larger.getSize() + border * 2 ) * scale + 5;
+    final int offset = 7;
+
+    final int[] pixels = new int[ offset + stride * stride ];
+    previous.drawArgb( scale, border, 0xFF000000, 0xFFFFFFFF, pixels, offset, stride );
+    current.drawArgbChanges( previous, scale, border, 0xFF000000, 0xFFFFFFFF, pixels, offset, stride );
+    final int[] expected = new int[ pixels.length ];
+    current.drawArgb( scale, border, 0xFF000000, 0xFFFFFFFF, expected, offset, stride );
+    assertEquals( pixels, expected );
+
+    // A change of version draws the entire image
+    larger.drawArgbChanges( current, scale, border, 0xFF000000, 0xFFFFFFFF, pixels, offset, stride );
+    larger.drawArgb( scale, border, 0xFF000000, 0xFFFFFFFF, expected, offset, stride );
+    assertEquals( pixels, expected );
+  }
+
+  private void apply( final boolean[][] modules,
+                      final int y,
+                      final int start,
+                      final int length,
+                      final boolean dark,
+                      final int[] changed )
+  {
+    for ( int x = start; x < start + length; x++ )
+    {
+      assertNotEquals( modules[ y ][ x ], dark );
+      modules[ y ][ x ] = dark;
+      changed[ 0 ]++;
+    }
+  }
+}
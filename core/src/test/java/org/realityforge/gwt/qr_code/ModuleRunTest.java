@@ -0,0 +1,56 @@
+package org.realityforge.gwt.qr_code;
+
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+public class ModuleRunTest
+{
+  @Test
+  public void runs_coverDarkModules()
+  {
+    for ( final String text : new String[]{ "1", "https://realityforge.org", "Row runs and column runs" } )
+    {
+      final QrCode qrCode = QrCodeTool.encodeText( text, Ecc.HIGH );
+      final int size = qrCode.getSize();
+
+      final boolean[][] rows = new boolean[ size ][ size ];
+      qrCode.forEachRowRun( ( y, x, length ) -> fill( rows, y, x, length, false ) );
+      final boolean[][] columns = new boolean[ size ][ size ];
+      qrCode.forEachColumnRun( ( x, y, length ) -> fill( columns, x, y, length, true ) );
+      final boolean[][] sink = new boolean[ size ][ size ];
+      final int[] runs = new int[ size + 1 ];
+      for ( int y = 0; y < size; y++ )
+      {
+        final int count = qrCode.getRowRuns( y, runs );
+        for ( int i = 0; i < count; i++ )
+        {
+          // Runs are maximal so consecutive runs are separated by at least one light module
+          assertTrue( 0 == i || runs[ i * 2 ] > runs[ i * 2 - 2 ] + runs[ i * 2 - 1 ] );
+          fill( sink, y, runs[ i * 2 ], runs[ i * 2 + 1 ], false );
+        }
+      }
+
+      for ( int y = 0; y < size; y++ )
+      {
+        for ( int x = 0; x < size; x++ )
+        {
+          assertEquals( rows[ y ][ x ], qrCode.getModule( x, y ) );
+          assertEquals( columns[ y ][ x ], qrCode.getModule( x, y ) );
+          assertEquals( sink[ y ][ x ], qrCode.getModule( x, y ) );
+        }
+      }
+    }
+  }
+
+  private void fill( final boolean[][] modules, final int line, final int start, final int length, final boolean vertical )
+  {
+    assertTrue( length > 0 );
+    for ( int i = start; i < start + length; i++ )
+    {
+      final boolean[] row = modules[ vertical ? i : line ];
+      final int x = vertical ? line : i;
+      assertFalse( row[ x ] );
+      row[ x ] = true;
+    }
+  }
+}
@@ -0,0 +1,61 @@
+package org.realityforge.gwt.qr_code;
+
+import java.io.InputStream;
+import java.util.Properties;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+public class NativeImageTest
+{
+  @Test
+  public void notBuildTimeOnJvm()
+  {
+    assertFalse( NativeImage.isBuildTime() );
+  }
+
+  @Test
+  public void configurationInitializesLibraryAtBuildTime()
+    throws Exception
+  {
+    final String resource =
+      "META-INF/native-image/org.realityforge.gwt.qr_code/gwt-qr-code-core/native-image.properties";
+    final Properties properties = new Properties();
+    try ( final InputStream input = getClass().getClassLoader().getResourceAsStream( resource ) )
+    {
+      assertNotNull( input );
+      properties.load( input );
+    }
+    final String args = properties.getProperty( "Args" );
+    assertNotNull( args );
+    assertTrue( args.startsWith( "--initialize-at-build-time=" ) );
+    for ( final String pkg : args.substring( args.indexOf( '=' ) + 1 ).split( "," ) )
+    {
+      // Each package named in the configuration must exist
+      assertNotNull( Class.forName( pkg + "." + guardClass( pkg ) ) );
+    }
+  }
+
+  @Test
+  public void multiplyMatchesCarrylessMultiplication()
+  {
+    for ( int x = 0; x < 256; x++ )
+    {
+      for ( int y = 0; y < 256; y++ )
+      {
+        // Russian peasant multiplication modulo the field polynomial
+        int z = 0;
+        for ( int i = 7; i >= 0; i-- )
+        {
+          z = ( z << 1 ) ^ ( ( z >>> 7 ) * 0x11D );
+          z ^= ( ( y >>> i ) & 1 ) * x;
+        }
+        assertEquals( ReedSolomonGenerator.multiply( x, y ), z );
+      }
+    }
+  }
+
+  private String guardClass( final String pkg )
+  {
+    return pkg.endsWith( "braincheck" ) ? "BrainCheckConfig" : "QrCodeTool";
+  }
+}
@@ -0,0 +1,126 @@
+package org.realityforge.gwt.qr_code;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+public class PayloadCompactorTest
+{
+  @Test
+  public void compressibleJsonUsesSmallerSymbol()
+  {
+    final StringBuilder sb = new StringBuilder( "[" );
+    for ( int i = 0; i < 40; i++ )
+    {
+      sb.append( i > 0 ? "," : "" )
+        .append( "{\"id\":" ).append( 1000 + i )
+        .append( ",\"status\":\"" ).append( 0 == i % 3 ? "shipped" : "pending" )
+        .append( "\",\"warehouse\":\"north\"}" );
+    }
+    final String json = sb.append( "]" ).toString();
+    final byte[] payload = json.getBytes( StandardCharsets.UTF_8 );
+
+    final QrCode compacted = PayloadCompactor.encodeText( json, Ecc.MEDIUM );
+    final QrCode plain = QrCodeTool.encodeText( json, Ecc.MEDIUM );
+    assertTrue( compacted.getVersion() < plain.getVersion(),
+                "Version " + compacted.getVersion() + " of " + plain.getVersion() );
+
+    final QrDecodeResult result = QrDecoder.decode( compacted );
+    assertNotNull( result );
+    assertEquals( PayloadCompactor.getEncoding( result.getData() ), PayloadCompactor.Encoding.DEFLATE );
+    assertEquals( PayloadCompactor.expand( result.getData() ), payload );
+  }
+
+  @Test
+  public void incompressiblePayloadIsLeftRaw()
+  {
+    final byte[] payload = new byte[ 300 ];
+    new Random( 42 ).nextBytes( payload );
+    payload[ 0 ] = 'A';
+    final List<QrSegment> segments = PayloadCompactor.makeSegments( payload, Ecc.LOW );
+    assertEquals( segments.size(), 1 );
+    assertEquals( segments.get( 0 ).getMode(), Mode.BYTE );
+    assertEquals( segments.get( 0 ).getNumChars(), payload.length );
+
+    final QrDecodeResult result = QrDecoder.decode( PayloadCompactor.encodeBinary( payload, Ecc.LOW ) );
+    assertNotNull( result );
+    assertEquals( PayloadCompactor.getEncoding( result.getData() ), PayloadCompactor.Encoding.RAW );
+    assertEquals( PayloadCompactor.expand( result.getData() ), payload );
+  }
+
+  @Test
+  public void shortTextKeepsTextModes()
+  {
+    assertEquals( PayloadCompactor.makeTextSegments( "0123456789", Ecc.HIGH ).get( 0 ).getMode(), Mode.NUMERIC );
+    assertEquals( PayloadCompactor.makeTextSegments( "HELLO WORLD", Ecc.HIGH ).get( 0 ).getMode(), Mode.ALPHANUMERIC );
+  }
+
+  @Test
+  public void payloadStartingWithMarkerIsAlwaysTransformed()
+  {
+    for ( final String text : new String[]{ "Z0:", "Z1:abc", "Z0:Z0:Z0:Z0:Z0:Z0:Z0:Z0:" } )
+    {
+      final QrDecodeResult result = QrDecoder.decode( PayloadCompactor.encodeText( text, Ecc.QUARTILE ) );
+      assertNotNull( result );
+      assertNotEquals( PayloadCompactor.getEncoding( result.getData() ), PayloadCompactor.Encoding.RAW );
+      assertEquals( new String( PayloadCompactor.expand( result.getData() ), StandardCharsets.UTF_8 ), text );
+    }
+  }
+
+  @Test
+  public void selectionMatchesEncodedVersion()
+  {
+    final Random random = new Random( 7 );
+    for ( int i = 0; i < 200; i++ )
+    {
+      final byte[] payload = new byte[ random.nextInt( 1500 ) ];
+      // Restrict the alphabet of some payloads so that they compress
+      final int alphabet = 0 == i % 2 ? 256 : 2 + random.nextInt( 30 );
+      for ( int j = 0; j < payload.length; j++ )
+      {
+        payload[ j ] = (byte) ( 'a' + random.nextInt( alphabet ) );
+      }
+      final Ecc ecl = Ecc.values()[ i % 4 ];
+      final QrCode qrCode = PayloadCompactor.encodeBinary( payload, ecl );
+      final int rawVersion =
+        QrCodeTool.findMinimumVersion( Collections.singletonList( QrCodeTool.makeBytesSegment( payload ) ), ecl, 1, 40 );
+      // The raw payload is chosen whenever compaction does not reduce the version
+      assertTrue( -1 == rawVersion || qrCode.getVersion() <= rawVersion, "Payload " + i );
+      final QrDecodeResult result = QrDecoder.decode( qrCode );
+      assertNotNull( result );
+      assertEquals( PayloadCompactor.expand( result.getData() ), payload, "Payload " + i );
+    }
+  }
+
+  @Test
+  public void base45()
+  {
+    // The examples from RFC 9285
+    assertEquals( PayloadCompactor.encodeBase45( "AB".getBytes( StandardCharsets.US_ASCII ) ), "BB8" );
+    assertEquals( PayloadCompactor.encodeBase45( "Hello!!".getBytes( StandardCharsets.US_ASCII ) ), "%69 VD92EX0" );
+    assertEquals( PayloadCompactor.encodeBase45( "base-45".getBytes( StandardCharsets.US_ASCII ) ), "UJCLQE7W581" );
+    assertEquals( new String( PayloadCompactor.decodeBase45( "QED8WEX0" ), StandardCharsets.US_ASCII ), "ietf!" );
+
+    final byte[] data = new byte[ 257 ];
+    new Random( 1 ).nextBytes( data );
+    for ( int length = 0; length < data.length; length += 37 )
+    {
+      final byte[] value = Arrays.copyOf( data, length );
+      assertEquals( PayloadCompactor.decodeBase45( PayloadCompactor.encodeBase45( value ) ), value );
+    }
+    expectThrows( IllegalArgumentException.class, () -> PayloadCompactor.decodeBase45( "GGW" ) );
+    expectThrows( IllegalArgumentException.class, () -> PayloadCompactor.decodeBase45( "AB8C" ) );
+    expectThrows( IllegalArgumentException.class, () -> PayloadCompactor.decodeBase45( "ab8" ) );
+  }
+
+  @Test
+  public void corruptCompressedPayloadIsRejected()
+  {
+    expectThrows( IllegalArgumentException.class,
+                  () -> PayloadCompactor.expand( new byte[]{ 'Z', '0', ':', (byte) 0xFF, (byte) 0xFF } ) );
+  }
+}
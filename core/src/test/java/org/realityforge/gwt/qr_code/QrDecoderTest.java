@@ -0,0 +1,235 @@
+package org.realityforge.gwt.qr_code;
+
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+public class QrDecoderTest
+{
+  @Test
+  public void decodeEveryVersionLevelAndMask()
+  {
+    final Random random = new Random( 42 );
+    for ( int version = QrCodeTool.MIN_VERSION; version <= QrCodeTool.MAX_VERSION; version++ )
+    {
+      for ( final Ecc ecl : Ecc.values() )
+      {
+        final int mask = ( version + ecl.ordinal() ) % 8;
+        final int capacity = QrCodeTool.getMaxCharacters( version, ecl, Mode.BYTE );
+        final byte[] data = new byte[ 1 + random.nextInt( capacity ) ];
+        random.nextBytes( data );
+        final List<QrSegment> segments = Collections.singletonList( QrCodeTool.makeBytesSegment( data ) );
+        final QrCode qrCode = QrCodeTool.encodeSegments( segments, ecl, version, version, mask, false, true );
+        final QrDecodeResult result = QrDecoder.decode( qrCode );
+        assertNotNull( result );
+        assertEquals( result.getVersion(), version );
+        assertEquals( result.getErrorCorrectionLevel(), ecl );
+        assertEquals( result.getMask(), mask );
+        assertEquals( result.getCorrectedErrors(), 0 );
+        assertEquals( result.getData(), data, "Version " + version + " level " + ecl );
+      }
+    }
+  }
+
+  @Test
+  public void decodeTextSegments()
+  {
+    for ( final String text : new String[]{ "", "0123456789012", "HELLO WORLD $%*+-./:", "Hello, 世界!" } )
+    {
+      final QrCode qrCode = QrCodeTool.encodeText( text, Ecc.MEDIUM, true );
+      final QrDecodeResult result = QrDecoder.decode( qrCode );
+      assertNotNull( result );
+      assertEquals( result.getText(), text );
+      assertTrue( QrDecoder.matches( QrCodeTool.makeSegments( text ), result.getSegments() ) );
+    }
+  }
+
+  @Test
+  public void decodeHeaderSegments()
+  {
+    final List<QrSegment> segments =
+      Arrays.asList( QrCodeTool.makeStructuredAppendSegment( 2, 5, 0x5A ),
+                     QrCodeTool.makeEciSegment( 26 ),
+                     QrCodeTool.makeEciSegment( 899 ),
+                     QrCodeTool.makeEciSegment( 999999 ),
+                     QrCodeTool.makeNumericSegment( "31415" ),
+                     QrCodeTool.makeAlphanumericSegment( "PI" ) );
+    final QrCode qrCode = QrCodeTool.encodeSegments( segments, Ecc.HIGH, 1, 40, -1, true, true );
+    final QrDecodeResult result = QrDecoder.decode( qrCode );
+    assertNotNull( result );
+    assertEquals( result.getSegments().size(), 6 );
+    assertEquals( result.getSegments().get( 0 ).getMode(), Mode.STRUCTURED_APPEND );
+    assertEquals( result.getSegments().get( 3 ).getMode(), Mode.ECI );
+    assertEquals( result.getText(), "31415PI" );
+  }
+
+  @Test
+  public void decodeModuleGrid()
+  {
+    final QrCode qrCode = QrCodeTool.encodeText( "https://example.com/grid", Ecc.QUARTILE );
+    final QrDecodeResult result = QrDecoder.decode( toGrid( qrCode ) );
+    assertNotNull( result );
+    assertEquals( result.getText(), "https://example.com/grid" );
+    assertEquals( result.getMask(), qrCode.getMask() );
+  }
+
+  @Test
+  public void correctCodewordErrors()
+  {
+    final Random random = new Random( 7 );
+    for ( final int version : new int[]{ 1, 2, 3, 5, 7, 10, 21, 27, 40 } )
+    {
+      for ( final Ecc ecl : Ecc.values() )
+      {
+        final byte[] data = new byte[ QrCodeTool.getMaxCharacters( version, ecl, Mode.BYTE ) ];
+        random.nextBytes( data );
+        final QrCode qrCode = QrCodeTool.encodeSegments( Collections.singletonList( QrCodeTool.makeBytesSegment( data ) ),
+                                                         ecl,
+                                                         version,
+                                                         version,
+                                                         -1,
+                                                         false );
+        final boolean[][] grid = toGrid( qrCode );
+        final BlockLayout blocks = BlockLayout.get( version, ecl );
+        final ModuleLayout layout = ModuleLayout.get( version, qrCode.getFunctionModules() );
+        final int protection = 1 == version ? ( Ecc.LOW == ecl ? 3 : Ecc.MEDIUM == ecl ? 2 : 1 ) :
+                               2 == version && Ecc.LOW == ecl ? 2 : 3 == version && Ecc.LOW == ecl ? 1 : 0;
+        final int errorsPerBlock = ( blocks.getBlockEccLen() - protection ) / 2;
+        for ( int block = 0; block < blocks.getNumBlocks(); block++ )
+        {
+          final int dataLen = blocks.getBlockDataLen( block );
+          final int[] indexes = new int[ dataLen + blocks.getBlockEccLen() ];
+          for ( int i = 0; i < indexes.length; i++ )
+          {
+            indexes[ i ] = i < dataLen ?
+                           blocks.getDataPosition( blocks.getBlockDataOffset( block ) + i ) :
+                           blocks.getEccPosition( block, i - dataLen );
+          }
+          // Corrupt a random selection of the codewords of the block
+          for ( int i = 0; i < errorsPerBlock; i++ )
+          {
+            final int j = i + random.nextInt( indexes.length - i );
+            final int position = indexes[ j ];
+            indexes[ j ] = indexes[ i ];
+            final int error = 1 + random.nextInt( 255 );
+            for ( int bit = 0; bit < 8; bit++ )
+            {
+              if ( 0 != ( error & ( 0x80 >>> bit ) ) )
+              {
+                grid[ layout.getY( position * 8 + bit ) ][ layout.getX( position * 8 + bit ) ] ^= true;
+              }
+            }
+          }
+        }
+        // Damage the first copy of the format information as well
+        grid[ 0 ][ 8 ] ^= true;
+        grid[ 8 ][ 0 ] ^= true;
+
+        final QrDecodeResult result = QrDecoder.decode( grid );
+        assertNotNull( result, "Version " + version + " level " + ecl );
+        assertEquals( result.getCorrectedErrors(), errorsPerBlock * blocks.getNumBlocks() );
+        assertEquals( result.getData(), data, "Version " + version + " level " + ecl );
+      }
+    }
+  }
+
+  @Test
+  public void rejectUnreadableSymbol()
+  {
+    final QrCode qrCode = QrCodeTool.encodeText( "0123456789", Ecc.LOW );
+    final boolean[][] grid = toGrid( qrCode );
+    // Invert both copies of the format information
+    for ( int i = 0; i < 9; i++ )
+    {
+      grid[ i ][ 8 ] ^= true;
+      grid[ 8 ][ i ] ^= true;
+      grid[ 8 ][ qrCode.getSize() - 1 - i ] ^= true;
+      grid[ qrCode.getSize() - 1 - i ][ 8 ] ^= true;
+    }
+    assertNull( QrDecoder.decode( grid ) );
+  }
+
+  @Test
+  public void verifyDetectsDifferentSegments()
+  {
+    final QrCode qrCode = QrCodeTool.encodeBinary( "payload".getBytes( StandardCharsets.UTF_8 ), Ecc.HIGH, true );
+    QrDecoder.verify( qrCode,
+                      Collections.singletonList( QrCodeTool.makeBytesSegment( "payload".getBytes( StandardCharsets.UTF_8 ) ) ) );
+    expectThrows( IllegalStateException.class,
+                  () -> QrDecoder.verify( qrCode,
+                                          Collections.singletonList( QrCodeTool.makeBytesSegment( "paylord".getBytes(
+                                            StandardCharsets.UTF_8 ) ) ) ) );
+  }
+
+  @Test
+  public void verifyDetectsCorruptLayout()
+    throws Exception
+  {
+    final List<QrSegment> segments = QrCodeTool.makeSegments( "https://example.com/layout" );
+    final QrCode qrCode = QrCodeTool.encodeSegments( segments, Ecc.MEDIUM, 3, 3, 0, false, true );
+    // Swap the placement of the first two codewords in the layout that the encoder caches for the version
+    final Field field = ModuleLayout.class.getDeclaredField( "_positions" );
+    field.setAccessible( true );
+    final int[] positions = (int[]) field.get( ModuleLayout.get( 3, qrCode.getFunctionModules() ) );
+    final int[] original = positions.clone();
+    try
+    {
+      for ( int i = 0; i < 8; i++ )
+      {
+        positions[ i ] = original[ 8 + i ];
+        positions[ 8 + i ] = original[ i ];
+      }
+      final IllegalStateException exception =
+        expectThrows( IllegalStateException.class,
+                      () -> QrCodeTool.encodeSegments( segments, Ecc.MEDIUM, 3, 3, 0, false, true ) );
+      assertEquals( exception.getMessage(), "The encoded symbol contains 2 incorrect codewords" );
+    }
+    finally
+    {
+      System.arraycopy( original, 0, positions, 0, original.length );
+    }
+    QrCodeTool.encodeSegments( segments, Ecc.MEDIUM, 3, 3, 0, false, true );
+  }
+
+  @Test
+  public void verifyDetectsCorruptMaskPattern()
+  {
+    final List<QrSegment> segments = QrCodeTool.makeSegments( "https://example.com/mask" );
+    final QrCode qrCode = QrCodeTool.encodeSegments( segments, Ecc.LOW, 4, 4, 5, false, true );
+    // Invert one data module of the pattern that the encoder caches for the mask
+    final int[] rows = MaskPatterns.get( 4, qrCode.getFunctionModules() ).getRows( 5 );
+    final ModuleLayout layout = ModuleLayout.get( 4, qrCode.getFunctionModules() );
+    final int x = layout.getX( 100 );
+    final int index = layout.getY( 100 ) * ( ( qrCode.getSize() + 31 ) >>> 5 ) + ( x >>> 5 );
+    rows[ index ] ^= 1 << ( x & 31 );
+    try
+    {
+      final IllegalStateException exception =
+        expectThrows( IllegalStateException.class,
+                      () -> QrCodeTool.encodeSegments( segments, Ecc.LOW, 4, 4, 5, false, true ) );
+      assertEquals( exception.getMessage(), "The encoded symbol contains 1 incorrect codewords" );
+    }
+    finally
+    {
+      rows[ index ] ^= 1 << ( x & 31 );
+    }
+  }
+
+  private static boolean[][] toGrid( final QrCode qrCode )
+  {
+    final boolean[][] grid = new boolean[ qrCode.getSize() ][ qrCode.getSize() ];
+    for ( int y = 0; y < grid.length; y++ )
+    {
+      for ( int x = 0; x < grid.length; x++ )
+      {
+        grid[ y ][ x ] = qrCode.getModule( x, y );
+      }
+    }
+    return grid;
+  }
+}
@@ -0,0 +1,96 @@
+package org.realityforge.gwt.qr_code;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+public class QrPlanTest
+{
+  @Test
+  public void planText_matchesEncodeText()
+  {
+    final String[] alphabets = { "0123456789", "0123456789ABCXYZ $%*+-./:", "abcxyz0123é€🎉" };
+    final Random random = new Random( 7 );
+    for ( int i = 0; i < 300; i++ )
+    {
+      final String alphabet = alphabets[ i % alphabets.length ];
+      final int length = random.nextInt( 1 + random.nextInt( 1200 ) );
+      final StringBuilder sb = new StringBuilder();
+      while ( sb.length() < length )
+      {
+        final int index = random.nextInt( alphabet.length() );
+        if ( Character.isLowSurrogate( alphabet.charAt( index ) ) )
+        {
+          sb.append( alphabet, index - 1, index + 1 );
+        }
+        else if ( Character.isHighSurrogate( alphabet.charAt( index ) ) )
+        {
+          sb.append( alphabet, index, index + 2 );
+        }
+        else
+        {
+          sb.append( alphabet.charAt( index ) );
+        }
+      }
+      final String text = sb.toString();
+      final Ecc ecl = Ecc.values()[ random.nextInt( 4 ) ];
+      final QrPlan plan = QrCodeTool.planText( text, ecl );
+      final QrPlan segmentsPlan = QrCodeTool.planSegments( QrCodeTool.makeSegments( text ), ecl, 1, 40, true );
+      if ( null == plan )
+      {
+        assertNull( segmentsPlan );
+      }
+      else
+      {
+        final QrCode qrCode = QrCodeTool.encodeText( text, ecl );
+        assertNotNull( segmentsPlan );
+        assertEquals( plan.getVersion(), qrCode.getVersion() );
+        assertEquals( plan.getSize(), qrCode.getSize() );
+        assertEquals( plan.getErrorCorrectionLevel(), qrCode.getErrorCorrectionLevel() );
+        assertEquals( plan.getModes(), segmentsPlan.getModes() );
+        assertEquals( plan.getDataBits(), segmentsPlan.getDataBits() );
+        assertEquals( plan.getCapacityBits(), segmentsPlan.getCapacityBits() );
+        assertTrue( plan.getRemainingBits() >= 0 );
+      }
+    }
+  }
+
+  @Test
+  public void getMaxCharacters()
+  {
+    for ( int version = 1; version <= 40; version++ )
+    {
+      for ( final Ecc ecl : Ecc.values() )
+      {
+        final int numeric = QrCodeTool.getMaxCharacters( version, ecl, Mode.NUMERIC );
+        assertFits( QrCodeTool.makeNumericSegment( repeat( '7', numeric ) ), version, ecl, true );
+        assertFits( QrCodeTool.makeNumericSegment( repeat( '7', numeric + 1 ) ), version, ecl, false );
+
+        final int alphanumeric = QrCodeTool.getMaxCharacters( version, ecl, Mode.ALPHANUMERIC );
+        assertFits( QrCodeTool.makeAlphanumericSegment( repeat( 'Q', alphanumeric ) ), version, ecl, true );
+        assertFits( QrCodeTool.makeAlphanumericSegment( repeat( 'Q', alphanumeric + 1 ) ), version, ecl, false );
+
+        final int bytes = QrCodeTool.getMaxCharacters( version, ecl, Mode.BYTE );
+        assertFits( QrCodeTool.makeBytesSegment( new byte[ bytes ] ), version, ecl, true );
+        assertFits( QrCodeTool.makeBytesSegment( new byte[ bytes + 1 ] ), version, ecl, false );
+      }
+    }
+    assertEquals( QrCodeTool.getMaxCharacters( 40, Ecc.LOW, Mode.NUMERIC ), 7089 );
+    assertEquals( QrCodeTool.getMaxCharacters( 40, Ecc.LOW, Mode.BYTE ), 2953 );
+  }
+
+  private void assertFits( final QrSegment segment, final int version, final Ecc ecl, final boolean fits )
+  {
+    final QrPlan plan = QrCodeTool.planSegments( Collections.singletonList( segment ), ecl, version, version, false );
+    assertEquals( null != plan, fits, "Version " + version + " " + ecl + " " + segment.getMode() );
+  }
+
+  private String repeat( final char ch, final int count )
+  {
+    final char[] chars = new char[ count ];
+    Arrays.fill( chars, ch );
+    return new String( chars );
+  }
+}
@@ -0,0 +1,95 @@
+package org.realityforge.gwt.qr_code;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Random;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+public class QrTemplateTest
+{
+  @Test
+  public void encode_matchesFullEncoding()
+  {
+    assertTemplateMatches( "https://t.example.com/v/########", Mode.BYTE, Ecc.MEDIUM, 3, "0123456789" );
+    assertTemplateMatches( "https://t.example.com/v/########", Mode.BYTE, Ecc.LOW, QrCodeTool.AUTO_MASK, "abcxyz" );
+    assertTemplateMatches( "TICKET-#####/##", Mode.ALPHANUMERIC, Ecc.HIGH, 5, "0123456789ABCXYZ" );
+    assertTemplateMatches( "31415#######9265##", Mode.NUMERIC, Ecc.QUARTILE, QrCodeTool.AUTO_MASK, "0123456789" );
+
+    // A large symbol with many blocks and fields spread across several blocks
+    final StringBuilder sb = new StringBuilder();
+    for ( int i = 0; i < 60; i++ )
+    {
+      sb.append( "item-" ).append( i ).append( "=##;" );
+    }
+    assertTemplateMatches( sb.toString(), Mode.BYTE, Ecc.HIGH, 1, "0123456789" );
+  }
+
+  @Test
+  public void encode_multiBytePlaceholder()
+  {
+    // The placeholder is three bytes in UTF-8 but every value is a single byte, so the offsets of the fields
+    // must be measured in the base payload rather than in the pattern
+    final String pattern = "id=\u20AC\u20AC\u20AC\u20AC-\u20AC\u20AC\u20AC\u20AC\u20AC\u20AC\u20AC\u20AC";
+    final QrTemplate template = QrTemplate.compile( pattern, '\u20AC', Mode.BYTE, Ecc.LOW, 2 );
+    final QrCode actual = template.encode( "4711ABCDEFGH" );
+    final byte[] payload = "id=4711-ABCDEFGH".getBytes( StandardCharsets.UTF_8 );
+    final QrCode expected =
+      QrCodeTool.encodeSegments( Collections.singletonList( QrCodeTool.makeBytesSegment( payload ) ),
+                                 Ecc.LOW,
+                                 1,
+                                 40,
+                                 2,
+                                 true );
+    assertEquals( actual.getVersion(), expected.getVersion() );
+    assertEquals( actual.toSvgString( 0 ), expected.toSvgString( 0 ) );
+  }
+
+  @Test
+  public void encode_rejectsValuesThatChangeTheLength()
+  {
+    final QrTemplate template = QrTemplate.compile( "https://t.example.com/v/########", '#', Ecc.MEDIUM );
+    expectThrows( IllegalArgumentException.class, () -> template.encode( "1234567\u00E9" ) );
+    expectThrows( IllegalArgumentException.class, () -> template.encode( "1234567" ) );
+    expectThrows( IllegalArgumentException.class, () -> template.encode( "123456789" ) );
+  }
+
+  private void assertTemplateMatches( final String pattern,
+                                      final Mode mode,
+                                      final Ecc ecl,
+                                      final int mask,
+                                      final String alphabet )
+  {
+    final QrTemplate template = QrTemplate.compile( pattern, '#', mode, ecl, mask );
+    final Random random = new Random( 42 );
+    for ( int i = 0; i < 20; i++ )
+    {
+      final StringBuilder values = new StringBuilder();
+      for ( int j = 0; j < template.getFieldLength(); j++ )
+      {
+        values.append( alphabet.charAt( random.nextInt( alphabet.length() ) ) );
+      }
+      final QrCode actual = template.encode( values.toString() );
+
+      final char[] chars = pattern.toCharArray();
+      for ( int j = 0, k = 0; j < chars.length; j++ )
+      {
+        if ( '#' == chars[ j ] )
+        {
+          chars[ j ] = values.charAt( k++ );
+        }
+      }
+      final String text = new String( chars );
+      final QrSegment segment =
+        Mode.NUMERIC == mode ? QrCodeTool.makeNumericSegment( text ) :
+        Mode.ALPHANUMERIC == mode ? QrCodeTool.makeAlphanumericSegment( text ) :
+        QrCodeTool.makeBytesSegment( text.getBytes( StandardCharsets.UTF_8 ) );
+      final QrCode expected = QrCodeTool.encodeSegments( Collections.singletonList( segment ), ecl, 1, 40, mask, true );
+
+      assertEquals( actual.getVersion(), expected.getVersion() );
+      assertEquals( actual.getErrorCorrectionLevel(), expected.getErrorCorrectionLevel() );
+      assertEquals( actual.getMask(), expected.getMask() );
+      assertEquals( actual.toSvgString( 0 ), expected.toSvgString( 0 ), text );
+    }
+  }
+}
@@ -0,0 +1,71 @@
+package org.realityforge.gwt.qr_code;
+
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+public class RasterRendererTest
+{
+  @Test
+  public void draw_matchesModules()
+  {
+    final QrCode qrCode = QrCodeTool.encodeText( "Hello, world! 123", Ecc.MEDIUM );
+    for ( final int scale : new int[]{ 1, 3, 8, 11 } )
+    {
+      for ( final int border : new int[]{ 0, 1, 4 } )
+      {
+        final int dimension = ( qrCode.getSize() + border * 2 ) * scale;
+        final int offset = 5;
+
+        final int argbStride = dimension + 3;
+        final int[] argb = new int[ offset + argbStride * dimension ];
+        argb[ offset - 1 ] = 42;
+        qrCode.drawArgb( scale, border, 0xFF000000, 0xFFFFFFFF, argb, offset, argbStride );
+
+        final int grayStride = dimension;
+        final byte[] gray = new byte[ offset + grayStride * dimension ];
+        qrCode.drawGray( scale, border, (byte) 0, (byte) 0xFF, gray, offset, grayStride );
+
+        final int bitsStride = ( dimension + 7 ) / 8;
+        final byte[] bits = new byte[ offset + bitsStride * dimension ];
+        qrCode.drawBits( scale, border, 0, 1, bits, offset, bitsStride );
+
+        for ( int y = 0; y < dimension; y++ )
+        {
+          for ( int x = 0; x < dimension; x++ )
+          {
+            final boolean dark = qrCode.getModule( x / scale - border, y / scale - border );
+            assertEquals( argb[ offset + y * argbStride + x ], dark ? 0xFF000000 : 0xFFFFFFFF );
+            assertEquals( gray[ offset + y * grayStride + x ], dark ? 0 : (byte) 0xFF );
+            final int bit = ( bits[ offset + y * bitsStride + ( x >>> 3 ) ] >>> ( 7 - ( x & 7 ) ) ) & 1;
+            assertEquals( bit, dark ? 0 : 1 );
+          }
+          // Pixels in the stride padding are not written and padding bits are the background
+          assertEquals( argb[ offset + y * argbStride + dimension ], 0 );
+          for ( int x = dimension; x < bitsStride * 8; x++ )
+          {
+            assertEquals( ( bits[ offset + y * bitsStride + ( x >>> 3 ) ] >>> ( 7 - ( x & 7 ) ) ) & 1, 1 );
+          }
+        }
+        assertEquals( argb[ offset - 1 ], 42 );
+      }
+    }
+  }
+
+  @Test
+  public void drawBits_foregroundOne()
+  {
+    final QrCode qrCode = QrCodeTool.encodeText( "1-bit", Ecc.LOW );
+    final int dimension = qrCode.getSize() * 2;
+    final int stride = 16;
+    final byte[] bits = new byte[ stride * dimension ];
+    qrCode.drawBits( 2, 0, 1, 0, bits, 0, stride );
+    for ( int y = 0; y < dimension; y++ )
+    {
+      for ( int x = 0; x < dimension; x++ )
+      {
+        final int bit = ( bits[ y * stride + ( x >>> 3 ) ] >>> ( 7 - ( x & 7 ) ) ) & 1;
+        assertEquals( bit, qrCode.getModule( x / 2, y / 2 ) ? 1 : 0 );
+      }
+    }
+  }
+}
@@ -1,44 +1,23 @@
-/*
- * QR Code generator library (Java)
- *
- * Copyright (c) Project Nayuki. (MIT License)
- * https://www.nayuki.io/page/qr-code-generator-library
- *
- * Permission is hereby granted, free of charge, to any person obtaining a copy of
- * this software and associated documentation files (the "Software"), to deal in
- * the Software without restriction, including without limitation the rights to
- * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
- * the Software, and to permit persons to whom the Software is furnished to do so,
- * subject to the following conditions:
- * - The above copyright notice and this permission notice shall be included in
- *   all copies or substantial portions of the Software.
- * - The Software is provided "as is", without warranty of any kind, express or
- *   implied, including but not limited to the warranties of merchantability,
- *   fitness for a particular purpose and noninfringement. In no event shall the
- *   authors or copyright holders be liable for any claim, damages or other
- *   liability, whether in an action of contract, tort or otherwise, arising from,
- *   out of or in connection with the Software or the use or other dealings in the
- *   Software.
- */
 package org.realityforge.gwt.qr_code;
 
-import elemental2.dom.CanvasRenderingContext2D;
-import elemental2.dom.HTMLCanvasElement;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
 import javax.annotation.Nonnull;
-import jsinterop.base.Js;
-import org.realityforge.braincheck.BrainCheckConfig;
-import static org.realityforge.braincheck.Guards.*;
 
 /**
- * Represents an immutable square grid of black and white cells for a QR Code symbol, and
- * provides static functions to create a QR Code from user-supplied textual or binary data.
- * <p>This class covers the QR Code model 2 specification, supporting all versions (sizes)
- * from 1 to 40, all 4 error correction levels, and only 3 character encoding modes.</p>
+ * A frozen copy of the straightforward encoder that the library started from, which is used as the reference
+ * that the optimized encoder is compared against by {@link DifferentialHarness}. Every step is performed one
+ * bit or one module at a time exactly as the specification describes it: the segments are appended to a bit
+ * string, the error correction codewords are calculated by polynomial division with Russian peasant
+ * multiplication, the codewords are placed by walking the zigzag path, masks are evaluated by XORing every
+ * module and the penalty rules are evaluated module by module.
+ *
+ * <p>This class must not be optimized or share code with the encoder other than the specification tables
+ * and the segments that are the input of the encoder. A difference between the two encoders is a defect in
+ * the encoder unless it is shown to be a defect in this class.</p>
  */
-public final class QrCode
+final class ReferenceQrCode
 {
   // For use in getPenaltyScore(), when evaluating which mask is best.
   private static final int PENALTY_N1 = 3;
@@ -50,194 +29,255 @@ public final class QrCode
   private final int _size;
   private final Ecc _errorCorrectionLevel;
   private final int _mask;
+  // The interleaved data and error correction codewords
+  private final byte[] _codewords;
+  // The penalty score of each mask, calculated with the format bits of the mask drawn
+  private final int[] _penalties = new int[ 8 ];
+  private final boolean[][] _modules;     // The modules of this QR Code symbol (false = white, true = black)
+  private final boolean[][] _isFunction;  // Indicates function modules that are not subjected to masking
 
-  // Private grids of modules/pixels (conceptually immutable)
-  private boolean[][] _modules;     // The modules of this QR Code symbol (false = white, true = black)
-  private boolean[][] _isFunction;  // Indicates function modules that are not subjected to masking
+  /**
+   * Encode the segments as {@link QrCodeTool#encodeSegments(List, Ecc, int, int, int, boolean)} does.
+   *
+   * @param segments   the segments to encode.
+   * @param ecl        the error correction level to use (may be boosted).
+   * @param minVersion the minimum allowed version of the QR symbol (at least 1).
+   * @param maxVersion the maximum allowed version of the QR symbol (at most 40).
+   * @param mask       the mask pattern to use, which is either -1 for automatic choice or from 0 to 7 for fixed choice.
+   * @param boostEcl   increases the error correction level if it can be done without increasing the version number.
+   * @return the symbol.
+   * @throws IllegalArgumentException if the segments do not fit in the largest version in the range.
+   */
+  @Nonnull
+  static ReferenceQrCode encodeSegments( @Nonnull final List<QrSegment> segments,
+                                         @Nonnull Ecc ecl,
+                                         final int minVersion,
+                                         final int maxVersion,
+                                         final int mask,
+                                         final boolean boostEcl )
+  {
+    // Find the minimal version number to use
+    int version, dataUsedBits;
+    for ( version = minVersion; ; version++ )
+    {
+      int dataCapacityBits = getNumDataCodewords( version, ecl ) * 8;  // Number of data bits available
+      dataUsedBits = getTotalBits( segments, version );
+      if ( dataUsedBits != -1 && dataUsedBits <= dataCapacityBits )
+      {
+        break;  // This version number is found to be suitable
+      }
+      if ( version >= maxVersion )
+      {
+        throw new IllegalArgumentException( "All versions in the range could not fit the given data" );
+      }
+    }
+
+    // Increase the error correction level while the data still fits in the current version number
+    for ( final Ecc newEcl : Ecc.values() )
+    {
+      if ( boostEcl && dataUsedBits <= getNumDataCodewords( version, newEcl ) * 8 )
+      {
+        ecl = newEcl;
+      }
+    }
+
+    // Create the data bit string by concatenating all segments
+    final int dataCapacityBits = getNumDataCodewords( version, ecl ) * 8;
+    final boolean[] bits = new boolean[ dataCapacityBits ];
+    int bitLength = 0;
+    for ( final QrSegment seg : segments )
+    {
+      bitLength = appendBits( bits, bitLength, seg.getMode().getModeBits(), 4 );
+      bitLength = appendBits( bits, bitLength, seg.getNumChars(), seg.getMode().numCharCountBits( version ) );
+      final int[] data = seg.getData();
+      for ( int i = 0; i < seg.getBitLength(); i++ )
+      {
+        bits[ bitLength++ ] = ( ( data[ i >>> 5 ] >>> ( 31 - ( i & 31 ) ) ) & 1 ) != 0;
+      }
+    }
+
+    // Add terminator and pad up to a byte if applicable
+    bitLength = appendBits( bits, bitLength, 0, Math.min( 4, dataCapacityBits - bitLength ) );
+    bitLength = appendBits( bits, bitLength, 0, ( 8 - bitLength % 8 ) % 8 );
+
+    // Pad with alternate bytes until data capacity is reached
+    for ( int padByte = 0xEC; bitLength < dataCapacityBits; padByte ^= 0xEC ^ 0x11 )
+    {
+      bitLength = appendBits( bits, bitLength, padByte, 8 );
+    }
+
+    final byte[] dataCodewords = new byte[ dataCapacityBits / 8 ];
+    for ( int i = 0; i < dataCapacityBits; i++ )
+    {
+      dataCodewords[ i >>> 3 ] |= ( bits[ i ] ? 1 : 0 ) << ( 7 - ( i & 7 ) );
+    }
+    return new ReferenceQrCode( version, ecl, dataCodewords, mask );
+  }
 
   /**
-   * Creates a new QR Code symbol with the specified version number, error correction level, binary data array, and mask number.
-   * <p>This is a cumbersome low-level constructor that should not be invoked directly by the user.
-   * To go one level up, see the {@link QrCodeTool#encodeSegments(List, Ecc)} function.</p>
+   * Creates a new QR Code symbol with the specified version number, error correction level, data codewords
+   * and mask number.
    *
    * @param version       the version number to use, which must be in the range 1 to 40, inclusive
    * @param ecl           the error correction level to use
    * @param dataCodewords the raw binary user data to encode
    * @param mask          the mask pattern to use, which is either -1 for automatic choice or from 0 to 7 for fixed choice
-   * @throws NullPointerException     if the byte array or error correction level is {@code null}
-   * @throws IllegalArgumentException if the version or mask value is out of range
    */
-  QrCode( final int version, @Nonnull final Ecc ecl, @Nonnull final byte[] dataCodewords, final int mask )
+  ReferenceQrCode( final int version, @Nonnull final Ecc ecl, @Nonnull final byte[] dataCodewords, final int mask )
   {
-    // Check arguments
-    Objects.requireNonNull( ecl );
-    Objects.requireNonNull( dataCodewords );
-    assert QrCodeTool.isVersionValid( version );
-    assert QrCodeTool.isMaskValid( mask ) || QrCodeTool.AUTO_MASK == mask;
-
     // Initialize fields
     _version = version;
     _size = version * 4 + 17;
-    _errorCorrectionLevel = ecl;
+    _errorCorrectionLevel = Objects.requireNonNull( ecl );
     _modules = new boolean[ _size ][ _size ];  // Entirely white grid
     _isFunction = new boolean[ _size ][ _size ];
 
     // Draw function patterns, draw all codewords, do masking
     drawFunctionPatterns();
-    drawCodewords( appendErrorCorrection( dataCodewords ) );
+    _codewords = appendErrorCorrection( Objects.requireNonNull( dataCodewords ) );
+    drawCodewords( _codewords );
     _mask = handleConstructorMasking( mask );
   }
 
-  /**
-   * Return the QR Code symbol's version number, which is always between 1 and 40 (inclusive).
-   *
-   * @return the QR Code symbol's version number, which is always between 1 and 40 (inclusive).
-   */
-  public int getVersion()
+  int getVersion()
   {
     return _version;
   }
 
-  /**
-   * The width and height of this QR Code symbol, measured in modules.
-   * Always equal to version &times; 4 + 17, in the range 21 to 177.
-   *
-   * @return the width and height of this QR Code symbol, measured in modules.
-   */
-  public int getSize()
+  int getSize()
   {
     return _size;
   }
 
-  /**
-   * The error correction level used in this QR Code symbol.
-   *
-   * @return the error correction level used in this QR Code symbol.
-   */
   @Nonnull
-  public Ecc getErrorCorrectionLevel()
+  Ecc getErrorCorrectionLevel()
   {
     return _errorCorrectionLevel;
   }
 
+  int getMask()
+  {
+    return _mask;
+  }
+
   /**
-   * The mask pattern used in this QR Code symbol, in the range 0 to 7 (i.e. unsigned 3-bit integer).
-   * Note that even if a constructor was called with automatic masking requested
-   * (_mask = -1), the resulting object will still have a mask value between 0 and 7.
+   * Return the interleaved data and error correction codewords.
    *
-   * @return the mask
+   * @return the interleaved codewords.
    */
-  public int getMask()
+  @Nonnull
+  byte[] getCodewords()
   {
-    return _mask;
+    return _codewords;
   }
 
   /**
-   * Returns the color of the module (pixel) at the specified coordinates, which is either
-   * false for white or true for black. The top left corner has the coordinates (x=0, y=0).
-   * If the specified coordinates are out of bounds, then false (white) is returned.
+   * Return the penalty score of the symbol with the specified mask applied.
    *
-   * @param x the x coordinate, where 0 is the left edge and size&minus;1 is the right edge
-   * @param y the y coordinate, where 0 is the top edge and size&minus;1 is the bottom edge
-   * @return the module's color, which is either false (white) or true (black)
+   * @param mask the mask, from 0 to 7.
+   * @return the penalty score.
    */
-  public boolean getModule( final int x, final int y )
+  int getPenalty( final int mask )
+  {
+    return _penalties[ mask ];
+  }
+
+  boolean getModule( final int x, final int y )
   {
     return 0 <= x && x < _size && 0 <= y && y < _size && _modules[ y ][ x ];
   }
 
-  /*
-   * Draw image on canvas representing this QR Code, with the specified module scale and number
-   * of border modules. For example, the arguments scale=10, border=4 means to pad the QR Code symbol
-   * with 4 white border modules on all four edges, then use 10*10 pixels to represent each module.
-   * The resulting image only contains the hex colors 000000 and FFFFFF.
-   *
-   * @param scale  the module scale factor, which must be positive
-   * @param border the number of border modules to add, which must be non-negative
-   * @return an image representing this QR Code, with padding and scaling
-   * @throws IllegalArgumentException if the scale or border is out of range
-   */
-  public void drawCanvas( final double scale, final int border, @Nonnull final HTMLCanvasElement canvas )
+  private static int appendBits( @Nonnull final boolean[] bits, final int bitLength, final int value, final int len )
   {
-    if ( BrainCheckConfig.checkApiInvariants() )
+    if ( len < 0 || len > 31 || value >>> len != 0 )
     {
-      apiInvariant( () -> border >= 0, () -> "Border must be non-negative" );
-      apiInvariant( () -> scale >= 0, () -> "Scale must be non-negative" );
-      apiInvariant( () -> !( _size + border * 2L > Integer.MAX_VALUE / scale ), () -> "Scale or border too large" );
+      throw new IllegalArgumentException( "Value out of range" );
     }
+    for ( int i = len - 1; i >= 0; i-- )
+    {
+      bits[ bitLength + len - 1 - i ] = ( ( value >>> i ) & 1 ) != 0;
+    }
+    return bitLength + len;
+  }
 
-    final int dimension = (int) ( ( _size + border * 2 ) * scale );
-    canvas.width = dimension;
-    canvas.height = dimension;
-    final CanvasRenderingContext2D context = Js.cast( canvas.getContext( "2d" ) );
-
-    // Clear the canvas
-    context.fillColor = "#FFFFFF";
-    context.fill();
-
-    // Set the color for all the modules
-    context.fillColor = "#FFFFFF";
-
-    for ( int y = -border; y < _size + border; y++ )
+  private static int getTotalBits( @Nonnull final List<QrSegment> segments, final int version )
+  {
+    long result = 0;
+    for ( final QrSegment seg : segments )
     {
-      for ( int x = -border; x < _size + border; x++ )
+      int ccbits = seg.getMode().numCharCountBits( version );
+      // Fail if segment length value doesn't fit in the length field's bit-width
+      if ( seg.getNumChars() >= ( 1 << ccbits ) )
       {
-        if ( getModule( x, y ) )
-        {
-          context.fillRect( ( x + border ) * scale, ( y + border ) * scale, scale, scale );
-        }
+        return -1;
       }
+      result += 4L + ccbits + seg.getBitLength();
     }
+    return result > Integer.MAX_VALUE ? -1 : (int) result;
   }
 
-  /**
-   * Based on the specified number of border modules to add as padding, this returns a
-   * string whose contents represents an SVG XML file that depicts this QR Code symbol.
-   * Note that Unix newlines (\n) are always used, regardless of the platform.
-   *
-   * @param border the number of border modules to add, which must be non-negative
-   * @return a string representing this QR Code as an SVG document
-   */
-  @Nonnull
-  public String toSvgString( final int border )
+  // Returns the number of data bits that can be stored in a QR Code of the given version number, after
+  // all function modules are excluded. This includes remainder bits, so it might not be a multiple of 8.
+  private static int getNumRawDataModules( final int version )
   {
-    if ( BrainCheckConfig.checkApiInvariants() )
-    {
-      apiInvariant( () -> border >= 0, () -> "Border must be non-negative" );
-      apiInvariant( () -> !( _size + border * 2L > Integer.MAX_VALUE ), () -> "Border too large" );
+    int size = version * 4 + 17;
+    int result = size * size;   // Number of modules in the whole QR symbol square
+    result -= 64 * 3;           // Subtract the three finders with separators
+    result -= 15 * 2 + 1;       // Subtract the format information and black module
+    result -= ( size - 16 ) * 2;  // Subtract the timing patterns
+    if ( version >= 2 )
+    {
+      int numAlign = version / 7 + 2;
+      result -=
+        ( numAlign - 1 ) * ( numAlign - 1 ) * 25;  // Subtract alignment patterns not overlapping with timing patterns
+      result -= ( numAlign - 2 ) * 2 * 20;  // Subtract alignment patterns that overlap with timing patterns
+      if ( version >= 7 )
+      {
+        result -= 18 * 2;  // Subtract version information
+      }
     }
+    return result;
+  }
+
+  // Returns the number of 8-bit data (i.e. not error correction) codewords contained in any
+  // QR Code of the given version number and error correction level, with remainder bits discarded.
+  private static int getNumDataCodewords( final int version, @Nonnull final Ecc ecl )
+  {
+    return getNumRawDataModules( version ) / 8 -
+           QrCodeTool.ECC_CODEWORDS_PER_BLOCK[ ecl.ordinal() ][ version ] *
+           QrCodeTool.NUM_ERROR_CORRECTION_BLOCKS[ ecl.ordinal() ][ version ];
+  }
 
-    final StringBuilder sb = new StringBuilder();
-    final int dimension = _size + border * 2;
-    sb.append( "<svg xmlns=\"http://www.w3.org/2000/svg\" version=\"1.1\" viewBox=\"0 0 " )
-      .append( dimension )
-      .append( " " )
-      .append( dimension )
-      .append( "\" stroke=\"none\">\n" )
-      .append( "<rect width=\"100%\" height=\"100%\" fill=\"#FFFFFF\"/>\n" )
-      .append( "<path d=\"" );
-    boolean head = true;
-    for ( int y = -border; y < _size + border; y++ )
+  // Returns a set of positions of the alignment patterns in ascending order. These positions are
+  // used on both the x and y axes. Each value in the resulting array is in the range [0, 177).
+  private static int[] getAlignmentPatternPositions( final int version )
+  {
+    if ( 1 == version )
     {
-      for ( int x = -border; x < _size + border; x++ )
+      return new int[]{};
+    }
+    else
+    {
+      int numAlign = version / 7 + 2;
+      int step;
+      if ( version != 32 )
       {
-        if ( getModule( x, y ) )
-        {
-          if ( head )
-          {
-            head = false;
-          }
-          else
-          {
-            sb.append( " " );
-          }
-          sb.append( "M" ).append( x + border ).append( "," ).append( y + border ).append( "h1v1h-1z" );
-        }
+        // ceil((size - 13) / (2*numAlign - 2)) * 2
+        step = ( version * 4 + numAlign * 2 + 1 ) / ( 2 * numAlign - 2 ) * 2;
       }
+      else  // C-C-C-Combo breaker!
+      {
+        step = 26;
+      }
+
+      int[] result = new int[ numAlign ];
+      result[ 0 ] = 6;
+      for ( int i = result.length - 1, pos = version * 4 + 10; i >= 1; i--, pos -= step )
+      {
+        result[ i ] = pos;
+      }
+      return result;
     }
-    sb.append( "\" fill=\"#000000\"/>\n" );
-    sb.append( "</svg>\n" );
-    return sb.toString();
   }
 
   private void drawFunctionPatterns()
@@ -255,7 +295,7 @@ public final class QrCode
     drawFinderPattern( 3, _size - 4 );
 
     // Draw numerous alignment patterns
-    int[] alignPatPos = QrCodeTool.getAlignmentPatternPositions( _version );
+    int[] alignPatPos = getAlignmentPatternPositions( _version );
     int numAlign = alignPatPos.length;
     for ( int i = 0; i < numAlign; i++ )
     {
@@ -286,11 +326,6 @@ public final class QrCode
     }
     data = data << 10 | rem;
     data ^= 0x5412;  // uint15
-    if ( BrainCheckConfig.checkInvariants() )
-    {
-      final int d = data;
-      invariant( () -> d >>> 15 == 0, () -> "Data alignment error" );
-    }
 
     // Draw first copy
     for ( int i = 0; i <= 5; i++ )
@@ -333,11 +368,6 @@ public final class QrCode
       rem = ( rem << 1 ) ^ ( ( rem >>> 11 ) * 0x1F25 );
     }
     int data = _version << 12 | rem;  // uint18
-    if ( BrainCheckConfig.checkInvariants() )
-    {
-      final int d = data;
-      invariant( () -> d >>> 18 == 0, () -> "Data alignment error" );
-    }
 
     // Draw two copies
     for ( int i = 0; i < 18; i++ )
@@ -386,35 +416,31 @@ public final class QrCode
     _isFunction[ y ][ x ] = true;
   }
 
-
-	/*---- Private helper methods for constructor: Codewords and masking ----*/
-
   // Returns a new byte string representing the given data with the appropriate error correction
   // codewords appended to it, based on this object's version and error correction level.
   private byte[] appendErrorCorrection( @Nonnull final byte[] data )
   {
-    if ( BrainCheckConfig.checkInvariants() )
+    if ( data.length != getNumDataCodewords( _version, _errorCorrectionLevel ) )
     {
-      invariant( () -> QrCodeTool.isDataLengthValid( _version, _errorCorrectionLevel, data.length ),
-                 () -> "Invalid data length for version and correction level" );
+      throw new IllegalArgumentException( "Invalid data length for version and correction level" );
     }
 
     // Calculate parameter numbers
     int numBlocks = QrCodeTool.NUM_ERROR_CORRECTION_BLOCKS[ _errorCorrectionLevel.ordinal() ][ _version ];
     int blockEccLen = QrCodeTool.ECC_CODEWORDS_PER_BLOCK[ _errorCorrectionLevel.ordinal() ][ _version ];
-    int rawCodewords = QrCodeTool.getNumRawDataModules( _version ) / 8;
+    int rawCodewords = getNumRawDataModules( _version ) / 8;
     int numShortBlocks = numBlocks - rawCodewords % numBlocks;
     int shortBlockLen = rawCodewords / numBlocks;
 
     // Split data into blocks and append ECC to each block
     byte[][] blocks = new byte[ numBlocks ][];
-    ReedSolomonGenerator rs = new ReedSolomonGenerator( blockEccLen );
+    byte[] divisor = getDivisor( blockEccLen );
     for ( int i = 0, k = 0; i < numBlocks; i++ )
     {
       byte[] dat = Arrays.copyOfRange( data, k, k + shortBlockLen - blockEccLen + ( i < numShortBlocks ? 0 : 1 ) );
       byte[] block = Arrays.copyOf( dat, shortBlockLen + 1 );
       k += dat.length;
-      byte[] ecc = rs.getRemainder( dat );
+      byte[] ecc = getRemainder( divisor, dat );
       System.arraycopy( ecc, 0, block, block.length - blockEccLen, ecc.length );
       blocks[ i ] = block;
     }
@@ -436,18 +462,70 @@ public final class QrCode
     return result;
   }
 
-  // Draws the given sequence of 8-bit codewords (data and error correction) onto the entire
-  // data area of this QR Code symbol. Function modules need to be marked off before this is called.
-  private void drawCodewords( @Nonnull final byte[] data )
+  // Returns the coefficients of the divisor polynomial of the specified degree, stored from highest to lowest
+  // power, excluding the leading term which is always 1.
+  private static byte[] getDivisor( final int degree )
+  {
+    // Start with the monomial x^0
+    final byte[] coefficients = new byte[ degree ];
+    coefficients[ degree - 1 ] = 1;
+
+    // Compute the product polynomial (x - r^0) * (x - r^1) * (x - r^2) * ... * (x - r^{degree-1}),
+    // drop the highest term, and store the rest of the coefficients in order of descending powers.
+    // Note that r = 0x02, which is a generator element of this field GF(2^8/0x11D).
+    int root = 1;
+    for ( int i = 0; i < degree; i++ )
+    {
+      // Multiply the current product by (x - r^i)
+      for ( int j = 0; j < coefficients.length; j++ )
+      {
+        coefficients[ j ] = (byte) multiply( coefficients[ j ] & 0xFF, root );
+        if ( j + 1 < coefficients.length )
+        {
+          coefficients[ j ] ^= coefficients[ j + 1 ];
+        }
+      }
+      root = multiply( root, 0x02 );
+    }
+    return coefficients;
+  }
+
+  // Computes the Reed-Solomon error correction codewords for the data codewords by polynomial division
+  private static byte[] getRemainder( @Nonnull final byte[] divisor, @Nonnull final byte[] data )
+  {
+    final byte[] result = new byte[ divisor.length ];
+    for ( byte b : data )
+    {
+      int factor = ( b ^ result[ 0 ] ) & 0xFF;
+      System.arraycopy( result, 1, result, 0, result.length - 1 );
+      result[ result.length - 1 ] = 0;
+      for ( int i = 0; i < result.length; i++ )
+      {
+        result[ i ] ^= multiply( divisor[ i ] & 0xFF, factor );
+      }
+    }
+    return result;
+  }
+
+  // Returns the product of the two given field elements modulo GF(2^8/0x11D). The arguments and result
+  // are unsigned 8-bit integers.
+  private static int multiply( final int x, final int y )
   {
-    Objects.requireNonNull( data );
-    if ( BrainCheckConfig.checkInvariants() )
+    // Russian peasant multiplication
+    int z = 0;
+    for ( int i = 7; i >= 0; i-- )
     {
-      invariant( () -> data.length == QrCodeTool.getNumRawDataModules( _version ) / 8, () -> "Invalid data length" );
+      z = ( z << 1 ) ^ ( ( z >>> 7 ) * 0x11D );
+      z ^= ( ( y >>> i ) & 1 ) * x;
     }
+    return z;
+  }
 
-    int i = 0;
-    // Bit index into the data
+  // Draws the given sequence of 8-bit codewords (data and error correction) onto the entire
+  // data area of this QR Code symbol. Function modules need to be marked off before this is called.
+  private void drawCodewords( @Nonnull final byte[] data )
+  {
+    int i = 0;  // Bit index into the data
     // Do the funny zigzag scan
     for ( int right = _size - 1; right >= 1; right -= 2 )
     {
@@ -474,20 +552,16 @@ public final class QrCode
         }
       }
     }
-    if ( BrainCheckConfig.checkInvariants() )
+    if ( i != data.length * 8 )
     {
-      final int v = i;
-      invariant( () -> v == data.length * 8, () -> "Unexpected remainder" );
+      throw new IllegalStateException( "Unexpected remainder" );
     }
   }
 
   // XORs the data modules in this QR Code with the given mask pattern. Due to XOR's mathematical
   // properties, calling applyMask(m) twice with the same value is equivalent to no change at all.
-  // This means it is possible to apply a mask, undo it, and try another mask. Note that a final
-  // well-formed QR Code symbol needs exactly one mask applied (not zero, not two, etc.).
   private void applyMask( final int mask )
   {
-    assert QrCodeTool.isMaskValid( mask );
     for ( int y = 0; y < _size; y++ )
     {
       for ( int x = 0; x < _size; x++ )
@@ -517,10 +591,6 @@ public final class QrCode
             invert = ( x * y % 2 + x * y % 3 ) % 2 == 0;
             break;
           default:
-            if ( BrainCheckConfig.checkInvariants() )
-            {
-              invariant( () -> 7 == mask, () -> "Unhandled mask value" );
-            }
             invert = ( ( x + y ) % 2 + x * y % 3 ) % 2 == 0;
             break;
         }
@@ -529,34 +599,30 @@ public final class QrCode
     }
   }
 
-  // A messy helper function for the constructors. This QR Code must be in an unmasked state when this
-  // method is called. The given argument is the requested mask, which is -1 for auto or 0 to 7 for fixed.
-  // This method applies and returns the actual mask chosen, from 0 to 7.
+  // This QR Code must be in an unmasked state when this method is called. The given argument is the requested
+  // mask, which is -1 for auto or 0 to 7 for fixed. The penalty of every mask is calculated even when the mask
+  // is fixed so that the penalties can be compared. This method applies and returns the actual mask chosen.
   private int handleConstructorMasking( final int mask )
   {
     int actualMask = mask;
-    if ( QrCodeTool.AUTO_MASK == mask )
-    {
-      // Automatically choose best _mask
-      int minPenalty = Integer.MAX_VALUE;
-      for ( int i = 0; i < 8; i++ )
+    int minPenalty = Integer.MAX_VALUE;
+    for ( int i = 0; i < 8; i++ )
+    {
+      drawFormatBits( i );
+      applyMask( i );
+      int penalty = getPenaltyScore();
+      _penalties[ i ] = penalty;
+      if ( QrCodeTool.AUTO_MASK == mask && penalty < minPenalty )
       {
-        drawFormatBits( i );
-        applyMask( i );
-        int penalty = getPenaltyScore();
-        if ( penalty < minPenalty )
-        {
-          actualMask = i;
-          minPenalty = penalty;
-        }
-        applyMask( i );  // Undoes the mask due to XOR
+        actualMask = i;
+        minPenalty = penalty;
       }
+      applyMask( i );  // Undoes the mask due to XOR
     }
-    assert QrCodeTool.isMaskValid( actualMask );
 
     drawFormatBits( actualMask );  // Overwrite old format bits
     applyMask( actualMask );  // Apply the final choice of mask
-    return actualMask;  // The caller shall assign this value to the final-declared field
+    return actualMask;
   }
 
   // Calculates and returns the penalty score based on state of this QR Code's current modules.
@@ -0,0 +1,56 @@
+package org.realityforge.gwt.qr_code;
+
+/**
+ * Measures the time taken to produce the first symbol in a fresh process, which is dominated by class loading
+ * and initialization on the JVM and should be negligible in a native image where the tables are precomputed.
+ * The optional argument is the wall clock time at which the process was launched, in nanoseconds since the epoch,
+ * so that the time spent starting the runtime is included. i.e.
+ *
+ * <pre>
+ * java -cp core.jar:test-classes:braincheck.jar org.realityforge.gwt.qr_code.StartupBenchmark $(date +%s%N)
+ *
+ * native-image -cp core.jar:test-classes:braincheck.jar org.realityforge.gwt.qr_code.StartupBenchmark qr-startup
+ * ./qr-startup $(date +%s%N)
+ * </pre>
+ */
+public final class StartupBenchmark
+{
+  private static final int WARM_ITERATIONS = 1000;
+
+  private StartupBenchmark()
+  {
+  }
+
+  public static void main( final String[] args )
+  {
+    final long mainStart = System.nanoTime();
+    final long launchEpochNanos = args.length > 0 ? Long.parseLong( args[ 0 ] ) : 0;
+
+    final QrCode first = QrCodeTool.encodeText( "https://example.com/asset/0001234", Ecc.MEDIUM );
+    final long firstSymbol = System.nanoTime();
+    final long firstSymbolEpochNanos = System.currentTimeMillis() * 1000000L;
+    final String svg = first.toSvgString( 4 );
+    final long firstSvg = System.nanoTime();
+
+    // Encode symbols of every version to compare the cold cost with the warm cost
+    int checksum = svg.length();
+    final long warmStart = System.nanoTime();
+    for ( int i = 0; i < WARM_ITERATIONS; i++ )
+    {
+      final QrCode qrCode =
+        QrCodeTool.encodeSegments( QrCodeTool.makeSegments( "ASSET-" + i ), Ecc.MEDIUM, 1 + i % 40, 40, -1, true );
+      checksum += qrCode.getMask();
+    }
+    final long warmEnd = System.nanoTime();
+
+    System.out.printf( "First symbol after main:        %8.3f ms%n", ( firstSymbol - mainStart ) / 1e6 );
+    if ( 0 != launchEpochNanos )
+    {
+      System.out.printf( "First symbol after launch:      %8.3f ms%n", ( firstSymbolEpochNanos - launchEpochNanos ) / 1e6 );
+    }
+    System.out.printf( "First SVG after first symbol:   %8.3f ms%n", ( firstSvg - firstSymbol ) / 1e6 );
+    System.out.printf( "Mean symbol (versions 1 to 40): %8.3f ms%n",
+                       ( warmEnd - warmStart ) / 1e6 / WARM_ITERATIONS );
+    System.out.println( "Checksum: " + checksum );
+  }
+}
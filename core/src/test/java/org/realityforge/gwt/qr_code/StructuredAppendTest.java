@@ -0,0 +1,91 @@
+package org.realityforge.gwt.qr_code;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+public class StructuredAppendTest
+{
+  @Test
+  public void planText_splitsAcrossSymbolsOfSharedVersion()
+  {
+    final StringBuilder sb = new StringBuilder();
+    for ( int i = 0; i < 150; i++ )
+    {
+      sb.append( "Line " ).append( i ).append( " of a long document 🎉\n" );
+    }
+    final String text = sb.toString();
+
+    final StructuredAppend plan = StructuredAppend.planText( text, Ecc.MEDIUM, 20 );
+
+    assertTrue( plan.getSymbolCount() > 1 && plan.getSymbolCount() <= StructuredAppend.MAX_SYMBOLS );
+    assertTrue( plan.getVersion() <= 20 );
+    final StringBuilder reassembled = new StringBuilder();
+    for ( int i = 0; i < plan.getSymbolCount(); i++ )
+    {
+      final List<QrSegment> segments = plan.getSegments( i );
+      final QrSegment header = segments.get( 0 );
+      assertEquals( header.getMode(), Mode.STRUCTURED_APPEND );
+      assertEquals( header.getBitLength(), 16 );
+      assertEquals( header.getData()[ 0 ] >>> 16,
+                    ( i << 12 ) | ( ( plan.getSymbolCount() - 1 ) << 8 ) | plan.getParity() );
+      assertEquals( segments.get( 1 ).getMode(), Mode.BYTE );
+      final int numChars = segments.get( 1 ).getNumChars();
+      final int[] data = segments.get( 1 ).getData();
+      final byte[] bytes = new byte[ numChars ];
+      for ( int j = 0; j < numChars; j++ )
+      {
+        bytes[ j ] = (byte) ( data[ j >>> 2 ] >>> ( ~j << 3 ) );
+      }
+      reassembled.append( new String( bytes, StandardCharsets.UTF_8 ) );
+    }
+    assertEquals( reassembled.toString(), text );
+
+    final List<QrCode> symbols = plan.encodeAll();
+    assertEquals( symbols.size(), plan.getSymbolCount() );
+    for ( final QrCode symbol : symbols )
+    {
+      assertEquals( symbol.getVersion(), plan.getVersion() );
+    }
+  }
+
+  @Test
+  public void planText_singleSymbolHasNoHeader()
+  {
+    final String text = "https://example.com/short";
+    final StructuredAppend plan = StructuredAppend.planText( text, Ecc.MEDIUM );
+
+    assertEquals( plan.getSymbolCount(), 1 );
+    assertEquals( plan.getSegments( 0 ).get( 0 ).getMode(), Mode.BYTE );
+    final QrCode expected = QrCodeTool.encodeText( text, Ecc.MEDIUM );
+    assertEquals( plan.getVersion(), expected.getVersion() );
+    assertEquals( plan.encode( 0 ).toSvgString( 0 ), expected.toSvgString( 0 ) );
+
+    final StructuredAppend binaryPlan = StructuredAppend.planBinary( new byte[ 100 ], Ecc.LOW );
+    assertEquals( binaryPlan.getSymbolCount(), 1 );
+    assertEquals( binaryPlan.getSegments( 0 ).size(), 1 );
+  }
+
+  @Test
+  public void planBinary_defaultMaxVersion()
+  {
+    // Fits in a single symbol of version 16 but is split into symbols of at most the default maximum version
+    final StructuredAppend plan = StructuredAppend.planBinary( new byte[ 600 ], Ecc.LOW );
+    assertEquals( plan.getSymbolCount(), 3 );
+    assertTrue( plan.getVersion() <= StructuredAppend.DEFAULT_MAX_VERSION );
+    assertEquals( plan.getSegments( 0 ).get( 0 ).getMode(), Mode.STRUCTURED_APPEND );
+
+    // Too large for 16 symbols of the default maximum version so larger symbols are used
+    final StructuredAppend largePlan = StructuredAppend.planBinary( new byte[ 16 * 300 ], Ecc.LOW );
+    assertTrue( largePlan.getVersion() > StructuredAppend.DEFAULT_MAX_VERSION );
+    assertTrue( largePlan.getSymbolCount() <= StructuredAppend.MAX_SYMBOLS );
+  }
+
+  @Test
+  public void planBinary_tooLarge()
+  {
+    assertThrows( IllegalArgumentException.class,
+                  () -> StructuredAppend.planBinary( new byte[ StructuredAppend.MAX_SYMBOLS * 300 ], Ecc.HIGH, 10 ) );
+  }
+}
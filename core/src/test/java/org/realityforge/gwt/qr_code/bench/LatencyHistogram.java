@@ -0,0 +1,154 @@
+package org.realityforge.gwt.qr_code.bench;
+
+/**
+ * A histogram of latencies in nanoseconds in the style of HdrHistogram. Values below 128 are counted exactly
+ * and larger values are counted in buckets whose width doubles with each power of two, with 64 buckets per power
+ * of two, so every recorded value is within 1/64 (about 1.6%) of the reported value at any range. Recording is
+ * a constant time array increment, which keeps the overhead of the histogram out of the measured latencies.
+ * Instances are not thread safe, so each thread records into its own histogram and the histograms are added
+ * together when the run completes.
+ */
+final class LatencyHistogram
+{
+  // The number of bits of precision, so that values below 2^PRECISION are counted exactly
+  private static final int PRECISION = 7;
+  private static final int HALF = 1 << ( PRECISION - 1 );
+  // The index of the largest value, Long.MAX_VALUE, is ( 63 - PRECISION ) * HALF + 2 * HALF - 1
+  private static final int BUCKETS = ( 65 - PRECISION ) * HALF;
+  private final long[] _counts = new long[ BUCKETS ];
+  private long _count;
+  private long _total;
+  private long _min = Long.MAX_VALUE;
+  private long _max;
+
+  /**
+   * Record a value.
+   *
+   * @param value the value in nanoseconds, where negative values are recorded as 0.
+   */
+  void record( final long value )
+  {
+    final long v = Math.max( 0, value );
+    _counts[ indexOf( v ) ]++;
+    _count++;
+    _total += v;
+    _min = Math.min( _min, v );
+    _max = Math.max( _max, v );
+  }
+
+  /**
+   * Add the values recorded by another histogram to this histogram.
+   *
+   * @param other the other histogram.
+   */
+  void add( final LatencyHistogram other )
+  {
+    for ( int i = 0; i < BUCKETS; i++ )
+    {
+      _counts[ i ] += other._counts[ i ];
+    }
+    _count += other._count;
+    _total += other._total;
+    _min = Math.min( _min, other._min );
+    _max = Math.max( _max, other._max );
+  }
+
+  long getCount()
+  {
+    return _count;
+  }
+
+  long getMin()
+  {
+    return 0 == _count ? 0 : _min;
+  }
+
+  long getMax()
+  {
+    return _max;
+  }
+
+  double getMean()
+  {
+    return 0 == _count ? 0 : _total / (double) _count;
+  }
+
+  /**
+   * Return the value at the percentile, which is the highest value that is equivalent to the value at or
+   * below which the specified percentage of values were recorded.
+   *
+   * @param percentile the percentile, from 0 to 100.
+   * @return the value in nanoseconds, or 0 if no values were recorded.
+   */
+  long getValueAtPercentile( final double percentile )
+  {
+    final long rank = Math.max( 1, (long) Math.ceil( percentile / 100D * _count ) );
+    long seen = 0;
+    for ( int i = 0; i < BUCKETS; i++ )
+    {
+      seen += _counts[ i ];
+      if ( seen >= rank )
+      {
+        return Math.min( _max, highestEquivalentValue( i ) );
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Append the non-empty buckets to the builder as a JSON array of [highest equivalent value, count] pairs,
+   * which allows the complete distribution of different runs to be compared.
+   *
+   * @param sb the builder.
+   */
+  void appendBuckets( final StringBuilder sb )
+  {
+    sb.append( '[' );
+    boolean first = true;
+    for ( int i = 0; i < BUCKETS; i++ )
+    {
+      if ( 0 != _counts[ i ] )
+      {
+        if ( !first )
+        {
+          sb.append( ',' );
+        }
+        first = false;
+        sb.append( '[' ).append( highestEquivalentValue( i ) ).append( ',' ).append( _counts[ i ] ).append( ']' );
+      }
+    }
+    sb.append( ']' );
+  }
+
+  static int indexOf( final long value )
+  {
+    if ( value < 2 * HALF )
+    {
+      return (int) value;
+    }
+    else
+    {
+      // The shift that places the value in the range [HALF, 2 * HALF)
+      final int shift = 63 - Long.numberOfLeadingZeros( value ) - ( PRECISION - 1 );
+      return shift * HALF + (int) ( value >>> shift );
+    }
+  }
+
+  static long lowestEquivalentValue( final int index )
+  {
+    if ( index < 2 * HALF )
+    {
+      return index;
+    }
+    else
+    {
+      final int shift = index / HALF - 1;
+      return (long) ( index - shift * HALF ) << shift;
+    }
+  }
+
+  static long highestEquivalentValue( final int index )
+  {
+    return index + 1 < BUCKETS ? lowestEquivalentValue( index + 1 ) - 1 : Long.MAX_VALUE;
+  }
+}
@@ -0,0 +1,492 @@
+package org.realityforge.gwt.qr_code.bench;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.locks.LockSupport;
+import org.realityforge.gwt.qr_code.Ecc;
+import org.realityforge.gwt.qr_code.QrCode;
+import org.realityforge.gwt.qr_code.QrCodeTool;
+import org.realityforge.gwt.qr_code.image.PngWriter;
+
+/**
+ * A macro benchmark that replays a corpus of payloads through {@link QrCodeTool#encodeText(String, Ecc)} or
+ * {@link QrCodeTool#encodeBinary(byte[], Ecc)} and renders each symbol, from a number of threads for a fixed
+ * duration after a warmup period. i.e.
+ *
+ * <pre>
+ * java -Xmx512m -cp core.jar:test-classes:braincheck.jar org.realityforge.gwt.qr_code.bench.LoadBenchmark \
+ *   --threads 8 --rate 20000 --arrival poisson --mix numeric=40,url=35,vcard=20,json=5 --report run.json
+ * </pre>
+ *
+ * <p>Without a rate, each thread encodes the next payload as soon as the previous one completes, which measures
+ * the maximum throughput. With a rate, the operations are started at a fixed or exponentially distributed interval
+ * that is independent of the time taken by previous operations, and the latency of each operation is measured
+ * from the time it should have started, so that the latencies include the time spent queued behind slow
+ * operations and pauses rather than omitting it.</p>
+ *
+ * <p>The latencies are recorded in histograms for all operations and for each kind of payload. The throughput,
+ * the bytes allocated by the worker threads and the count and time of garbage collections during the measured
+ * period are also reported. The report is written as JSON, including the buckets of every histogram, so that
+ * runs can be compared by other tools.</p>
+ *
+ * <p>The options are --threads (default: processors), --warmup and --duration in seconds (default: 10 and 30),
+ * --rate, the total operations per second (default: 0 for as fast as possible), --arrival, fixed or poisson
+ * (default: fixed), --corpus, a file with one payload per line, otherwise a corpus of --corpus-size payloads
+ * (default: 10000) is generated from --seed (default: 1) with the --mix of kinds (default:
+ * numeric=40,url=35,vcard=20,json=5), --ecc (default: M), --render, none, svg or png (default: svg),
+ * --scale (default: 4) and --report, the file to write the JSON report to.</p>
+ */
+public final class LoadBenchmark
+{
+  private int _threads = Runtime.getRuntime().availableProcessors();
+  private double _warmup = 10;
+  private double _duration = 30;
+  private double _rate;
+  private boolean _poisson;
+  private String _corpusFile;
+  private int _corpusSize = 10000;
+  private long _seed = 1;
+  private String _mix = "numeric=40,url=35,vcard=20,json=5";
+  private Ecc _ecc = Ecc.MEDIUM;
+  private String _render = "svg";
+  private int _scale = 4;
+  private String _report;
+
+  private LoadBenchmark()
+  {
+  }
+
+  public static void main( final String[] args )
+    throws Exception
+  {
+    final LoadBenchmark benchmark = new LoadBenchmark();
+    for ( int i = 0; i < args.length; i += 2 )
+    {
+      final String value = args[ i + 1 ];
+      switch ( args[ i ] )
+      {
+        case "--threads":
+          benchmark._threads = Integer.parseInt( value );
+          break;
+        case "--warmup":
+          benchmark._warmup = Double.parseDouble( value );
+          break;
+        case "--duration":
+          benchmark._duration = Double.parseDouble( value );
+          break;
+        case "--rate":
+          benchmark._rate = Double.parseDouble( value );
+          break;
+        case "--arrival":
+          benchmark._poisson = "poisson".equals( value );
+          break;
+        case "--corpus":
+          benchmark._corpusFile = value;
+          break;
+        case "--corpus-size":
+          benchmark._corpusSize = Integer.parseInt( value );
+          break;
+        case "--seed":
+          benchmark._seed = Long.parseLong( value );
+          break;
+        case "--mix":
+          benchmark._mix = value;
+          break;
+        case "--ecc":
+          benchmark._ecc = eccValue( value );
+          break;
+        case "--render":
+          benchmark._render = value;
+          break;
+        case "--scale":
+          benchmark._scale = Integer.parseInt( value );
+          break;
+        case "--report":
+          benchmark._report = value;
+          break;
+        default:
+          throw new IllegalArgumentException( "Unknown argument: " + args[ i ] );
+      }
+    }
+    final String report = benchmark.run();
+    if ( null != benchmark._report )
+    {
+      Files.write( Paths.get( benchmark._report ), report.getBytes( StandardCharsets.UTF_8 ) );
+    }
+  }
+
+  /**
+   * Run the benchmark, print a summary and return the JSON report.
+   *
+   * @return the JSON report.
+   * @throws IOException if the corpus can not be read.
+   * @throws InterruptedException if interrupted while waiting for the workers.
+   */
+  String run()
+    throws IOException, InterruptedException
+  {
+    final PayloadCorpus corpus =
+      null != _corpusFile ?
+      PayloadCorpus.read( Paths.get( _corpusFile ), _ecc ) :
+      PayloadCorpus.generate( _seed, _corpusSize, parseMix( _mix ), _ecc );
+    final List<PayloadCorpus.Payload> payloads = corpus.getPayloads();
+    if ( payloads.isEmpty() )
+    {
+      throw new IllegalArgumentException( "The corpus contains no payloads that fit in a symbol" );
+    }
+
+    final long start = System.nanoTime() + 10_000_000L;
+    final long measureStart = start + (long) ( _warmup * 1e9 );
+    final long end = measureStart + (long) ( _duration * 1e9 );
+    // The interval between operations started by each thread, or 0 if operations start as soon as possible
+    final double interval = _rate > 0 ? _threads * 1e9 / _rate : 0;
+    final Worker[] workers = new Worker[ _threads ];
+    final Thread[] threads = new Thread[ _threads ];
+    for ( int i = 0; i < _threads; i++ )
+    {
+      workers[ i ] = new Worker( payloads, i * payloads.size() / _threads, start, measureStart, end, interval, i );
+      threads[ i ] = new Thread( workers[ i ], "worker-" + i );
+      threads[ i ].start();
+    }
+
+    // Sample the collectors at the start and end of the measured period
+    LockSupport.parkNanos( measureStart - System.nanoTime() );
+    final List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+    final long[] gcCounts = new long[ collectors.size() ];
+    final long[] gcTimes = new long[ collectors.size() ];
+    for ( int i = 0; i < gcCounts.length; i++ )
+    {
+      gcCounts[ i ] = collectors.get( i ).getCollectionCount();
+      gcTimes[ i ] = collectors.get( i ).getCollectionTime();
+    }
+    for ( final Thread thread : threads )
+    {
+      thread.join();
+    }
+    for ( int i = 0; i < gcCounts.length; i++ )
+    {
+      gcCounts[ i ] = collectors.get( i ).getCollectionCount() - gcCounts[ i ];
+      gcTimes[ i ] = collectors.get( i ).getCollectionTime() - gcTimes[ i ];
+    }
+
+    final LatencyHistogram all = new LatencyHistogram();
+    final LatencyHistogram[] byKind = new LatencyHistogram[ PayloadCorpus.Kind.values().length ];
+    final long[] versions = new long[ 41 ];
+    long errors = 0;
+    long allocated = 0;
+    long checksum = 0;
+    for ( final Worker worker : workers )
+    {
+      all.add( worker._all );
+      for ( int i = 0; i < byKind.length; i++ )
+      {
+        if ( null != worker._byKind[ i ] )
+        {
+          if ( null == byKind[ i ] )
+          {
+            byKind[ i ] = new LatencyHistogram();
+          }
+          byKind[ i ].add( worker._byKind[ i ] );
+        }
+      }
+      for ( int v = 0; v < versions.length; v++ )
+      {
+        versions[ v ] += worker._versions[ v ];
+      }
+      errors += worker._errors;
+      allocated = allocated < 0 || worker._allocated < 0 ? -1 : allocated + worker._allocated;
+      checksum += worker._checksum;
+    }
+    long gcCount = 0;
+    long gcTime = 0;
+    for ( int i = 0; i < gcCounts.length; i++ )
+    {
+      gcCount += gcCounts[ i ];
+      gcTime += gcTimes[ i ];
+    }
+    final double throughput = all.getCount() / _duration;
+
+    System.out.printf( "Operations:   %12d in %.1f s from %d threads (%d errors)%n",
+                       all.getCount(), _duration, _threads, errors );
+    System.out.printf( "Throughput:   %12.1f operations/s%n", throughput );
+    System.out.printf( "%-12s %10s %10s %10s %10s %10s %10s%n", "Latency (us)", "count", "p50", "p90", "p99", "p999", "max" );
+    printLatency( "all", all );
+    for ( int i = 0; i < byKind.length; i++ )
+    {
+      if ( null != byKind[ i ] )
+      {
+        printLatency( PayloadCorpus.Kind.values()[ i ].name().toLowerCase( Locale.ROOT ), byKind[ i ] );
+      }
+    }
+    if ( allocated >= 0 )
+    {
+      System.out.printf( "Allocation:   %12.1f MB/s, %.0f bytes/operation%n",
+                         allocated / _duration / 1e6, allocated / (double) Math.max( 1, all.getCount() ) );
+    }
+    System.out.printf( "GC:           %12d collections, %d ms%n", gcCount, gcTime );
+    System.out.println( "Checksum: " + checksum );
+
+    final StringBuilder sb = new StringBuilder();
+    sb.append( "{\n  \"timestamp\": " ).append( quote( Instant.now().toString() ) );
+    sb.append( ",\n  \"jvm\": {\"version\": " ).append( quote( System.getProperty( "java.version" ) ) )
+      .append( ", \"vm\": " ).append( quote( System.getProperty( "java.vm.name" ) ) )
+      .append( ", \"processors\": " ).append( Runtime.getRuntime().availableProcessors() )
+      .append( ", \"maxHeap\": " ).append( Runtime.getRuntime().maxMemory() ).append( '}' );
+    sb.append( ",\n  \"config\": {\"threads\": " ).append( _threads )
+      .append( ", \"warmupSeconds\": " ).append( _warmup )
+      .append( ", \"durationSeconds\": " ).append( _duration )
+      .append( ", \"rate\": " ).append( _rate )
+      .append( ", \"arrival\": " ).append( quote( _rate > 0 ? _poisson ? "poisson" : "fixed" : "closed" ) )
+      .append( ", \"corpus\": " ).append( quote( null != _corpusFile ? _corpusFile : "generated" ) )
+      .append( ", \"corpusSize\": " ).append( payloads.size() )
+      .append( ", \"dropped\": " ).append( corpus.getDropped() )
+      .append( ", \"seed\": " ).append( _seed )
+      .append( ", \"mix\": " ).append( quote( _mix ) )
+      .append( ", \"ecc\": " ).append( quote( _ecc.name() ) )
+      .append( ", \"render\": " ).append( quote( _render ) )
+      .append( ", \"scale\": " ).append( _scale ).append( '}' );
+    sb.append( ",\n  \"operations\": " ).append( all.getCount() );
+    sb.append( ",\n  \"errors\": " ).append( errors );
+    sb.append( ",\n  \"throughput\": " ).append( throughput );
+    sb.append( ",\n  \"latency\": {\n    \"all\": " );
+    appendLatency( sb, all );
+    for ( int i = 0; i < byKind.length; i++ )
+    {
+      if ( null != byKind[ i ] )
+      {
+        sb.append( ",\n    " ).append( quote( PayloadCorpus.Kind.values()[ i ].name().toLowerCase( Locale.ROOT ) ) )
+          .append( ": " );
+        appendLatency( sb, byKind[ i ] );
+      }
+    }
+    sb.append( "\n  },\n  \"versions\": {" );
+    boolean first = true;
+    for ( int v = 1; v < versions.length; v++ )
+    {
+      if ( 0 != versions[ v ] )
+      {
+        sb.append( first ? "" : ", " ).append( quote( String.valueOf( v ) ) ).append( ": " ).append( versions[ v ] );
+        first = false;
+      }
+    }
+    sb.append( "},\n  \"allocation\": {\"bytes\": " ).append( allocated )
+      .append( ", \"bytesPerOperation\": " ).append( allocated < 0 ? -1 : allocated / (double) Math.max( 1, all.getCount() ) )
+      .append( ", \"bytesPerSecond\": " ).append( allocated < 0 ? -1 : allocated / _duration ).append( '}' );
+    sb.append( ",\n  \"gc\": {\"count\": " ).append( gcCount ).append( ", \"timeMillis\": " ).append( gcTime )
+      .append( ", \"collectors\": {" );
+    for ( int i = 0; i < gcCounts.length; i++ )
+    {
+      sb.append( 0 == i ? "" : ", " ).append( quote( collectors.get( i ).getName() ) )
+        .append( ": {\"count\": " ).append( gcCounts[ i ] ).append( ", \"timeMillis\": " ).append( gcTimes[ i ] )
+        .append( '}' );
+    }
+    sb.append( "}}\n}\n" );
+    return sb.toString();
+  }
+
+  private static void printLatency( final String name, final LatencyHistogram histogram )
+  {
+    System.out.printf( "%-12s %10d %10.1f %10.1f %10.1f %10.1f %10.1f%n",
+                       name,
+                       histogram.getCount(),
+                       histogram.getValueAtPercentile( 50 ) / 1e3,
+                       histogram.getValueAtPercentile( 90 ) / 1e3,
+                       histogram.getValueAtPercentile( 99 ) / 1e3,
+                       histogram.getValueAtPercentile( 99.9 ) / 1e3,
+                       histogram.getMax() / 1e3 );
+  }
+
+  private static void appendLatency( final StringBuilder sb, final LatencyHistogram histogram )
+  {
+    sb.append( "{\"count\": " ).append( histogram.getCount() )
+      .append( ", \"minNanos\": " ).append( histogram.getMin() )
+      .append( ", \"meanNanos\": " ).append( histogram.getMean() )
+      .append( ", \"p50Nanos\": " ).append( histogram.getValueAtPercentile( 50 ) )
+      .append( ", \"p90Nanos\": " ).append( histogram.getValueAtPercentile( 90 ) )
+      .append( ", \"p99Nanos\": " ).append( histogram.getValueAtPercentile( 99 ) )
+      .append( ", \"p999Nanos\": " ).append( histogram.getValueAtPercentile( 99.9 ) )
+      .append( ", \"p9999Nanos\": " ).append( histogram.getValueAtPercentile( 99.99 ) )
+      .append( ", \"maxNanos\": " ).append( histogram.getMax() )
+      .append( ", \"buckets\": " );
+    histogram.appendBuckets( sb );
+    sb.append( '}' );
+  }
+
+  private static String quote( final String value )
+  {
+    final StringBuilder sb = new StringBuilder( value.length() + 2 ).append( '"' );
+    for ( int i = 0; i < value.length(); i++ )
+    {
+      final char c = value.charAt( i );
+      if ( '"' == c || '\\' == c )
+      {
+        sb.append( '\\' ).append( c );
+      }
+      else if ( c < 0x20 )
+      {
+        sb.append( String.format( "\\u%04x", (int) c ) );
+      }
+      else
+      {
+        sb.append( c );
+      }
+    }
+    return sb.append( '"' ).toString();
+  }
+
+  private static int[] parseMix( final String mix )
+  {
+    final int[] weights = new int[ 4 ];
+    for ( final String part : mix.split( "," ) )
+    {
+      final String[] pair = part.split( "=" );
+      weights[ PayloadCorpus.Kind.valueOf( pair[ 0 ].trim().toUpperCase( Locale.ROOT ) ).ordinal() ] =
+        Integer.parseInt( pair[ 1 ].trim() );
+    }
+    return weights;
+  }
+
+  private static Ecc eccValue( final String value )
+  {
+    for ( final Ecc ecc : Ecc.values() )
+    {
+      if ( !value.isEmpty() && ecc.name().startsWith( value.toUpperCase( Locale.ROOT ) ) )
+      {
+        return ecc;
+      }
+    }
+    throw new IllegalArgumentException( "Unknown error correction level '" + value + "'" );
+  }
+
+  private final class Worker
+    implements Runnable
+  {
+    private final List<PayloadCorpus.Payload> _payloads;
+    private final int _offset;
+    private final long _start;
+    private final long _measureStart;
+    private final long _end;
+    private final double _interval;
+    private final Random _random;
+    private final LatencyHistogram _all = new LatencyHistogram();
+    private final LatencyHistogram[] _byKind = new LatencyHistogram[ PayloadCorpus.Kind.values().length ];
+    private final long[] _versions = new long[ 41 ];
+    private long _errors;
+    // The bytes allocated during the measured period, or -1 if the JVM does not report allocations
+    private long _allocated = -1;
+    private long _checksum;
+
+    Worker( final List<PayloadCorpus.Payload> payloads,
+            final int offset,
+            final long start,
+            final long measureStart,
+            final long end,
+            final double interval,
+            final int index )
+    {
+      _payloads = payloads;
+      _offset = offset;
+      _start = start;
+      _measureStart = measureStart;
+      _end = end;
+      _interval = interval;
+      _random = new Random( _seed + index );
+    }
+
+    @Override
+    public void run()
+    {
+      final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+      final com.sun.management.ThreadMXBean allocations =
+        threadBean instanceof com.sun.management.ThreadMXBean ? (com.sun.management.ThreadMXBean) threadBean : null;
+      final long threadId = Thread.currentThread().getId();
+      long allocatedAtStart = -1;
+      double intended = _start;
+      for ( int i = _offset; ; i++ )
+      {
+        final long startTime;
+        if ( _interval > 0 )
+        {
+          // Wait until the operation should start, but never skip an operation that is late
+          final long delay = (long) intended - System.nanoTime();
+          if ( delay > 0 )
+          {
+            LockSupport.parkNanos( delay );
+          }
+          startTime = (long) intended;
+          intended += _poisson ? -Math.log( 1 - _random.nextDouble() ) * _interval : _interval;
+        }
+        else
+        {
+          startTime = System.nanoTime();
+        }
+        if ( startTime >= _end )
+        {
+          break;
+        }
+        final boolean measured = startTime >= _measureStart;
+        if ( measured && allocatedAtStart < 0 && null != allocations )
+        {
+          allocatedAtStart = allocations.getThreadAllocatedBytes( threadId );
+        }
+
+        final PayloadCorpus.Payload payload = _payloads.get( i % _payloads.size() );
+        int version = 0;
+        try
+        {
+          final QrCode qrCode =
+            null != payload._data ?
+            QrCodeTool.encodeBinary( payload._data, _ecc ) :
+            QrCodeTool.encodeText( payload._text, _ecc );
+          version = qrCode.getVersion();
+          _checksum += render( qrCode );
+        }
+        catch ( final RuntimeException e )
+        {
+          if ( measured )
+          {
+            _errors++;
+          }
+        }
+        final long latency = System.nanoTime() - startTime;
+        if ( measured && 0 != version )
+        {
+          _all.record( latency );
+          final int kind = payload._kind.ordinal();
+          if ( null == _byKind[ kind ] )
+          {
+            _byKind[ kind ] = new LatencyHistogram();
+          }
+          _byKind[ kind ].record( latency );
+          _versions[ version ]++;
+        }
+      }
+      if ( allocatedAtStart >= 0 )
+      {
+        _allocated = allocations.getThreadAllocatedBytes( threadId ) - allocatedAtStart;
+      }
+    }
+
+    private long render( final QrCode qrCode )
+    {
+      switch ( _render )
+      {
+        case "svg":
+          return qrCode.toSvgString( 4 ).length();
+        case "png":
+          return PngWriter.toPng( qrCode, _scale, 4 ).length;
+        default:
+          return qrCode.getMask();
+      }
+    }
+  }
+}
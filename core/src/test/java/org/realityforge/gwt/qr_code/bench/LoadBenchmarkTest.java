@@ -0,0 +1,99 @@
+package org.realityforge.gwt.qr_code.bench;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import org.realityforge.gwt.qr_code.Ecc;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+public class LoadBenchmarkTest
+{
+  @Test
+  public void histogramBucketsAreContiguousAndPrecise()
+  {
+    long expected = 0;
+    for ( int index = 0; LatencyHistogram.highestEquivalentValue( index ) != Long.MAX_VALUE; index++ )
+    {
+      final long lowest = LatencyHistogram.lowestEquivalentValue( index );
+      final long highest = LatencyHistogram.highestEquivalentValue( index );
+      assertEquals( lowest, expected );
+      assertEquals( LatencyHistogram.indexOf( lowest ), index );
+      assertEquals( LatencyHistogram.indexOf( highest ), index );
+      assertTrue( highest - lowest <= Math.max( 0, lowest / 64 ), "Index " + index );
+      expected = highest + 1;
+    }
+    assertEquals( LatencyHistogram.indexOf( Long.MAX_VALUE ), LatencyHistogram.indexOf( expected ) );
+  }
+
+  @Test
+  public void histogramPercentiles()
+  {
+    final LatencyHistogram histogram = new LatencyHistogram();
+    final LatencyHistogram other = new LatencyHistogram();
+    final Random random = new Random( 1 );
+    for ( int i = 1; i <= 10000; i++ )
+    {
+      // Values from 1us to 10ms in a random order, split between two histograms
+      ( random.nextBoolean() ? histogram : other ).record( i * 1000L );
+    }
+    histogram.add( other );
+    assertEquals( histogram.getCount(), 10000 );
+    assertEquals( histogram.getMin(), 1000 );
+    assertEquals( histogram.getMax(), 10_000_000 );
+    assertEquals( histogram.getMean(), 5_000_500D, 1D );
+    assertEquals( histogram.getValueAtPercentile( 50 ), 5_000_000D, 5_000_000D / 64 );
+    assertEquals( histogram.getValueAtPercentile( 99 ), 9_900_000D, 9_900_000D / 64 );
+    assertEquals( histogram.getValueAtPercentile( 100 ), 10_000_000 );
+  }
+
+  @Test
+  public void generatedCorpusIsRepeatableAndFits()
+  {
+    final PayloadCorpus corpus = PayloadCorpus.generate( 42, 1000, new int[]{ 1, 1, 1, 1 }, Ecc.HIGH );
+    final PayloadCorpus repeat = PayloadCorpus.generate( 42, 1000, new int[]{ 1, 1, 1, 1 }, Ecc.HIGH );
+    assertEquals( corpus.getPayloads().size() + corpus.getDropped(), 1000 );
+    assertEquals( repeat.getPayloads().size(), corpus.getPayloads().size() );
+    final int[] kinds = new int[ PayloadCorpus.Kind.values().length ];
+    for ( int i = 0; i < corpus.getPayloads().size(); i++ )
+    {
+      final PayloadCorpus.Payload payload = corpus.getPayloads().get( i );
+      assertEquals( payload._text, repeat.getPayloads().get( i )._text );
+      kinds[ payload._kind.ordinal() ]++;
+    }
+    // Every generated kind is present and the long documents are binary
+    for ( int i = 0; i < 4; i++ )
+    {
+      assertTrue( kinds[ i ] > 0, PayloadCorpus.Kind.values()[ i ].name() );
+    }
+    assertNotNull( corpus.getPayloads()
+                     .stream()
+                     .filter( p -> PayloadCorpus.Kind.JSON == p._kind )
+                     .findFirst()
+                     .orElseThrow( AssertionError::new )._data );
+  }
+
+  @Test
+  public void runWritesReport()
+    throws Exception
+  {
+    final Path report = Files.createTempFile( "load", ".json" );
+    try
+    {
+      LoadBenchmark.main( new String[]{ "--threads", "2", "--warmup", "0.1", "--duration", "0.3",
+                                        "--rate", "2000", "--arrival", "poisson", "--corpus-size", "100",
+                                        "--render", "png", "--report", report.toString() } );
+      final String json = new String( Files.readAllBytes( report ), StandardCharsets.UTF_8 );
+      assertTrue( json.contains( "\"arrival\": \"poisson\"" ), json );
+      assertTrue( json.contains( "\"errors\": 0," ), json );
+      assertTrue( json.contains( "\"latency\": {\n    \"all\": {\"count\": " ), json );
+      assertTrue( json.contains( "\"buckets\": [[" ), json );
+      assertTrue( json.contains( "\"gc\": {\"count\": " ), json );
+    }
+    finally
+    {
+      Files.delete( report );
+    }
+  }
+}
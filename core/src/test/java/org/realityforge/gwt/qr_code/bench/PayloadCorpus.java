@@ -0,0 +1,240 @@
+package org.realityforge.gwt.qr_code.bench;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.realityforge.gwt.qr_code.Ecc;
+import org.realityforge.gwt.qr_code.QrCodeTool;
+
+/**
+ * A corpus of payloads that are replayed by the {@link LoadBenchmark}. The corpus is either read from a file,
+ * with one text payload per line, or generated from a seed using a weighted mix of payload kinds whose lengths
+ * follow the distributions seen in production: numeric identifiers, short URLs, vCards and long JSON documents.
+ * Payloads that do not fit in a symbol at the error correction level are dropped.
+ */
+final class PayloadCorpus
+{
+  enum Kind
+  {
+    // Encoded as text via encodeText, and typically numeric mode
+    NUMERIC,
+    // Encoded as text via encodeText, in alphanumeric or byte mode depending upon the case of the path
+    URL,
+    // Encoded as text via encodeText, in byte mode
+    VCARD,
+    // Encoded as UTF-8 bytes via encodeBinary
+    JSON,
+    // Lines read from a corpus file, encoded as text via encodeText
+    FILE
+  }
+
+  static final class Payload
+  {
+    final Kind _kind;
+    final String _text;
+    // The UTF-8 bytes of binary payloads, otherwise null
+    final byte[] _data;
+
+    Payload( final Kind kind, final String text, final byte[] data )
+    {
+      _kind = kind;
+      _text = text;
+      _data = data;
+    }
+  }
+
+  private static final String ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
+  private static final String[] NAMES = { "Ada", "Grace", "Alan", "Edsger", "Barbara", "Donald", "Frances", "Ken" };
+  private static final String[] SURNAMES =
+    { "Lovelace", "Hopper", "Turing", "Dijkstra", "Liskov", "Knuth", "Allen", "Thompson" };
+  private final List<Payload> _payloads;
+  private final int _dropped;
+
+  private PayloadCorpus( final List<Payload> payloads, final int dropped )
+  {
+    _payloads = payloads;
+    _dropped = dropped;
+  }
+
+  List<Payload> getPayloads()
+  {
+    return _payloads;
+  }
+
+  /**
+   * Return the number of payloads that were dropped as they were too long for the error correction level.
+   *
+   * @return the number of payloads that were dropped.
+   */
+  int getDropped()
+  {
+    return _dropped;
+  }
+
+  /**
+   * Read a corpus with one text payload per line.
+   *
+   * @param file the file.
+   * @param ecc  the error correction level that the payloads will be encoded at.
+   * @return the corpus.
+   * @throws IOException if the file can not be read.
+   */
+  static PayloadCorpus read( final Path file, final Ecc ecc )
+    throws IOException
+  {
+    final List<Payload> payloads = new ArrayList<>();
+    int dropped = 0;
+    for ( final String line : Files.readAllLines( file, StandardCharsets.UTF_8 ) )
+    {
+      if ( null != QrCodeTool.planText( line, ecc ) )
+      {
+        payloads.add( new Payload( Kind.FILE, line, null ) );
+      }
+      else
+      {
+        dropped++;
+      }
+    }
+    return new PayloadCorpus( payloads, dropped );
+  }
+
+  /**
+   * Generate a corpus.
+   *
+   * @param seed    the seed of the random number generator, so the same corpus is generated by every run.
+   * @param size    the number of payloads to generate.
+   * @param weights the relative weights of the NUMERIC, URL, VCARD and JSON kinds.
+   * @param ecc     the error correction level that the payloads will be encoded at.
+   * @return the corpus.
+   */
+  static PayloadCorpus generate( final long seed, final int size, final int[] weights, final Ecc ecc )
+  {
+    final Random random = new Random( seed );
+    int totalWeight = 0;
+    for ( final int weight : weights )
+    {
+      totalWeight += weight;
+    }
+    final List<Payload> payloads = new ArrayList<>( size );
+    int dropped = 0;
+    for ( int i = 0; i < size; i++ )
+    {
+      int choice = random.nextInt( totalWeight );
+      int kind = 0;
+      while ( choice >= weights[ kind ] )
+      {
+        choice -= weights[ kind ];
+        kind++;
+      }
+      final Payload payload = generate( random, Kind.values()[ kind ] );
+      final boolean fits =
+        null == payload._data ?
+        null != QrCodeTool.planText( payload._text, ecc ) :
+        null != QrCodeTool.planBinary( payload._data.length, ecc );
+      if ( fits )
+      {
+        payloads.add( payload );
+      }
+      else
+      {
+        dropped++;
+      }
+    }
+    return new PayloadCorpus( payloads, dropped );
+  }
+
+  private static Payload generate( final Random random, final Kind kind )
+  {
+    switch ( kind )
+    {
+      case NUMERIC:
+        // Identifiers from 8 to 20 digits, such as serial numbers and tracking numbers
+        return new Payload( kind, digits( random, 8 + random.nextInt( 13 ) ), null );
+      case URL:
+        // Short links and asset URLs with a 6 to 12 character token
+        return new Payload( kind,
+                            ( random.nextBoolean() ? "https://qr.example.com/" : "https://example.com/asset/" ) +
+                            token( random, 6 + random.nextInt( 7 ) ),
+                            null );
+      case VCARD:
+        return new Payload( kind, vcard( random ), null );
+      default:
+        final String json = json( random );
+        return new Payload( kind, json, json.getBytes( StandardCharsets.UTF_8 ) );
+    }
+  }
+
+  private static String vcard( final Random random )
+  {
+    final String name = NAMES[ random.nextInt( NAMES.length ) ];
+    final String surname = SURNAMES[ random.nextInt( SURNAMES.length ) ];
+    final StringBuilder sb = new StringBuilder();
+    sb.append( "BEGIN:VCARD\nVERSION:3.0\n" );
+    sb.append( "N:" ).append( surname ).append( ';' ).append( name ).append( ";;;\n" );
+    sb.append( "FN:" ).append( name ).append( ' ' ).append( surname ).append( '\n' );
+    sb.append( "ORG:Example Pty Ltd\n" );
+    sb.append( "TEL;TYPE=CELL:+61 4" ).append( digits( random, 8 ) ).append( '\n' );
+    if ( random.nextBoolean() )
+    {
+      sb.append( "TEL;TYPE=WORK:+61 3 " ).append( digits( random, 8 ) ).append( '\n' );
+    }
+    sb.append( "EMAIL:" ).append( name.toLowerCase() ).append( '.' ).append( surname.toLowerCase() )
+      .append( "@example.com\n" );
+    if ( random.nextBoolean() )
+    {
+      sb.append( "ADR;TYPE=WORK:;;" ).append( 1 + random.nextInt( 999 ) ).append( " Collins Street;Melbourne;VIC;" )
+        .append( 3000 + random.nextInt( 200 ) ).append( ";Australia\n" );
+    }
+    sb.append( "URL:https://example.com/people/" ).append( token( random, 8 ) ).append( '\n' );
+    sb.append( "END:VCARD" );
+    return sb.toString();
+  }
+
+  private static String json( final Random random )
+  {
+    // Documents such as signed tokens and health certificates, from a few hundred bytes to about 2 kilobytes
+    final int items = 2 + random.nextInt( 24 );
+    final StringBuilder sb = new StringBuilder();
+    sb.append( "{\"v\":1,\"iss\":\"https://issuer.example.com\",\"iat\":" )
+      .append( 1_600_000_000L + random.nextInt( 100_000_000 ) )
+      .append( ",\"sub\":\"" ).append( token( random, 24 ) ).append( "\",\"items\":[" );
+    for ( int i = 0; i < items; i++ )
+    {
+      if ( 0 != i )
+      {
+        sb.append( ',' );
+      }
+      sb.append( "{\"id\":" ).append( random.nextInt( 1_000_000 ) )
+        .append( ",\"code\":\"" ).append( token( random, 10 ) )
+        .append( "\",\"qty\":" ).append( 1 + random.nextInt( 20 ) )
+        .append( ",\"price\":" ).append( random.nextInt( 100_000 ) / 100D )
+        .append( ",\"note\":\"" ).append( random.nextBoolean() ? "fragile" : "standard" ).append( "\"}" );
+    }
+    sb.append( "],\"sig\":\"" ).append( token( random, 86 ) ).append( "\"}" );
+    return sb.toString();
+  }
+
+  private static String digits( final Random random, final int length )
+  {
+    final StringBuilder sb = new StringBuilder( length );
+    for ( int i = 0; i < length; i++ )
+    {
+      sb.append( (char) ( '0' + random.nextInt( 10 ) ) );
+    }
+    return sb.toString();
+  }
+
+  private static String token( final Random random, final int length )
+  {
+    final StringBuilder sb = new StringBuilder( length );
+    for ( int i = 0; i < length; i++ )
+    {
+      sb.append( ALPHABET.charAt( random.nextInt( ALPHABET.length() ) ) );
+    }
+    return sb.toString();
+  }
+}
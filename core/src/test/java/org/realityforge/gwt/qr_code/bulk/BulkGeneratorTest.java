@@ -0,0 +1,122 @@
+package org.realityforge.gwt.qr_code.bulk;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import javax.annotation.Nonnull;
+import org.realityforge.gwt.qr_code.Ecc;
+import org.realityforge.gwt.qr_code.QrCodeTool;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+public class BulkGeneratorTest
+{
+  @Test
+  public void run_ordered()
+    throws Exception
+  {
+    final ExecutorService executor = BulkGenerator.newPlatformExecutor( 4 );
+    try
+    {
+      final AtomicInteger inFlight = new AtomicInteger();
+      final AtomicInteger maxObservedInFlight = new AtomicInteger();
+      final List<String> results = new ArrayList<>();
+      final List<Long> failures = new ArrayList<>();
+      final BulkSummary summary =
+        new BulkGenerator( executor, 8, true )
+          .run( IntStream.range( 0, 200 ).boxed(),
+                i -> {
+                  maxObservedInFlight.accumulateAndGet( inFlight.incrementAndGet(), Math::max );
+                  try
+                  {
+                    if ( 13 == i )
+                    {
+                      throw new IllegalArgumentException( "Bad payload" );
+                    }
+                    return "ticket-" + i + ":" + QrCodeTool.encodeText( "ticket-" + i, Ecc.MEDIUM ).getVersion();
+                  }
+                  finally
+                  {
+                    inFlight.decrementAndGet();
+                  }
+                },
+                new BulkListener<Integer, String>()
+                {
+                  @Override
+                  public void onResult( final long index, @Nonnull final Integer payload, @Nonnull final String result )
+                  {
+                    assertEquals( index, (long) payload );
+                    results.add( result );
+                  }
+
+                  @Override
+                  public void onFailure( final long index, @Nonnull final Integer payload, @Nonnull final Throwable error )
+                  {
+                    assertEquals( error.getMessage(), "Bad payload" );
+                    failures.add( index );
+                  }
+                } );
+
+      assertEquals( summary.getCompleted(), 199 );
+      assertEquals( summary.getFailed(), 1 );
+      assertEquals( failures, Collections.singletonList( 13L ) );
+      assertEquals( results,
+                    IntStream.range( 0, 200 )
+                      .filter( i -> 13 != i )
+                      .mapToObj( i -> "ticket-" + i + ":1" )
+                      .collect( Collectors.toList() ) );
+      assertTrue( maxObservedInFlight.get() <= 8 );
+    }
+    finally
+    {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void run_listenerFailureAbortsRun()
+    throws Exception
+  {
+    final ExecutorService executor = BulkGenerator.newExecutor( 2 );
+    try
+    {
+      final AtomicInteger reported = new AtomicInteger();
+      final IllegalStateException exception =
+        expectThrows( IllegalStateException.class,
+                      () -> new BulkGenerator( executor, 4, false )
+                        .run( IntStream.range( 0, 10_000 ).boxed(),
+                              i -> i,
+                              new BulkListener<Integer, Integer>()
+                              {
+                                @Override
+                                public void onResult( final long index,
+                                                      @Nonnull final Integer payload,
+                                                      @Nonnull final Integer result )
+                                {
+                                  if ( 3 == reported.incrementAndGet() )
+                                  {
+                                    throw new IllegalStateException( "Disk full" );
+                                  }
+                                }
+
+                                @Override
+                                public void onFailure( final long index,
+                                                       @Nonnull final Integer payload,
+                                                       @Nonnull final Throwable error )
+                                {
+                                  fail();
+                                }
+                              } ) );
+      assertEquals( exception.getMessage(), "Disk full" );
+      assertTrue( reported.get() < 10_000 );
+    }
+    finally
+    {
+      executor.shutdown();
+    }
+  }
+}
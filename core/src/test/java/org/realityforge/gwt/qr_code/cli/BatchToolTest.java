@@ -0,0 +1,191 @@
+package org.realityforge.gwt.qr_code.cli;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import org.realityforge.gwt.qr_code.Ecc;
+import org.realityforge.gwt.qr_code.QrCodeTool;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+public class BatchToolTest
+{
+  // Names that sanitise to the same name, differ only in case, repeat, look like a suffixed name or look like
+  // the name derived from the position of a record without a name
+  private static final String COLLIDING_NAMES =
+    "id,payload\n" +
+    "a/b,one\n" +
+    "a_b-4,two\n" +
+    "a_b,three\n" +
+    "A_B,four\n" +
+    "000000005,five\n" +
+    ",six\n" +
+    "a/b,seven\n";
+  private static final String[] EXPECTED_FILES = {
+    "a_b-2.svg", "a_b-4-3.svg", "a_b-4.svg", "A_B-5.svg", "000000005-6.svg", "000000005.svg", "a_b-8.svg",
+    "manifest.csv" };
+
+  @Test
+  public void run_csvToZip()
+    throws Exception
+  {
+    final String input =
+      "id,payload\n" +
+      "a1,http://realityforge.org\n" +
+      "a2,\"Hello, \"\"World\"\"\"\n" +
+      "a3\n" +
+      "a4,314159\n";
+    final ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+    final ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+    final int exitCode =
+      BatchTool.run( new String[]{ "--csv", "--skip-header", "--name-column", "1", "--column", "2",
+                                   "--format", "png", "--threads", "2", "--output", "-", "--archive", "zip" },
+                     new ByteArrayInputStream( input.getBytes( StandardCharsets.UTF_8 ) ),
+                     stdout,
+                     new PrintStream( stderr, true, "UTF-8" ) );
+
+    // The record without a payload column fails but the remainder are generated
+    assertEquals( exitCode, 1 );
+    final String messages = new String( stderr.toByteArray(), StandardCharsets.UTF_8 );
+    assertTrue( messages.contains( "Line 4: Record has no column 2" ), messages );
+    assertTrue( messages.contains( "Generated 3 codes (1 failed)" ), messages );
+
+    final List<String> names = new ArrayList<>();
+    String manifest = null;
+    try ( final ZipInputStream zip = new ZipInputStream( new ByteArrayInputStream( stdout.toByteArray() ) ) )
+    {
+      ZipEntry entry;
+      while ( null != ( entry = zip.getNextEntry() ) )
+      {
+        names.add( entry.getName() );
+        final byte[] content = readFully( zip );
+        if ( BatchTool.MANIFEST_NAME.equals( entry.getName() ) )
+        {
+          manifest = new String( content, StandardCharsets.UTF_8 );
+        }
+        else
+        {
+          // PNG signature
+          assertEquals( content[ 1 ], (byte) 'P' );
+          assertEquals( content[ 2 ], (byte) 'N' );
+          assertEquals( content[ 3 ], (byte) 'G' );
+        }
+      }
+    }
+    assertEquals( names.toString(), "[a1-2.png, a2-3.png, a4-5.png, manifest.csv]" );
+    assertNotNull( manifest );
+    final String[] rows = manifest.split( "\n" );
+    assertEquals( rows.length, 5 );
+    assertEquals( rows[ 0 ], "index,line,file,version,ecc,mask,status,error" );
+    assertTrue( rows[ 1 ].startsWith( "0,2,a1-2.png," ), rows[ 1 ] );
+    assertEquals( rows[ 3 ], "2,4,,,,,error,Record has no column 2" );
+  }
+
+  @Test
+  public void run_collidingNamesToZip()
+    throws Exception
+  {
+    final ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+    final ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+    final int exitCode =
+      BatchTool.run( new String[]{ "--csv", "--skip-header", "--name-column", "1", "--column", "2",
+                                   "--output", "-", "--archive", "zip" },
+                     new ByteArrayInputStream( COLLIDING_NAMES.getBytes( StandardCharsets.UTF_8 ) ),
+                     stdout,
+                     new PrintStream( stderr, true, "UTF-8" ) );
+
+    assertEquals( exitCode, 0, new String( stderr.toByteArray(), StandardCharsets.UTF_8 ) );
+    final List<String> names = new ArrayList<>();
+    String manifest = null;
+    try ( final ZipInputStream zip = new ZipInputStream( new ByteArrayInputStream( stdout.toByteArray() ) ) )
+    {
+      ZipEntry entry;
+      while ( null != ( entry = zip.getNextEntry() ) )
+      {
+        names.add( entry.getName() );
+        final byte[] content = readFully( zip );
+        if ( BatchTool.MANIFEST_NAME.equals( entry.getName() ) )
+        {
+          manifest = new String( content, StandardCharsets.UTF_8 );
+        }
+      }
+    }
+    assertEquals( names, Arrays.asList( EXPECTED_FILES ) );
+    assertNotNull( manifest );
+    assertManifestFiles( manifest );
+  }
+
+  @Test
+  public void run_collidingNamesToDirectory()
+    throws Exception
+  {
+    final Path directory = Files.createTempDirectory( "qr-batch-test" );
+    try
+    {
+      final ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+      final int exitCode =
+        BatchTool.run( new String[]{ "--csv", "--skip-header", "--name-column", "1", "--column", "2",
+                                     "--output", directory.toString(), "--archive", "dir" },
+                       new ByteArrayInputStream( COLLIDING_NAMES.getBytes( StandardCharsets.UTF_8 ) ),
+                       new ByteArrayOutputStream(),
+                       new PrintStream( stderr, true, "UTF-8" ) );
+
+      assertEquals( exitCode, 0, new String( stderr.toByteArray(), StandardCharsets.UTF_8 ) );
+      try ( final Stream<Path> files = Files.list( directory ) )
+      {
+        assertEquals( files.map( file -> file.getFileName().toString() ).sorted().collect( Collectors.toList() ),
+                      Stream.of( EXPECTED_FILES ).sorted().collect( Collectors.toList() ) );
+      }
+      // Each file holds the symbol of its own record rather than a later record with the same name
+      final String svg = new String( Files.readAllBytes( directory.resolve( "a_b-2.svg" ) ), StandardCharsets.UTF_8 );
+      assertEquals( svg, QrCodeTool.encodeText( "one", Ecc.MEDIUM ).toSvgString( 4 ) );
+      assertManifestFiles( new String( Files.readAllBytes( directory.resolve( BatchTool.MANIFEST_NAME ) ),
+                                       StandardCharsets.UTF_8 ) );
+    }
+    finally
+    {
+      try ( final Stream<Path> files = Files.list( directory ) )
+      {
+        for ( final Path file : files.collect( Collectors.toList() ) )
+        {
+          Files.delete( file );
+        }
+      }
+      Files.delete( directory );
+    }
+  }
+
+  private static void assertManifestFiles( final String manifest )
+  {
+    final String[] rows = manifest.split( "\n" );
+    assertEquals( rows.length, EXPECTED_FILES.length );
+    for ( int i = 1; i < rows.length; i++ )
+    {
+      assertEquals( rows[ i ].split( "," )[ 2 ], EXPECTED_FILES[ i - 1 ] );
+    }
+  }
+
+  private static byte[] readFully( final ZipInputStream zip )
+    throws IOException
+  {
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    final byte[] buffer = new byte[ 4096 ];
+    int count;
+    while ( -1 != ( count = zip.read( buffer ) ) )
+    {
+      output.write( buffer, 0, count );
+    }
+    return output.toByteArray();
+  }
+}
@@ -0,0 +1,37 @@
+package org.realityforge.gwt.qr_code.image;
+
+import java.util.Arrays;
+import org.realityforge.gwt.qr_code.Ecc;
+import org.realityforge.gwt.qr_code.QrCode;
+import org.realityforge.gwt.qr_code.QrCodeTool;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+public class EscPosWriterTest
+{
+  @Test
+  public void toRasterCommand()
+  {
+    final QrCode qrCode = QrCodeTool.encodeText( "ESC/POS", Ecc.LOW );
+    final int border = 1;
+
+    // Odd scales are sent at full size
+    final byte[] odd = EscPosWriter.toRasterCommand( qrCode, 3, border );
+    assertRaster( odd, qrCode, 3, border, 0 );
+
+    // Even scales are sent at half size and enlarged by the printer
+    final byte[] even = EscPosWriter.toRasterCommand( qrCode, 4, border );
+    assertRaster( even, qrCode, 2, border, 3 );
+  }
+
+  private void assertRaster( final byte[] command, final QrCode qrCode, final int scale, final int border, final int mode )
+  {
+    final int dimension = ( qrCode.getSize() + border * 2 ) * scale;
+    final int rowLength = ( dimension + 7 ) / 8;
+    assertEquals( Arrays.copyOf( command, 8 ),
+                  new byte[]{ 0x1D, 'v', '0', (byte) mode, (byte) rowLength, 0, (byte) dimension, 0 } );
+    final byte[] expected = new byte[ rowLength * dimension ];
+    qrCode.drawBits( scale, border, 1, 0, expected, 0, rowLength );
+    assertEquals( Arrays.copyOfRange( command, 8, command.length ), expected );
+  }
+}
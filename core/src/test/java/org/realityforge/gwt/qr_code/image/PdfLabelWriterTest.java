@@ -0,0 +1,83 @@
+package org.realityforge.gwt.qr_code.image;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.Inflater;
+import org.realityforge.gwt.qr_code.Ecc;
+import org.realityforge.gwt.qr_code.QrCode;
+import org.realityforge.gwt.qr_code.QrCodeTool;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+public class PdfLabelWriterTest
+{
+  @Test
+  public void writePdf()
+    throws Exception
+  {
+    final LabelTemplate template = new LabelTemplate( 144, 72, 36, 4.5, 63, 2, "0.5 w 0 0 144 72 re S" );
+    final LabelSheet sheet = new LabelSheet( 612, 792, 18, 36, 4, 10, 144, 72, template, "BT ET" );
+    final List<QrCode> qrCodes = new ArrayList<>();
+    int expectedRuns = 0;
+    for ( int i = 0; i < 95; i++ )
+    {
+      final QrCode qrCode = QrCodeTool.encodeText( "https://example.com/item/" + i, Ecc.MEDIUM );
+      qrCodes.add( qrCode );
+      final int[] count = new int[ 1 ];
+      qrCode.forEachRowRun( ( y, x, length ) -> count[ 0 ]++ );
+      expectedRuns += count[ 0 ];
+    }
+
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    PdfLabelWriter.writePdf( qrCodes.iterator(), sheet, output );
+    final byte[] data = output.toByteArray();
+    final String pdf = new String( data, StandardCharsets.ISO_8859_1 );
+
+    assertTrue( pdf.startsWith( "%PDF-1.4\n" ) );
+    assertTrue( pdf.endsWith( "%%EOF\n" ) );
+    assertTrue( pdf.contains( "/Type /Pages /Count 3 " ) );
+    assertEquals( count( pdf, "/Type /Page " ), 3 );
+    assertEquals( count( pdf, "/Subtype /Form" ), 2 );
+
+    // Every object in the cross reference table is at the recorded offset
+    final int xref = Integer.parseInt( pdf.substring( pdf.lastIndexOf( "startxref\n" ) + 10, pdf.lastIndexOf( "\n%%EOF" ) ) );
+    assertTrue( pdf.startsWith( "xref\n0 11\n", xref ) );
+    for ( int i = 1; i < 11; i++ )
+    {
+      final int offset = Integer.parseInt( pdf.substring( xref + 10 + i * 20, xref + 20 + i * 20 ) );
+      assertTrue( pdf.startsWith( i + " 0 obj\n", offset ), "Object " + i );
+    }
+
+    // Each label draws one rectangle per run and uses the shared label artwork
+    int runs = 0;
+    int labels = 0;
+    final Matcher matcher = Pattern.compile( "/Length (\\d+) /Filter /FlateDecode >>\nstream\n" ).matcher( pdf );
+    while ( matcher.find() )
+    {
+      final Inflater inflater = new Inflater();
+      inflater.setInput( data, matcher.end(), Integer.parseInt( matcher.group( 1 ) ) );
+      final byte[] buffer = new byte[ 1024 * 1024 ];
+      final String content = new String( buffer, 0, inflater.inflate( buffer ), StandardCharsets.ISO_8859_1 );
+      assertTrue( inflater.finished() );
+      assertTrue( content.startsWith( "/P Do\n" ) );
+      runs += count( content, " 1 re\n" );
+      labels += count( content, "/L Do" );
+    }
+    assertEquals( labels, 95 );
+    assertEquals( runs, expectedRuns );
+  }
+
+  private int count( final String text, final String value )
+  {
+    int count = 0;
+    for ( int i = text.indexOf( value ); -1 != i; i = text.indexOf( value, i + 1 ) )
+    {
+      count++;
+    }
+    return count;
+  }
+}
@@ -0,0 +1,121 @@
+package org.realityforge.gwt.qr_code.image;
+
+import java.util.Random;
+import org.realityforge.gwt.qr_code.Ecc;
+import org.realityforge.gwt.qr_code.QrCode;
+import org.realityforge.gwt.qr_code.QrCodeTool;
+import org.realityforge.gwt.qr_code.QrDecodeResult;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+public class QrScannerTest
+{
+  @Test
+  public void scanRenderedSymbols()
+  {
+    final QrScanner scanner = new QrScanner();
+    final Random random = new Random( 42 );
+    for ( final int length : new int[]{ 5, 30, 100, 300, 1000, 2500 } )
+    {
+      final String text = randomText( random, length );
+      final QrCode qrCode = QrCodeTool.encodeText( text, Ecc.LOW );
+      for ( final int scale : new int[]{ 1, 3, 5 } )
+      {
+        final int dimension = ( qrCode.getSize() + 8 ) * scale;
+        final byte[] pixels = new byte[ dimension * dimension ];
+        qrCode.drawGray( scale, 4, (byte) 0, (byte) 0xFF, pixels, 0, dimension );
+        final QrDecodeResult result = scanner.scan( pixels, 0, dimension, dimension, dimension );
+        assertNotNull( result, "Version " + qrCode.getVersion() + " scale " + scale );
+        assertEquals( result.getText(), text );
+        assertEquals( result.getCorrectedErrors(), 0 );
+      }
+    }
+  }
+
+  @Test
+  public void scanSymbolWithinLargerBuffer()
+  {
+    final QrCode qrCode = QrCodeTool.encodeText( "https://example.com/labels/000123", Ecc.MEDIUM );
+    final int scale = 4;
+    final int dimension = ( qrCode.getSize() + 8 ) * scale;
+    final int stride = dimension + 250;
+    final int offset = stride * 30 + 17;
+    final byte[] pixels = new byte[ offset + stride * dimension ];
+    // Text and rules around the symbol are outside the image that is scanned
+    new Random( 3 ).nextBytes( pixels );
+    qrCode.drawGray( scale, 4, (byte) 20, (byte) 230, pixels, offset, stride );
+    final QrDecodeResult result = new QrScanner().scan( pixels, offset, stride, dimension, dimension );
+    assertNotNull( result );
+    assertEquals( result.getText(), "https://example.com/labels/000123" );
+  }
+
+  @Test
+  public void scanRotatedNoisySymbols()
+  {
+    final QrScanner scanner = new QrScanner();
+    final Random random = new Random( 7 );
+    for ( final int length : new int[]{ 20, 120, 400 } )
+    {
+      final String text = randomText( random, length );
+      final QrCode qrCode = QrCodeTool.encodeText( text, Ecc.MEDIUM );
+      for ( final double degrees : new double[]{ 4, -12, 25, 90, 173, -40 } )
+      {
+        final int size = ( qrCode.getSize() + 8 ) * 5;
+        final byte[] image = render( qrCode, 5, Math.toRadians( degrees ), 1.3, random );
+        final QrDecodeResult result = scanner.scan( image, 0, size * 2, size * 2, size * 2 );
+        assertNotNull( result, "Version " + qrCode.getVersion() + " rotated " + degrees );
+        assertEquals( result.getText(), text );
+      }
+    }
+  }
+
+  @Test
+  public void scanImageWithoutSymbol()
+  {
+    final byte[] pixels = new byte[ 200 * 150 ];
+    final QrScanner scanner = new QrScanner();
+    assertNull( scanner.scan( pixels, 0, 200, 200, 150 ) );
+    new Random( 1 ).nextBytes( pixels );
+    assertNull( scanner.scan( pixels, 0, 200, 200, 150 ) );
+  }
+
+  // Render the symbol into an image twice the size of the unrotated symbol, rotated about the center and scaled
+  // by the specified factor, with light gray and dark gray modules and random noise
+  private static byte[] render( final QrCode qrCode,
+                                final int scale,
+                                final double angle,
+                                final double zoom,
+                                final Random random )
+  {
+    final int size = ( qrCode.getSize() + 8 ) * scale;
+    final byte[] symbol = new byte[ size * size ];
+    qrCode.drawGray( scale, 4, (byte) 50, (byte) 200, symbol, 0, size );
+    final int dimension = size * 2;
+    final byte[] image = new byte[ dimension * dimension ];
+    final double cos = Math.cos( angle );
+    final double sin = Math.sin( angle );
+    for ( int y = 0; y < dimension; y++ )
+    {
+      for ( int x = 0; x < dimension; x++ )
+      {
+        final double dx = ( x + 0.5 - dimension / 2D ) / zoom;
+        final double dy = ( y + 0.5 - dimension / 2D ) / zoom;
+        final int sx = (int) Math.floor( cos * dx + sin * dy + size / 2D );
+        final int sy = (int) Math.floor( -sin * dx + cos * dy + size / 2D );
+        final int value = sx >= 0 && sy >= 0 && sx < size && sy < size ? symbol[ sy * size + sx ] & 0xFF : 200;
+        image[ y * dimension + x ] = (byte) Math.max( 0, Math.min( 255, value + random.nextInt( 61 ) - 30 ) );
+      }
+    }
+    return image;
+  }
+
+  private static String randomText( final Random random, final int length )
+  {
+    final StringBuilder sb = new StringBuilder( length );
+    for ( int i = 0; i < length; i++ )
+    {
+      sb.append( (char) ( 'a' + random.nextInt( 26 ) ) );
+    }
+    return sb.toString();
+  }
+}
@@ -0,0 +1,89 @@
+package org.realityforge.gwt.qr_code.image;
+
+import org.realityforge.gwt.qr_code.Ecc;
+import org.realityforge.gwt.qr_code.QrCode;
+import org.realityforge.gwt.qr_code.QrCodeTool;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+public class ZplWriterTest
+{
+  @Test
+  public void toZplLabel()
+  {
+    final QrCode qrCode = QrCodeTool.encodeText( "https://realityforge.org/zpl", Ecc.QUARTILE );
+    for ( final int scale : new int[]{ 1, 3, 8 } )
+    {
+      final int border = 2;
+      final String zpl = ZplWriter.toZplLabel( qrCode, scale, border, 50, 60 );
+      assertTrue( zpl.startsWith( "^XA^FO50,60^GFA," ) );
+      assertTrue( zpl.endsWith( "^FS^XZ\n" ) );
+
+      final String[] parts = zpl.substring( "^XA^FO50,60^GFA,".length(), zpl.length() - "^FS^XZ\n".length() ).split( ",", 4 );
+      final int totalBytes = Integer.parseInt( parts[ 0 ] );
+      final int rowLength = Integer.parseInt( parts[ 2 ] );
+      final int dimension = ( qrCode.getSize() + border * 2 ) * scale;
+      assertEquals( rowLength, ( dimension + 7 ) / 8 );
+      assertEquals( totalBytes, rowLength * dimension );
+
+      final byte[] expected = new byte[ totalBytes ];
+      qrCode.drawBits( scale, border, 1, 0, expected, 0, rowLength );
+      assertEquals( decode( parts[ 3 ], rowLength, dimension ), expected );
+    }
+  }
+
+  // Decode ZPL compressed ASCII hex
+  private byte[] decode( final String data, final int rowLength, final int rows )
+  {
+    final byte[] result = new byte[ rowLength * rows ];
+    int row = 0;
+    int digit = 0;
+    int count = 0;
+    for ( final char ch : data.toCharArray() )
+    {
+      if ( ch >= 'G' && ch <= 'Y' )
+      {
+        count += ch - 'G' + 1;
+      }
+      else if ( ch >= 'g' && ch <= 'z' )
+      {
+        count += ( ch - 'g' + 1 ) * 20;
+      }
+      else if ( ':' == ch )
+      {
+        System.arraycopy( result, ( row - 1 ) * rowLength, result, row * rowLength, rowLength );
+        row++;
+      }
+      else if ( ',' == ch || '!' == ch )
+      {
+        while ( digit < rowLength * 2 )
+        {
+          setDigit( result, row, rowLength, digit++, ',' == ch ? 0 : 0xF );
+        }
+        row++;
+        digit = 0;
+      }
+      else
+      {
+        for ( int i = 0; i < Math.max( 1, count ); i++ )
+        {
+          setDigit( result, row, rowLength, digit++, Character.digit( ch, 16 ) );
+        }
+        count = 0;
+        if ( digit == rowLength * 2 )
+        {
+          row++;
+          digit = 0;
+        }
+      }
+    }
+    assertEquals( row, rows );
+    return result;
+  }
+
+  private void setDigit( final byte[] result, final int row, final int rowLength, final int digit, final int value )
+  {
+    final int index = row * rowLength + digit / 2;
+    result[ index ] |= 0 == digit % 2 ? value << 4 : value;
+  }
+}
@@ -0,0 +1,160 @@
+package org.realityforge.gwt.qr_code;
+
+import elemental2.dom.AbortSignal;
+import elemental2.dom.DOMException;
+import elemental2.dom.DomGlobal;
+import elemental2.promise.Promise;
+import java.util.List;
+import java.util.Objects;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.realityforge.braincheck.BrainCheckConfig;
+import static org.realityforge.braincheck.Guards.*;
+
+/**
+ * Encodes symbols on the browser main thread without blocking it for long periods.
+ * The encoding is split into short steps and steps are performed until the time budget is exhausted,
+ * after which the encoder yields to the event loop and resumes in a later task. This is useful where
+ * Web Workers are unavailable as encoding a large symbol can otherwise block the page for tens of milliseconds.
+ * The symbols are identical to those produced by the synchronous methods of {@link QrCodeTool}.
+ *
+ * <p>An encoding can be cancelled by aborting the {@link AbortSignal} passed to the encoder, in which case
+ * the promise is rejected with an <code>AbortError</code> {@link DOMException} before the next step.</p>
+ */
+public final class AsyncEncoder
+{
+  private static final double DEFAULT_TIME_BUDGET = 4;
+
+  private AsyncEncoder()
+  {
+  }
+
+  /**
+   * Encode the text as {@link QrCodeTool#encodeText(String, Ecc)} does, yielding every 4 milliseconds.
+   *
+   * @param text the text to be encoded, which can be any Unicode string
+   * @param ecl  the error correction level to use (will be boosted)
+   * @return a promise that resolves to the symbol
+   */
+  @Nonnull
+  public static Promise<QrCode> encodeText( @Nonnull final String text, @Nonnull final Ecc ecl )
+  {
+    return encodeText( text, ecl, DEFAULT_TIME_BUDGET, null );
+  }
+
+  /**
+   * Encode the text as {@link QrCodeTool#encodeText(String, Ecc)} does.
+   *
+   * @param text       the text to be encoded, which can be any Unicode string
+   * @param ecl        the error correction level to use (will be boosted)
+   * @param timeBudget the number of milliseconds to encode for before yielding, which must be positive
+   * @param signal     the signal used to cancel the encoding, if any
+   * @return a promise that resolves to the symbol
+   */
+  @Nonnull
+  public static Promise<QrCode> encodeText( @Nonnull final String text,
+                                            @Nonnull final Ecc ecl,
+                                            final double timeBudget,
+                                            @Nullable final AbortSignal signal )
+  {
+    return encode( new EncodeTask( text, ecl ), timeBudget, signal );
+  }
+
+  /**
+   * Encode the segments as {@link QrCodeTool#encodeSegments(List, Ecc, int, int, int, boolean)} does.
+   *
+   * @param segments   the segments to encode
+   * @param ecl        the error correction level to use (may be boosted)
+   * @param minVersion the minimum allowed version of the QR symbol (at least 1)
+   * @param maxVersion the maximum allowed version of the QR symbol (at most 40)
+   * @param mask       the mask pattern to use, which is either -1 for automatic choice or from 0 to 7 for fixed choice
+   * @param boostEcl   increases the error correction level if it can be done without increasing the version number
+   * @param timeBudget the number of milliseconds to encode for before yielding, which must be positive
+   * @param signal     the signal used to cancel the encoding, if any
+   * @return a promise that resolves to the symbol
+   */
+  @Nonnull
+  public static Promise<QrCode> encodeSegments( @Nonnull final List<QrSegment> segments,
+                                                @Nonnull final Ecc ecl,
+                                                final int minVersion,
+                                                final int maxVersion,
+                                                final int mask,
+                                                final boolean boostEcl,
+                                                final double timeBudget,
+                                                @Nullable final AbortSignal signal )
+  {
+    return encode( new EncodeTask( segments, ecl, minVersion, maxVersion, mask, boostEcl ), timeBudget, signal );
+  }
+
+  @Nonnull
+  private static Promise<QrCode> encode( @Nonnull final EncodeTask task,
+                                        final double timeBudget,
+                                        @Nullable final AbortSignal signal )
+  {
+    if ( BrainCheckConfig.checkApiInvariants() )
+    {
+      apiInvariant( () -> timeBudget > 0, () -> "Time budget must be positive" );
+    }
+    return new Promise<>( ( resolve, reject ) -> new Slicer( task, timeBudget, signal, resolve, reject ).run() );
+  }
+
+  private static final class Slicer
+  {
+    @Nonnull
+    private final EncodeTask _task;
+    private final double _timeBudget;
+    @Nullable
+    private final AbortSignal _signal;
+    @Nonnull
+    private final Promise.PromiseExecutorCallbackFn.ResolveCallbackFn<QrCode> _resolve;
+    @Nonnull
+    private final Promise.PromiseExecutorCallbackFn.RejectCallbackFn _reject;
+
+    Slicer( @Nonnull final EncodeTask task,
+            final double timeBudget,
+            @Nullable final AbortSignal signal,
+            @Nonnull final Promise.PromiseExecutorCallbackFn.ResolveCallbackFn<QrCode> resolve,
+            @Nonnull final Promise.PromiseExecutorCallbackFn.RejectCallbackFn reject )
+    {
+      _task = Objects.requireNonNull( task );
+      _timeBudget = timeBudget;
+      _signal = signal;
+      _resolve = Objects.requireNonNull( resolve );
+      _reject = Objects.requireNonNull( reject );
+    }
+
+    // Perform steps until the encoding completes or the time budget is exhausted, at least one step per slice
+    void run()
+    {
+      if ( null != _signal && _signal.isAborted() )
+      {
+        _reject.onInvoke( new DOMException( "The encoding was cancelled", "AbortError" ) );
+      }
+      else
+      {
+        final double deadline = DomGlobal.performance.now() + _timeBudget;
+        try
+        {
+          do
+          {
+            _task.step();
+          }
+          while ( !_task.isComplete() && DomGlobal.performance.now() < deadline );
+        }
+        catch ( final Throwable t )
+        {
+          _reject.onInvoke( t );
+          return;
+        }
+        if ( _task.isComplete() )
+        {
+          _resolve.onInvoke( _task.getSymbol() );
+        }
+        else
+        {
+          DomGlobal.setTimeout( args -> run(), 0 );
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,106 @@
+package org.realityforge.gwt.qr_code;
+
+import elemental2.dom.BaseRenderingContext2D;
+import elemental2.dom.CanvasRenderingContext2D;
+import elemental2.dom.HTMLCanvasElement;
+import java.util.Objects;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import jsinterop.base.Js;
+import org.realityforge.braincheck.BrainCheckConfig;
+import static org.realityforge.braincheck.Guards.*;
+
+/**
+ * Renders QR Code symbols onto html canvas elements.
+ */
+public final class CanvasRenderer
+{
+  private CanvasRenderer()
+  {
+  }
+
+  /**
+   * Draw image on canvas representing the QR Code, with the specified module scale and number
+   * of border modules. For example, the arguments scale=10, border=4 means to pad the QR Code symbol
+   * with 4 white border modules on all four edges, then use 10*10 pixels to represent each module.
+   * The resulting image only contains the hex colors 000000 and FFFFFF.
+   *
+   * @param qrCode the symbol
+   * @param scale  the module scale factor, which must be positive
+   * @param border the number of border modules to add, which must be non-negative
+   * @param canvas the canvas, which is resized to fit the image
+   */
+  public static void drawCanvas( @Nonnull final QrCode qrCode,
+                                 final double scale,
+                                 final int border,
+                                 @Nonnull final HTMLCanvasElement canvas )
+  {
+    final int size = qrCode.getSize();
+    if ( BrainCheckConfig.checkApiInvariants() )
+    {
+      apiInvariant( () -> border >= 0, () -> "Border must be non-negative" );
+      apiInvariant( () -> scale >= 0, () -> "Scale must be non-negative" );
+      apiInvariant( () -> !( size + border * 2L > Integer.MAX_VALUE / scale ), () -> "Scale or border too large" );
+    }
+
+    final int dimension = (int) ( ( size + border * 2 ) * scale );
+    canvas.width = dimension;
+    canvas.height = dimension;
+    final CanvasRenderingContext2D context = Js.cast( canvas.getContext( "2d" ) );
+
+    // Clear the canvas
+    context.fillStyle = BaseRenderingContext2D.FillStyleUnionType.of( "#FFFFFF" );
+    context.fillRect( 0, 0, dimension, dimension );
+
+    // Set the color for all the modules
+    context.fillStyle = BaseRenderingContext2D.FillStyleUnionType.of( "#000000" );
+
+    qrCode.forEachRowRun( ( y, x, length ) -> context.fillRect( ( x + border ) * scale,
+                                                                ( y + border ) * scale,
+                                                                length * scale,
+                                                                scale ) );
+  }
+
+  /**
+   * Update a canvas that was drawn from the previous symbol so that it represents the QR Code, repainting
+   * only the modules that differ between the symbols. This is much cheaper than redrawing the canvas when
+   * the symbol changes frequently, such as when displaying time based tokens, as the cost depends upon the
+   * number of changed modules rather than the size of the symbol. If there is no previous symbol, the
+   * symbols differ in version or the canvas does not have the expected dimensions then the canvas is
+   * redrawn via {@link #drawCanvas(QrCode, double, int, HTMLCanvasElement)}. The scale should be an integer
+   * so that repainted modules do not leave anti-aliased edges.
+   *
+   * @param qrCode   the symbol
+   * @param previous the symbol that the canvas was last drawn from, if any
+   * @param scale    the module scale factor that the canvas was drawn with
+   * @param border   the number of border modules that the canvas was drawn with
+   * @param canvas   the canvas
+   */
+  public static void drawCanvasChanges( @Nonnull final QrCode qrCode,
+                                        @Nullable final QrCode previous,
+                                        final double scale,
+                                        final int border,
+                                        @Nonnull final HTMLCanvasElement canvas )
+  {
+    final int size = Objects.requireNonNull( qrCode ).getSize();
+    final int dimension = (int) ( ( size + border * 2 ) * scale );
+    if ( null == previous || previous.getSize() != size || canvas.width != dimension || canvas.height != dimension )
+    {
+      drawCanvas( qrCode, scale, border, canvas );
+    }
+    else
+    {
+      final CanvasRenderingContext2D context = Js.cast( canvas.getContext( "2d" ) );
+      context.fillStyle = BaseRenderingContext2D.FillStyleUnionType.of( "#000000" );
+      qrCode.forEachChangedRun( previous, true, ( y, x, length ) -> context.fillRect( ( x + border ) * scale,
+                                                                                      ( y + border ) * scale,
+                                                                                      length * scale,
+                                                                                      scale ) );
+      context.fillStyle = BaseRenderingContext2D.FillStyleUnionType.of( "#FFFFFF" );
+      qrCode.forEachChangedRun( previous, false, ( y, x, length ) -> context.fillRect( ( x + border ) * scale,
+                                                                                       ( y + border ) * scale,
+                                                                                       length * scale,
+                                                                                       scale ) );
+    }
+  }
+}
@@ -0,0 +1,47 @@
+package org.realityforge.gwt.qr_code.dom;
+
+import elemental2.dom.Element;
+import jsinterop.annotations.JsFunction;
+import jsinterop.annotations.JsPackage;
+import jsinterop.annotations.JsProperty;
+import jsinterop.annotations.JsType;
+
+/**
+ * The subset of the browser IntersectionObserver API used to detect when canvases scroll into view.
+ * The elemental2 library does not include a binding for this API.
+ */
+@JsType( isNative = true, namespace = JsPackage.GLOBAL )
+final class IntersectionObserver
+{
+  @JsFunction
+  interface Callback
+  {
+    void onInvoke( Entry[] entries, IntersectionObserver observer );
+  }
+
+  @JsType( isNative = true, namespace = JsPackage.GLOBAL, name = "IntersectionObserverEntry" )
+  interface Entry
+  {
+    @JsProperty
+    Element getTarget();
+
+    @JsProperty( name = "isIntersecting" )
+    boolean isIntersecting();
+  }
+
+  @JsType( isNative = true, namespace = JsPackage.GLOBAL, name = "Object" )
+  static final class Options
+  {
+    String rootMargin;
+  }
+
+  IntersectionObserver( Callback callback, Options options )
+  {
+  }
+
+  native void observe( Element target );
+
+  native void unobserve( Element target );
+
+  native void disconnect();
+}
@@ -0,0 +1,310 @@
+package org.realityforge.gwt.qr_code.dom;
+
+import elemental2.dom.DomGlobal;
+import elemental2.dom.HTMLCanvasElement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Objects;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import jsinterop.base.Js;
+import org.realityforge.braincheck.BrainCheckConfig;
+import org.realityforge.gwt.qr_code.CanvasRenderer;
+import org.realityforge.gwt.qr_code.Ecc;
+import org.realityforge.gwt.qr_code.QrCode;
+import org.realityforge.gwt.qr_code.QrCodeTool;
+import static org.realityforge.braincheck.Guards.*;
+
+/**
+ * Renders the symbols of a large list of payloads onto canvases, only encoding and drawing a symbol when its
+ * canvas comes into view. Canvases are bound to payloads via {@link #bind(HTMLCanvasElement, String)} and the
+ * renderer observes each bound canvas using an IntersectionObserver. Canvases that become visible are queued
+ * and the queue is processed in animation frames, encoding and drawing symbols until the per-frame time budget
+ * is exhausted so that the page remains responsive. Encoded symbols are kept in a small cache so that canvases
+ * that scroll back into view are redrawn immediately without encoding the payload again.
+ *
+ * <p>A virtualized list should obtain canvases via {@link #acquireCanvas()} and return the canvases of rows that
+ * scroll out via {@link #release(HTMLCanvasElement)} so that they are reused for the rows that scroll in.
+ * The canvas has no size until the symbol is drawn, so the list should size canvases using CSS to avoid the
+ * layout shifting as symbols are drawn.</p>
+ */
+public final class LazyQrRenderer
+{
+  private static final int DEFAULT_CACHE_SIZE = 256;
+  private static final double DEFAULT_FRAME_BUDGET = 8;
+  // Start rendering canvases shortly before they scroll into view
+  private static final String PRELOAD_MARGIN = "100px";
+  @Nonnull
+  private final Ecc _ecl;
+  private final double _scale;
+  private final int _border;
+  private final double _frameBudget;
+  @Nonnull
+  private final SymbolCache _cache;
+  @Nonnull
+  private final IdentityHashMap<HTMLCanvasElement, Slot> _slots = new IdentityHashMap<>();
+  @Nonnull
+  private final ArrayDeque<Slot> _queue = new ArrayDeque<>();
+  @Nonnull
+  private final ArrayList<HTMLCanvasElement> _pool = new ArrayList<>();
+  @Nonnull
+  private final IntersectionObserver _observer;
+  private int _frameRequest;
+  private boolean _frameScheduled;
+
+  /**
+   * Create a renderer with a cache of 256 symbols and a time budget of 8 milliseconds per frame.
+   *
+   * @param ecl    the error correction level used to encode payloads.
+   * @param scale  the module scale factor, which must be positive.
+   * @param border the number of border modules to add, which must be non-negative.
+   */
+  public LazyQrRenderer( @Nonnull final Ecc ecl, final double scale, final int border )
+  {
+    this( ecl, scale, border, DEFAULT_CACHE_SIZE, DEFAULT_FRAME_BUDGET );
+  }
+
+  /**
+   * Create a renderer.
+   * At least one symbol is rendered in every frame while canvases are queued, regardless of the time budget.
+   *
+   * @param ecl         the error correction level used to encode payloads.
+   * @param scale       the module scale factor, which must be positive.
+   * @param border      the number of border modules to add, which must be non-negative.
+   * @param cacheSize   the maximum number of encoded symbols to retain, which must be non-negative.
+   * @param frameBudget the number of milliseconds that may be spent rendering in each animation frame.
+   */
+  public LazyQrRenderer( @Nonnull final Ecc ecl,
+                         final double scale,
+                         final int border,
+                         final int cacheSize,
+                         final double frameBudget )
+  {
+    if ( BrainCheckConfig.checkApiInvariants() )
+    {
+      apiInvariant( () -> scale > 0, () -> "Scale must be positive" );
+      apiInvariant( () -> border >= 0, () -> "Border must be non-negative" );
+      apiInvariant( () -> frameBudget > 0, () -> "Frame budget must be positive" );
+    }
+    _ecl = Objects.requireNonNull( ecl );
+    _scale = scale;
+    _border = border;
+    _frameBudget = frameBudget;
+    _cache = new SymbolCache( cacheSize );
+    final IntersectionObserver.Options options = new IntersectionObserver.Options();
+    options.rootMargin = PRELOAD_MARGIN;
+    _observer = new IntersectionObserver( ( entries, observer ) -> onIntersection( entries ), options );
+  }
+
+  /**
+   * Return a canvas that was previously released or a new canvas if none are available.
+   * The canvas is not bound to a payload.
+   *
+   * @return the canvas.
+   */
+  @Nonnull
+  public HTMLCanvasElement acquireCanvas()
+  {
+    final int count = _pool.size();
+    return 0 == count ?
+           Js.uncheckedCast( DomGlobal.document.createElement( "canvas" ) ) :
+           _pool.remove( count - 1 );
+  }
+
+  /**
+   * Bind the canvas to the payload, so that the symbol for the payload is drawn on the canvas when the canvas
+   * is visible. If the canvas was bound to a different payload then the canvas is cleared, so that the symbol
+   * of the previous payload is never visible against the new payload.
+   *
+   * @param canvas the canvas.
+   * @param text   the payload to encode.
+   */
+  public void bind( @Nonnull final HTMLCanvasElement canvas, @Nonnull final String text )
+  {
+    Objects.requireNonNull( canvas );
+    Objects.requireNonNull( text );
+    Slot slot = _slots.get( canvas );
+    if ( null == slot )
+    {
+      slot = new Slot( canvas );
+      _slots.put( canvas, slot );
+      _observer.observe( canvas );
+    }
+    else if ( text.equals( slot._text ) )
+    {
+      return;
+    }
+    if ( null != slot._drawnText )
+    {
+      clear( slot );
+    }
+    slot._text = text;
+    if ( slot._visible )
+    {
+      requestRender( slot );
+    }
+  }
+
+  /**
+   * Unbind the canvas from its payload, clear it and retain it for reuse by {@link #acquireCanvas()}.
+   * The caller must remove the canvas from the document.
+   *
+   * @param canvas the canvas.
+   */
+  public void release( @Nonnull final HTMLCanvasElement canvas )
+  {
+    final Slot slot = _slots.remove( Objects.requireNonNull( canvas ) );
+    if ( null != slot )
+    {
+      _observer.unobserve( canvas );
+      // The slot may still be queued and is skipped when it is dequeued
+      slot._text = null;
+      slot._visible = false;
+      if ( null != slot._drawnText )
+      {
+        clear( slot );
+      }
+      _pool.add( canvas );
+    }
+  }
+
+  /**
+   * Return the number of visible canvases that are waiting to be rendered.
+   *
+   * @return the number of visible canvases that are waiting to be rendered.
+   */
+  public int getPendingCount()
+  {
+    return _queue.size();
+  }
+
+  /**
+   * Stop observing and rendering all canvases and discard the cached symbols and released canvases.
+   * The renderer must not be used after it has been disposed.
+   */
+  public void dispose()
+  {
+    _observer.disconnect();
+    if ( _frameScheduled )
+    {
+      DomGlobal.cancelAnimationFrame( _frameRequest );
+      _frameScheduled = false;
+    }
+    _slots.clear();
+    _queue.clear();
+    _pool.clear();
+    _cache.clear();
+  }
+
+  private void onIntersection( @Nonnull final IntersectionObserver.Entry[] entries )
+  {
+    for ( final IntersectionObserver.Entry entry : entries )
+    {
+      final Slot slot = _slots.get( Js.<HTMLCanvasElement>uncheckedCast( entry.getTarget() ) );
+      if ( null != slot )
+      {
+        slot._visible = entry.isIntersecting();
+        if ( slot._visible && null != slot._text && !slot._text.equals( slot._drawnText ) )
+        {
+          requestRender( slot );
+        }
+      }
+    }
+  }
+
+  // Draw the symbol immediately if it has already been encoded, otherwise queue the slot for a later frame
+  private void requestRender( @Nonnull final Slot slot )
+  {
+    assert null != slot._text;
+    final QrCode symbol = _cache.get( slot._text );
+    if ( null != symbol )
+    {
+      draw( slot, slot._text, symbol );
+    }
+    else if ( !slot._queued )
+    {
+      slot._queued = true;
+      _queue.add( slot );
+      scheduleFrame();
+    }
+  }
+
+  private void scheduleFrame()
+  {
+    if ( !_frameScheduled && !_queue.isEmpty() )
+    {
+      _frameScheduled = true;
+      _frameRequest = DomGlobal.requestAnimationFrame( timestamp -> onFrame() );
+    }
+  }
+
+  private void onFrame()
+  {
+    _frameScheduled = false;
+    final double deadline = DomGlobal.performance.now() + _frameBudget;
+    try
+    {
+      do
+      {
+        final Slot slot = _queue.poll();
+        if ( null == slot )
+        {
+          break;
+        }
+        slot._queued = false;
+        // Canvases that scrolled out or were released while queued are skipped
+        final String text = slot._text;
+        if ( slot._visible && null != text && !text.equals( slot._drawnText ) )
+        {
+          QrCode symbol = _cache.get( text );
+          if ( null == symbol )
+          {
+            symbol = QrCodeTool.encodeText( text, _ecl );
+            _cache.put( text, symbol );
+          }
+          draw( slot, text, symbol );
+        }
+      }
+      while ( DomGlobal.performance.now() < deadline );
+    }
+    finally
+    {
+      // Continue with the remaining slots in the next frame even if a payload could not be encoded
+      scheduleFrame();
+    }
+  }
+
+  private void draw( @Nonnull final Slot slot, @Nonnull final String text, @Nonnull final QrCode symbol )
+  {
+    CanvasRenderer.drawCanvas( symbol, _scale, _border, slot._canvas );
+    slot._drawnText = text;
+  }
+
+  private void clear( @Nonnull final Slot slot )
+  {
+    // Assigning the width of a canvas clears it, even when the width is unchanged
+    final HTMLCanvasElement canvas = slot._canvas;
+    canvas.width = canvas.width;
+    slot._drawnText = null;
+  }
+
+  private static final class Slot
+  {
+    @Nonnull
+    private final HTMLCanvasElement _canvas;
+    // The payload that the canvas is bound to, or null once the canvas is released
+    @Nullable
+    private String _text;
+    // The payload of the symbol currently drawn on the canvas, if any
+    @Nullable
+    private String _drawnText;
+    private boolean _visible;
+    private boolean _queued;
+
+    Slot( @Nonnull final HTMLCanvasElement canvas )
+    {
+      _canvas = canvas;
+    }
+  }
+}
@@ -0,0 +1,56 @@
+package org.realityforge.gwt.qr_code.dom;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.realityforge.braincheck.BrainCheckConfig;
+import org.realityforge.gwt.qr_code.QrCode;
+import static org.realityforge.braincheck.Guards.*;
+
+/**
+ * A small least recently used cache of encoded symbols keyed by the text they encode.
+ */
+final class SymbolCache
+{
+  @Nonnull
+  private final LinkedHashMap<String, QrCode> _symbols;
+
+  SymbolCache( final int capacity )
+  {
+    if ( BrainCheckConfig.checkApiInvariants() )
+    {
+      apiInvariant( () -> capacity >= 0, () -> "Cache capacity must be non-negative" );
+    }
+    _symbols = new LinkedHashMap<String, QrCode>( 16, 0.75F, true )
+    {
+      @Override
+      protected boolean removeEldestEntry( final Map.Entry<String, QrCode> eldest )
+      {
+        return size() > capacity;
+      }
+    };
+  }
+
+  @Nullable
+  QrCode get( @Nonnull final String text )
+  {
+    return _symbols.get( Objects.requireNonNull( text ) );
+  }
+
+  void put( @Nonnull final String text, @Nonnull final QrCode symbol )
+  {
+    _symbols.put( Objects.requireNonNull( text ), Objects.requireNonNull( symbol ) );
+  }
+
+  int size()
+  {
+    return _symbols.size();
+  }
+
+  void clear()
+  {
+    _symbols.clear();
+  }
+}
@@ -0,0 +1,42 @@
+package org.realityforge.gwt.qr_code.dom;
+
+import org.realityforge.gwt.qr_code.Ecc;
+import org.realityforge.gwt.qr_code.QrCode;
+import org.realityforge.gwt.qr_code.QrCodeTool;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+public class SymbolCacheTest
+{
+  @Test
+  public void evictsLeastRecentlyUsed()
+  {
+    final SymbolCache cache = new SymbolCache( 2 );
+    final QrCode a = QrCodeTool.encodeText( "A", Ecc.LOW );
+    final QrCode b = QrCodeTool.encodeText( "B", Ecc.LOW );
+    final QrCode c = QrCodeTool.encodeText( "C", Ecc.LOW );
+
+    cache.put( "A", a );
+    cache.put( "B", b );
+    assertSame( cache.get( "A" ), a );
+
+    // B is the least recently used as A was read after B was added
+    cache.put( "C", c );
+    assertEquals( cache.size(), 2 );
+    assertNull( cache.get( "B" ) );
+    assertSame( cache.get( "A" ), a );
+    assertSame( cache.get( "C" ), c );
+
+    cache.clear();
+    assertEquals( cache.size(), 0 );
+    assertNull( cache.get( "A" ) );
+  }
+
+  @Test
+  public void zeroCapacityRetainsNothing()
+  {
+    final SymbolCache cache = new SymbolCache( 0 );
+    cache.put( "A", QrCodeTool.encodeText( "A", Ecc.LOW ) );
+    assertEquals( cache.size(), 0 );
+  }
+}
@@ -0,0 +1,61 @@
+package org.realityforge.gwt.qr_code.http;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.Nonnull;
+
+/**
+ * Limits the number of requests from each client that are processed concurrently. A client is identified by
+ * an arbitrary key, typically the address of the remote host. Clients are only tracked while they have
+ * requests in progress so the memory used is proportional to the number of concurrent clients.
+ */
+final class ClientLimiter
+{
+  private final int _maxRequestsPerClient;
+  // The number of requests in progress indexed by client
+  @Nonnull
+  private final ConcurrentHashMap<Object, Integer> _requests = new ConcurrentHashMap<>();
+
+  ClientLimiter( final int maxRequestsPerClient )
+  {
+    _maxRequestsPerClient = maxRequestsPerClient;
+  }
+
+  /**
+   * Start a request from the client if the client has fewer requests in progress than the limit.
+   * Every successful call must be followed by a call to {@link #release(Object)}.
+   *
+   * @param client the client.
+   * @return true if the request was started, false if the client has reached the limit.
+   */
+  boolean tryAcquire( @Nonnull final Object client )
+  {
+    final boolean[] acquired = new boolean[ 1 ];
+    _requests.compute( Objects.requireNonNull( client ), ( k, count ) -> {
+      final int current = null == count ? 0 : count;
+      acquired[ 0 ] = current < _maxRequestsPerClient;
+      return acquired[ 0 ] ? current + 1 : count;
+    } );
+    return acquired[ 0 ];
+  }
+
+  /**
+   * Complete a request from the client that was started by {@link #tryAcquire(Object)}.
+   *
+   * @param client the client.
+   */
+  void release( @Nonnull final Object client )
+  {
+    _requests.computeIfPresent( client, ( k, count ) -> 1 == count ? null : count - 1 );
+  }
+
+  /**
+   * Return the number of clients with requests in progress.
+   *
+   * @return the number of clients with requests in progress.
+   */
+  int getClientCount()
+  {
+    return _requests.size();
+  }
+}
@@ -0,0 +1,391 @@
+package org.realityforge.gwt.qr_code.http;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.realityforge.braincheck.BrainCheckConfig;
+import org.realityforge.gwt.qr_code.CompactQrCode;
+import org.realityforge.gwt.qr_code.QrCode;
+import org.realityforge.gwt.qr_code.QrCodeTool;
+import org.realityforge.gwt.qr_code.image.PngWriter;
+import static org.realityforge.braincheck.Guards.*;
+
+/**
+ * A handler for the JDK HTTP server that renders QR Codes as SVG or PNG images. i.e.
+ *
+ * <pre>{@code
+ * final HttpServer server = HttpServer.create( new InetSocketAddress( 8080 ), 0 );
+ * server.createContext( "/qr", new QrCodeHandler() );
+ * server.setExecutor( Executors.newFixedThreadPool( 16 ) );
+ * server.start();
+ * }</pre>
+ *
+ * <p>The symbol is described by the query parameters of a GET or HEAD request:</p>
+ * <ul>
+ * <li><b>payload</b>: the text to encode, which is required.</li>
+ * <li><b>ecc</b>: the minimum error correction level, one of L, M, Q or H, which may be boosted. Defaults to M.</li>
+ * <li><b>format</b>: the format of the image, either svg or png. Defaults to svg.</li>
+ * <li><b>scale</b>: the width and height of each module in pixels of png images, from 1 to 64. Defaults to 8.</li>
+ * <li><b>border</b>: the number of border modules, from 0 to 64. Defaults to 4.</li>
+ * </ul>
+ *
+ * <p>Every response has a strong ETag derived from the modules of the symbol and the rendering parameters, and
+ * requests with a matching If-None-Match header receive a 304 response without the image being rendered.
+ * Rendered images are kept in a cache bounded by the total size of the images so that repeated requests are
+ * served without encoding or rendering the symbol. Images that are not cached are streamed to the client while
+ * they are rendered. Requests from a client host beyond the limit of concurrent requests receive a 429 response,
+ * so the server executor must use multiple threads for the limit to have any effect. The JDK HTTP server should
+ * be started with the {@code sun.net.httpserver.nodelay} system property set to true, otherwise the interaction
+ * between Nagle's algorithm and delayed acknowledgements can add tens of milliseconds to each response.</p>
+ */
+public final class QrCodeHandler
+  implements HttpHandler
+{
+  /**
+   * The default maximum total size of the cached images, in bytes.
+   */
+  public static final long DEFAULT_CACHE_SIZE = 64L * 1024L * 1024L;
+  /**
+   * The default maximum number of concurrent requests from a client host.
+   */
+  public static final int DEFAULT_MAX_REQUESTS_PER_CLIENT = 8;
+  private static final String CACHE_CONTROL = "public, max-age=86400";
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+  @Nonnull
+  private final RenderCache _cache;
+  @Nonnull
+  private final ClientLimiter _limiter;
+  @Nonnull
+  private final AtomicLong _cacheHits = new AtomicLong();
+  @Nonnull
+  private final AtomicLong _cacheMisses = new AtomicLong();
+
+  /**
+   * Create a handler with the default cache size and limit of concurrent requests per client.
+   */
+  public QrCodeHandler()
+  {
+    this( DEFAULT_CACHE_SIZE, DEFAULT_MAX_REQUESTS_PER_CLIENT );
+  }
+
+  /**
+   * Create a handler.
+   *
+   * @param cacheSize            the maximum total size of the cached images in bytes, which may be 0 to disable caching.
+   * @param maxRequestsPerClient the maximum number of concurrent requests from a client host, which must be positive.
+   */
+  public QrCodeHandler( final long cacheSize, final int maxRequestsPerClient )
+  {
+    if ( BrainCheckConfig.checkApiInvariants() )
+    {
+      apiInvariant( () -> cacheSize >= 0, () -> "CacheSize must be non-negative" );
+      apiInvariant( () -> maxRequestsPerClient > 0, () -> "MaxRequestsPerClient must be positive" );
+    }
+    _cache = new RenderCache( cacheSize );
+    _limiter = new ClientLimiter( maxRequestsPerClient );
+  }
+
+  /**
+   * Return the number of requests that were served from the cache.
+   *
+   * @return the number of requests that were served from the cache.
+   */
+  public long getCacheHits()
+  {
+    return _cacheHits.get();
+  }
+
+  /**
+   * Return the number of valid requests that were not served from the cache.
+   *
+   * @return the number of valid requests that were not served from the cache.
+   */
+  public long getCacheMisses()
+  {
+    return _cacheMisses.get();
+  }
+
+  @Override
+  public void handle( @Nonnull final HttpExchange exchange )
+    throws IOException
+  {
+    try
+    {
+      final InetSocketAddress address = exchange.getRemoteAddress();
+      final Object client = null != address.getAddress() ? address.getAddress() : address.getHostString();
+      if ( _limiter.tryAcquire( client ) )
+      {
+        try
+        {
+          process( exchange );
+        }
+        finally
+        {
+          _limiter.release( client );
+        }
+      }
+      else
+      {
+        exchange.getResponseHeaders().set( "Retry-After", "1" );
+        sendText( exchange, 429, "Too many concurrent requests" );
+      }
+    }
+    finally
+    {
+      exchange.close();
+    }
+  }
+
+  private void process( @Nonnull final HttpExchange exchange )
+    throws IOException
+  {
+    final String method = exchange.getRequestMethod();
+    if ( !"GET".equals( method ) && !"HEAD".equals( method ) )
+    {
+      exchange.getResponseHeaders().set( "Allow", "GET, HEAD" );
+      sendText( exchange, 405, "Method not allowed" );
+      return;
+    }
+    final RenderRequest request;
+    try
+    {
+      request = RenderRequest.parse( exchange.getRequestURI().getRawQuery() );
+    }
+    catch ( final IllegalArgumentException iae )
+    {
+      sendText( exchange, 400, iae.getMessage() );
+      return;
+    }
+
+    final RenderCache.Entry entry = _cache.get( request.getKey() );
+    if ( null != entry )
+    {
+      _cacheHits.incrementAndGet();
+      if ( sendHeaders( exchange, request, entry.getEtag(), entry.getContent().length ) )
+      {
+        exchange.getResponseBody().write( entry.getContent() );
+      }
+    }
+    else if ( null == QrCodeTool.planText( request.getPayload(), request.getEcc() ) )
+    {
+      sendText( exchange, 400, "The payload is too long to fit in a QR Code" );
+    }
+    else
+    {
+      _cacheMisses.incrementAndGet();
+      final QrCode qrCode = QrCodeTool.encodeText( request.getPayload(), request.getEcc() );
+      final String etag = toEtag( qrCode, request );
+      // The length is not known until the image is rendered so the response is streamed using chunked encoding
+      if ( sendHeaders( exchange, request, etag, 0 ) )
+      {
+        final CachingOutputStream output = new CachingOutputStream( exchange.getResponseBody(), _cache.getCapacity() );
+        render( qrCode, request, output );
+        output.flush();
+        final byte[] content = output.getContent();
+        if ( null != content )
+        {
+          _cache.put( request.getKey(), new RenderCache.Entry( etag, content ) );
+        }
+      }
+    }
+  }
+
+  /**
+   * Send the headers of a successful response, or a 304 response if the client has the current image.
+   *
+   * @param exchange the exchange.
+   * @param request  the request.
+   * @param etag     the entity tag of the image.
+   * @param length   the length of the image, or 0 if it is not known and the image is streamed.
+   * @return true if the image should be sent as the body of the response.
+   */
+  private boolean sendHeaders( @Nonnull final HttpExchange exchange,
+                               @Nonnull final RenderRequest request,
+                               @Nonnull final String etag,
+                               final long length )
+    throws IOException
+  {
+    final Headers headers = exchange.getResponseHeaders();
+    headers.set( "ETag", etag );
+    headers.set( "Cache-Control", CACHE_CONTROL );
+    if ( isNotModified( exchange.getRequestHeaders().get( "If-None-Match" ), etag ) )
+    {
+      exchange.sendResponseHeaders( 304, -1 );
+      return false;
+    }
+    else
+    {
+      headers.set( "Content-Type", request.getFormat().getContentType() );
+      final boolean hasBody = !"HEAD".equals( exchange.getRequestMethod() );
+      exchange.sendResponseHeaders( 200, hasBody ? length : -1 );
+      return hasBody;
+    }
+  }
+
+  private static void sendText( @Nonnull final HttpExchange exchange, final int status, @Nonnull final String message )
+    throws IOException
+  {
+    final byte[] content = ( message + "\n" ).getBytes( StandardCharsets.UTF_8 );
+    exchange.getResponseHeaders().set( "Content-Type", "text/plain; charset=utf-8" );
+    if ( "HEAD".equals( exchange.getRequestMethod() ) )
+    {
+      exchange.sendResponseHeaders( status, -1 );
+    }
+    else
+    {
+      exchange.sendResponseHeaders( status, content.length );
+      exchange.getResponseBody().write( content );
+    }
+  }
+
+  private static void render( @Nonnull final QrCode qrCode,
+                              @Nonnull final RenderRequest request,
+                              @Nonnull final OutputStream output )
+    throws IOException
+  {
+    if ( RenderRequest.Format.SVG == request.getFormat() )
+    {
+      output.write( qrCode.toSvgString( request.getBorder() ).getBytes( StandardCharsets.UTF_8 ) );
+    }
+    else
+    {
+      PngWriter.writePng( qrCode, request.getScale(), request.getBorder(), output );
+    }
+  }
+
+  /**
+   * Return true if an entity tag in the If-None-Match headers matches the entity tag of the image.
+   * The weak comparison function is used as required for If-None-Match.
+   *
+   * @param values the values of the If-None-Match headers, if any.
+   * @param etag   the entity tag of the image.
+   * @return true if the client has the current image.
+   */
+  static boolean isNotModified( @Nullable final List<String> values, @Nonnull final String etag )
+  {
+    if ( null != values )
+    {
+      for ( final String value : values )
+      {
+        for ( final String candidate : value.split( "," ) )
+        {
+          final String tag = candidate.trim();
+          if ( "*".equals( tag ) || etag.equals( tag.startsWith( "W/" ) ? tag.substring( 2 ) : tag ) )
+          {
+            return true;
+          }
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Return a strong entity tag derived from the modules of the symbol and the parameters used to render it.
+   * The symbol is identified by its version, error correction level, mask and codewords, which determine
+   * every module.
+   *
+   * @param qrCode  the symbol.
+   * @param request the request that describes how the symbol is rendered.
+   * @return the quoted entity tag.
+   */
+  @Nonnull
+  static String toEtag( @Nonnull final QrCode qrCode, @Nonnull final RenderRequest request )
+  {
+    final MessageDigest digest;
+    try
+    {
+      digest = MessageDigest.getInstance( "SHA-256" );
+    }
+    catch ( final NoSuchAlgorithmException nsae )
+    {
+      // Every Java platform is required to support SHA-256
+      throw new IllegalStateException( nsae );
+    }
+    digest.update( CompactQrCode.from( qrCode ).toByteArray() );
+    digest.update( (byte) request.getFormat().ordinal() );
+    digest.update( (byte) request.getScale() );
+    digest.update( (byte) request.getBorder() );
+    final byte[] hash = digest.digest();
+    // 128 bits of the hash are more than enough to distinguish the images
+    final StringBuilder sb = new StringBuilder( 34 ).append( '"' );
+    for ( int i = 0; i < 16; i++ )
+    {
+      sb.append( HEX_DIGITS[ ( hash[ i ] >>> 4 ) & 0xF ] ).append( HEX_DIGITS[ hash[ i ] & 0xF ] );
+    }
+    return sb.append( '"' ).toString();
+  }
+
+  /**
+   * A stream that writes to a buffered response body and keeps a copy of the bytes written until the copy
+   * would exceed the maximum size of a cached image.
+   */
+  private static final class CachingOutputStream
+    extends FilterOutputStream
+  {
+    private final long _capacity;
+    @Nullable
+    private ByteArrayOutputStream _copy = new ByteArrayOutputStream();
+
+    CachingOutputStream( @Nonnull final OutputStream output, final long capacity )
+    {
+      super( new BufferedOutputStream( output ) );
+      _capacity = capacity;
+    }
+
+    @Override
+    public void write( final int b )
+      throws IOException
+    {
+      out.write( b );
+      copy( new byte[]{ (byte) b }, 0, 1 );
+    }
+
+    @Override
+    public void write( @Nonnull final byte[] b, final int off, final int len )
+      throws IOException
+    {
+      out.write( b, off, len );
+      copy( b, off, len );
+    }
+
+    /**
+     * Return the bytes written, or null if they were too large to cache.
+     *
+     * @return the bytes written, or null if they were too large to cache.
+     */
+    @Nullable
+    byte[] getContent()
+    {
+      return null == _copy ? null : _copy.toByteArray();
+    }
+
+    private void copy( @Nonnull final byte[] b, final int off, final int len )
+    {
+      if ( null != _copy )
+      {
+        if ( _copy.size() + (long) len > _capacity )
+        {
+          _copy = null;
+        }
+        else
+        {
+          _copy.write( b, off, len );
+        }
+      }
+    }
+  }
+}
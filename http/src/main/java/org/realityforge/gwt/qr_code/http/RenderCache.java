@@ -0,0 +1,109 @@
+package org.realityforge.gwt.qr_code.http;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * A cache of rendered output that is bounded by the total size of the cached bytes. The least recently
+ * used entries are evicted when an entry is added that would exceed the capacity.
+ */
+final class RenderCache
+{
+  /**
+   * The rendered output of a request.
+   */
+  static final class Entry
+  {
+    @Nonnull
+    private final String _etag;
+    @Nonnull
+    private final byte[] _content;
+
+    Entry( @Nonnull final String etag, @Nonnull final byte[] content )
+    {
+      _etag = Objects.requireNonNull( etag );
+      _content = Objects.requireNonNull( content );
+    }
+
+    @Nonnull
+    String getEtag()
+    {
+      return _etag;
+    }
+
+    /**
+     * Return the rendered bytes. The returned array must not be modified.
+     *
+     * @return the rendered bytes.
+     */
+    @Nonnull
+    byte[] getContent()
+    {
+      return _content;
+    }
+  }
+
+  private final long _capacity;
+  // Entries in access order, so that the first entry is the least recently used
+  @Nonnull
+  private final LinkedHashMap<String, Entry> _entries = new LinkedHashMap<>( 16, 0.75F, true );
+  private long _size;
+
+  RenderCache( final long capacity )
+  {
+    _capacity = capacity;
+  }
+
+  /**
+   * Return the maximum size of an entry that will be cached.
+   *
+   * @return the maximum size of an entry that will be cached.
+   */
+  long getCapacity()
+  {
+    return _capacity;
+  }
+
+  @Nullable
+  synchronized Entry get( @Nonnull final String key )
+  {
+    return _entries.get( key );
+  }
+
+  /**
+   * Add an entry to the cache, evicting the least recently used entries if required.
+   * Entries larger than the capacity of the cache are not added.
+   *
+   * @param key   the key of the entry.
+   * @param entry the entry.
+   */
+  synchronized void put( @Nonnull final String key, @Nonnull final Entry entry )
+  {
+    final int length = entry.getContent().length;
+    if ( length <= _capacity )
+    {
+      final Entry existing = _entries.put( key, entry );
+      _size += length - ( null == existing ? 0 : existing.getContent().length );
+      final Iterator<Map.Entry<String, Entry>> iterator = _entries.entrySet().iterator();
+      while ( _size > _capacity )
+      {
+        _size -= iterator.next().getValue().getContent().length;
+        iterator.remove();
+      }
+    }
+  }
+
+  synchronized int getEntryCount()
+  {
+    return _entries.size();
+  }
+
+  synchronized long getSize()
+  {
+    return _size;
+  }
+}
@@ -0,0 +1,219 @@
+package org.realityforge.gwt.qr_code.http;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Objects;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.realityforge.gwt.qr_code.Ecc;
+
+/**
+ * The parameters of a request to render a QR Code, parsed from the query string of the request.
+ */
+final class RenderRequest
+{
+  enum Format
+  {
+    SVG( "image/svg+xml" ),
+    PNG( "image/png" );
+    @Nonnull
+    private final String _contentType;
+
+    Format( @Nonnull final String contentType )
+    {
+      _contentType = contentType;
+    }
+
+    @Nonnull
+    String getContentType()
+    {
+      return _contentType;
+    }
+  }
+
+  static final int DEFAULT_SCALE = 8;
+  static final int DEFAULT_BORDER = 4;
+  static final int MAX_SCALE = 64;
+  static final int MAX_BORDER = 64;
+  @Nonnull
+  private final String _payload;
+  @Nonnull
+  private final Ecc _ecc;
+  @Nonnull
+  private final Format _format;
+  private final int _scale;
+  private final int _border;
+  @Nonnull
+  private final String _key;
+
+  RenderRequest( @Nonnull final String payload,
+                 @Nonnull final Ecc ecc,
+                 @Nonnull final Format format,
+                 final int scale,
+                 final int border )
+  {
+    _payload = Objects.requireNonNull( payload );
+    _ecc = Objects.requireNonNull( ecc );
+    _format = Objects.requireNonNull( format );
+    // The scale has no effect on vector output so it is normalized so that requests share cache entries
+    _scale = Format.SVG == format ? 1 : scale;
+    _border = border;
+    _key = format.name() + '|' + ecc.name().charAt( 0 ) + '|' + _scale + '|' + border + '|' + payload;
+  }
+
+  /**
+   * Parse the request from the raw, encoded, query string of a request URI.
+   * Parameters other than payload, ecc, format, scale and border are ignored.
+   *
+   * @param query the raw query string, or null if the URI has no query.
+   * @return the request.
+   * @throws IllegalArgumentException if a parameter is missing or invalid.
+   */
+  @Nonnull
+  static RenderRequest parse( @Nullable final String query )
+  {
+    String payload = null;
+    Ecc ecc = Ecc.MEDIUM;
+    Format format = Format.SVG;
+    int scale = DEFAULT_SCALE;
+    int border = DEFAULT_BORDER;
+    if ( null != query && !query.isEmpty() )
+    {
+      for ( final String parameter : query.split( "&" ) )
+      {
+        final int separator = parameter.indexOf( '=' );
+        final String name = decode( -1 == separator ? parameter : parameter.substring( 0, separator ) );
+        final String value = -1 == separator ? "" : decode( parameter.substring( separator + 1 ) );
+        switch ( name )
+        {
+          case "payload":
+            payload = value;
+            break;
+          case "ecc":
+            ecc = eccValue( value );
+            break;
+          case "format":
+            format = formatValue( value );
+            break;
+          case "scale":
+            scale = intValue( name, value, 1, MAX_SCALE );
+            break;
+          case "border":
+            border = intValue( name, value, 0, MAX_BORDER );
+            break;
+          default:
+            // Unknown parameters are ignored
+            break;
+        }
+      }
+    }
+    if ( null == payload )
+    {
+      throw new IllegalArgumentException( "The payload parameter must be specified" );
+    }
+    return new RenderRequest( payload, ecc, format, scale, border );
+  }
+
+  @Nonnull
+  String getPayload()
+  {
+    return _payload;
+  }
+
+  @Nonnull
+  Ecc getEcc()
+  {
+    return _ecc;
+  }
+
+  @Nonnull
+  Format getFormat()
+  {
+    return _format;
+  }
+
+  int getScale()
+  {
+    return _scale;
+  }
+
+  int getBorder()
+  {
+    return _border;
+  }
+
+  /**
+   * Return the key that identifies the rendered output, which is the same for requests that differ only in
+   * parameters that do not affect the output.
+   *
+   * @return the key that identifies the rendered output.
+   */
+  @Nonnull
+  String getKey()
+  {
+    return _key;
+  }
+
+  @Nonnull
+  private static String decode( @Nonnull final String value )
+  {
+    try
+    {
+      return URLDecoder.decode( value, StandardCharsets.UTF_8.name() );
+    }
+    catch ( final UnsupportedEncodingException uee )
+    {
+      // UTF-8 is always supported
+      throw new IllegalStateException( uee );
+    }
+  }
+
+  @Nonnull
+  private static Ecc eccValue( @Nonnull final String value )
+  {
+    for ( final Ecc ecc : Ecc.values() )
+    {
+      if ( ecc.name().startsWith( value.toUpperCase( Locale.ROOT ) ) && !value.isEmpty() )
+      {
+        return ecc;
+      }
+    }
+    throw new IllegalArgumentException( "Unknown error correction level '" + value + "'" );
+  }
+
+  @Nonnull
+  private static Format formatValue( @Nonnull final String value )
+  {
+    try
+    {
+      return Format.valueOf( value.toUpperCase( Locale.ROOT ) );
+    }
+    catch ( final IllegalArgumentException iae )
+    {
+      throw new IllegalArgumentException( "Unknown format '" + value + "'" );
+    }
+  }
+
+  private static int intValue( @Nonnull final String name,
+                               @Nonnull final String value,
+                               final int minimum,
+                               final int maximum )
+  {
+    try
+    {
+      final int result = Integer.parseInt( value );
+      if ( result >= minimum && result <= maximum )
+      {
+        return result;
+      }
+    }
+    catch ( final NumberFormatException ignored )
+    {
+      // Fall through to report the error below
+    }
+    throw new IllegalArgumentException( "The " + name + " parameter must be an integer from " + minimum +
+                                        " to " + maximum + " but was '" + value + "'" );
+  }
+}
@@ -0,0 +1,244 @@
+package org.realityforge.gwt.qr_code.http;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Generates load against a {@link QrCodeHandler} from a number of threads for a fixed duration and reports
+ * the throughput and the distribution of latencies. Each request is for a payload chosen at random from a
+ * fixed number of distinct payloads, so the proportion of requests served from the cache is controlled by
+ * the number of payloads. Unless a URL is specified, the handler is run in the same process on an ephemeral
+ * port with the limit of concurrent requests per client set to the number of threads. i.e.
+ *
+ * <pre>
+ * java -cp core.jar:test-classes:braincheck.jar org.realityforge.gwt.qr_code.http.HttpLoadGenerator \
+ *   --threads 32 --duration 30 --payloads 100000 --format png
+ * </pre>
+ *
+ * <p>The options are --url, the URL of a running handler, --threads, the number of concurrent clients
+ * (default: 16), --warmup and --duration, the seconds spent warming up and measuring (default: 5 and 10),
+ * --payloads, the number of distinct payloads (default: 10000) and --format, svg or png (default: svg).</p>
+ */
+public final class HttpLoadGenerator
+{
+  private String _url;
+  private int _threads = 16;
+  private int _warmup = 5;
+  private int _duration = 10;
+  private int _payloads = 10000;
+  private String _format = "svg";
+
+  private HttpLoadGenerator()
+  {
+  }
+
+  public static void main( final String[] args )
+    throws Exception
+  {
+    final HttpLoadGenerator generator = new HttpLoadGenerator();
+    for ( int i = 0; i < args.length; i += 2 )
+    {
+      final String value = args[ i + 1 ];
+      switch ( args[ i ] )
+      {
+        case "--url":
+          generator._url = value;
+          break;
+        case "--threads":
+          generator._threads = Integer.parseInt( value );
+          break;
+        case "--warmup":
+          generator._warmup = Integer.parseInt( value );
+          break;
+        case "--duration":
+          generator._duration = Integer.parseInt( value );
+          break;
+        case "--payloads":
+          generator._payloads = Integer.parseInt( value );
+          break;
+        case "--format":
+          generator._format = value;
+          break;
+        default:
+          throw new IllegalArgumentException( "Unknown argument: " + args[ i ] );
+      }
+    }
+    generator.run();
+  }
+
+  private void run()
+    throws Exception
+  {
+    HttpServer server = null;
+    ExecutorService executor = null;
+    QrCodeHandler handler = null;
+    String url = _url;
+    if ( null == url )
+    {
+      // Without TCP_NODELAY, delayed acknowledgements add roughly 40ms to every response
+      if ( null == System.getProperty( "sun.net.httpserver.nodelay" ) )
+      {
+        System.setProperty( "sun.net.httpserver.nodelay", "true" );
+      }
+      handler = new QrCodeHandler( QrCodeHandler.DEFAULT_CACHE_SIZE, _threads );
+      executor = Executors.newFixedThreadPool( Runtime.getRuntime().availableProcessors() * 2 );
+      server = HttpServer.create( new InetSocketAddress( InetAddress.getLoopbackAddress(), 0 ), 1024 );
+      server.createContext( "/qr", handler );
+      server.setExecutor( executor );
+      server.start();
+      url = "http://127.0.0.1:" + server.getAddress().getPort() + "/qr";
+    }
+
+    final String[] urls = new String[ _payloads ];
+    for ( int i = 0; i < urls.length; i++ )
+    {
+      urls[ i ] = url + "?format=" + _format + "&payload=" +
+                  URLEncoder.encode( "https://example.com/item/" + ( 100000000 + i ), StandardCharsets.UTF_8.name() );
+    }
+
+    final long start = System.nanoTime();
+    final long measureStart = start + _warmup * 1_000_000_000L;
+    final long end = measureStart + _duration * 1_000_000_000L;
+    final Client[] clients = new Client[ _threads ];
+    final Thread[] threads = new Thread[ _threads ];
+    for ( int i = 0; i < _threads; i++ )
+    {
+      final Client client = new Client( urls, measureStart, end );
+      clients[ i ] = client;
+      threads[ i ] = new Thread( client, "load-" + i );
+      threads[ i ].start();
+    }
+    for ( final Thread thread : threads )
+    {
+      thread.join();
+    }
+
+    int count = 0;
+    long limited = 0;
+    long errors = 0;
+    for ( final Client client : clients )
+    {
+      count += client._count;
+      limited += client._limited;
+      errors += client._errors;
+    }
+    final long[] latencies = new long[ count ];
+    int offset = 0;
+    for ( final Client client : clients )
+    {
+      System.arraycopy( client._latencies, 0, latencies, offset, client._count );
+      offset += client._count;
+    }
+    Arrays.sort( latencies );
+
+    System.out.printf( "Requests:     %10d in %d s from %d threads%n", count, _duration, _threads );
+    System.out.printf( "Throughput:   %10.1f requests/s%n", count / (double) _duration );
+    System.out.printf( "Latency p50:  %10.3f ms%n", percentile( latencies, 0.5 ) );
+    System.out.printf( "Latency p90:  %10.3f ms%n", percentile( latencies, 0.9 ) );
+    System.out.printf( "Latency p99:  %10.3f ms%n", percentile( latencies, 0.99 ) );
+    System.out.printf( "Latency p999: %10.3f ms%n", percentile( latencies, 0.999 ) );
+    System.out.printf( "Latency max:  %10.3f ms%n", 0 == count ? 0D : latencies[ count - 1 ] / 1e6 );
+    System.out.printf( "Limited:      %10d%n", limited );
+    System.out.printf( "Errors:       %10d%n", errors );
+    if ( null != handler )
+    {
+      System.out.printf( "Cache hits:   %10d (including warmup)%n", handler.getCacheHits() );
+      System.out.printf( "Cache misses: %10d (including warmup)%n", handler.getCacheMisses() );
+      server.stop( 0 );
+      executor.shutdownNow();
+    }
+  }
+
+  private static double percentile( final long[] sorted, final double percentile )
+  {
+    return 0 == sorted.length ? 0D : sorted[ (int) Math.min( sorted.length - 1, sorted.length * percentile ) ] / 1e6;
+  }
+
+  private static final class Client
+    implements Runnable
+  {
+    private final String[] _urls;
+    private final long _measureStart;
+    private final long _end;
+    private final byte[] _buffer = new byte[ 8192 ];
+    private long[] _latencies = new long[ 1024 ];
+    private int _count;
+    private long _limited;
+    private long _errors;
+
+    Client( final String[] urls, final long measureStart, final long end )
+    {
+      _urls = urls;
+      _measureStart = measureStart;
+      _end = end;
+    }
+
+    @Override
+    public void run()
+    {
+      long now;
+      while ( ( now = System.nanoTime() ) < _end )
+      {
+        final String url = _urls[ ThreadLocalRandom.current().nextInt( _urls.length ) ];
+        int status;
+        try
+        {
+          status = request( url );
+        }
+        catch ( final IOException ioe )
+        {
+          status = -1;
+        }
+        final long latency = System.nanoTime() - now;
+        if ( now >= _measureStart )
+        {
+          if ( 200 == status )
+          {
+            if ( _count == _latencies.length )
+            {
+              _latencies = Arrays.copyOf( _latencies, _count * 2 );
+            }
+            _latencies[ _count++ ] = latency;
+          }
+          else if ( 429 == status )
+          {
+            _limited++;
+          }
+          else
+          {
+            _errors++;
+          }
+        }
+      }
+    }
+
+    private int request( final String url )
+      throws IOException
+    {
+      final HttpURLConnection connection = (HttpURLConnection) new URL( url ).openConnection();
+      final int status = connection.getResponseCode();
+      // Read the body completely so that the connection is reused
+      final InputStream input = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+      if ( null != input )
+      {
+        while ( -1 != input.read( _buffer ) )
+        {
+          // Discard the body
+        }
+        input.close();
+      }
+      return status;
+    }
+  }
+}
@@ -0,0 +1,211 @@
+package org.realityforge.gwt.qr_code.http;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.annotation.Nullable;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+public class QrCodeHandlerTest
+{
+  private HttpServer _server;
+  private ExecutorService _executor;
+  private QrCodeHandler _handler;
+
+  @BeforeMethod
+  public void startServer()
+    throws IOException
+  {
+    _handler = new QrCodeHandler( 1024 * 1024, 4 );
+    _executor = Executors.newFixedThreadPool( 4 );
+    _server = HttpServer.create( new InetSocketAddress( InetAddress.getLoopbackAddress(), 0 ), 0 );
+    _server.createContext( "/qr", _handler );
+    _server.setExecutor( _executor );
+    _server.start();
+  }
+
+  @AfterMethod
+  public void stopServer()
+  {
+    _server.stop( 0 );
+    _executor.shutdownNow();
+  }
+
+  @Test
+  public void svgIsCachedAndRevalidated()
+    throws Exception
+  {
+    final Response first = get( "payload=" + encode( "https://example.com/a?b=c&d" ), null );
+    assertEquals( first._status, 200 );
+    assertEquals( first._contentType, "image/svg+xml" );
+    assertTrue( new String( first._body, StandardCharsets.UTF_8 ).startsWith( "<svg" ) );
+    assertNotNull( first._etag );
+    assertTrue( first._etag.matches( "\"[0-9a-f]{32}\"" ), first._etag );
+    assertEquals( _handler.getCacheMisses(), 1 );
+    assertEquals( _handler.getCacheHits(), 0 );
+
+    // The scale does not affect svg images so the request is served from the cache
+    final Response second = get( "scale=3&payload=" + encode( "https://example.com/a?b=c&d" ), null );
+    assertEquals( second._status, 200 );
+    assertEquals( second._etag, first._etag );
+    assertEquals( second._body, first._body );
+    assertEquals( _handler.getCacheHits(), 1 );
+
+    final Response notModified = get( "payload=" + encode( "https://example.com/a?b=c&d" ), "W/" + first._etag );
+    assertEquals( notModified._status, 304 );
+    assertEquals( notModified._etag, first._etag );
+    assertEquals( notModified._body.length, 0 );
+
+    // A different payload is a different symbol
+    final Response other = get( "payload=other", first._etag );
+    assertEquals( other._status, 200 );
+    assertNotEquals( other._etag, first._etag );
+  }
+
+  @Test
+  public void png()
+    throws Exception
+  {
+    final Response response = get( "payload=314159&format=png&scale=2&border=1&ecc=H", null );
+    assertEquals( response._status, 200 );
+    assertEquals( response._contentType, "image/png" );
+    assertEquals( response._body[ 1 ], (byte) 'P' );
+    assertEquals( response._body[ 2 ], (byte) 'N' );
+    assertEquals( response._body[ 3 ], (byte) 'G' );
+
+    // The etag of a revalidated response, whether or not it is cached, matches the etag of the image
+    final Response notModified = get( "payload=314159&format=png&scale=2&border=1&ecc=H", response._etag );
+    assertEquals( notModified._status, 304 );
+    final Response larger = get( "payload=314159&format=png&scale=3&border=1&ecc=H", response._etag );
+    assertEquals( larger._status, 200 );
+    assertNotEquals( larger._etag, response._etag );
+  }
+
+  @Test
+  public void invalidRequests()
+    throws Exception
+  {
+    assertEquals( get( "", null )._status, 400 );
+    assertEquals( get( "payload=a&ecc=X", null )._status, 400 );
+    assertEquals( get( "payload=a&scale=0", null )._status, 400 );
+    assertEquals( get( "payload=a&border=65", null )._status, 400 );
+    assertEquals( get( "payload=a&format=gif", null )._status, 400 );
+    final StringBuilder payload = new StringBuilder();
+    for ( int i = 0; i < 3000; i++ )
+    {
+      payload.append( 'a' );
+    }
+    final Response tooLong = get( "payload=" + payload, null );
+    assertEquals( tooLong._status, 400 );
+    assertEquals( new String( tooLong._body, StandardCharsets.UTF_8 ), "The payload is too long to fit in a QR Code\n" );
+
+    final HttpURLConnection connection = open( "payload=a" );
+    connection.setRequestMethod( "POST" );
+    assertEquals( connection.getResponseCode(), 405 );
+    assertEquals( connection.getHeaderField( "Allow" ), "GET, HEAD" );
+  }
+
+  @Test
+  public void clientLimiter()
+  {
+    final ClientLimiter limiter = new ClientLimiter( 2 );
+    assertTrue( limiter.tryAcquire( "a" ) );
+    assertTrue( limiter.tryAcquire( "a" ) );
+    assertFalse( limiter.tryAcquire( "a" ) );
+    assertTrue( limiter.tryAcquire( "b" ) );
+    assertEquals( limiter.getClientCount(), 2 );
+    limiter.release( "a" );
+    assertTrue( limiter.tryAcquire( "a" ) );
+    limiter.release( "a" );
+    limiter.release( "a" );
+    limiter.release( "b" );
+    assertEquals( limiter.getClientCount(), 0 );
+  }
+
+  @Test
+  public void renderCacheEvictsLeastRecentlyUsed()
+  {
+    final RenderCache cache = new RenderCache( 10 );
+    cache.put( "a", new RenderCache.Entry( "\"a\"", new byte[ 4 ] ) );
+    cache.put( "b", new RenderCache.Entry( "\"b\"", new byte[ 4 ] ) );
+    assertNotNull( cache.get( "a" ) );
+    cache.put( "c", new RenderCache.Entry( "\"c\"", new byte[ 4 ] ) );
+    assertNotNull( cache.get( "a" ) );
+    assertNull( cache.get( "b" ) );
+    assertNotNull( cache.get( "c" ) );
+    assertEquals( cache.getSize(), 8 );
+
+    // Entries larger than the cache are ignored
+    cache.put( "d", new RenderCache.Entry( "\"d\"", new byte[ 11 ] ) );
+    assertNull( cache.get( "d" ) );
+    assertEquals( cache.getEntryCount(), 2 );
+  }
+
+  private HttpURLConnection open( final String query )
+    throws IOException
+  {
+    final URL url = new URL( "http://127.0.0.1:" + _server.getAddress().getPort() + "/qr?" + query );
+    return (HttpURLConnection) url.openConnection();
+  }
+
+  private Response get( final String query, @Nullable final String ifNoneMatch )
+    throws IOException
+  {
+    final HttpURLConnection connection = open( query );
+    if ( null != ifNoneMatch )
+    {
+      connection.setRequestProperty( "If-None-Match", ifNoneMatch );
+    }
+    final int status = connection.getResponseCode();
+    final InputStream input = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+    final ByteArrayOutputStream body = new ByteArrayOutputStream();
+    if ( null != input )
+    {
+      final byte[] buffer = new byte[ 4096 ];
+      int count;
+      while ( -1 != ( count = input.read( buffer ) ) )
+      {
+        body.write( buffer, 0, count );
+      }
+      input.close();
+    }
+    return new Response( status,
+                         connection.getHeaderField( "Content-Type" ),
+                         connection.getHeaderField( "ETag" ),
+                         body.toByteArray() );
+  }
+
+  private static String encode( final String value )
+    throws IOException
+  {
+    return URLEncoder.encode( value, StandardCharsets.UTF_8.name() );
+  }
+
+  private static final class Response
+  {
+    private final int _status;
+    private final String _contentType;
+    private final String _etag;
+    private final byte[] _body;
+
+    Response( final int status, final String contentType, final String etag, final byte[] body )
+    {
+      _status = status;
+      _contentType = contentType;
+      _etag = etag;
+      _body = body;
+    }
+  }
+}